@@ -0,0 +1,34 @@
+package com.niyiment.samples.datacleaning.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "cleaning.admission")
+public class AdmissionProperties {
+    private boolean enabled = true;
+    /** Heap that running jobs may reserve in total; when unset, {@link #heapFraction} of the max heap. */
+    private DataSize memoryBudget;
+    private double heapFraction = 0.6;
+    private int maxQueued = 16;
+    private Duration maxWait = Duration.ofSeconds(30);
+    private Duration retryAfter = Duration.ofSeconds(30);
+    /** Heap bytes per parsed cell across the raw rows, the cleaned copies and the session result. */
+    private DataSize bytesPerCell = DataSize.ofBytes(320);
+    /** Heap bytes per uploaded byte for formats whose cell count is not sampled. */
+    private Map<String, Double> expansionFactors = new HashMap<>(Map.of(
+            "csv", 12.0,
+            "json", 8.0,
+            "ndjson", 8.0,
+            "xlsx", 40.0));
+    private double defaultExpansionFactor = 12.0;
+    /** Assumed size ratio of decompressed to compressed uploads. */
+    private double compressionRatio = 8.0;
+}
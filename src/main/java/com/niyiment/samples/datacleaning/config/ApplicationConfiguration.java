@@ -1,6 +1,7 @@
 package com.niyiment.samples.datacleaning.config;
 
 
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.domain.PageRequest;
@@ -11,9 +12,19 @@ import org.springframework.web.multipart.support.StandardServletMultipartResolve
 @Configuration
 public class ApplicationConfiguration {
 
+    public static final String STREAMING_UPLOAD_PATH = "/process/stream";
+    public static final String LIVE_UPLOAD_PATH = "/process/live";
+
     @Bean
     public MultipartResolver multipartResolver() {
-        return new StandardServletMultipartResolver();
+        return new StandardServletMultipartResolver() {
+            @Override
+            public boolean isMultipart(HttpServletRequest request) {
+                String path = request.getServletPath();
+                return !STREAMING_UPLOAD_PATH.equals(path) && !LIVE_UPLOAD_PATH.equals(path)
+                        && super.isMultipart(request);
+            }
+        };
     }
 
     @Bean
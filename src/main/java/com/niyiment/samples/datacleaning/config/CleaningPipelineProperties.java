@@ -9,6 +9,7 @@ import java.util.List;
 @ConfigurationProperties(prefix = "cleaning.pipeline")
 public class CleaningPipelineProperties {
     private List<String> steps;
+    private Planner planner = new Planner();
 
     public List<String> getSteps() {
         return steps;
@@ -17,4 +18,31 @@ public class CleaningPipelineProperties {
     public void setSteps(List<String> steps) {
         this.steps = steps;
     }
+
+    public Planner getPlanner() {
+        return planner;
+    }
+
+    public void setPlanner(Planner planner) {
+        this.planner = planner;
+    }
+
+    public enum PlannerMode {
+        /** Run the configured steps in order, over every column. */
+        STRICT,
+        /** Probe the data first, then reorder, narrow or skip steps where that cannot change the result. */
+        COST_BASED
+    }
+
+    public static class Planner {
+        private PlannerMode mode = PlannerMode.STRICT;
+
+        public PlannerMode getMode() {
+            return mode;
+        }
+
+        public void setMode(PlannerMode mode) {
+            this.mode = mode;
+        }
+    }
 }
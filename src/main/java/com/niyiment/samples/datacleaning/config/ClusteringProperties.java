@@ -0,0 +1,24 @@
+package com.niyiment.samples.datacleaning.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "cleaning.clustering")
+public class ClusteringProperties {
+    /** A string column is clustered when its distinct values are at most this share of its rows. */
+    private double maxDistinctRatio = 0.5;
+    /** Character n-gram length used for the similarity of fingerprints. */
+    private int ngramSize = 2;
+    /** MinHash signature is split into this many bands; each band is one blocking key. */
+    private int bands = 16;
+    private int rowsPerBand = 4;
+    /** Minimum n-gram Jaccard similarity for two fingerprints in the same block to be merged. */
+    private double similarityThreshold = 0.8;
+    /** Fingerprints shorter than this are only merged on an exact fingerprint match. */
+    private int minFingerprintLength = 4;
+    /** Blocks larger than this are skipped, they come from very common n-grams and would go quadratic. */
+    private int maxBlockSize = 100;
+}
@@ -0,0 +1,41 @@
+package com.niyiment.samples.datacleaning.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "cleaning.imputation")
+public class ImputationProperties {
+    /** Strategy for Integer, Long and Double columns without an entry in {@link #columns}. */
+    private Strategy numericStrategy = Strategy.NONE;
+    /** Strategy for date columns without an entry in {@link #columns}. */
+    private Strategy dateStrategy = Strategy.NONE;
+    /** Strategy for text and boolean columns without an entry in {@link #columns}. */
+    private Strategy textStrategy = Strategy.NONE;
+    /** Per-column strategy, keyed by column name. */
+    private Map<String, Strategy> columns = new HashMap<>();
+    /** Fill values for columns using {@link Strategy#CONSTANT}, converted to the column's type. */
+    private Map<String, String> constants = new HashMap<>();
+    /** Values kept per level of the median sketch; columns with fewer values get an exact median. */
+    private int sketchCapacity = 200;
+    /** Distinct values tracked per column for the mode. */
+    private int modeCapacity = 64;
+    /** Rows per chunk when column statistics are accumulated in parallel, one job subtask per chunk. */
+    private int parallelChunkSize = 50_000;
+
+    public enum Strategy {
+        /** Leave missing cells as they are. */
+        NONE,
+        MEAN,
+        /** Approximate median from a mergeable quantile sketch. */
+        MEDIAN,
+        /** Most frequent value, tracked with a bounded heavy-hitters summary. */
+        MODE,
+        CONSTANT
+    }
+}
@@ -0,0 +1,20 @@
+package com.niyiment.samples.datacleaning.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "cleaning.incremental")
+public class IncrementalProperties {
+    private boolean enabled = false;
+    private int maxFeeds = 8;
+    /**
+     * Estimated heap all kept baselines may hold together; the least recently used ones are dropped
+     * beyond it. Kept baselines also reserve their size from the admission budget, and are dropped
+     * when a job needs that room.
+     */
+    private DataSize maxMemory = DataSize.ofMegabytes(256);
+}
@@ -0,0 +1,19 @@
+package com.niyiment.samples.datacleaning.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "cleaning.jobs")
+public class JobProperties {
+    /** Jobs still running this long after they started fail at their next checkpoint. */
+    private Duration maxProcessingTime = Duration.ofMinutes(10);
+    /** Finished jobs kept for their sessions to pick up; the oldest go first. */
+    private int maxRetained = 64;
+    /** Finished jobs nobody picked up within this time are dropped. */
+    private Duration retention = Duration.ofMinutes(30);
+}
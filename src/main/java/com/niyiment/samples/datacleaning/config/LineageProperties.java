@@ -0,0 +1,15 @@
+package com.niyiment.samples.datacleaning.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "cleaning.lineage")
+public class LineageProperties {
+    /** Name of the source row column in downloads and on the results page. */
+    private String column = "source_row";
+    /** Whether downloads start with the source row of every cleaned row. */
+    private boolean includeInDownloads = true;
+}
@@ -0,0 +1,29 @@
+package com.niyiment.samples.datacleaning.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "cleaning.preview")
+public class PreviewProperties {
+    private boolean enabled = true;
+    /** Rows the provisional result is cleaned from; smaller files skip the preview. */
+    private int rows = 1_000;
+    private Sampling sampling = Sampling.FIRST;
+    /** How long an upload waits for its preview before redirecting to a "still processing" page. */
+    private Duration targetLatency = Duration.ofSeconds(2);
+    /** Refresh interval of result pages while the full job is running. */
+    private Duration refreshInterval = Duration.ofSeconds(3);
+    private long seed = 42;
+
+    public enum Sampling {
+        /** The first rows of the file, available as soon as they are parsed. */
+        FIRST,
+        /** A uniform reservoir sample of the whole file, available once it is parsed. */
+        RESERVOIR
+    }
+}
@@ -0,0 +1,39 @@
+package com.niyiment.samples.datacleaning.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "cleaning.reference")
+public class ReferenceDataProperties {
+    /** Reference tables the referenceLookup step joins rows against, in the order they are applied. */
+    private Map<String, Table> tables = new LinkedHashMap<>();
+    /** How often the files are checked for changes; a changed file is reloaded while lookups go on. */
+    private Duration reloadCheckInterval = Duration.ofSeconds(10);
+
+    @Data
+    public static class Table {
+        /** Local CSV file with a header row. */
+        private String path;
+        /** Column of the file whose values identify its rows. */
+        private String keyColumn;
+        /** Column of the cleaned rows holding the key; the key column's name when not set. */
+        private String lookupColumn;
+        /** Columns of the file copied into matching rows; every column but the key when empty. */
+        private List<String> columns = new ArrayList<>();
+        /** Prefix of the copied columns' names; the table name and an underscore when not set. */
+        private String prefix;
+        /** Boolean column set to whether the row's key was found, when set. */
+        private String matchColumn;
+        /** Whether keys match ignoring case. */
+        private boolean ignoreCase;
+    }
+}
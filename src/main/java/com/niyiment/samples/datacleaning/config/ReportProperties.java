@@ -0,0 +1,21 @@
+package com.niyiment.samples.datacleaning.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "cleaning.report")
+public class ReportProperties {
+    /** Most frequent values the report lists per column. */
+    private int topValues = 5;
+    /** Counters of the per-column heavy-hitters sketch; more counters give tighter counts. */
+    private int topValuesCapacity = 256;
+    /** Rows per chunk of the value statistics; larger results are summarized chunk by chunk in parallel. */
+    private int chunkRows = 65_536;
+    /** Rows per block of the numeric profile kernel; a block of every numeric column should fit in cache. */
+    private int profileBlockRows = 1_024;
+    /** Capacity of the quantile sketches behind the profile's percentiles; smaller columns get exact ones. */
+    private int profileSketchCapacity = 2_048;
+}
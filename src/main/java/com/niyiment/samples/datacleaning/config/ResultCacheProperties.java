@@ -0,0 +1,22 @@
+package com.niyiment.samples.datacleaning.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "cleaning.cache")
+public class ResultCacheProperties {
+    private boolean enabled = true;
+    private DataSize maxMemory = DataSize.ofMegabytes(256);
+    private Disk disk = new Disk();
+
+    @Data
+    public static class Disk {
+        private boolean enabled = false;
+        private String directory = System.getProperty("java.io.tmpdir") + "/data-cleaning-cache";
+        private DataSize maxSize = DataSize.ofGigabytes(2);
+    }
+}
@@ -0,0 +1,17 @@
+package com.niyiment.samples.datacleaning.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "cleaning.results")
+public class ResultPageProperties {
+    /** Largest page the JSON page endpoint serves. */
+    private int maxPageSize = 1_000;
+    /** How long browsers may reuse a page of a full result without asking again. */
+    private Duration cacheMaxAge = Duration.ofHours(1);
+}
@@ -0,0 +1,45 @@
+package com.niyiment.samples.datacleaning.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "cleaning.schemas")
+public class SchemaProperties {
+    /** Named schemas an upload can select; an upload with a schema is parsed into its types without inference. */
+    private Map<String, Schema> definitions = new LinkedHashMap<>();
+
+    @Data
+    public static class Schema {
+        private List<Column> columns = new ArrayList<>();
+    }
+
+    @Data
+    public static class Column {
+        /** Column name as in the file; matched after the same standardization as the headers. */
+        private String name;
+        private ColumnType type = ColumnType.STRING;
+        /** {@link java.time.format.DateTimeFormatter} pattern of {@link ColumnType#DATE} columns. */
+        private String datePattern = "yyyy-MM-dd";
+        /** Whether the column may be blank; blank cells of other columns are violations. */
+        private boolean nullable = true;
+        /** Whether every value identifies its row; repeated values are violations. */
+        private boolean identifier;
+    }
+
+    public enum ColumnType {
+        STRING,
+        INTEGER,
+        LONG,
+        DOUBLE,
+        BOOLEAN,
+        DATE
+    }
+}
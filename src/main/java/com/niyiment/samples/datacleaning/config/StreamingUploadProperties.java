@@ -0,0 +1,18 @@
+package com.niyiment.samples.datacleaning.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "cleaning.upload.stream")
+public class StreamingUploadProperties {
+    private DataSize maxFileSize = DataSize.ofGigabytes(2);
+    /** Upload size admission assumes for requests sent without a Content-Length; max-file-size when unset. */
+    private DataSize unknownSize;
+    private int batchSize = 2_000;
+    private int queueCapacity = 4;
+    private int firstPageSize = 10;
+}
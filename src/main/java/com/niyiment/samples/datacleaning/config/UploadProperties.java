@@ -0,0 +1,14 @@
+package com.niyiment.samples.datacleaning.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "cleaning.upload")
+public class UploadProperties {
+    /** Bytes a compressed upload may expand to; reading it fails past that. */
+    private DataSize maxDecompressedSize = DataSize.ofGigabytes(2);
+}
@@ -0,0 +1,32 @@
+package com.niyiment.samples.datacleaning.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "cleaning.warmup")
+public class WarmupProperties {
+    private boolean enabled = false;
+    /** Upload formats parsed in every iteration. */
+    private List<String> formats = new ArrayList<>(List.of("csv", "json", "ndjson", "xlsx"));
+    /** Shape of the synthetic dataset; every dataset also has an id and an age column. */
+    private int rows = 2000;
+    private int numericColumns = 2;
+    private int textColumns = 3;
+    private int dateColumns = 1;
+    /** Distinct values per text column, so categorical steps see repeated values. */
+    private int distinctValues = 40;
+    private long seed = 42;
+    /** Warm-up stops once this many consecutive iterations are within {@link #tolerance} of the fastest. */
+    private int stableIterations = 3;
+    private double tolerance = 0.1;
+    private int minIterations = 5;
+    private int maxIterations = 50;
+    private Duration maxDuration = Duration.ofSeconds(60);
+}
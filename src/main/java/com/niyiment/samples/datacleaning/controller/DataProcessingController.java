@@ -1,9 +1,30 @@
 package com.niyiment.samples.datacleaning.controller;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.niyiment.samples.datacleaning.config.ApplicationConfiguration;
+import com.niyiment.samples.datacleaning.config.JobProperties;
+import com.niyiment.samples.datacleaning.config.PreviewProperties;
+import com.niyiment.samples.datacleaning.config.ResultPageProperties;
 import com.niyiment.samples.datacleaning.dto.CleanedDataResult;
 import com.niyiment.samples.datacleaning.dto.DataQualityReport;
+import com.niyiment.samples.datacleaning.dto.ProcessingOptions;
+import com.niyiment.samples.datacleaning.dto.ResultPage;
+import com.niyiment.samples.datacleaning.exception.AdmissionRejectedException;
+import com.niyiment.samples.datacleaning.exception.ReportProcessingException;
+import com.niyiment.samples.datacleaning.service.CancellationToken;
+import com.niyiment.samples.datacleaning.service.CleaningJob;
+import com.niyiment.samples.datacleaning.service.Compression;
+import com.niyiment.samples.datacleaning.service.DataExportService;
 import com.niyiment.samples.datacleaning.service.DataProcessingService;
+import com.niyiment.samples.datacleaning.service.ExportFormat;
+import com.niyiment.samples.datacleaning.service.JobRegistry;
+import com.niyiment.samples.datacleaning.service.LiveRowWriter;
+import com.niyiment.samples.datacleaning.service.PreviewService;
+import com.niyiment.samples.datacleaning.service.ResultCodec;
+import com.niyiment.samples.datacleaning.service.SchemaRegistry;
+import com.niyiment.samples.datacleaning.service.StreamingUploadService;
+import com.niyiment.samples.datacleaning.service.StreamingUploadService.StreamedUpload;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -11,18 +32,26 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
 
 
 
@@ -31,30 +60,66 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class DataProcessingController {
     private final DataProcessingService processingService;
-    private final ObjectMapper objectMapper;
+    private final DataExportService exportService;
+    private final StreamingUploadService streamingUploadService;
+    private final ResultCodec resultCodec;
+    private final PreviewService previewService;
+    private final JobRegistry jobRegistry;
+    private final PreviewProperties previewProperties;
+    private final JobProperties jobProperties;
+    private final ResultPageProperties resultPageProperties;
+    private final SchemaRegistry schemaRegistry;
 
     @GetMapping("/")
-    public String uploadPage() {
+    public String uploadPage(Model model) {
+        model.addAttribute("schemas", schemaRegistry.names());
         return "upload";
     }
 
     @PostMapping("/process")
     public String uploadAndProcessFile(
             @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "feed", required = false) String feed,
+            @RequestParam(value = "fullRecompute", defaultValue = "false") boolean fullRecompute,
+            @RequestParam(value = "preview", defaultValue = "false") boolean preview,
+            @RequestParam(value = "jobId", required = false) String jobId,
+            @RequestParam(value = "numericProfile", defaultValue = "false") boolean numericProfile,
+            @RequestParam(value = "schema", required = false) String schema,
+            @RequestParam(value = "columns", required = false) String columns,
+            @RequestParam(value = "filter", required = false) String filter,
             RedirectAttributes redirectAttributes,
             HttpSession session
     ) {
         try {
+            cancelPendingJob(session, "a new file was uploaded");
             if (file.isEmpty()) {
                 redirectAttributes.addFlashAttribute("errorMessage", "Uploaded file is empty");
                 return "redirect:/";
             }
-            CleanedDataResult cleanedDataResult = processingService.processFile(file);
-
-            session.setAttribute("fullResultJson", objectMapper.writeValueAsString(cleanedDataResult));
-            session.setAttribute("originalFileName", file.getOriginalFilename());
+            ProcessingOptions options = ProcessingOptions.builder()
+                    .feed(feed)
+                    .fullRecompute(fullRecompute)
+                    .jobId(jobId)
+                    .numericProfile(numericProfile)
+                    .schema(schema)
+                    .columns(columns)
+                    .filter(filter)
+                    .build();
+            if (preview && previewService.isEnabled()) {
+                CleaningJob job = previewService.start(file, options);
+                // the results page shows whatever is there by then and refreshes until the job is done
+                job.awaitFirstResult(previewProperties.getTargetLatency());
+                session.removeAttribute("fullResult");
+                session.setAttribute("pendingJob", job.id());
+                session.setAttribute("originalFileName", file.getOriginalFilename());
+                return "redirect:/results?page=0&size=10";
+            }
+            CleanedDataResult cleanedDataResult = processingService.processFile(file, options);
+            storeResult(session, cleanedDataResult, file.getOriginalFilename());
 
             return "redirect:/results?page=0&size=10";
+        } catch (AdmissionRejectedException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error processing file", e);
             redirectAttributes.addFlashAttribute("errorMessage",
@@ -63,6 +128,84 @@ public class DataProcessingController {
         }
     }
 
+    @PostMapping(ApplicationConfiguration.STREAMING_UPLOAD_PATH)
+    public String uploadAndProcessStream(
+            HttpServletRequest request,
+            RedirectAttributes redirectAttributes,
+            HttpSession session
+    ) {
+        try {
+            cancelPendingJob(session, "a new file was uploaded");
+            StreamedUpload upload = streamingUploadService.process(request);
+            storeResult(session, upload.result(), upload.fileName());
+
+            return "redirect:/results?page=0&size=10";
+        } catch (AdmissionRejectedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error processing streamed upload", e);
+            redirectAttributes.addFlashAttribute("errorMessage",
+                    "Error processing file: " + e.getMessage());
+            return "redirect:/";
+        }
+    }
+
+    /**
+     * Processes a streamed upload and sends its cleaned rows back while it runs, as server-sent events
+     * when the client accepts them and as NDJSON otherwise. Nothing is kept in the session: the rows
+     * are the response. Once the first rows are out a failure can only be reported as an error event,
+     * so failures are always reported that way, with a 400 status while it can still be set, or a 503
+     * and {@code Retry-After} when admission turns the upload away.
+     */
+    @PostMapping(ApplicationConfiguration.LIVE_UPLOAD_PATH)
+    public void uploadAndStreamRows(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        boolean serverSentEvents = accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE);
+        response.setContentType(serverSentEvents ? MediaType.TEXT_EVENT_STREAM_VALUE : MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+        // proxies that buffer responses would hold the rows back until the end
+        response.setHeader("X-Accel-Buffering", "no");
+        LiveRowWriter live = exportService.liveWriter(response.getOutputStream(), serverSentEvents);
+        try {
+            streamingUploadService.process(request, live);
+        } catch (AdmissionRejectedException e) {
+            // the stream is open, so the rejection is written here rather than rendered as a page
+            if (!response.isCommitted()) {
+                response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+                response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())));
+            }
+            live.error(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error streaming cleaned rows", e);
+            if (!response.isCommitted()) {
+                response.setStatus(HttpStatus.BAD_REQUEST.value());
+            }
+            live.error("Error processing file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Cancels a running job. Jobs run by their own request are cancelled by the id the upload form
+     * sent along with the file, since the request has not returned one yet.
+     */
+    @PostMapping("/jobs/{id}/cancel")
+    public String cancelJob(@PathVariable String id, RedirectAttributes redirectAttributes, HttpSession session) {
+        if (jobRegistry.cancel(id, "cancelled by the client")) {
+            redirectAttributes.addFlashAttribute("message", "Processing was cancelled");
+        } else {
+            redirectAttributes.addFlashAttribute("message", "The job had already finished");
+        }
+        if (id.equals(session.getAttribute("pendingJob"))) {
+            session.removeAttribute("pendingJob");
+            jobRegistry.remove(id);
+        }
+        return "redirect:/";
+    }
+
     @GetMapping("/results")
     public String viewProcessedResults(
             Model model,
@@ -70,14 +213,30 @@ public class DataProcessingController {
             HttpSession session
     ) {
         try {
-            String fullResultJsonString = (String) session.getAttribute("fullResultJson");
+            CleaningJob pendingJob = claimJob(session, false);
             String fileName = (String) session.getAttribute("originalFileName");
+            CleanedDataResult cleanedDataResult;
+            String resultId;
+            if (pendingJob != null) {
+                model.addAttribute("fileName", fileName);
+                model.addAttribute("refreshSeconds", previewProperties.getRefreshInterval().toSeconds());
+                model.addAttribute("jobId", pendingJob.id());
+                Optional<byte[]> preview = pendingJob.preview();
+                if (preview.isEmpty()) {
+                    return "processing";
+                }
+                model.addAttribute("provisional", true);
+                cleanedDataResult = resultCodec.decode(preview.get());
+                resultId = pendingJob.id();
+            } else {
+                cleanedDataResult = loadResult(session);
+                resultId = (String) session.getAttribute("resultId");
+            }
 
-            if (fullResultJsonString == null || fileName == null) {
+            if (cleanedDataResult == null || fileName == null) {
                 model.addAttribute("errorMessage", "No processed data found in session");
                 return "redirect:/";
             }
-            CleanedDataResult cleanedDataResult = objectMapper.readValue(fullResultJsonString, CleanedDataResult.class);
 
             List<Map<String, Object>> cleanedData = cleanedDataResult.cleanedData();
             if (cleanedData == null || cleanedData.isEmpty()) {
@@ -96,9 +255,13 @@ public class DataProcessingController {
             );
 
             model.addAttribute("result", cleanedDataResult);
-            model.addAttribute("cleanedData", cleanedDataResult.cleanedData());
+            model.addAttribute("resultId", resultId);
             model.addAttribute("columns", cleanedDataResult.columns());
             model.addAttribute("pagedData", pagedResults);
+            int[] sourceRows = cleanedDataResult.sourceRows();
+            if (sourceRows != null && sourceRows.length == cleanedData.size() && start < cleanedData.size()) {
+                model.addAttribute("pageSourceRows", Arrays.copyOfRange(sourceRows, start, end));
+            }
             model.addAttribute("validationErrors", cleanedDataResult.validationErrors());
 
             // Handle Data Quality Report
@@ -119,31 +282,115 @@ public class DataProcessingController {
         }
     }
 
+    /**
+     * One page of the session's result as JSON, so the results page can page through it without
+     * being rendered again. The ETag is derived from the result id and the page: a full result never
+     * changes under its id, so its pages may be reused for a while, while a provisional page must be
+     * revalidated because the full result replaces it. A request whose {@code If-None-Match} still
+     * matches is answered without decoding the result.
+     */
+    @GetMapping(value = "/results/{resultId}/pages/{page}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<ResultPage> resultPage(
+            @PathVariable String resultId,
+            @PathVariable int page,
+            @RequestParam(value = "size", defaultValue = "10") int size,
+            WebRequest webRequest,
+            HttpSession session
+    ) {
+        if (page < 0 || size < 1 || size > resultPageProperties.getMaxPageSize()) {
+            return ResponseEntity.badRequest().build();
+        }
+        CleaningJob pendingJob = claimJob(session, false);
+        boolean provisional = pendingJob != null;
+        if (!resultId.equals(provisional ? pendingJob.id() : session.getAttribute("resultId"))) {
+            // the session moved on to another upload; the page reloads to show it
+            return ResponseEntity.notFound().build();
+        }
+        if (provisional && pendingJob.preview().isEmpty()) {
+            return ResponseEntity.accepted()
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(previewProperties.getRefreshInterval().toSeconds()))
+                    .build();
+        }
+
+        String etag = "\"" + resultId + (provisional ? "-provisional" : "") + "-" + page + "-" + size + "\"";
+        CacheControl cacheControl = provisional
+                ? CacheControl.noCache().cachePrivate()
+                : CacheControl.maxAge(resultPageProperties.getCacheMaxAge()).cachePrivate();
+        if (webRequest.checkNotModified(etag)) {
+            // checkNotModified has set the status and the ETag already
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).build();
+        }
+
+        CleanedDataResult cleanedDataResult = provisional
+                ? resultCodec.decode(pendingJob.preview().get())
+                : loadResult(session);
+        if (cleanedDataResult == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .body(toResultPage(cleanedDataResult, resultId, provisional, page, size));
+    }
+
     @GetMapping("/download")
-    public ResponseEntity<byte[]> downloadCleanedFile(HttpSession session) throws IOException {
-        String fullResultJsonString = (String) session.getAttribute("fullResultJson");
+    public ResponseEntity<StreamingResponseBody> downloadCleanedFile(
+            @RequestParam(value = "format", required = false) String format,
+            @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpSession session
+    ) {
+        // exports never contain provisional data: a download waits for a running job to finish
+        claimJob(session, true);
+        CleanedDataResult cleanedDataResult = loadResult(session);
         String fileName2 = (String) session.getAttribute("originalFileName");
-        CleanedDataResult cleanedDataResult = objectMapper.readValue(
-                fullResultJsonString,
-                CleanedDataResult.class
-        );
-        byte[] excelContent = processingService.exportToExcel(cleanedDataResult);
+        ExportFormat exportFormat = ExportFormat.fromParameter(format);
 
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+        // gzip=true downloads a .gz file; otherwise text formats are compressed on the wire when the
+        // client accepts it. XLSX is already a zip archive and is sent as is.
+        Compression contentEncoding = gzip || exportFormat == ExportFormat.XLSX
+                ? Compression.NONE
+                : Compression.negotiate(acceptEncoding);
+        Compression compression = gzip ? Compression.GZIP : contentEncoding;
+
+        // a client that goes away fails the next write; the deadline bounds an export nobody stops
+        CancellationToken token = new CancellationToken("download of " + fileName2, jobProperties.getMaxProcessingTime());
+        StreamingResponseBody body = outputStream -> {
+            try (CancellationToken.Binding binding = token.bind()) {
+                OutputStream out = compression.encode(outputStream);
+                if (exportFormat == ExportFormat.XLSX) {
+                    out.write(processingService.exportToExcel(cleanedDataResult));
+                } else {
+                    exportService.export(cleanedDataResult, exportFormat, out);
+                }
+                Compression.finish(out);
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(gzip
+                        ? MediaType.parseMediaType("application/gzip")
+                        : MediaType.parseMediaType(exportFormat.getMediaType()))
                 .header(HttpHeaders.CONTENT_DISPOSITION,
-                        "attachment; filename=" + fileName2.replace(".", "_cleaned."))
-                .body(excelContent);
+                        "attachment; filename=" + cleanedFileName(fileName2, exportFormat, gzip));
+        if (!gzip && exportFormat != ExportFormat.XLSX) {
+            response.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (contentEncoding != Compression.NONE) {
+            response.header(HttpHeaders.CONTENT_ENCODING, contentEncoding.getContentCoding());
+        }
+        return response.body(body);
     }
 
     @GetMapping("/download-error-log")
     public ResponseEntity<byte[]> downloadErrorLog(HttpSession session) throws Exception {
-        String fullResultJsonString = (String) session.getAttribute("fullResultJson");
-        if (fullResultJsonString == null) {
+        claimJob(session, true);
+        CleanedDataResult cleanedDataResult = loadResult(session);
+        if (cleanedDataResult == null) {
             return ResponseEntity.badRequest().body("No processed data found in session".getBytes());
         }
 
-        CleanedDataResult cleanedDataResult = objectMapper.readValue(fullResultJsonString, CleanedDataResult.class);
         List<String> validationErrors = cleanedDataResult.validationErrors();
 
         if (validationErrors == null || validationErrors.isEmpty()) {
@@ -157,6 +404,97 @@ public class DataProcessingController {
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"validation_errors.xlsx\"")
                 .body(errorLog);
     }
+
+    private void storeResult(HttpSession session, CleanedDataResult cleanedDataResult, String fileName) {
+        storeFullResult(session, resultCodec.encode(cleanedDataResult));
+        session.setAttribute("originalFileName", fileName);
+        session.removeAttribute("pendingJob");
+    }
+
+    /**
+     * Keeps an encoded full result under a new result id. Ids are never reused, not even the id of
+     * the job that produced the result, so a page cached for one result is never shown for another.
+     */
+    private void storeFullResult(HttpSession session, byte[] encoded) {
+        session.setAttribute("fullResult", encoded);
+        session.setAttribute("resultId", UUID.randomUUID().toString());
+    }
+
+    private static ResultPage toResultPage(CleanedDataResult result, String resultId, boolean provisional,
+                                           int page, int size) {
+        List<Map<String, Object>> cleanedData = result.cleanedData() == null ? List.of() : result.cleanedData();
+        int start = (int) Math.min((long) page * size, cleanedData.size());
+        int end = Math.min(start + size, cleanedData.size());
+        Map<String, String> columnTypes = result.dataQualityReport() == null
+                || result.dataQualityReport().columnTypes() == null
+                ? Map.of()
+                : result.dataQualityReport().columnTypes();
+        int[] sourceRows = result.sourceRows();
+
+        return ResultPage.builder()
+                .resultId(resultId)
+                .provisional(provisional)
+                .page(page)
+                .size(size)
+                .totalRows(cleanedData.size())
+                .totalPages((cleanedData.size() + size - 1) / size)
+                .columns(result.columns() == null ? List.of() : result.columns().stream()
+                        .map(column -> new ResultPage.Column(column, columnTypes.get(column)))
+                        .toList())
+                .sourceRows(sourceRows != null && sourceRows.length == cleanedData.size()
+                        ? Arrays.copyOfRange(sourceRows, start, end)
+                        : null)
+                .rows(cleanedData.subList(start, end))
+                .build();
+    }
+
+    /**
+     * Moves the result of the session's background job into the session once it is done, waiting
+     * for it when {@code wait} is set. Returns the job while it is still running, null otherwise.
+     */
+    private CleaningJob claimJob(HttpSession session, boolean wait) {
+        String jobId = (String) session.getAttribute("pendingJob");
+        if (jobId == null) {
+            return null;
+        }
+        CleaningJob job = jobRegistry.get(jobId).orElse(null);
+        if (job == null) {
+            session.removeAttribute("pendingJob");
+            throw new ReportProcessingException("The processing job of this session is no longer available");
+        }
+        if (!job.isDone() && !wait) {
+            return job;
+        }
+        try {
+            storeFullResult(session, job.awaitResult());
+        } finally {
+            session.removeAttribute("pendingJob");
+            jobRegistry.remove(jobId);
+        }
+        return null;
+    }
+
+    private void cancelPendingJob(HttpSession session, String reason) {
+        String jobId = (String) session.getAttribute("pendingJob");
+        if (jobId != null) {
+            jobRegistry.cancel(jobId, reason);
+            jobRegistry.remove(jobId);
+            session.removeAttribute("pendingJob");
+        }
+    }
+
+    private CleanedDataResult loadResult(HttpSession session) {
+        byte[] encoded = (byte[]) session.getAttribute("fullResult");
+        return encoded == null ? null : resultCodec.decode(encoded);
+    }
+
+    private String cleanedFileName(String originalFileName, ExportFormat format, boolean gzip) {
+        originalFileName = originalFileName.substring(0,
+                originalFileName.length() - Compression.fromFileName(originalFileName).getSuffix().length());
+        int extensionIndex = originalFileName.lastIndexOf('.');
+        String baseName = extensionIndex > 0 ? originalFileName.substring(0, extensionIndex) : originalFileName;
+        return baseName + "_cleaned." + format.getExtension() + (gzip ? ".gz" : "");
+    }
 }
 
 
@@ -0,0 +1,23 @@
+package com.niyiment.samples.datacleaning.controller;
+
+import com.niyiment.samples.datacleaning.service.JobRegistry;
+import jakarta.servlet.http.HttpSessionEvent;
+import jakarta.servlet.http.HttpSessionListener;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/** Cancels the background job of a session that expires or is invalidated before claiming its result. */
+@Component
+@RequiredArgsConstructor
+public class PendingJobSessionListener implements HttpSessionListener {
+    private final JobRegistry jobRegistry;
+
+    @Override
+    public void sessionDestroyed(HttpSessionEvent event) {
+        String jobId = (String) event.getSession().getAttribute("pendingJob");
+        if (jobId != null) {
+            jobRegistry.cancel(jobId, "its session ended");
+            jobRegistry.remove(jobId);
+        }
+    }
+}
@@ -6,11 +6,17 @@ import lombok.Builder;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * @param sourceRows the source row of every cleaned row, by position; null for results that have no
+ *                   lineage, such as ones decoded from before it was recorded
+ */
 @Builder
 public record CleanedDataResult(
         List<Map<String, Object>> cleanedData,
+        int[] sourceRows,
         DataQualityReport dataQualityReport,
         List<String> columns,
-        List<String> validationErrors
+        List<String> validationErrors,
+        List<String> pipelinePlan
 ) {
 }
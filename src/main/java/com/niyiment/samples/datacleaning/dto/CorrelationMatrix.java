@@ -0,0 +1,13 @@
+package com.niyiment.samples.datacleaning.dto;
+
+import java.util.List;
+
+/**
+ * Pearson correlations between the numeric columns of a result, each over the rows where both
+ * columns have a value.
+ *
+ * @param coefficients {@code coefficients.get(i).get(j)} correlates {@code columns.get(i)} with
+ *                     {@code columns.get(j)}; null where it is undefined, such as for a constant column
+ */
+public record CorrelationMatrix(List<String> columns, List<List<Double>> coefficients) {
+}
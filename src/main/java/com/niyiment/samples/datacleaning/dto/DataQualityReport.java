@@ -3,6 +3,7 @@ package com.niyiment.samples.datacleaning.dto;
 
 import lombok.Builder;
 
+import java.util.List;
 import java.util.Map;
 
 
@@ -12,7 +13,10 @@ public record DataQualityReport(
         Map<String, Long> missingValuesCount,
         Map<String, Integer> uniqueValuesCount,
         Map<String, Map<String, Object>> numericStats,
-        Map<String, String> columnTypes
+        Map<String, String> columnTypes,
+        Map<String, List<FrequentValue>> topValues,
+        Map<String, NumericProfile> numericProfiles,
+        CorrelationMatrix correlations
 ) {
 
 }
@@ -0,0 +1,10 @@
+package com.niyiment.samples.datacleaning.dto;
+
+/**
+ * A frequent value of a column as estimated by the report's heavy-hitters sketch.
+ *
+ * @param count upper bound on how often the value occurs
+ * @param error how far {@code count} may be above the true count; 0 means it is exact
+ */
+public record FrequentValue(Object value, long count, long error) {
+}
@@ -0,0 +1,22 @@
+package com.niyiment.samples.datacleaning.dto;
+
+import lombok.Builder;
+
+/**
+ * Distribution of a numeric column in the quality report. Statistics that are undefined for the
+ * column, such as the skewness of a constant column, are null.
+ *
+ * @param p50      median; percentiles are exact up to a few thousand values and estimated from a
+ *                 quantile sketch beyond that
+ * @param kurtosis excess kurtosis, 0 for a normal distribution
+ */
+@Builder
+public record NumericProfile(
+        long count,
+        Double p1,
+        Double p50,
+        Double p99,
+        Double skewness,
+        Double kurtosis
+) {
+}
@@ -0,0 +1,18 @@
+package com.niyiment.samples.datacleaning.dto;
+
+import lombok.Builder;
+
+@Builder
+public record ProcessingOptions(
+        String feed,
+        boolean fullRecompute,
+        String jobId,
+        boolean numericProfile,
+        String schema,
+        String columns,
+        String filter
+) {
+    public static ProcessingOptions defaults() {
+        return ProcessingOptions.builder().build();
+    }
+}
@@ -0,0 +1,30 @@
+package com.niyiment.samples.datacleaning.dto;
+
+import lombok.Builder;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of cleaned rows as served to the results page script.
+ *
+ * @param resultId   the id of the result the page was cut from; a new upload gets a new one
+ * @param provisional whether the rows come from the preview of a job that is still running
+ * @param sourceRows the source row of every row on the page, or null when the result has no lineage
+ */
+@Builder
+public record ResultPage(
+        String resultId,
+        boolean provisional,
+        int page,
+        int size,
+        int totalRows,
+        int totalPages,
+        List<Column> columns,
+        int[] sourceRows,
+        List<Map<String, Object>> rows
+) {
+    /** @param type the inferred type of the column, or null when the report has none */
+    public record Column(String name, String type) {
+    }
+}
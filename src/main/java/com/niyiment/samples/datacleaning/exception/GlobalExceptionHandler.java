@@ -1,6 +1,9 @@
 package com.niyiment.samples.datacleaning.exception;
 
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -20,6 +23,15 @@ public class GlobalExceptionHandler {
         return "upload";
     }
 
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public String handleAdmissionRejectedException(AdmissionRejectedException e, Model model,
+                                                   HttpServletResponse response) {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())));
+        model.addAttribute("errorMessage", e.getMessage());
+        return "upload";
+    }
+
     @ExceptionHandler(Exception.class)
     public String handleGeneralException(Exception e, Model model) {
         log.error("Unexpected error", e);
@@ -0,0 +1,8 @@
+package com.niyiment.samples.datacleaning.exception;
+
+/** A job stopped at a checkpoint because it was cancelled or ran past its deadline. */
+public class JobCancelledException extends ReportProcessingException {
+    public JobCancelledException(String message) {
+        super(message);
+    }
+}
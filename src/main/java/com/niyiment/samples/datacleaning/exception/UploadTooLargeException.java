@@ -0,0 +1,8 @@
+package com.niyiment.samples.datacleaning.exception;
+
+/** A compressed upload expanded past {@code cleaning.upload.max-decompressed-size} while it was read. */
+public class UploadTooLargeException extends ReportProcessingException {
+    public UploadTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,323 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.config.AdmissionProperties;
+import com.niyiment.samples.datacleaning.exception.AdmissionRejectedException;
+import com.niyiment.samples.datacleaning.exception.ReportProcessingException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admits processing jobs against a global heap budget. Each job reserves its estimated footprint
+ * before parsing starts and gives it back when done. Jobs that do not fit wait in FIFO order, so a
+ * large job is not starved by a stream of small ones; when the queue is full or the wait runs out
+ * the job is rejected with an {@link AdmissionRejectedException}. A job larger than the whole budget
+ * is clamped to it and therefore runs alone.
+ * <p>
+ * Memory held past a job, such as incremental baselines, is reserved with {@link #tryAcquire} and
+ * can be taken back: a job that does not fit asks the {@link Reclaimer}s to give up that much
+ * before it queues, and again whenever it is next in line and still does not fit.
+ */
+@Slf4j
+@Service
+public class AdmissionController {
+    private static final int SAMPLE_BYTES = 64 * 1024;
+
+    private final AdmissionProperties properties;
+    private final long budget;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final Deque<Object> queue = new ArrayDeque<>();
+    private final List<Reclaimer> reclaimers = new CopyOnWriteArrayList<>();
+    private long reserved;
+    private final Counter queueFullRejections;
+    private final Counter timeoutRejections;
+    private final Timer waitTimer;
+
+    public AdmissionController(AdmissionProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.budget = properties.getMemoryBudget() != null
+                ? properties.getMemoryBudget().toBytes()
+                : (long) (Runtime.getRuntime().maxMemory() * properties.getHeapFraction());
+        log.info("Admission control {} with a budget of {} MB", properties.isEnabled() ? "enabled" : "disabled",
+                budget / (1024 * 1024));
+
+        Gauge.builder("cleaning.admission.queue.depth", this, AdmissionController::queueDepth)
+                .description("Jobs waiting for memory to be admitted")
+                .register(meterRegistry);
+        Gauge.builder("cleaning.admission.reserved", this, AdmissionController::reservedBytes)
+                .description("Heap bytes reserved by running jobs")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("cleaning.admission.budget", this, controller -> controller.budget)
+                .description("Heap bytes running jobs may reserve in total")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.queueFullRejections = rejectionCounter(meterRegistry, "queue-full");
+        this.timeoutRejections = rejectionCounter(meterRegistry, "timeout");
+        this.waitTimer = Timer.builder("cleaning.admission.wait")
+                .description("Time jobs waited to be admitted")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Estimates the heap a job on {@code file} will hold at its peak. For CSV the cell count is
+     * extrapolated from the first 64 KB; other formats use a per-format expansion factor.
+     * Compressed uploads are assumed to expand by {@code cleaning.admission.compression-ratio}.
+     */
+    public long estimate(MultipartFile file, UploadFormat uploadFormat) {
+        long size = uploadFormat.isCompressed()
+                ? (long) (file.getSize() * properties.getCompressionRatio())
+                : file.getSize();
+        if ("csv".equals(uploadFormat.format())) {
+            // only the sample is read, so it needs no limit on what the upload expands to
+            try (InputStream inputStream = uploadFormat.decode(file.getInputStream(), Long.MAX_VALUE)) {
+                long cells = estimateCsvCells(inputStream.readNBytes(SAMPLE_BYTES), size);
+                if (cells > 0) {
+                    return size + cells * properties.getBytesPerCell().toBytes();
+                }
+            } catch (IOException e) {
+                log.debug("Could not sample {} for admission: {}", file.getOriginalFilename(), e.getMessage());
+            }
+        }
+        return estimateFromSize(uploadFormat.format(), size);
+    }
+
+    /**
+     * Estimates the heap of a job on an upload read as a stream, before any of it has arrived.
+     * {@code contentLength} is the request's, -1 when it was sent chunked; the upload is then
+     * assumed to be {@code assumedSize}, as large as the stream may get unless configured otherwise.
+     */
+    public long estimateFromStream(UploadFormat uploadFormat, long contentLength, long assumedSize) {
+        long size = contentLength < 0 ? assumedSize : contentLength;
+        if (uploadFormat.isCompressed()) {
+            size = (long) (size * properties.getCompressionRatio());
+        }
+        return estimateFromSize(uploadFormat.format(), size);
+    }
+
+    public long estimateFromSize(String extension, long size) {
+        double factor = extension == null ? properties.getDefaultExpansionFactor()
+                : properties.getExpansionFactors().getOrDefault(extension.toLowerCase(Locale.ROOT),
+                        properties.getDefaultExpansionFactor());
+        return (long) (Math.max(size, 0) * factor);
+    }
+
+    /**
+     * Reserves {@code estimate} bytes, waiting up to {@code cleaning.admission.max-wait} for running
+     * jobs to release enough. The returned permit must be closed when the job's data is released.
+     */
+    public Permit acquire(String job, long estimate) {
+        if (!properties.isEnabled()) {
+            return new Permit(0);
+        }
+        long reservation = Math.min(Math.max(estimate, 0), budget);
+        long startNanos = System.nanoTime();
+        lock.lock();
+        try {
+            if (queue.isEmpty() && reserved + reservation > budget) {
+                reclaim(reserved + reservation - budget);
+            }
+            if (queue.isEmpty() && reserved + reservation <= budget) {
+                reserved += reservation;
+                waitTimer.record(0, TimeUnit.NANOSECONDS);
+                return new Permit(reservation);
+            }
+            if (queue.size() >= properties.getMaxQueued()) {
+                queueFullRejections.increment();
+                throw rejection(job, "the admission queue is full");
+            }
+
+            Object ticket = new Object();
+            queue.addLast(ticket);
+            log.debug("Queued {} needing {} bytes ({} reserved of {})", job, reservation, reserved, budget);
+            long remaining = properties.getMaxWait().toNanos();
+            try {
+                while (queue.peekFirst() != ticket || reserved + reservation > budget) {
+                    if (queue.peekFirst() == ticket && reclaim(reserved + reservation - budget) > 0) {
+                        continue;
+                    }
+                    if (remaining <= 0) {
+                        queue.remove(ticket);
+                        released.signalAll();
+                        timeoutRejections.increment();
+                        throw rejection(job, "not enough memory became available in time");
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                queue.remove(ticket);
+                released.signalAll();
+                Thread.currentThread().interrupt();
+                throw new ReportProcessingException("Interrupted while waiting for admission", e);
+            }
+            queue.removeFirst();
+            reserved += reservation;
+            released.signalAll();
+            waitTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            return new Permit(reservation);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reserves {@code estimate} bytes if they are free right now, for memory held past the job that
+     * built it; returns null instead of queueing behind jobs.
+     */
+    public Permit tryAcquire(String holder, long estimate) {
+        if (!properties.isEnabled()) {
+            return new Permit(0);
+        }
+        long reservation = Math.max(estimate, 0);
+        lock.lock();
+        try {
+            if (!queue.isEmpty() || reserved + reservation > budget) {
+                log.debug("No room for {} needing {} bytes ({} reserved of {})", holder, reservation, reserved, budget);
+                return null;
+            }
+            reserved += reservation;
+            return new Permit(reservation);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Registers memory held past the jobs that reserved it, which waiting jobs may take back. */
+    public void addReclaimer(Reclaimer reclaimer) {
+        reclaimers.add(reclaimer);
+    }
+
+    /**
+     * Asks the reclaimers to release {@code bytes}; returns how many they released. Called with the
+     * lock held, which is given up meanwhile: reclaimers release through their permits and may hold
+     * their own locks while they {@link #tryAcquire}.
+     */
+    private long reclaim(long bytes) {
+        if (reclaimers.isEmpty()) {
+            return 0;
+        }
+        long freed = 0;
+        lock.unlock();
+        try {
+            for (Reclaimer reclaimer : reclaimers) {
+                if (freed >= bytes) break;
+                freed += reclaimer.reclaim(bytes - freed);
+            }
+        } finally {
+            lock.lock();
+        }
+        if (freed > 0) {
+            log.debug("Reclaimed {} bytes for a waiting job", freed);
+        }
+        return freed;
+    }
+
+    private void release(long reservation) {
+        lock.lock();
+        try {
+            reserved -= reservation;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private AdmissionRejectedException rejection(String job, String reason) {
+        log.warn("Rejected {}: {} ({} of {} bytes reserved, {} queued)", job, reason, reserved, budget, queue.size());
+        return new AdmissionRejectedException("Server is busy, " + reason + ". Please retry later.",
+                properties.getRetryAfter());
+    }
+
+    private int queueDepth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long reservedBytes() {
+        lock.lock();
+        try {
+            return reserved;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Columns from the header line, rows by counting line breaks in the sample. */
+    static long estimateCsvCells(byte[] sample, long fileSize) {
+        int columns = 1;
+        int lines = 0;
+        boolean inQuotes = false;
+        boolean headerDone = false;
+        for (byte b : sample) {
+            if (b == '"') {
+                inQuotes = !inQuotes;
+            } else if (!inQuotes && b == ',' && !headerDone) {
+                columns++;
+            } else if (!inQuotes && b == '\n') {
+                headerDone = true;
+                lines++;
+            }
+        }
+        if (lines == 0 || sample.length == 0) {
+            return -1;
+        }
+        long rows = sample.length >= fileSize ? lines : fileSize * lines / sample.length;
+        return rows * columns;
+    }
+
+    private static Counter rejectionCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("cleaning.admission.rejections")
+                .description("Jobs rejected by admission control")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /** Holder of memory reserved with {@link #tryAcquire} that it can give back on demand. */
+    @FunctionalInterface
+    public interface Reclaimer {
+        /** Closes permits worth at least {@code bytes} if it holds that many; returns the bytes released. */
+        long reclaim(long bytes);
+    }
+
+    /** Reserved share of the budget; closing it returns the reservation. */
+    public final class Permit implements AutoCloseable {
+        private final long reservation;
+        private boolean closed;
+
+        private Permit(long reservation) {
+            this.reservation = reservation;
+        }
+
+        public long reservation() {
+            return reservation;
+        }
+
+        @Override
+        public void close() {
+            if (!closed && reservation > 0) {
+                release(reservation);
+            }
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.exception.JobCancelledException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cooperative cancellation and deadline of one job. The token is bound to the threads working on
+ * the job, and ingestion, the cleaning steps, reporting and export call {@link #checkpoint(long)}
+ * at batch boundaries; once the token is cancelled or its deadline has passed, the next checkpoint
+ * throws a {@link JobCancelledException} and the job unwinds through its try-with-resources blocks,
+ * giving back its admission permit and temporary files. Threads without a token never stop.
+ * <p>
+ * Cancelling also runs the job's cancel hooks, which interrupt threads blocked outside a
+ * checkpoint, such as one waiting for admission. Hooks no longer run once the job has finished,
+ * so a pooled thread is never interrupted on behalf of a job it already left.
+ */
+public final class CancellationToken {
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+    /** Checkpoints only look at the token every this many rows plus one. */
+    private static final long CHECK_MASK = 1023;
+
+    private final String job;
+    private final Duration maxDuration;
+    private final long deadlineNanos;
+    private final List<Runnable> cancelHooks = new ArrayList<>();
+    private volatile String cancelReason;
+    private boolean finished;
+
+    public CancellationToken(String job, Duration maxDuration) {
+        this.job = job;
+        this.maxDuration = maxDuration;
+        this.deadlineNanos = System.nanoTime() + maxDuration.toNanos();
+    }
+
+    /** The token bound to the current thread, or null. */
+    public static CancellationToken current() {
+        return CURRENT.get();
+    }
+
+    /** Checks the current thread's token when {@code progress} is at a batch boundary. */
+    public static void checkpoint(long progress) {
+        if ((progress & CHECK_MASK) == 0) {
+            checkpoint();
+        }
+    }
+
+    /** Checks the current thread's token now. */
+    public static void checkpoint() {
+        CancellationToken token = CURRENT.get();
+        if (token != null) {
+            token.throwIfCancelled();
+        }
+    }
+
+    /** Binds the token to the current thread until the returned binding is closed. */
+    public Binding bind() {
+        CancellationToken previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    public void throwIfCancelled() {
+        JobCancelledException cancellation = cancellation();
+        if (cancellation != null) {
+            throw cancellation;
+        }
+    }
+
+    /**
+     * The exception a checkpoint would throw now, or null while the job may go on. A job that fails
+     * after a cancel reports this rather than its own failure, because the interrupt sent by a cancel
+     * hook surfaces as whatever the blocked call throws.
+     */
+    public JobCancelledException cancellation() {
+        if (cancelReason == null && System.nanoTime() - deadlineNanos > 0) {
+            cancel("it exceeded the maximum processing time of " + maxDuration.toSeconds() + "s");
+        }
+        String reason = cancelReason;
+        return reason == null ? null : new JobCancelledException("Job " + job + " stopped: " + reason);
+    }
+
+    public boolean isCancelled() {
+        return cancelReason != null;
+    }
+
+    public synchronized void cancel(String reason) {
+        if (cancelReason != null || finished) {
+            return;
+        }
+        cancelReason = reason;
+        cancelHooks.forEach(Runnable::run);
+    }
+
+    /** Runs {@code hook} on cancellation, or right away when the token is already cancelled. */
+    public synchronized void onCancel(Runnable hook) {
+        if (finished) {
+            return;
+        }
+        if (cancelReason != null) {
+            hook.run();
+        } else {
+            cancelHooks.add(hook);
+        }
+    }
+
+    /** Marks the job as finished; later cancellations and hooks have no effect. */
+    public synchronized void finish() {
+        finished = true;
+        cancelHooks.clear();
+    }
+
+    public interface Binding extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,112 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.exception.JobCancelledException;
+import com.niyiment.samples.datacleaning.exception.ReportProcessingException;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cleaning job, registered under an id so it can be cancelled while it runs. A job running in
+ * the background of the request that started it publishes an encoded provisional result when it
+ * has one and the encoded full result when it finishes; both are in the {@link ResultCodec} form the
+ * session keeps. A job run by its request only uses the id and the {@link CancellationToken}.
+ */
+public final class CleaningJob {
+    private final String id;
+    private final String fileName;
+    private final CancellationToken token;
+    private final long startedNanos = System.nanoTime();
+    private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+    private final CountDownLatch firstResult = new CountDownLatch(1);
+    private volatile byte[] preview;
+    private volatile long finishedNanos;
+
+    CleaningJob(String id, String fileName, Duration maxProcessingTime) {
+        this.id = id;
+        this.fileName = fileName;
+        this.token = new CancellationToken(id, maxProcessingTime);
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String fileName() {
+        return fileName;
+    }
+
+    public CancellationToken token() {
+        return token;
+    }
+
+    /** Asks the job to stop; it fails with a {@link JobCancelledException} at its next checkpoint. */
+    public void cancel(String reason) {
+        token.cancel(reason);
+    }
+
+    void publishPreview(byte[] encoded) {
+        preview = encoded;
+        firstResult.countDown();
+    }
+
+    void complete(byte[] encoded) {
+        token.finish();
+        finishedNanos = System.nanoTime();
+        result.complete(encoded);
+        firstResult.countDown();
+    }
+
+    void fail(Throwable failure) {
+        token.finish();
+        finishedNanos = System.nanoTime();
+        result.completeExceptionally(failure);
+        firstResult.countDown();
+    }
+
+    /** Waits until the preview or the full result is available; false when the timeout passed first. */
+    public boolean awaitFirstResult(Duration timeout) {
+        try {
+            return firstResult.await(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ReportProcessingException("Interrupted while waiting for job " + id, e);
+        }
+    }
+
+    public Optional<byte[]> preview() {
+        return Optional.ofNullable(preview);
+    }
+
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    /** Waits for the full result; a failed job rethrows its failure. */
+    public byte[] awaitResult() {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ReportProcessingException("Interrupted while waiting for job " + id, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ReportProcessingException reportProcessingException) {
+                throw reportProcessingException;
+            }
+            throw new ReportProcessingException("Error processing file: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    long startedNanos() {
+        return startedNanos;
+    }
+
+    /** {@link System#nanoTime()} when the job finished, or 0 while it runs. */
+    long finishedNanos() {
+        return finishedNanos;
+    }
+}
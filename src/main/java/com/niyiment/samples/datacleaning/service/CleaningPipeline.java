@@ -1,33 +1,49 @@
 package com.niyiment.samples.datacleaning.service;
 
 import com.niyiment.samples.datacleaning.config.CleaningPipelineProperties;
+import com.niyiment.samples.datacleaning.config.CleaningPipelineProperties.PlannerMode;
+import com.niyiment.samples.datacleaning.dto.ValidationResult;
+import com.niyiment.samples.datacleaning.service.JobScope.Subtask;
+import com.niyiment.samples.datacleaning.service.PipelinePlan.PlannedStep;
+import com.niyiment.samples.datacleaning.service.impl.DataValidationStep;
+import com.niyiment.samples.datacleaning.service.impl.TypeInferenceStep;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class CleaningPipeline {
+    private static final int CANCEL_BATCH_ROWS = 16_384;
+
     private final CleaningPipelineProperties properties;
     private final Map<String, CleaningStep> availableSteps;
+    private final PipelinePlanner planner;
     private  List<CleaningStep> steps;
+    private List<String> stepNames;
 
     public CleaningPipeline() {
         this.properties = null;
         this.availableSteps = null;
+        this.planner = new PipelinePlanner();
         this.steps = new ArrayList<>();
+        this.stepNames = new ArrayList<>();
     }
 
     @Autowired
-    public CleaningPipeline(CleaningPipelineProperties properties, List<CleaningStep> allSteps) {
+    public CleaningPipeline(CleaningPipelineProperties properties, List<CleaningStep> allSteps,
+                            PipelinePlanner planner) {
         this.properties = properties;
+        this.planner = planner;
         this.availableSteps = allSteps.stream()
                 .collect(Collectors.toMap(step -> step.getClass().getSimpleName().replace("Step", "").toLowerCase(),
                         Function.identity()));
@@ -39,13 +55,16 @@ public class CleaningPipeline {
         if (properties.getSteps() == null || properties.getSteps().isEmpty()) {
             log.warn("No cleaning steps configured in application.yml. Pipeline properties");
             this.steps = new ArrayList<>();
+            this.stepNames = new ArrayList<>();
             return;
         }
         this.steps = new ArrayList<>();
+        this.stepNames = new ArrayList<>();
         for (String stepName : properties.getSteps()) {
             CleaningStep step = availableSteps.get(stepName.toLowerCase());
             if (step != null) {
                 this.steps.add(step);
+                this.stepNames.add(stepName);
                 log.info("Added cleaning step: {}", stepName);
             } else {
                 log.warn("Skipping unknown cleaning step: {}. Skipping.", stepName);
@@ -55,15 +74,151 @@ public class CleaningPipeline {
         if (this.steps.isEmpty()) {
             log.warn("No cleaning steps found in the pipeline. Skipping data cleaning.");
         }
+        log.info("Pipeline planner mode: {}", plannerMode());
+    }
+
+    public List<CleaningStep> getSteps() {
+        return Collections.unmodifiableList(steps);
     }
 
+    public PipelinePlan strictPlan() {
+        return planner.strictPlan(stepNames, steps);
+    }
 
-    public List<Map<String, Object>> execute(List<Map<String, Object>> data) {
+    public PipelinePlan plan(List<Map<String, Object>> data) {
+        if (plannerMode() == PlannerMode.STRICT) {
+            return planner.strictPlan(stepNames, steps);
+        }
+        PipelinePlan plan = planner.costBasedPlan(stepNames, steps, data);
+        log.info("Pipeline plan for {} rows: {}", data.size(), plan.describe());
+        return plan;
+    }
+
+
+    /** The plan for rows parsed with {@code schema}, whose declared types leave type inference nothing to do. */
+    public static PipelinePlan forSchema(PipelinePlan plan, DeclaredSchema schema) {
+        return schema == null ? plan : plan.skipping(CleaningPipeline::infersTypes, "types declared by schema " + schema.name());
+    }
+
+    /** The {@link CleaningStep#dataVersion() data versions} of the configured steps; empty when none has one. */
+    public String dataVersion() {
+        return steps.stream()
+                .map(CleaningStep::dataVersion)
+                .filter(version -> !version.isEmpty())
+                .collect(Collectors.joining(";"));
+    }
+
+    public static boolean infersTypes(CleaningStep step) {
+        return step instanceof TypeInferenceStep;
+    }
+
+    /**
+     * Runs the plan inside a job's scope, carrying the rows' {@link SourceRows} along. Validation only
+     * reads rows, so it is forked over the rows it would have seen at its position while the remaining
+     * steps go on.
+     */
+    public Run execute(List<Map<String, Object>> data, int[] sourceRows, PipelinePlan plan, JobScope scope) {
         List<Map<String, Object>> result = data;
-        for (CleaningStep step : steps) {
-            log.debug("Executing cleaning step: {}", step.getClass().getSimpleName());
-            result = step.process(result);
+        List<Subtask<ValidationResult>> validations = new ArrayList<>();
+        for (PlannedStep plannedStep : plan.steps()) {
+            if (plannedStep.isSkipped()) {
+                log.debug("Skipping cleaning step: {}", plannedStep.name());
+                continue;
+            }
+            if (plannedStep.step() instanceof DataValidationStep validationStep) {
+                validations.add(forkValidation(scope, validationStep, result, sourceRows));
+                continue;
+            }
+            log.debug("Executing cleaning step: {}", plannedStep.describe());
+            if (plannedStep.step().dropsRows()) {
+                int[] retained = retainedRows(plannedStep.step(), result);
+                result = SourceRows.select(result, retained);
+                sourceRows = SourceRows.select(sourceRows, retained);
+            } else {
+                result = runRowPreservingStep(plannedStep.step(), result, plannedStep.columns());
+            }
+        }
+        return new Run(result, sourceRows, validations);
+    }
+
+    /** Runs the given steps, in order and over all columns, like a plan that skips none of them. */
+    public Run execute(List<Map<String, Object>> data, int[] sourceRows, List<CleaningStep> steps, JobScope scope) {
+        List<PlannedStep> planned = steps.stream()
+                .map(step -> new PlannedStep(step.getClass().getSimpleName(), step, null, null))
+                .toList();
+        return execute(data, sourceRows, new PipelinePlan(PlannerMode.STRICT, planned), scope);
+    }
+
+    /**
+     * Runs one step after checking the job's {@link CancellationToken}. Under a token, row-local steps
+     * run over batches of {@value #CANCEL_BATCH_ROWS} rows with a checkpoint between them; each output
+     * row only depends on its input row, so the batches give the same rows as a single call.
+     */
+    private static List<Map<String, Object>> runStep(CleaningStep step, List<Map<String, Object>> data,
+                                                     Set<String> columns) {
+        CancellationToken.checkpoint();
+        if (!step.isRowLocal() || CancellationToken.current() == null || data.size() <= CANCEL_BATCH_ROWS) {
+            return process(step, data, columns);
+        }
+        List<Map<String, Object>> result = new ArrayList<>(data.size());
+        for (int from = 0; from < data.size(); from += CANCEL_BATCH_ROWS) {
+            CancellationToken.checkpoint();
+            result.addAll(process(step, data.subList(from, Math.min(from + CANCEL_BATCH_ROWS, data.size())), columns));
         }
         return result;
     }
-}
\ No newline at end of file
+
+    static int[] retainedRows(CleaningStep step, List<Map<String, Object>> data) {
+        CancellationToken.checkpoint();
+        return step.retainedRows(data);
+    }
+
+    /** Runs a step that returns one row per input row, which keeps the source rows valid as they are. */
+    static List<Map<String, Object>> runRowPreservingStep(CleaningStep step, List<Map<String, Object>> data,
+                                                          Set<String> columns) {
+        List<Map<String, Object>> result = runStep(step, data, columns);
+        if (result.size() != data.size()) {
+            throw new IllegalStateException(step.getClass().getSimpleName() + " returned " + result.size()
+                    + " rows for " + data.size() + " without declaring that it drops rows");
+        }
+        return result;
+    }
+
+    private static List<Map<String, Object>> process(CleaningStep step, List<Map<String, Object>> data,
+                                                     Set<String> columns) {
+        return columns == null ? step.process(data) : step.process(data, columns);
+    }
+
+    private static Subtask<ValidationResult> forkValidation(JobScope scope, DataValidationStep validationStep,
+                                                            List<Map<String, Object>> data, int[] sourceRows) {
+        log.debug("Forking validation over {} rows", data.size());
+        return scope.fork("validation", () -> validationStep.validate(data, sourceRows));
+    }
+
+    private PlannerMode plannerMode() {
+        return properties == null ? PlannerMode.STRICT : properties.getPlanner().getMode();
+    }
+
+    /**
+     * Cleaned rows of a scoped run, their source rows and the validations it forked; the latter are
+     * read after the scope joins.
+     */
+    public record Run(List<Map<String, Object>> cleanedData, int[] sourceRows,
+                      List<Subtask<ValidationResult>> validations) {
+        public List<String> validationErrors() {
+            List<String> errors = new ArrayList<>();
+            for (Subtask<ValidationResult> validation : validations) {
+                errors.addAll(validation.get().getErrors());
+            }
+            return errors;
+        }
+
+        /** This run with {@code validationResult} reported ahead of the validations it forked. */
+        public Run withValidationFirst(ValidationResult validationResult) {
+            List<Subtask<ValidationResult>> all = new ArrayList<>(validations.size() + 1);
+            all.add(Subtask.completed(validationResult));
+            all.addAll(validations);
+            return new Run(cleanedData, sourceRows, all);
+        }
+    }
+}
@@ -2,7 +2,52 @@ package com.niyiment.samples.datacleaning.service;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
 
 public interface CleaningStep {
     List<Map<String, Object>> process(List<Map<String, Object>> data);
-}
\ No newline at end of file
+
+    /**
+     * Runs the step over the given columns only, leaving every other value untouched.
+     * Steps that cannot be narrowed fall back to processing every column.
+     */
+    default List<Map<String, Object>> process(List<Map<String, Object>> data, Set<String> columns) {
+        return process(data);
+    }
+
+    /** Each output row depends only on the matching input row, so the step can be narrowed to columns. */
+    default boolean isRowLocal() {
+        return false;
+    }
+
+    /**
+     * The step only drops rows and never rewrites a value. The pipeline runs such a step through
+     * {@link #retainedRows} instead of {@link #process}.
+     */
+    default boolean dropsRows() {
+        return false;
+    }
+
+    /**
+     * Positions of the input rows the step keeps, in order: every row unless it {@link #dropsRows() drops
+     * rows}. The pipeline selects the kept rows and their {@link SourceRows} with them; {@link #process}
+     * must keep the same rows.
+     */
+    default int[] retainedRows(List<Map<String, Object>> data) {
+        return IntStream.range(0, data.size()).toArray();
+    }
+
+    /**
+     * Identifies data outside the rows that the step's output depends on, such as a reference table;
+     * empty when the output depends on the rows alone. Results cleaned under another version are stale.
+     */
+    default String dataVersion() {
+        return "";
+    }
+
+    /** Whether the step could change any value in a column with this profile. */
+    default boolean canChange(ColumnProfile profile) {
+        return true;
+    }
+}
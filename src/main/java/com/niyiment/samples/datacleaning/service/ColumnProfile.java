@@ -0,0 +1,33 @@
+package com.niyiment.samples.datacleaning.service;
+
+/**
+ * Counts gathered by the planner's probe for one column. A profile is only exact for the data it
+ * was taken from; once a step may have rewritten the column the planner switches to {@link #unknown()}.
+ */
+public record ColumnProfile(
+        long values,
+        long strings,
+        long missing,
+        long specialCharacters,
+        long irregularWhitespace
+) {
+    public static ColumnProfile unknown() {
+        return new ColumnProfile(Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    public boolean hasStrings() {
+        return strings > 0;
+    }
+
+    public boolean hasMissing() {
+        return missing > 0;
+    }
+
+    public boolean hasSpecialCharacters() {
+        return specialCharacters > 0;
+    }
+
+    public boolean hasIrregularWhitespace() {
+        return irregularWhitespace > 0;
+    }
+}
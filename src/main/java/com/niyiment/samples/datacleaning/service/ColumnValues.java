@@ -0,0 +1,88 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.dto.FrequentValue;
+import com.niyiment.samples.datacleaning.service.kernel.FrequentValuesSketch;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The report statistics that need every value of a column: the distinct values and a
+ * {@link FrequentValuesSketch} of the most frequent ones, both filled in one pass over a range of
+ * rows. Summaries of separate ranges merge into the one a single pass would have built, up to the
+ * sketch approximation. Missing values count as distinct but are left out of the frequent values.
+ */
+final class ColumnValues {
+    private final int sketchCapacity;
+    private final Map<String, Set<Object>> distinct = new HashMap<>();
+    private final Map<String, FrequentValuesSketch<Object>> frequent = new LinkedHashMap<>();
+
+    ColumnValues(int sketchCapacity) {
+        this.sketchCapacity = sketchCapacity;
+    }
+
+    static ColumnValues summarize(List<Map<String, Object>> rows, int from, int to, int sketchCapacity) {
+        ColumnValues columnValues = new ColumnValues(sketchCapacity);
+        for (int i = from; i < to; i++) {
+            CancellationToken.checkpoint(i);
+            columnValues.add(rows.get(i));
+        }
+        return columnValues;
+    }
+
+    void add(Map<String, Object> row) {
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            String column = entry.getKey();
+            Object value = entry.getValue();
+            distinct.computeIfAbsent(column, k -> new HashSet<>()).add(value);
+            if (value != null && !value.equals("N/A")) {
+                frequent.computeIfAbsent(column, k -> new FrequentValuesSketch<>(sketchCapacity)).add(value);
+            }
+        }
+    }
+
+    ColumnValues merge(ColumnValues other) {
+        other.distinct.forEach((column, values) -> distinct.merge(column, values, (mine, theirs) -> {
+            if (mine.size() < theirs.size()) {
+                theirs.addAll(mine);
+                return theirs;
+            }
+            mine.addAll(theirs);
+            return mine;
+        }));
+        other.frequent.forEach((column, sketch) -> frequent.merge(column, sketch, (mine, theirs) -> {
+            mine.merge(theirs);
+            return mine;
+        }));
+        return this;
+    }
+
+    Map<String, Integer> uniqueValuesCount() {
+        Map<String, Integer> uniqueValuesCount = new HashMap<>();
+        distinct.forEach((column, values) -> uniqueValuesCount.put(column, values.size()));
+        return uniqueValuesCount;
+    }
+
+    /**
+     * Up to {@code k} values per column that certainly occur more than once. In a column of mostly
+     * distinct values, such as ids, the sketch's counters only hold whatever came last, and those are
+     * not worth listing.
+     */
+    Map<String, List<FrequentValue>> topValues(int k) {
+        Map<String, List<FrequentValue>> topValues = new LinkedHashMap<>();
+        frequent.forEach((column, sketch) -> {
+            List<FrequentValue> values = sketch.top(k).stream()
+                    .filter(estimate -> estimate.count() - estimate.error() > 1)
+                    .map(estimate -> new FrequentValue(estimate.value(), estimate.count(), estimate.error()))
+                    .toList();
+            if (!values.isEmpty()) {
+                topValues.put(column, values);
+            }
+        });
+        return topValues;
+    }
+}
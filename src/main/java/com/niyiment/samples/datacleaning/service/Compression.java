@@ -0,0 +1,143 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.exception.UploadTooLargeException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Stream compressions accepted on upload (by file suffix) and offered on download (by
+ * {@code Accept-Encoding}). DEFLATE is the zlib-wrapped format, as HTTP's "deflate" coding is.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum Compression {
+    NONE(null, ""),
+    GZIP("gzip", ".gz"),
+    DEFLATE("deflate", ".deflate");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String contentCoding;
+    private final String suffix;
+
+    /**
+     * Decodes {@code inputStream}, which throws {@link UploadTooLargeException} once more than
+     * {@code maxDecodedBytes} came out of it, so a small archive cannot expand without bound.
+     */
+    public InputStream decode(InputStream inputStream, long maxDecodedBytes) throws IOException {
+        return switch (this) {
+            case NONE -> inputStream;
+            case GZIP -> new Limited(new GZIPInputStream(inputStream, BUFFER_SIZE), maxDecodedBytes);
+            case DEFLATE -> new Limited(new InflaterInputStream(inputStream, new Inflater(), BUFFER_SIZE),
+                    maxDecodedBytes);
+        };
+    }
+
+    /** Wraps {@code out} with sync flush, so a flush after the first rows pushes them to the client. */
+    public OutputStream encode(OutputStream out) throws IOException {
+        return switch (this) {
+            case NONE -> out;
+            case GZIP -> new GZIPOutputStream(out, BUFFER_SIZE, true);
+            case DEFLATE -> new DeflaterOutputStream(out, new Deflater(), BUFFER_SIZE, true);
+        };
+    }
+
+    /** Writes the trailer of an {@link #encode encoded} stream without closing the response. */
+    public static void finish(OutputStream out) throws IOException {
+        if (out instanceof DeflaterOutputStream deflater) {
+            deflater.finish();
+        }
+        out.flush();
+    }
+
+    public static Compression fromFileName(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        for (Compression compression : values()) {
+            if (compression != NONE && lower.endsWith(compression.suffix)) {
+                return compression;
+            }
+        }
+        return NONE;
+    }
+
+    /** Picks gzip, then deflate, from an {@code Accept-Encoding} header, honouring {@code q=0}. */
+    public static Compression negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return NONE;
+        }
+        boolean deflate = false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim().toLowerCase(Locale.ROOT);
+            if (isRefused(tokens)) continue;
+            if (coding.equals("gzip") || coding.equals("x-gzip")) return GZIP;
+            if (coding.equals("deflate")) deflate = true;
+        }
+        return deflate ? DEFLATE : NONE;
+    }
+
+    private static final class Limited extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        private Limited(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) counted(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) counted(n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            counted(skipped);
+            return skipped;
+        }
+
+        private void counted(long n) {
+            count += n;
+            if (count > limit) {
+                throw new UploadTooLargeException("Decompressed upload is larger than " + limit
+                        + " bytes (cleaning.upload.max-decompressed-size)");
+            }
+        }
+    }
+
+    private static boolean isRefused(String[] tokens) {
+        for (int i = 1; i < tokens.length; i++) {
+            String parameter = tokens[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2)) <= 0;
+                } catch (NumberFormatException e) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
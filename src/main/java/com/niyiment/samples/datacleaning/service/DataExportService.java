@@ -0,0 +1,273 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.niyiment.samples.datacleaning.config.LineageProperties;
+import com.niyiment.samples.datacleaning.dto.CleanedDataResult;
+import com.niyiment.samples.datacleaning.dto.DataQualityReport;
+import com.opencsv.CSVWriter;
+import com.opencsv.ICSVWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Writes a {@link CleanedDataResult} row by row (CSV, NDJSON) or column by column (binary columnar)
+ * straight to the response stream, flushing as soon as the header is out so the client sees the
+ * first bytes before the body is produced. Every format starts with the source row of each row
+ * unless {@code cleaning.lineage.include-in-downloads} is off.
+ */
+@Slf4j
+@Service
+public class DataExportService {
+    private static final byte[] COLUMNAR_MAGIC = {'D', 'C', 'C', 'F'};
+    private static final byte COLUMNAR_VERSION = 1;
+    private static final String MISSING = "N/A";
+
+    private final ObjectMapper objectMapper;
+    private final LineageProperties lineageProperties;
+
+    public DataExportService(ObjectMapper objectMapper, LineageProperties lineageProperties) {
+        this.lineageProperties = lineageProperties;
+        // The shared mapper flushes after every value it writes; for NDJSON that would flush once per
+        // cell, which with a sync-flushing compressor also emits a deflate block per cell.
+        this.objectMapper = objectMapper.copy().disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    public void export(CleanedDataResult result, ExportFormat format, OutputStream out) throws IOException {
+        log.debug("Exporting data as {}, size: {}", format, result.cleanedData().size());
+        switch (format) {
+            case CSV -> writeCsv(result, out);
+            case NDJSON -> writeNdjson(result, out);
+            case COLUMNAR -> writeColumnar(result, out);
+            default -> throw new IllegalArgumentException("Format is not streamed: " + format);
+        }
+    }
+
+    /** A writer of rows that are still being cleaned, as NDJSON or as server-sent events. */
+    public LiveRowWriter liveWriter(OutputStream out, boolean serverSentEvents) throws IOException {
+        return new LiveRowWriter(objectMapper, out, serverSentEvents, lineageProperties.getColumn());
+    }
+
+    private void writeCsv(CleanedDataResult result, OutputStream out) throws IOException {
+        List<String> columns = result.columns();
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        ICSVWriter csvWriter = new CSVWriter(writer);
+        int[] sourceRows = exportedSourceRows(result);
+        int offset = sourceRows == null ? 0 : 1;
+        String[] line = new String[columns.size() + offset];
+        if (sourceRows != null) line[0] = lineageProperties.getColumn();
+        for (int i = 0; i < columns.size(); i++) {
+            line[i + offset] = columns.get(i);
+        }
+        csvWriter.writeNext(line, false);
+        csvWriter.flush();
+
+        int rows = 0;
+        for (Map<String, Object> row : result.cleanedData()) {
+            CancellationToken.checkpoint(rows);
+            if (sourceRows != null) line[0] = Integer.toString(sourceRows[rows]);
+            rows++;
+            for (int i = 0; i < columns.size(); i++) {
+                Object value = row.get(columns.get(i));
+                line[i + offset] = value == null ? "" : value.toString();
+            }
+            csvWriter.writeNext(line, false);
+        }
+        csvWriter.flush();
+    }
+
+    private void writeNdjson(CleanedDataResult result, OutputStream out) throws IOException {
+        List<String> columns = result.columns();
+        JsonGenerator generator = objectMapper.createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+
+        int[] sourceRows = exportedSourceRows(result);
+        boolean first = true;
+        int rows = 0;
+        for (Map<String, Object> row : result.cleanedData()) {
+            CancellationToken.checkpoint(rows);
+            generator.writeStartObject();
+            if (sourceRows != null) generator.writeNumberField(lineageProperties.getColumn(), sourceRows[rows]);
+            rows++;
+            for (String column : columns) {
+                generator.writeFieldName(column);
+                generator.writeObject(row.get(column));
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            if (first) {
+                generator.flush();
+                first = false;
+            }
+        }
+        generator.flush();
+    }
+
+    /*
+     * Columnar layout, all integers big-endian:
+     *   "DCCF" | version:u8 | columnCount:i32 | rowCount:i32 | columnCount x name:utf
+     *   then per column: type:u8 | null bitmap (ceil(rowCount / 8) bytes) | non-null values in row order
+     * Values are i32 (INT32, DATE as epoch day), i64, f64, u8 (BOOLEAN) or i32 length + UTF-8 bytes (STRING).
+     * The type of each column travels with its block, so the header goes out before any column is scanned.
+     */
+    private void writeColumnar(CleanedDataResult result, OutputStream out) throws IOException {
+        List<String> columns = result.columns();
+        List<Map<String, Object>> rows = result.cleanedData();
+        Map<String, String> declaredTypes = Optional.ofNullable(result.dataQualityReport())
+                .map(DataQualityReport::columnTypes)
+                .orElse(Map.of());
+
+        int[] sourceRows = exportedSourceRows(result);
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(out));
+        output.write(COLUMNAR_MAGIC);
+        output.writeByte(COLUMNAR_VERSION);
+        output.writeInt(columns.size() + (sourceRows == null ? 0 : 1));
+        output.writeInt(rows.size());
+        if (sourceRows != null) output.writeUTF(lineageProperties.getColumn());
+        for (String column : columns) {
+            output.writeUTF(column);
+        }
+        output.flush();
+
+        if (sourceRows != null) {
+            // never null, so its bitmap is all zeroes
+            output.writeByte(ColumnType.INT32.ordinal());
+            output.write(new byte[(rows.size() + 7) >>> 3]);
+            for (int sourceRow : sourceRows) {
+                output.writeInt(sourceRow);
+            }
+        }
+
+        for (String column : columns) {
+            CancellationToken.checkpoint();
+            ColumnType type = resolveColumnType(column, declaredTypes.get(column), rows);
+            output.writeByte(type.ordinal());
+            writeNullBitmap(column, rows, output);
+            for (Map<String, Object> row : rows) {
+                Object value = row.get(column);
+                if (!isMissing(value)) {
+                    writeColumnValue(type, value, output);
+                }
+            }
+        }
+        output.flush();
+    }
+
+    /** The source rows to write in front of the columns, or null when downloads leave them out. */
+    private int[] exportedSourceRows(CleanedDataResult result) {
+        int[] sourceRows = result.sourceRows();
+        return lineageProperties.isIncludeInDownloads() && sourceRows != null
+                && sourceRows.length == result.cleanedData().size() ? sourceRows : null;
+    }
+
+    private void writeNullBitmap(String column, List<Map<String, Object>> rows, DataOutputStream output) throws IOException {
+        int bits = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            if (isMissing(rows.get(i).get(column))) {
+                bits |= 1 << (i & 7);
+            }
+            if ((i & 7) == 7) {
+                output.writeByte(bits);
+                bits = 0;
+            }
+        }
+        if ((rows.size() & 7) != 0) {
+            output.writeByte(bits);
+        }
+    }
+
+    private void writeColumnValue(ColumnType type, Object value, DataOutputStream output) throws IOException {
+        switch (type) {
+            case INT32 -> output.writeInt(((Number) value).intValue());
+            case INT64 -> output.writeLong(((Number) value).longValue());
+            case FLOAT64 -> output.writeDouble(((Number) value).doubleValue());
+            case BOOLEAN -> output.writeBoolean((Boolean) value);
+            case DATE -> output.writeInt((int) toLocalDate(value).toEpochDay());
+            case STRING -> {
+                byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Keeps the type decided by type inference as long as every present value still conforms to it;
+     * cells rewritten by later steps (outlier markers, for example) demote the column to STRING.
+     */
+    private ColumnType resolveColumnType(String column, String declaredType, List<Map<String, Object>> rows) {
+        ColumnType type = ColumnType.fromSimpleName(declaredType);
+        if (type == ColumnType.STRING) {
+            return type;
+        }
+        for (Map<String, Object> row : rows) {
+            Object value = row.get(column);
+            if (!isMissing(value) && !type.accepts(value)) {
+                return ColumnType.STRING;
+            }
+        }
+        return type;
+    }
+
+    private static boolean isMissing(Object value) {
+        return value == null || MISSING.equals(value);
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        return value instanceof LocalDate date ? date : LocalDate.parse(value.toString());
+    }
+
+    private enum ColumnType {
+        STRING, INT32, INT64, FLOAT64, BOOLEAN, DATE;
+
+        static ColumnType fromSimpleName(String simpleName) {
+            if (simpleName == null) return STRING;
+            return switch (simpleName) {
+                case "Integer" -> INT32;
+                case "Long" -> INT64;
+                case "Double", "Float" -> FLOAT64;
+                case "Boolean" -> BOOLEAN;
+                case "LocalDate" -> DATE;
+                default -> STRING;
+            };
+        }
+
+        boolean accepts(Object value) {
+            return switch (this) {
+                case STRING -> true;
+                case INT32 -> value instanceof Integer
+                        || value instanceof Long l && l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE;
+                case INT64 -> value instanceof Integer || value instanceof Long;
+                case FLOAT64 -> value instanceof Number;
+                case BOOLEAN -> value instanceof Boolean;
+                case DATE -> value instanceof LocalDate || isIsoDate(value);
+            };
+        }
+
+        private static boolean isIsoDate(Object value) {
+            if (!(value instanceof String text)) return false;
+            try {
+                LocalDate.parse(text);
+                return true;
+            } catch (DateTimeParseException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -1,13 +1,23 @@
 package com.niyiment.samples.datacleaning.service;
 
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.niyiment.samples.datacleaning.config.LineageProperties;
+import com.niyiment.samples.datacleaning.config.ReportProperties;
+import com.niyiment.samples.datacleaning.config.UploadProperties;
 import com.niyiment.samples.datacleaning.dto.CleanedDataResult;
+import com.niyiment.samples.datacleaning.dto.CorrelationMatrix;
 import com.niyiment.samples.datacleaning.dto.DataQualityReport;
+import com.niyiment.samples.datacleaning.dto.NumericProfile;
+import com.niyiment.samples.datacleaning.dto.ProcessingOptions;
+import com.niyiment.samples.datacleaning.exception.JobCancelledException;
 import com.niyiment.samples.datacleaning.exception.ReportProcessingException;
-import com.niyiment.samples.datacleaning.service.impl.DataValidationStep;
-import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvValidationException;
+import com.niyiment.samples.datacleaning.exception.UploadTooLargeException;
+import com.niyiment.samples.datacleaning.service.IncrementalCleaner.IncrementalRun;
+import com.niyiment.samples.datacleaning.service.JobScope.Subtask;
+import com.niyiment.samples.datacleaning.service.kernel.DoubleColumn;
+import com.niyiment.samples.datacleaning.service.kernel.NumericKernels;
+import com.niyiment.samples.datacleaning.service.kernel.NumericKernels.ColumnStats;
+import com.niyiment.samples.datacleaning.service.kernel.NumericProfiler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.output.ByteArrayOutputStream;
@@ -17,16 +27,11 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.function.Supplier;
 
 
 
@@ -34,139 +39,130 @@ import java.util.stream.StreamSupport;
 @Slf4j
 @RequiredArgsConstructor
 public class DataProcessingService {
-    private final ObjectMapper objectMapper;
+    private final RowReaders rowReaders;
     private final CleaningPipeline cleaningPipeline;
-    private final DataValidationStep dataValidationStep;
-    private static final DateTimeFormatter[] DATE_FORMATTERS = {
-            DateTimeFormatter.ISO_LOCAL_DATE, DateTimeFormatter.ofPattern("d/M/yy"),DateTimeFormatter.ofPattern("M/d/yy"),
-            DateTimeFormatter.ofPattern("MM/dd/yyyy"),DateTimeFormatter.ofPattern("MM/dd/yy"),
-            DateTimeFormatter.ofPattern("dd-MM-yyyy"),DateTimeFormatter.ofPattern("MM-dd-yy"),
-            DateTimeFormatter.ofPattern("d/M/yy"), DateTimeFormatter.ofPattern("M/d/yy"),
-            DateTimeFormatter.ofPattern("dd-MM-yyyy"),DateTimeFormatter.ofPattern("dd-MM-yy"),
-            DateTimeFormatter.ofPattern("d-M-yy"), DateTimeFormatter.ofPattern("M-d-yy"),
-            DateTimeFormatter.ofPattern("yyyy/MM/dd")
-    };
+    private final ResultCache resultCache;
+    private final IncrementalCleaner incrementalCleaner;
+    private final AdmissionController admissionController;
+    private final JobRegistry jobRegistry;
+    private final LineageProperties lineageProperties;
+    private final ReportProperties reportProperties;
+    private final SchemaRegistry schemaRegistry;
+    private final UploadProperties uploadProperties;
+    private final NumericKernels numericKernels = NumericKernels.best();
 
     public CleanedDataResult processFile(MultipartFile file) {
+        return processFile(file, ProcessingOptions.defaults());
+    }
+
+    public CleanedDataResult processFile(MultipartFile file, ProcessingOptions options) {
         log.debug("Initializing data cleaning process");
 
         validateFileInput(file);
         String filename = Optional.ofNullable(file.getOriginalFilename())
                 .orElseThrow(() -> new ReportProcessingException("File name cannot be null"));
-        String fileExtension = getFileExtension(filename);
-
-        List<Map<String, Object>> rawData;
-        try {
-            switch (fileExtension.toLowerCase()) {
-                case "csv" -> rawData = processCSV(file);
-                case "xlsx" -> rawData = processExcel(file);
-                case "json" -> rawData = processJSON(file);
-                default -> throw new ReportProcessingException("Unsupported file format: " + fileExtension);
-            }
-        } catch (Exception e) {
-            log.error("Error processing file: {}", e.getMessage());
-            throw new ReportProcessingException("Error processing file: " + e.getMessage(), e);
-        }
-
-        if (rawData == null || rawData.isEmpty()) {
-            throw new ReportProcessingException("No data found in the file");
-        }
-
-       return cleanAndAnalyzeData(rawData);
-    }
-
-    public List<Map<String, Object>> processCSV(MultipartFile file) {
-        log.debug("Processing CSV file");
-
-        List<Map<String, Object>> data = new ArrayList<>();
-        try (Reader reader = new InputStreamReader(file.getInputStream());
-         CSVReader csvReader = new CSVReader(reader)) {
-            String[] headers = Optional.ofNullable(csvReader.readNext())
-                    .orElseThrow(() -> new ReportProcessingException("CSV file is empty"));
-            List<String> cleanedHeaders = Arrays.stream(headers)
-                    .map(this::standardizeColumnName)
-                    .toList();
-
-            Iterator<String[]> iterator = csvReader.iterator();
-            while (iterator.hasNext()) {
-                String[] lines = iterator.next();
-                Map<String, Object> row = new HashMap<>();
-                for (int i = 0; i < cleanedHeaders.size(); i++) {
-                    String value = i < lines.length ? lines[i] : "";
-                    Object cellValue = value.trim().isEmpty() ? "N/A" : parseCellValue(value);
-                    row.put(standardizeColumnName(cleanedHeaders.get(i)), cellValue);
-                }
-                data.add(row);
+        UploadFormat uploadFormat = UploadFormat.fromFileName(filename);
+
+        String cacheKey = cacheKey(file, options);
+        if (cacheKey != null) {
+            Optional<CleanedDataResult> cached = resultCache.get(cacheKey);
+            if (cached.isPresent()) {
+                log.debug("Returning cached result for {}", filename);
+                return cached.get();
             }
-        } catch (CsvValidationException | IOException e) {
-            throw new ReportProcessingException("Error processing CSV file", e);
         }
 
-        return data;
+        // registered before admission, so a job still waiting for its permit can be cancelled too
+        return jobRegistry.runAttached(filename, options.jobId(),
+                () -> cleanUpload(file, filename, uploadFormat, options, cacheKey));
     }
 
-    public List<Map<String, Object>> processExcel(MultipartFile file) {
-        log.debug("Processing Excel file");
-
-        List<Map<String, Object>> data = new ArrayList<>();
-        try(Workbook workbook =  new XSSFWorkbook(file.getInputStream())){
-            Sheet sheet = Optional.ofNullable(workbook.getSheetAt(0))
-                    .orElseThrow(() -> new ReportProcessingException("No sheets found in the Excel file"));
-
-            Row headerRow = Optional.ofNullable(sheet.getRow(0))
-                    .orElseThrow(() -> new ReportProcessingException("No rows found in the Excel file"));
-
-            List<String> headers = StreamSupport.stream(headerRow.spliterator(), false)
-                    .map(cell -> standardizeColumnName(Optional.ofNullable(cell).map(Cell::getStringCellValue).orElse("")))
-                    .toList();
-
-            Iterator<Row> rowIterator = sheet.iterator();
-            rowIterator.next();
-            while (rowIterator.hasNext()) {
-                Row row = rowIterator.next();
-                if (row == null) continue;
-
-                Map<String, Object> rowData = new HashMap<>();
-                boolean hasNonEmptyValue = false;
-                for (int columnNumber=0; columnNumber < headers.size(); columnNumber++) {
-                    Cell cell = row.getCell(columnNumber, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
-                    String columnName = headers.get(columnNumber);
-                    Object cellValue = safeGetCellValueWithDateHandling(cell, columnName);
+    private CleanedDataResult cleanUpload(MultipartFile file, String filename, UploadFormat uploadFormat,
+                                          ProcessingOptions options, String cacheKey) {
+        try (AdmissionController.Permit permit = admissionController.acquire(filename,
+                admissionController.estimate(file, uploadFormat))) {
+            log.debug("Admitted {} with {} bytes reserved", filename, permit.reservation());
+            List<Map<String, Object>> rawData = new ArrayList<>();
+            SourceRows sourceRows = new SourceRows();
+            DeclaredSchema.Reader schemaReader = schemaReader(options);
+            RowSelection selection = RowSelection.of(options);
+            try (InputStream inputStream = decode(uploadFormat, file.getInputStream())) {
+                readRows(uploadFormat.format(), inputStream, selection, schemaReader, (row, sourceRow) -> {
+                    CancellationToken.checkpoint(rawData.size());
+                    rawData.add(row);
+                    sourceRows.add(sourceRow);
+                });
+            } catch (JobCancelledException | UploadTooLargeException e) {
+                throw e;
+            } catch (Exception e) {
+                log.error("Error processing file: {}", e.getMessage());
+                throw new ReportProcessingException("Error processing file: " + e.getMessage(), e);
+            }
 
-                    if (cellValue != null && !cellValue.toString().trim().isEmpty() && !cellValue.equals("N/A")) {
-                        hasNonEmptyValue = true;
-                    }
-                    rowData.put(headers.get(columnNumber), cellValue == null ? "N/A" : cellValue);
-                }
+            if (rawData.isEmpty()) {
+                throw new ReportProcessingException(noRowsMessage(selection));
+            }
 
-                if (hasNonEmptyValue) {
-                    data.add(rowData);
-                }
+            String feed = Optional.ofNullable(options.feed()).filter(name -> !name.isBlank()).orElse(filename);
+            CleanedDataResult result = cleanAndAnalyzeData(rawData, sourceRows.toArray(), feed, options, selection,
+                    schemaReader);
+            if (cacheKey != null) {
+                resultCache.put(cacheKey, result);
             }
+            return result;
+        }
+    }
 
+    /** Result cache key of the upload, or null when the cache is disabled. */
+    String cacheKey(MultipartFile file, ProcessingOptions options) {
+        if (!resultCache.isEnabled()) {
+            return null;
+        }
+        try {
+            return cacheKey(resultCache.key(file), options);
         } catch (IOException e) {
-            throw new ReportProcessingException("Error processing Excel file", e);
+            throw new ReportProcessingException("Error reading file: " + e.getMessage(), e);
         }
+    }
 
-        return data;
+    /**
+     * A result with the numeric profile is cached apart from the same upload's result without it, and
+     * a result parsed with a schema under the hash of that schema's definition. Results of steps that
+     * depend on outside data carry its version, so a reloaded reference table is not served stale.
+     */
+    String cacheKey(String contentKey, ProcessingOptions options) {
+        String key = options.numericProfile() ? contentKey + "-profile" : contentKey;
+        RowSelection selection = RowSelection.of(options);
+        if (!selection.isAll()) {
+            key += "-select-" + selection.fingerprint();
+        }
+        String dataVersion = cleaningPipeline.dataVersion();
+        if (!dataVersion.isEmpty()) {
+            key += "-data-" + ResultCache.shortHash(dataVersion);
+        }
+        DeclaredSchema schema = schemaRegistry.find(options.schema());
+        return schema == null ? key : key + "-schema-" + schema.fingerprint();
     }
 
-    public List<Map<String, Object>> processJSON(MultipartFile file) {
-        log.debug("Processing JSON file");
+    static String noRowsMessage(RowSelection selection) {
+        return selection.isAll() ? "No data found in the file" : "No rows of the file match the selection";
+    }
 
-        try{
-            List<Map<String, Object>> data = objectMapper.readValue(file.getInputStream(),
-                    objectMapper.getTypeFactory().constructCollectionType(List.class, Map.class));
+    /** The decompressed content of an upload, limited to {@code cleaning.upload.max-decompressed-size}. */
+    InputStream decode(UploadFormat uploadFormat, InputStream inputStream) throws IOException {
+        return uploadFormat.decode(inputStream, uploadProperties.getMaxDecompressedSize().toBytes());
+    }
 
-            return Optional.ofNullable(data)
-                    .orElse(Collections.emptyList())
-                    .stream()
-                    .filter(row-> row != null && !row.isEmpty())
-                    .map(this::standardizeRowKeys)
-                    .toList();
-        } catch (IOException e) {
-            throw new ReportProcessingException("Error processing JSON file", e);
-        }
+    /** A reader for the schema the upload selected, or null when it selected none. */
+    DeclaredSchema.Reader schemaReader(ProcessingOptions options) {
+        DeclaredSchema schema = schemaRegistry.find(options.schema());
+        return schema == null ? null : schema.reader();
+    }
+
+    /** See {@link RowReaders#readRows(String, InputStream, RowSelection, DeclaredSchema.Reader, SourceRowConsumer)}. */
+    public void readRows(String fileExtension, InputStream inputStream, RowSelection selection,
+                         DeclaredSchema.Reader schemaReader, SourceRowConsumer rowConsumer) {
+        rowReaders.readRows(fileExtension, inputStream, selection, schemaReader, rowConsumer);
     }
 
     public byte[] exportToExcel(CleanedDataResult cleanedDataResult) throws IOException {
@@ -181,19 +177,31 @@ public class DataProcessingService {
 
             Row headerRow = sheet.createRow(0);
             List<String> columns = cleanedDataResult.columns();
+            List<Map<String, Object>> cleanedData = cleanedDataResult.cleanedData();
+            int[] sourceRows = lineageProperties.isIncludeInDownloads() && cleanedDataResult.sourceRows() != null
+                    && cleanedDataResult.sourceRows().length == cleanedData.size() ? cleanedDataResult.sourceRows() : null;
+            int offset = sourceRows == null ? 0 : 1;
+            if (sourceRows != null) {
+                Cell cell = headerRow.createCell(0);
+                cell.setCellValue(lineageProperties.getColumn());
+                cell.setCellStyle(headerStyle);
+            }
             for (int i = 0; i < columns.size(); i++) {
-                Cell cell = headerRow.createCell(i);
+                Cell cell = headerRow.createCell(i + offset);
                 cell.setCellValue(columns.get(i));
                 cell.setCellStyle(headerStyle);
             }
 
-            List<Map<String, Object>> cleanedData = cleanedDataResult.cleanedData();
             for (int rowNum = 0; rowNum < cleanedData.size(); rowNum++) {
+                CancellationToken.checkpoint(rowNum);
                 Row row = sheet.createRow(rowNum + 1);
                 Map<String, Object> dataRow = cleanedData.get(rowNum);
+                if (sourceRows != null) {
+                    row.createCell(0).setCellValue(sourceRows[rowNum]);
+                }
 
                 for (int colNum = 0; colNum < columns.size(); colNum++) {
-                    Cell cell = row.createCell(colNum);
+                    Cell cell = row.createCell(colNum + offset);
                     Object value = dataRow.get(columns.get(colNum));
 
                     if (value != null) {
@@ -202,7 +210,7 @@ public class DataProcessingService {
                 }
             }
 
-            for (int i = 0; i < columns.size(); i++) {
+            for (int i = 0; i < columns.size() + offset; i++) {
                 sheet.autoSizeColumn(i);
             }
 
@@ -307,7 +315,7 @@ public class DataProcessingService {
         }
     }
 
-    private void validateFileInput(MultipartFile file) {
+    void validateFileInput(MultipartFile file) {
         if (file == null) {
             throw new ReportProcessingException("File cannot be null");
         }
@@ -316,179 +324,289 @@ public class DataProcessingService {
         }
     }
 
-    private CleanedDataResult cleanAndAnalyzeData(List<Map<String, Object>> data) {
-        List<Map<String, Object>> cleanedData = cleaningPipeline.execute(data);
-        DataQualityReport report = generateDataQualityReport(data, cleanedData);
-        List<String> validationErrors = dataValidationStep.getValidationResult().getErrors();
+    /**
+     * Cleans and reports on an upload's rows. Rows read through a {@code schemaReader} already have
+     * their declared types, so type inference is skipped and the schema's violations are reported
+     * ahead of the pipeline's validation errors.
+     */
+    CleanedDataResult cleanAndAnalyzeData(List<Map<String, Object>> data, int[] sourceRows, String feed,
+                                          ProcessingOptions options, RowSelection selection,
+                                          DeclaredSchema.Reader schemaReader) {
+        try (JobScope scope = JobScope.open("job")) {
+            // steps copy the rows they change, so the raw rows can be counted while they are cleaned
+            Subtask<Map<String, Long>> missingValuesCount = scope.fork("missing-values", () -> countMissingValues(data));
+            CleaningPipeline.Run run;
+            List<String> planDescription;
+            DeclaredSchema schema = schemaReader == null ? null : schemaReader.schema();
+            if (incrementalCleaner.isEnabled()) {
+                PipelinePlan plan = CleaningPipeline.forSchema(cleaningPipeline.strictPlan(), schema);
+                IncrementalRun incrementalRun = incrementalCleaner.execute(feed, data, sourceRows, options.fullRecompute(),
+                        step -> schema != null && CleaningPipeline.infersTypes(step));
+                run = new CleaningPipeline.Run(incrementalRun.cleanedData(), incrementalRun.sourceRows(),
+                        List.of(Subtask.completed(incrementalRun.validationResult())));
+                planDescription = new ArrayList<>(plan.describe());
+                planDescription.add(String.format("Incremental: reused %d of %d rows from the previous run of %s",
+                        incrementalRun.reusedRows(), incrementalRun.totalRows(), feed));
+            } else {
+                PipelinePlan plan = CleaningPipeline.forSchema(cleaningPipeline.plan(data), schema);
+                run = cleaningPipeline.execute(data, sourceRows, plan, scope);
+                planDescription = new ArrayList<>(plan.describe());
+            }
+            if (!selection.isAll()) {
+                planDescription.add(selection.describe());
+            }
+            if (schemaReader != null) {
+                run = run.withValidationFirst(schemaReader.violations());
+                planDescription.add(describe(schemaReader));
+            }
+            return buildResult(scope, data.size(), missingValuesCount, run, planDescription, options.numericProfile());
+        }
+    }
+
+    /**
+     * Cleans rows with the planned pipeline without touching incremental baselines, for results that
+     * are not the result of an upload: previews and warm-up runs.
+     */
+    CleanedDataResult cleanDetached(List<Map<String, Object>> data, int[] sourceRows, List<String> planNotes,
+                                    ProcessingOptions options) {
+        try (JobScope scope = JobScope.open("detached")) {
+            PipelinePlan plan = CleaningPipeline.forSchema(cleaningPipeline.plan(data), schemaRegistry.find(options.schema()));
+            CleaningPipeline.Run run = cleaningPipeline.execute(data, sourceRows, plan, scope);
+            List<String> planDescription = new ArrayList<>(plan.describe());
+            planDescription.addAll(planNotes);
+            return buildResult(scope, data.size(), () -> countMissingValues(data), run, planDescription,
+                    options.numericProfile());
+        }
+    }
+
+    /**
+     * Forks the report statistics into {@code scope} and assembles the result once they, and every
+     * subtask the job forked before, have joined.
+     */
+    CleanedDataResult buildResult(JobScope scope, int totalRecords, Supplier<Map<String, Long>> missingValuesCount,
+                                  CleaningPipeline.Run run, List<String> planDescription, boolean numericProfile) {
+        List<Map<String, Object>> cleanedData = run.cleanedData();
+        Supplier<DataQualityReport> report = generateDataQualityReport(scope, totalRecords, missingValuesCount,
+                cleanedData, numericProfile);
+        scope.join();
 
         return CleanedDataResult.builder()
                 .cleanedData(cleanedData)
-                .dataQualityReport(report)
+                .sourceRows(run.sourceRows())
+                .dataQualityReport(report.get())
                 .columns(new ArrayList<>(cleanedData.get(0).keySet()))
-                .validationErrors(validationErrors)
+                .validationErrors(run.validationErrors())
+                .pipelinePlan(planDescription)
                 .build();
     }
 
-    private Map<String, Object> standardizeRowKeys(Map<String, Object> row) {
-        return row.entrySet().stream()
-                .collect(Collectors.toMap(entry -> standardizeColumnName(entry.getKey()),
-                        Map.Entry::getValue));
+    /** The plan line of an upload read with a schema. */
+    static String describe(DeclaredSchema.Reader schemaReader) {
+        return String.format("Schema %s: %d declared columns parsed into their types, %d violations",
+                schemaReader.schema().name(), schemaReader.schema().columnCount(),
+                schemaReader.violations().getErrors().size());
     }
 
-    private String standardizeColumnName(String columnName) {
+
+    static String standardizeColumnName(String columnName) {
         return columnName
                 .trim()
                 .toLowerCase()
                 .replaceAll("[^a-z0-9]+", "_");
     }
 
-    private DataQualityReport generateDataQualityReport(List<Map<String, Object>> rawData,
-                                                        List<Map<String, Object>> cleanedData) {
-        Map<String, Long> missingValuesCount = rawData.stream()
-                .flatMap(row -> row.entrySet().stream())
-                .filter(entry -> entry.getValue() == null || (entry.getValue() instanceof String && entry.getValue().equals("N/A")))
-                .collect(Collectors.groupingBy(Map.Entry::getKey, Collectors.counting()));
-
-        Map<String, Integer> uniqueValuesCount = cleanedData.stream()
-                .flatMap(row -> row.entrySet().stream())
-                .collect(Collectors.groupingBy(Map.Entry::getKey, Collectors.collectingAndThen(
-                        Collectors.mapping(Map.Entry::getValue, Collectors.toSet()),
-                        Set::size)));
+    static Map<String, Long> countMissingValues(List<Map<String, Object>> rawData) {
+        Map<String, Long> missingValuesCount = new HashMap<>();
+        for (int i = 0; i < rawData.size(); i++) {
+            CancellationToken.checkpoint(i);
+            countMissingValues(rawData.get(i), missingValuesCount);
+        }
+        return missingValuesCount;
+    }
 
-        Map<String, List<Double>> numericColumns = new HashMap<>();
-        for (Map<String, Object> row : cleanedData) {
-            for (Map.Entry<String, Object> entry : row.entrySet()) {
-                if (entry.getValue() instanceof Number) {
-                    numericColumns.computeIfAbsent(entry.getKey(), k -> new ArrayList<>())
-                        .add(((Number) entry.getValue()).doubleValue());
-                }
+    static void countMissingValues(Map<String, Object> rawRow, Map<String, Long> missingValuesCount) {
+        for (Map.Entry<String, Object> entry : rawRow.entrySet()) {
+            if (entry.getValue() == null || (entry.getValue() instanceof String && entry.getValue().equals("N/A"))) {
+                missingValuesCount.merge(entry.getKey(), 1L, Long::sum);
             }
         }
+    }
 
-        Map<String, Map<String, Object>> numericStats = new HashMap<>();
-        for(Map.Entry<String, List<Double>> entry : numericColumns.entrySet()) {
-            List<Double> values = entry.getValue();
-            if (!values.isEmpty()) {
-                double sum = values.stream().mapToDouble(Double::doubleValue).sum();
-                double mean = values.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
-                double min = values.stream().mapToDouble(Double::doubleValue).min().orElse(0.0);
-                double max = values.stream().mapToDouble(Double::doubleValue).max().orElse(0.0);
-                numericStats.put(entry.getKey(), Map.of("mean", mean, "sum", sum, "min", min, "max", max));
+    /**
+     * The statistics each take a full pass over the rows and share nothing, so each is a subtask. The
+     * distinct and frequent values pass, the most expensive one, is split into chunks of
+     * {@code cleaning.report.chunk-rows} rows whose summaries merge once the scope has joined, and so
+     * is the numeric profile when the upload asked for it.
+     */
+    private Supplier<DataQualityReport> generateDataQualityReport(JobScope scope, int totalRecords,
+                                                                  Supplier<Map<String, Long>> missingValuesCount,
+                                                                  List<Map<String, Object>> cleanedData,
+                                                                  boolean numericProfile) {
+        int chunkRows = Math.max(reportProperties.getChunkRows(), 1);
+        int sketchCapacity = Math.max(reportProperties.getTopValuesCapacity(), reportProperties.getTopValues());
+        List<Subtask<ColumnValues>> columnValueChunks = new ArrayList<>();
+        for (int from = 0; from < cleanedData.size(); from += chunkRows) {
+            int start = from;
+            int end = Math.min(from + chunkRows, cleanedData.size());
+            columnValueChunks.add(scope.fork("column-values-" + start,
+                    () -> ColumnValues.summarize(cleanedData, start, end, sketchCapacity)));
+        }
+        Subtask<Map<String, Map<String, Object>>> numericStats = scope.fork("numeric-stats", () -> summarizeNumericColumns(cleanedData));
+        Subtask<Map<String, String>> columnTypes = scope.fork("column-types", () -> detectColumnTypes(cleanedData));
+        List<String> profiledColumns = numericProfile ? numericColumns(cleanedData) : List.of();
+        List<Subtask<NumericProfiler>> profileChunks = new ArrayList<>();
+        if (numericProfile) {
+            for (int from = 0; from < cleanedData.size(); from += chunkRows) {
+                int start = from;
+                int end = Math.min(from + chunkRows, cleanedData.size());
+                profileChunks.add(scope.fork("numeric-profile-" + start,
+                        () -> profileRows(cleanedData, start, end, profiledColumns)));
             }
         }
 
-        Map<String, String> columnTypes = new HashMap<>();
-        for (Map<String, Object> row : cleanedData) {
-            for (Map.Entry<String, Object> entry : row.entrySet()) {
-                String key = entry.getKey();
-                Object value = entry.getValue();
-                if (value != null && !value.equals("N/A")) {
-                    columnTypes.computeIfAbsent(key, k -> value.getClass().getSimpleName());
+        return () -> {
+            ColumnValues columnValues = new ColumnValues(sketchCapacity);
+            for (Subtask<ColumnValues> chunk : columnValueChunks) {
+                columnValues.merge(chunk.get());
+            }
+            NumericProfiler profiler = null;
+            if (numericProfile) {
+                profiler = new NumericProfiler(profiledColumns.size(), reportProperties.getProfileSketchCapacity());
+                for (Subtask<NumericProfiler> chunk : profileChunks) {
+                    profiler.merge(chunk.get());
                 }
             }
-        }
-
-        return DataQualityReport.builder()
-                .totalRecords(rawData.size())
-                .processedRecords(cleanedData.size())
-                .missingValuesCount(missingValuesCount)
-                .uniqueValuesCount(uniqueValuesCount)
-                .numericStats(numericStats)
-                .columnTypes(columnTypes)
-                .build();
-    }
-
-    private String getFileExtension(String filename) {
-        return filename.substring(filename.lastIndexOf('.') + 1);
+            return DataQualityReport.builder()
+                    .totalRecords(totalRecords)
+                    .processedRecords(cleanedData.size())
+                    .missingValuesCount(missingValuesCount.get())
+                    .uniqueValuesCount(columnValues.uniqueValuesCount())
+                    .numericStats(numericStats.get())
+                    .columnTypes(columnTypes.get())
+                    .topValues(columnValues.topValues(reportProperties.getTopValues()))
+                    .numericProfiles(profiler == null ? null : numericProfiles(profiler, profiledColumns))
+                    .correlations(profiler == null ? null : correlations(profiler, profiledColumns))
+                    .build();
+        };
     }
 
-    public static Object safeGetCellValueWithDateHandling(Cell cell, String columnName) {
-        if (cell == null) return null;
-
-        try {
-            if (cell == null) {
-                return null;
+    /**
+     * Columns of the first row whose first present value is a number. Rows are read only until every
+     * such column has shown a value; values of another type in a numeric column count as missing.
+     */
+    private static List<String> numericColumns(List<Map<String, Object>> cleanedData) {
+        if (cleanedData.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Boolean> numeric = new LinkedHashMap<>();
+        cleanedData.get(0).keySet().forEach(column -> numeric.put(column, null));
+        int unresolved = numeric.size();
+        for (int i = 0; i < cleanedData.size() && unresolved > 0; i++) {
+            CancellationToken.checkpoint(i);
+            for (Map.Entry<String, Object> entry : cleanedData.get(i).entrySet()) {
+                Object value = entry.getValue();
+                if (value != null && !value.equals("N/A") && numeric.containsKey(entry.getKey())
+                        && numeric.get(entry.getKey()) == null) {
+                    numeric.put(entry.getKey(), value instanceof Number);
+                    unresolved--;
+                }
             }
+        }
+        List<String> columns = new ArrayList<>();
+        numeric.forEach((column, isNumeric) -> {
+            if (Boolean.TRUE.equals(isNumeric)) columns.add(column);
+        });
+        return columns;
+    }
 
-            switch (cell.getCellType()) {
-                case STRING:
-                    return cell.getStringCellValue();
-
-                case NUMERIC:
-                    if (DateUtil.isCellDateFormatted(cell)) {
-                        return cell.getDateCellValue()
-                                .toInstant()
-                                .atZone(ZoneId.systemDefault())
-                                .toLocalDate();
-                    } else {
-                        double numericValue = cell.getNumericCellValue();
-                        if (numericValue == Math.floor(numericValue)) {
-                            return (long) numericValue;
-                        }
-                        return numericValue;
-                    }
-
-                case BOOLEAN:
-                    return cell.getBooleanCellValue();
-
-                case FORMULA:
-                    return evaluateFormula(cell);
-
-                case BLANK:
-                    return null;
-
-                default:
-                    return cell.toString();
+    /** Copies the rows into column blocks of primitive doubles, NaN where a value is missing, for the kernel. */
+    private NumericProfiler profileRows(List<Map<String, Object>> rows, int from, int to, List<String> columns) {
+        NumericProfiler profiler = new NumericProfiler(columns.size(), reportProperties.getProfileSketchCapacity());
+        if (columns.isEmpty()) {
+            return profiler;
+        }
+        int blockRows = Math.max(reportProperties.getProfileBlockRows(), 1);
+        double[][] block = new double[columns.size()][blockRows];
+        for (int blockStart = from; blockStart < to; blockStart += blockRows) {
+            int length = Math.min(blockRows, to - blockStart);
+            for (int r = 0; r < length; r++) {
+                CancellationToken.checkpoint(blockStart + r);
+                Map<String, Object> row = rows.get(blockStart + r);
+                for (int c = 0; c < columns.size(); c++) {
+                    block[c][r] = row.get(columns.get(c)) instanceof Number number ? number.doubleValue() : Double.NaN;
+                }
             }
-
-        } catch (Exception e) {
-            log.warn("Could not extract cell value: {}", e.getMessage());
-            return null;
+            profiler.addBlock(block, length);
         }
+        return profiler;
     }
 
-    private static Object evaluateFormula(Cell cell) {
-        FormulaEvaluator evaluator = cell.getSheet()
-                .getWorkbook()
-                .getCreationHelper()
-                .createFormulaEvaluator();
-
-        CellValue cellValue = evaluator.evaluate(cell);
-        switch (cellValue.getCellType()) {
-            case NUMERIC:
-                return cellValue.getNumberValue();
-            case STRING:
-                return cellValue.getStringValue();
-            case BOOLEAN:
-                return cellValue.getBooleanValue();
-            default:
-                return null;
+    private static Map<String, NumericProfile> numericProfiles(NumericProfiler profiler, List<String> columns) {
+        Map<String, NumericProfile> profiles = new LinkedHashMap<>();
+        for (int c = 0; c < columns.size(); c++) {
+            profiles.put(columns.get(c), NumericProfile.builder()
+                    .count(profiler.count(c))
+                    .p1(definedOrNull(profiler.quantile(c, 0.01)))
+                    .p50(definedOrNull(profiler.quantile(c, 0.5)))
+                    .p99(definedOrNull(profiler.quantile(c, 0.99)))
+                    .skewness(definedOrNull(profiler.skewness(c)))
+                    .kurtosis(definedOrNull(profiler.kurtosis(c)))
+                    .build());
         }
+        return profiles;
     }
 
-    private Object parseCellValue(String value) {
-        if (value == null || value.isEmpty()) {
-            return null;
+    private static CorrelationMatrix correlations(NumericProfiler profiler, List<String> columns) {
+        List<List<Double>> coefficients = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            List<Double> row = new ArrayList<>(columns.size());
+            for (int j = 0; j < columns.size(); j++) {
+                row.add(definedOrNull(profiler.correlation(i, j)));
+            }
+            coefficients.add(row);
         }
+        return new CorrelationMatrix(List.copyOf(columns), coefficients);
+    }
 
-        try {
-            if (value.contains(".")) {
-                return Double.parseDouble(value);
-            } else {
-                return Long.parseLong(value);
-            }
-        } catch (NumberFormatException ignore){}
+    private static Double definedOrNull(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
 
-        for (DateTimeFormatter formatter : DATE_FORMATTERS) {
-            try {
-                return LocalDate.parse(value, formatter);
-            } catch (DateTimeParseException ignore) {}
+    private Map<String, Map<String, Object>> summarizeNumericColumns(List<Map<String, Object>> cleanedData) {
+        Map<String, DoubleColumn> numericColumns = new HashMap<>();
+        for (int i = 0; i < cleanedData.size(); i++) {
+            CancellationToken.checkpoint(i);
+            for (Map.Entry<String, Object> entry : cleanedData.get(i).entrySet()) {
+                if (entry.getValue() instanceof Number number) {
+                    numericColumns.computeIfAbsent(entry.getKey(), k -> new DoubleColumn())
+                        .add(i, number.doubleValue());
+                }
+            }
         }
 
-        if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
-            return Boolean.parseBoolean(value);
+        Map<String, Map<String, Object>> numericStats = new HashMap<>();
+        for (Map.Entry<String, DoubleColumn> entry : numericColumns.entrySet()) {
+            DoubleColumn column = entry.getValue();
+            ColumnStats stats = numericKernels.summarize(column.values(), column.size());
+            numericStats.put(entry.getKey(),
+                    Map.of("mean", stats.mean(), "sum", stats.sum(), "min", stats.min(), "max", stats.max()));
         }
+        return numericStats;
+    }
 
-        return value;
+    private static Map<String, String> detectColumnTypes(List<Map<String, Object>> cleanedData) {
+        Map<String, String> columnTypes = new HashMap<>();
+        long rows = 0;
+        for (Map<String, Object> row : cleanedData) {
+            CancellationToken.checkpoint(rows++);
+            for (Map.Entry<String, Object> entry : row.entrySet()) {
+                String key = entry.getKey();
+                Object value = entry.getValue();
+                if (value != null && !value.equals("N/A")) {
+                    columnTypes.computeIfAbsent(key, k -> value.getClass().getSimpleName());
+                }
+            }
+        }
+        return columnTypes;
     }
 }
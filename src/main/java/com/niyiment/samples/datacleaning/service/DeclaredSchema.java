@@ -0,0 +1,381 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.config.SchemaProperties;
+import com.niyiment.samples.datacleaning.config.SchemaProperties.ColumnType;
+import com.niyiment.samples.datacleaning.dto.ValidationResult;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.ResolverStyle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * A configured schema compiled for ingestion. Every declared column gets a parser for its type, so
+ * cells go from text straight to the declared type instead of through the readers' guesses and
+ * {@code TypeInferenceStep}. Whole numbers and dates whose pattern is only {@code yyyy}, {@code MM},
+ * {@code dd} and single separators are parsed digit by digit, without exceptions; other date
+ * patterns go through a strict {@link DateTimeFormatter}. Columns the schema does not declare are
+ * left as read.
+ */
+public final class DeclaredSchema {
+    private final String name;
+    private final List<Column> columns;
+    private final String fingerprint;
+
+    DeclaredSchema(String name, List<SchemaProperties.Column> definitions, UnaryOperator<String> columnNames) {
+        if (definitions == null || definitions.isEmpty()) {
+            throw new IllegalArgumentException("Schema " + name + " declares no columns");
+        }
+        this.name = name;
+        this.columns = new ArrayList<>(definitions.size());
+        Set<String> names = new HashSet<>();
+        StringBuilder definition = new StringBuilder(name);
+        for (SchemaProperties.Column column : definitions) {
+            if (column.getName() == null || column.getName().isBlank()) {
+                throw new IllegalArgumentException("Schema " + name + " has a column without a name");
+            }
+            String columnName = columnNames.apply(column.getName());
+            if (!names.add(columnName)) {
+                throw new IllegalArgumentException("Schema " + name + " declares column " + columnName + " twice");
+            }
+            columns.add(new Column(columnName, column));
+            definition.append('|').append(columnName).append(':').append(column.getType())
+                    .append(':').append(column.getDatePattern()).append(':').append(column.isNullable())
+                    .append(':').append(column.isIdentifier());
+        }
+        this.fingerprint = ResultCache.shortHash(definition.toString());
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /** Short hash of the definition, so cached results of an edited schema are not served again. */
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    public int columnCount() {
+        return columns.size();
+    }
+
+    /** A reader for the rows of one upload. */
+    public Reader reader() {
+        return new Reader();
+    }
+
+    /**
+     * Applies the schema to the rows of one upload, in file order, and records every violation as a
+     * validation error under the row's source row: a value the declared type does not accept, a blank
+     * value in a column that is not nullable, a repeated identifier, or a declared column the file
+     * does not have. Violating values are kept as they were read. Not thread-safe.
+     */
+    public final class Reader {
+        private final ValidationResult violations = new ValidationResult();
+        private final List<Map<Object, Integer>> identifiers = new ArrayList<>(columns.size());
+        private final Set<String> absentColumns = new HashSet<>();
+
+        private Reader() {
+            for (Column column : columns) {
+                identifiers.add(column.identifier ? new HashMap<>() : null);
+            }
+        }
+
+        public DeclaredSchema schema() {
+            return DeclaredSchema.this;
+        }
+
+        /**
+         * Wraps {@code rowConsumer} so every row reaches it with its declared columns converted. Declared
+         * columns that {@code selection} leaves out are not expected in the rows.
+         */
+        public SourceRowConsumer typing(SourceRowConsumer rowConsumer, RowSelection selection) {
+            return (row, sourceRow) -> {
+                apply(row, sourceRow, selection);
+                rowConsumer.accept(row, sourceRow);
+            };
+        }
+
+        public ValidationResult violations() {
+            return violations;
+        }
+
+        private void apply(Map<String, Object> row, int sourceRow, RowSelection selection) {
+            for (int c = 0; c < columns.size(); c++) {
+                Column column = columns.get(c);
+                Object value = row.get(column.name);
+                if (value == null && !row.containsKey(column.name)) {
+                    if (selection.selects(column.name) && absentColumns.add(column.name)) {
+                        violations.addError(String.format("Row %d: column %s of schema %s is missing",
+                                sourceRow, column.name, name));
+                    }
+                    continue;
+                }
+                if (isMissing(value)) {
+                    if (!column.nullable) {
+                        addError(sourceRow, column, "a value is required");
+                    }
+                    continue;
+                }
+                Object converted = column.convert(value);
+                if (converted == null) {
+                    addError(sourceRow, column, String.format("'%s' is not a valid %s", value, column.describeType()));
+                    continue;
+                }
+                row.put(column.name, converted);
+                if (column.identifier) {
+                    Integer firstRow = identifiers.get(c).putIfAbsent(converted, sourceRow);
+                    if (firstRow != null) {
+                        addError(sourceRow, column, String.format("identifier %s already appears in row %d",
+                                converted, firstRow));
+                    }
+                }
+            }
+        }
+
+        private void addError(int sourceRow, Column column, String message) {
+            violations.addError(String.format("Row %d, column %s: %s (schema %s)", sourceRow, column.name, message, name));
+        }
+    }
+
+    /** Blank cells as the readers and handleMissingValues see them; they are left for the pipeline to fill. */
+    private static boolean isMissing(Object value) {
+        if (!(value instanceof String text)) return value == null;
+        return text.isBlank() || text.equalsIgnoreCase("N/A") || text.equalsIgnoreCase("null");
+    }
+
+    private static final class Column {
+        private final String name;
+        private final ColumnType type;
+        private final boolean nullable;
+        private final boolean identifier;
+        private final String datePattern;
+        private final DateLayout dateLayout;
+        private final DateTimeFormatter dateFormatter;
+
+        private Column(String name, SchemaProperties.Column definition) {
+            this.name = name;
+            this.type = definition.getType() == null ? ColumnType.STRING : definition.getType();
+            this.nullable = definition.isNullable();
+            this.identifier = definition.isIdentifier();
+            this.datePattern = definition.getDatePattern() == null ? "yyyy-MM-dd" : definition.getDatePattern();
+            if (type == ColumnType.DATE) {
+                this.dateLayout = DateLayout.of(datePattern);
+                this.dateFormatter = dateLayout == null ? strictFormatter(datePattern) : null;
+            } else {
+                this.dateLayout = null;
+                this.dateFormatter = null;
+            }
+        }
+
+        /** The value as the declared type, or null when the type does not accept it. */
+        private Object convert(Object value) {
+            if (value instanceof String text) {
+                return type == ColumnType.STRING ? text : parse(text.trim());
+            }
+            switch (type) {
+                case STRING -> {
+                    // spreadsheets hold every number as a double; a whole one reads as it was typed
+                    return value instanceof Double number && number == Math.rint(number) && Math.abs(number) < 0x1p63
+                            ? String.valueOf(number.longValue())
+                            : value.toString();
+                }
+                case INTEGER -> {
+                    if (value instanceof Number number && isWhole(number)
+                            && number.doubleValue() >= Integer.MIN_VALUE && number.doubleValue() <= Integer.MAX_VALUE) {
+                        return number.intValue();
+                    }
+                }
+                case LONG -> {
+                    if (value instanceof Integer || value instanceof Long) return ((Number) value).longValue();
+                    // 2^63 itself is out of range, and doubles cannot tell it from Long.MAX_VALUE
+                    if (value instanceof Number number && isWhole(number)
+                            && number.doubleValue() >= -0x1p63 && number.doubleValue() < 0x1p63) {
+                        return number.longValue();
+                    }
+                }
+                case DOUBLE -> {
+                    // like text, NaN and infinities are not accepted
+                    if (value instanceof Number number && Double.isFinite(number.doubleValue())) {
+                        return number.doubleValue();
+                    }
+                }
+                case BOOLEAN -> {
+                    if (value instanceof Boolean) return value;
+                }
+                case DATE -> {
+                    if (value instanceof LocalDate) return value;
+                    if (value instanceof LocalDateTime dateTime) return dateTime.toLocalDate();
+                }
+            }
+            return parse(value.toString());
+        }
+
+        private Object parse(String text) {
+            return switch (type) {
+                case STRING -> text;
+                case INTEGER -> {
+                    long value = parseLong(text);
+                    yield value == NOT_A_LONG || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE
+                            ? null : (Object) (int) value;
+                }
+                case LONG -> {
+                    long value = parseLong(text);
+                    yield value == NOT_A_LONG ? null : (Object) value;
+                }
+                case DOUBLE -> parseDouble(text);
+                case BOOLEAN -> "true".equalsIgnoreCase(text) ? Boolean.TRUE
+                        : "false".equalsIgnoreCase(text) ? Boolean.FALSE : null;
+                case DATE -> dateLayout != null ? dateLayout.parse(text) : parseDate(text, dateFormatter);
+            };
+        }
+
+        private String describeType() {
+            return type == ColumnType.DATE ? "date (" + datePattern + ")" : type.name().toLowerCase();
+        }
+
+        private static boolean isWhole(Number number) {
+            if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) {
+                return true;
+            }
+            double value = number.doubleValue();
+            return value == Math.rint(value) && !Double.isInfinite(value);
+        }
+    }
+
+    /** Returned by {@link #parseLong} for text that is not a long; Long.MIN_VALUE itself is therefore rejected too. */
+    private static final long NOT_A_LONG = Long.MIN_VALUE;
+
+    /**
+     * An optional sign and ASCII decimal digits, accumulated negatively so overflow is caught without
+     * exceptions. Otherwise it accepts what {@link Long#parseLong(String)} accepts.
+     */
+    static long parseLong(String text) {
+        int length = text.length();
+        if (length == 0) return NOT_A_LONG;
+        int i = 0;
+        boolean negative = false;
+        char first = text.charAt(0);
+        if (first == '-' || first == '+') {
+            if (length == 1) return NOT_A_LONG;
+            negative = first == '-';
+            i = 1;
+        }
+        long value = 0;
+        for (; i < length; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || value < Long.MIN_VALUE / 10) return NOT_A_LONG;
+            value *= 10;
+            if (value < Long.MIN_VALUE + digit + 1) return NOT_A_LONG;
+            value -= digit;
+        }
+        return negative ? value : -value;
+    }
+
+    private static Double parseDouble(String text) {
+        if (!ParseHints.mayBeNumber(text)) return null;
+        try {
+            double value = Double.parseDouble(text);
+            return Double.isFinite(value) ? value : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static LocalDate parseDate(String text, DateTimeFormatter formatter) {
+        try {
+            return LocalDate.parse(text, formatter);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /** Strict resolution needs the proleptic year {@code u}; {@code y} would also require an era. */
+    private static DateTimeFormatter strictFormatter(String pattern) {
+        StringBuilder strict = new StringBuilder(pattern.length());
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') quoted = !quoted;
+            strict.append(!quoted && c == 'y' ? 'u' : c);
+        }
+        try {
+            return DateTimeFormatter.ofPattern(strict.toString()).withResolverStyle(ResolverStyle.STRICT);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid date pattern " + pattern + ": " + e.getMessage(), e);
+        }
+    }
+
+    /** Positions of the fields of a fixed-width pattern made of yyyy, MM, dd and single-character separators. */
+    private record DateLayout(int length, int year, int month, int day, String separators) {
+
+        static DateLayout of(String pattern) {
+            int year = -1;
+            int month = -1;
+            int day = -1;
+            int i = 0;
+            while (i < pattern.length()) {
+                if (pattern.startsWith("yyyy", i) && year < 0 && !pattern.startsWith("yyyyy", i)) {
+                    year = i;
+                    i += 4;
+                } else if (pattern.startsWith("MM", i) && month < 0 && !pattern.startsWith("MMM", i)) {
+                    month = i;
+                    i += 2;
+                } else if (pattern.startsWith("dd", i) && day < 0 && !pattern.startsWith("ddd", i)) {
+                    day = i;
+                    i += 2;
+                } else if (!Character.isLetter(pattern.charAt(i)) && pattern.charAt(i) != '\''
+                        && !Character.isDigit(pattern.charAt(i))) {
+                    i++;
+                } else {
+                    return null;
+                }
+            }
+            if (year < 0 || month < 0 || day < 0) return null;
+            return new DateLayout(pattern.length(), year, month, day, separatorMask(pattern, year, month, day));
+        }
+
+        /** The pattern with each field's positions blanked out, to compare separators in place. */
+        private static String separatorMask(String pattern, int year, int month, int day) {
+            char[] mask = pattern.toCharArray();
+            for (int i = 0; i < 4; i++) mask[year + i] = 0;
+            for (int i = 0; i < 2; i++) {
+                mask[month + i] = 0;
+                mask[day + i] = 0;
+            }
+            return new String(mask);
+        }
+
+        LocalDate parse(String text) {
+            if (text.length() != length) return null;
+            for (int i = 0; i < length; i++) {
+                char expected = separators.charAt(i);
+                if (expected != 0 && text.charAt(i) != expected) return null;
+            }
+            int y = digits(text, year, 4);
+            int m = digits(text, month, 2);
+            int d = digits(text, day, 2);
+            if (y < 0 || m < 1 || m > 12 || d < 1 || d > 31) return null;
+            if (d > 28 && d > LocalDate.of(y, m, 1).lengthOfMonth()) return null;
+            return LocalDate.of(y, m, d);
+        }
+
+        private static int digits(String text, int from, int count) {
+            int value = 0;
+            for (int i = from; i < from + count; i++) {
+                int digit = text.charAt(i) - '0';
+                if (digit < 0 || digit > 9) return -1;
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.exception.ReportProcessingException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Arrays;
+
+@Getter
+@RequiredArgsConstructor
+public enum ExportFormat {
+    XLSX("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"),
+    CSV("csv", "text/csv"),
+    NDJSON("ndjson", "application/x-ndjson"),
+    COLUMNAR("dcc", "application/octet-stream");
+
+    private final String extension;
+    private final String mediaType;
+
+    public static ExportFormat fromParameter(String value) {
+        if (value == null || value.isBlank()) {
+            return XLSX;
+        }
+        return Arrays.stream(values())
+                .filter(format -> format.name().equalsIgnoreCase(value) || format.extension.equalsIgnoreCase(value))
+                .findFirst()
+                .orElseThrow(() -> new ReportProcessingException("Unsupported export format: " + value));
+    }
+}
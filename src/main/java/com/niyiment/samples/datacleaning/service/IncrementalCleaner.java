@@ -0,0 +1,336 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.config.IncrementalProperties;
+import com.niyiment.samples.datacleaning.dto.ValidationResult;
+import com.niyiment.samples.datacleaning.service.impl.DataValidationStep;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Re-cleans a new version of a feed against the previous run of the same feed.
+ * <p>
+ * Rows are matched by a 128-bit fingerprint of their raw values. The leading row-local steps only
+ * run over added or changed rows; unchanged rows take their previous output. Row-reducing steps
+ * keep row instances, so matches survive them, and validation only reads rows. {@link IncrementalStep}s
+ * fold their state from per-row contributions, reusing those of unchanged rows, and reuse whole
+ * output rows when the folded state equals the previous one. The first step that is none of these
+ * runs over every row and so does everything after it, which keeps the output identical to a full
+ * run.
+ * <p>
+ * Baselines outlive the jobs that built them. They are kept least recently used first, within
+ * {@code cleaning.incremental.max-feeds} and {@code max-memory}, and each holds an admission permit
+ * for its estimated size, so jobs are admitted against the memory baselines take. A baseline that
+ * finds no room in the budget is not kept, and the feed's next run cleans every row. A job that
+ * does not fit in the budget reclaims baselines, least recently used first, before it waits.
+ */
+@Slf4j
+@Service
+public class IncrementalCleaner {
+    /** Heap of a fingerprint key and its hash map node, on top of the rows a baseline holds. */
+    private static final long ENTRY_BYTES = 96;
+
+    private final CleaningPipeline cleaningPipeline;
+    private final IncrementalProperties properties;
+    private final AdmissionController admissionController;
+    private final LinkedHashMap<String, Baseline> baselines = new LinkedHashMap<>(16, 0.75f, true);
+    private long baselinesWeight;
+
+    public IncrementalCleaner(CleaningPipeline cleaningPipeline, IncrementalProperties properties,
+                              AdmissionController admissionController) {
+        this.cleaningPipeline = cleaningPipeline;
+        this.properties = properties;
+        this.admissionController = admissionController;
+        admissionController.addReclaimer(this::reclaim);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public IncrementalRun execute(String feed, List<Map<String, Object>> data, int[] sourceRows,
+                                  boolean fullRecompute) {
+        return execute(feed, data, sourceRows, fullRecompute, step -> false);
+    }
+
+    /** Runs like {@link #execute(String, List, int[], boolean)} without the steps {@code skipped} matches. */
+    public IncrementalRun execute(String feed, List<Map<String, Object>> data, int[] sourceRows,
+                                  boolean fullRecompute, Predicate<CleaningStep> skipped) {
+        List<CleaningStep> steps = cleaningPipeline.getSteps();
+        Baseline previous = fullRecompute ? null : baseline(feed);
+        Baseline next = new Baseline(cleaningPipeline.dataVersion());
+        if (previous != null && !previous.dataVersion.equals(next.dataVersion)) {
+            // outputs of the previous run were cleaned against other reference data
+            log.info("Data of the steps changed since the previous run of feed {}, recomputing every row", feed);
+            previous = null;
+        }
+
+        Map<Map<String, Object>, RowFingerprint> fingerprints = new IdentityHashMap<>();
+        Set<Map<String, Object>> unchanged = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        int prefixLength = 0;
+        while (prefixLength < steps.size() && steps.get(prefixLength).isRowLocal()) {
+            prefixLength++;
+        }
+
+        List<Map<String, Object>> current = runRowLocalPrefix(steps.subList(0, prefixLength), data, previous,
+                next, fingerprints, unchanged);
+        int reusedRows = unchanged.size();
+
+        ValidationResult validationResult = new ValidationResult();
+        boolean tracking = true;
+        for (int index = prefixLength; index < steps.size(); index++) {
+            CleaningStep step = steps.get(index);
+            CancellationToken.checkpoint();
+            if (skipped.test(step)) {
+                continue;
+            }
+            if (step instanceof DataValidationStep validationStep) {
+                validationResult = validationStep.validate(current, sourceRows);
+            } else if (step.dropsRows()) {
+                int[] retained = step.retainedRows(current);
+                current = SourceRows.select(current, retained);
+                sourceRows = SourceRows.select(sourceRows, retained);
+            } else if (tracking && step instanceof IncrementalStep<?, ?> incrementalStep) {
+                StepMemo previousMemo = previous == null ? null : previous.steps.get(index);
+                StepMemo memo = new StepMemo();
+                current = runIncrementalStep(incrementalStep, current, previousMemo, memo, fingerprints, unchanged);
+                next.steps.put(index, memo);
+            } else {
+                tracking = false;
+                current = CleaningPipeline.runRowPreservingStep(step, current, null);
+            }
+        }
+
+        keep(feed, next);
+        log.info("Incremental run of feed {}: reused {} of {} rows{}", feed, reusedRows, data.size(),
+                previous == null ? " (no previous run)" : "");
+        return new IncrementalRun(current, sourceRows, validationResult, reusedRows, data.size());
+    }
+
+    private synchronized Baseline baseline(String feed) {
+        return baselines.get(feed);
+    }
+
+    /** Replaces the feed's baseline with {@code next}, if it fits, dropping older baselines to make room. */
+    private synchronized void keep(String feed, Baseline next) {
+        drop(feed);
+        long weight = next.estimateWeight();
+        if (weight > properties.getMaxMemory().toBytes()) {
+            log.info("Not keeping the baseline of feed {}: about {} bytes exceed cleaning.incremental.max-memory",
+                    feed, weight);
+            return;
+        }
+        while (!baselines.isEmpty() && (baselines.size() >= properties.getMaxFeeds()
+                || baselinesWeight + weight > properties.getMaxMemory().toBytes())) {
+            drop(baselines.keySet().iterator().next());
+        }
+        AdmissionController.Permit permit = admissionController.tryAcquire("baseline of feed " + feed, weight);
+        while (permit == null && !baselines.isEmpty()) {
+            drop(baselines.keySet().iterator().next());
+            permit = admissionController.tryAcquire("baseline of feed " + feed, weight);
+        }
+        if (permit == null) {
+            log.info("Not keeping the baseline of feed {}: the admission budget has no room for {} bytes", feed, weight);
+            return;
+        }
+        next.permit = permit;
+        next.weight = weight;
+        baselines.put(feed, next);
+        baselinesWeight += weight;
+    }
+
+    /** Drops the least recently used baselines until {@code bytes} of admission budget are released. */
+    private synchronized long reclaim(long bytes) {
+        long freed = 0;
+        while (freed < bytes && !baselines.isEmpty()) {
+            // iterating, unlike get, leaves the access order alone
+            Map.Entry<String, Baseline> eldest = baselines.entrySet().iterator().next();
+            String feed = eldest.getKey();
+            freed += eldest.getValue().permit.reservation();
+            drop(feed);
+            log.info("Dropped the baseline of feed {} to admit a waiting job", feed);
+        }
+        return freed;
+    }
+
+    private void drop(String feed) {
+        Baseline dropped = baselines.remove(feed);
+        if (dropped != null) {
+            baselinesWeight -= dropped.weight;
+            dropped.permit.close();
+        }
+    }
+
+    private List<Map<String, Object>> runRowLocalPrefix(List<CleaningStep> prefix,
+                                                        List<Map<String, Object>> data,
+                                                        Baseline previous,
+                                                        Baseline next,
+                                                        Map<Map<String, Object>, RowFingerprint> fingerprints,
+                                                        Set<Map<String, Object>> unchanged) {
+        List<Map<String, Object>> result = new ArrayList<>(Collections.nCopies(data.size(), null));
+        List<Map<String, Object>> changedRows = new ArrayList<>();
+        List<Integer> changedPositions = new ArrayList<>();
+        RowFingerprint[] rowFingerprints = new RowFingerprint[data.size()];
+
+        for (int i = 0; i < data.size(); i++) {
+            CancellationToken.checkpoint(i);
+            RowFingerprint fingerprint = RowFingerprint.of(data.get(i));
+            rowFingerprints[i] = fingerprint;
+            Map<String, Object> cleaned = previous == null ? null : previous.prefixOutputs.get(fingerprint);
+            if (cleaned != null) {
+                result.set(i, cleaned);
+                unchanged.add(cleaned);
+            } else {
+                changedRows.add(data.get(i));
+                changedPositions.add(i);
+            }
+        }
+
+        for (CleaningStep step : prefix) {
+            if (changedRows.isEmpty()) break;
+            CancellationToken.checkpoint();
+            changedRows = step.process(changedRows);
+        }
+        for (int i = 0; i < changedPositions.size(); i++) {
+            result.set(changedPositions.get(i), changedRows.get(i));
+        }
+
+        for (int i = 0; i < result.size(); i++) {
+            fingerprints.put(result.get(i), rowFingerprints[i]);
+            next.prefixOutputs.putIfAbsent(rowFingerprints[i], result.get(i));
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <C, S> List<Map<String, Object>> runIncrementalStep(IncrementalStep<C, S> step,
+                                                                List<Map<String, Object>> rows,
+                                                                StepMemo previousMemo,
+                                                                StepMemo memo,
+                                                                Map<Map<String, Object>, RowFingerprint> fingerprints,
+                                                                Set<Map<String, Object>> unchanged) {
+        List<C> contributions = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            CancellationToken.checkpoint(contributions.size());
+            RowFingerprint fingerprint = fingerprints.get(row);
+            Object contribution = previousMemo != null && unchanged.contains(row)
+                    ? previousMemo.contributions.get(fingerprint)
+                    : null;
+            if (contribution == null) {
+                contribution = step.contribution(row);
+            }
+            contributions.add((C) contribution);
+            if (fingerprint != null) {
+                memo.contributions.putIfAbsent(fingerprint, contribution);
+            }
+        }
+
+        S state = step.fold(contributions);
+        memo.state = state;
+        boolean sameState = previousMemo != null && Objects.equals(previousMemo.state, state);
+
+        List<Map<String, Object>> result = new ArrayList<>(rows.size());
+        Set<Map<String, Object>> stillUnchanged = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Map<String, Object> row : rows) {
+            CancellationToken.checkpoint(result.size());
+            RowFingerprint fingerprint = fingerprints.get(row);
+            Map<String, Object> output = sameState && unchanged.contains(row)
+                    ? previousMemo.outputs.get(fingerprint)
+                    : null;
+            if (output != null) {
+                stillUnchanged.add(output);
+            } else {
+                output = step.apply(row, state);
+            }
+            result.add(output);
+            if (fingerprint != null) {
+                fingerprints.put(output, fingerprint);
+                memo.outputs.putIfAbsent(fingerprint, output);
+            }
+        }
+
+        unchanged.clear();
+        unchanged.addAll(stillUnchanged);
+        return result;
+    }
+
+    public record IncrementalRun(List<Map<String, Object>> cleanedData, int[] sourceRows,
+                                 ValidationResult validationResult, int reusedRows, int totalRows) {
+    }
+
+    private static final class Baseline {
+        private final String dataVersion;
+        private final Map<RowFingerprint, Map<String, Object>> prefixOutputs = new HashMap<>();
+        private final Map<Integer, StepMemo> steps = new HashMap<>();
+        private AdmissionController.Permit permit;
+        private long weight;
+
+        private Baseline(String dataVersion) {
+            this.dataVersion = dataVersion;
+        }
+
+        /** Rows shared by the prefix outputs and a step's outputs are counted twice, which errs on the safe side. */
+        private long estimateWeight() {
+            long weight = ResultCache.estimateRowsWeight(prefixOutputs.values()) + ENTRY_BYTES * prefixOutputs.size();
+            for (StepMemo memo : steps.values()) {
+                weight += ResultCache.estimateRowsWeight(memo.outputs.values())
+                        + ENTRY_BYTES * (memo.outputs.size() + memo.contributions.size());
+            }
+            return weight;
+        }
+    }
+
+    private static final class StepMemo {
+        private Object state;
+        private final Map<RowFingerprint, Object> contributions = new HashMap<>();
+        private final Map<RowFingerprint, Map<String, Object>> outputs = new HashMap<>();
+    }
+
+    /**
+     * Order-independent 128-bit hash of a row's keys, value types and values. The two halves use
+     * different seeds and finalizers, so a false match needs a simultaneous collision in both.
+     */
+    private record RowFingerprint(long high, long low) {
+        static RowFingerprint of(Map<String, Object> row) {
+            long high = row.size();
+            long low = ~(long) row.size();
+            for (Map.Entry<String, Object> entry : row.entrySet()) {
+                Object value = entry.getValue();
+                String cell = entry.getKey() + '\u0000'
+                        + (value == null ? "null" : value.getClass().getName() + '\u0000' + value);
+                high += mix(hash(cell, 0xcbf29ce484222325L));
+                low += mix(hash(cell, 0x84222325cbf29ce4L) * 0x9E3779B97F4A7C15L);
+            }
+            return new RowFingerprint(high, low);
+        }
+
+        private static long hash(String text, long seed) {
+            long hash = seed;
+            for (int i = 0; i < text.length(); i++) {
+                hash ^= text.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+
+        private static long mix(long value) {
+            value ^= value >>> 33;
+            value *= 0xff51afd7ed558ccdL;
+            value ^= value >>> 33;
+            value *= 0xc4ceb9fe1a85ec53L;
+            value ^= value >>> 33;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.niyiment.samples.datacleaning.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A global step whose state is folded, in row order, from independent per-row contributions.
+ * Incremental runs reuse the contributions of unchanged rows and, when the folded state matches
+ * the previous run, their output rows as well.
+ *
+ * @param <C> per-row contribution
+ * @param <S> folded step state
+ */
+public interface IncrementalStep<C, S> extends CleaningStep {
+    C contribution(Map<String, Object> row);
+
+    S fold(List<C> contributions);
+
+    Map<String, Object> apply(Map<String, Object> row, S state);
+}
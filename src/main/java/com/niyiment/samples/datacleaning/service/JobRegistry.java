@@ -0,0 +1,132 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.config.JobProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Cleaning jobs by id, so a session can pick up the result of a background job its upload started
+ * and a client can cancel a running job. Running jobs are always kept; admission control already
+ * bounds how many there are. Finished jobs stay until their session claims them, the retention time
+ * passes, or more than {@code cleaning.jobs.max-retained} of them are waiting.
+ */
+@Slf4j
+@Service
+public class JobRegistry {
+    private final JobProperties properties;
+    private final Map<String, CleaningJob> jobs = new ConcurrentHashMap<>();
+
+    public JobRegistry(JobProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        Gauge.builder("cleaning.jobs.running", this, registry -> registry.count(false))
+                .description("Cleaning jobs still running")
+                .register(meterRegistry);
+        Gauge.builder("cleaning.jobs.unclaimed", this, registry -> registry.count(true))
+                .description("Finished background jobs whose result was not picked up yet")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registers a job under {@code requestedId} when it is a UUID not in use, so a client can cancel a
+     * job whose request has not returned yet, and under a random id otherwise.
+     */
+    public CleaningJob register(String fileName, String requestedId) {
+        evictFinished();
+        while (true) {
+            String id = isUuid(requestedId) ? requestedId : UUID.randomUUID().toString();
+            CleaningJob job = new CleaningJob(id, fileName, properties.getMaxProcessingTime());
+            if (jobs.putIfAbsent(id, job) == null) {
+                return job;
+            }
+            requestedId = null;
+        }
+    }
+
+    /**
+     * Runs {@code work} on the calling thread as a job registered like {@link #register}, with the
+     * job's token bound, so it can be cancelled while the request that started it is still running.
+     * Cancelling also interrupts the thread, in case it is blocked waiting for admission or for a
+     * subtask. The job is dropped once {@code work} returns.
+     */
+    public <T> T runAttached(String fileName, String requestedId, Supplier<T> work) {
+        CleaningJob job = register(fileName, requestedId);
+        CancellationToken token = job.token();
+        token.onCancel(Thread.currentThread()::interrupt);
+        try (CancellationToken.Binding binding = token.bind()) {
+            return work.get();
+        } catch (RuntimeException e) {
+            throw Objects.requireNonNullElse(token.cancellation(), e);
+        } finally {
+            token.finish();
+            jobs.remove(job.id());
+            if (token.isCancelled()) {
+                // an interrupt from the cancel hook that no blocking call consumed
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /** Cancels the job if it is registered and still running; false otherwise. */
+    public boolean cancel(String id, String reason) {
+        CleaningJob job = id == null ? null : jobs.get(id);
+        if (job == null || job.isDone() || job.token().isCancelled()) {
+            return false;
+        }
+        log.info("Cancelling job {} ({}): {}", id, job.fileName(), reason);
+        job.cancel(reason);
+        return true;
+    }
+
+    public Optional<CleaningJob> get(String id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(jobs.get(id));
+    }
+
+    public void remove(String id) {
+        jobs.remove(id);
+    }
+
+    private static boolean isUuid(String id) {
+        if (id == null || id.length() != 36) {
+            return false;
+        }
+        try {
+            UUID.fromString(id);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private void evictFinished() {
+        long now = System.nanoTime();
+        long retention = properties.getRetention().toNanos();
+        jobs.values().removeIf(job -> job.isDone() && now - job.finishedNanos() > retention);
+
+        int excess = (int) count(true) - properties.getMaxRetained();
+        if (excess >= 0) {
+            jobs.values().stream()
+                    .filter(CleaningJob::isDone)
+                    .sorted(Comparator.comparingLong(CleaningJob::finishedNanos))
+                    .limit(excess + 1L)
+                    .toList()
+                    .forEach(job -> {
+                        log.debug("Dropping unclaimed result of job {} ({})", job.id(), job.fileName());
+                        jobs.remove(job.id());
+                    });
+        }
+    }
+
+    private long count(boolean done) {
+        return jobs.values().stream().filter(job -> job.isDone() == done).count();
+    }
+}
@@ -0,0 +1,144 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.exception.ReportProcessingException;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Structured concurrency for the independent parts of one job. Subtasks forked into a scope run on
+ * virtual threads of their own and cannot outlive it: {@link #join()} waits for all of them, the
+ * first failure cancels the rest and is rethrown to the job, and closing the scope cancels whatever
+ * is still running and waits for it, so an exception or an interrupt in the job never leaves work
+ * behind. This is the shutdown-on-failure policy of {@code StructuredTaskScope}, which is still a
+ * preview API on Java 21.
+ * <p>
+ * Subtasks run under the {@link CancellationToken} bound to the forking thread, so cancelling the
+ * job stops them at their checkpoints too. Subtasks may only read what they are given; the
+ * pipeline's copy-on-write steps make it safe to hand them a step's input while later steps go on
+ * producing new rows.
+ */
+public final class JobScope implements AutoCloseable {
+    private final String name;
+    private final ExecutorService executor;
+    private final List<Subtask<?>> subtasks = new CopyOnWriteArrayList<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final Thread owner = Thread.currentThread();
+
+    private JobScope(String name) {
+        this.name = name;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+
+    public static JobScope open(String name) {
+        return new JobScope(name);
+    }
+
+    public <T> Subtask<T> fork(String taskName, Callable<T> task) {
+        checkOwner();
+        Subtask<T> subtask = new Subtask<>(taskName);
+        subtasks.add(subtask);
+        CancellationToken token = CancellationToken.current();
+        subtask.future = executor.submit(() -> {
+            try (CancellationToken.Binding ignored = token == null ? () -> { } : token.bind()) {
+                return task.call();
+            } catch (Throwable e) {
+                if (failure.compareAndSet(null, e)) {
+                    cancelAll();
+                }
+                throw e;
+            }
+        });
+        if (failure.get() != null) {
+            subtask.future.cancel(true);
+        }
+        return subtask;
+    }
+
+    /**
+     * Waits for every forked subtask. Throws the first failure, as is when it is a
+     * {@link ReportProcessingException} and wrapped in one otherwise.
+     */
+    public void join() {
+        checkOwner();
+        try {
+            for (Subtask<?> subtask : subtasks) {
+                try {
+                    subtask.future.get();
+                } catch (ExecutionException | CancellationException ignored) {
+                    // the recorded failure is thrown below, whichever subtask noticed it first
+                }
+            }
+        } catch (InterruptedException e) {
+            cancelAll();
+            Thread.currentThread().interrupt();
+            throw new ReportProcessingException("Job " + name + " was interrupted", e);
+        }
+        Throwable first = failure.get();
+        if (first instanceof ReportProcessingException reportProcessingException) {
+            throw reportProcessingException;
+        }
+        if (first != null) {
+            throw new ReportProcessingException("Error processing file: " + first.getMessage(), first);
+        }
+        for (Subtask<?> subtask : subtasks) {
+            subtask.joined = true;
+        }
+    }
+
+    @Override
+    public void close() {
+        cancelAll();
+        executor.close();
+    }
+
+    private void cancelAll() {
+        for (Subtask<?> subtask : subtasks) {
+            if (subtask.future != null) {
+                subtask.future.cancel(true);
+            }
+        }
+    }
+
+    private void checkOwner() {
+        if (Thread.currentThread() != owner) {
+            throw new IllegalStateException("Job scope " + name + " is used outside the thread that opened it");
+        }
+    }
+
+    /** Result of a forked subtask, readable once its scope has joined. */
+    public static final class Subtask<T> implements Supplier<T> {
+        private final String name;
+        private volatile Future<T> future;
+        private volatile boolean joined;
+
+        private Subtask(String name) {
+            this.name = name;
+        }
+
+        /** A subtask that was never forked because its value was already at hand. */
+        public static <T> Subtask<T> completed(T value) {
+            Subtask<T> subtask = new Subtask<>("completed");
+            subtask.future = CompletableFuture.completedFuture(value);
+            subtask.joined = true;
+            return subtask;
+        }
+
+        @Override
+        public T get() {
+            if (!joined) {
+                throw new IllegalStateException("Subtask " + name + " was read before its scope joined");
+            }
+            return future.resultNow();
+        }
+    }
+}
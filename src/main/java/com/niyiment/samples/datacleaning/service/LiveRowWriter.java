@@ -0,0 +1,128 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.niyiment.samples.datacleaning.dto.CleanedDataResult;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes cleaned rows to a client while the upload they come from is still being processed, as
+ * NDJSON ({@code {"event":"row","data":{...}}} per line) or as server-sent events ({@code event: row}
+ * and a {@code data:} line). Rows that only went through the leading row-local steps are sent as
+ * {@code provisional} events as soon as their batch is cleaned; when the steps that need every row
+ * have run, a {@code final} event announces how many rows follow and the cleaned rows replace them
+ * as {@code row} events. Uploads whose pipeline is row-local throughout send {@code row} events
+ * only. A {@code summary} event ends a successful stream and an {@code error} event a failed one.
+ * <p>
+ * Every batch is flushed and written with blocking I/O, so a client that reads slowly stalls the
+ * cleaner, which stalls the reader of the upload once the batch queue is full: memory stays bounded
+ * by the queue, never by how far the client is behind.
+ */
+public final class LiveRowWriter {
+    private final JsonGenerator generator;
+    private final boolean serverSentEvents;
+    private final String sourceRowField;
+    private long rowsWritten;
+
+    LiveRowWriter(ObjectMapper objectMapper, OutputStream out, boolean serverSentEvents, String sourceRowField)
+            throws IOException {
+        this.generator = objectMapper.createGenerator(out);
+        this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.generator.setRootValueSeparator(null);
+        this.serverSentEvents = serverSentEvents;
+        this.sourceRowField = sourceRowField;
+    }
+
+    /** Rows of one batch; {@code sourceRows} holds the source row of each, by position. */
+    void rows(List<Map<String, Object>> rows, int[] sourceRows, boolean provisional) throws IOException {
+        String event = provisional ? "provisional" : "row";
+        for (int i = 0; i < rows.size(); i++) {
+            CancellationToken.checkpoint(rowsWritten++);
+            startEvent(event);
+            writeRow(rows.get(i), rows.get(i).keySet(), sourceRows == null ? -1 : sourceRows[i]);
+            endEvent();
+        }
+        generator.flush();
+    }
+
+    /** Replaces the provisional rows sent so far with the rows of the finished result. */
+    void finalRows(CleanedDataResult result) throws IOException {
+        List<Map<String, Object>> rows = result.cleanedData();
+        int[] sourceRows = result.sourceRows() != null && result.sourceRows().length == rows.size()
+                ? result.sourceRows() : null;
+        startEvent("final");
+        generator.writeStartObject();
+        generator.writeNumberField("rows", rows.size());
+        generator.writeEndObject();
+        endEvent();
+        for (int i = 0; i < rows.size(); i++) {
+            CancellationToken.checkpoint(rowsWritten++);
+            startEvent("row");
+            writeRow(rows.get(i), result.columns(), sourceRows == null ? -1 : sourceRows[i]);
+            endEvent();
+        }
+        generator.flush();
+    }
+
+    void summary(CleanedDataResult result) throws IOException {
+        startEvent("summary");
+        generator.writeStartObject();
+        if (result.dataQualityReport() != null) {
+            generator.writeObjectField("totalRecords", result.dataQualityReport().totalRecords());
+            generator.writeObjectField("processedRecords", result.dataQualityReport().processedRecords());
+            generator.writeObjectField("columnTypes", result.dataQualityReport().columnTypes());
+        }
+        generator.writeObjectField("columns", result.columns());
+        generator.writeNumberField("validationErrors",
+                result.validationErrors() == null ? 0 : result.validationErrors().size());
+        generator.writeObjectField("pipelinePlan", result.pipelinePlan());
+        generator.writeEndObject();
+        endEvent();
+        generator.flush();
+    }
+
+    /** Ends a stream whose response is already committed, so the failure can no longer be a status code. */
+    public void error(String message) throws IOException {
+        startEvent("error");
+        generator.writeStartObject();
+        generator.writeStringField("message", message);
+        generator.writeEndObject();
+        endEvent();
+        generator.flush();
+    }
+
+    private void writeRow(Map<String, Object> row, Iterable<String> columns, int sourceRow) throws IOException {
+        generator.writeStartObject();
+        if (sourceRow >= 0) generator.writeNumberField(sourceRowField, sourceRow);
+        for (String column : columns) {
+            generator.writeFieldName(column);
+            generator.writeObject(row.get(column));
+        }
+        generator.writeEndObject();
+    }
+
+    private void startEvent(String event) throws IOException {
+        if (serverSentEvents) {
+            generator.writeRaw("event: ");
+            generator.writeRaw(event);
+            generator.writeRaw("\ndata: ");
+        } else {
+            generator.writeStartObject();
+            generator.writeStringField("event", event);
+            generator.writeFieldName("data");
+        }
+    }
+
+    private void endEvent() throws IOException {
+        if (serverSentEvents) {
+            generator.writeRaw("\n\n");
+        } else {
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+    }
+}
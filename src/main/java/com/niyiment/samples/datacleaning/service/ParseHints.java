@@ -0,0 +1,40 @@
+package com.niyiment.samples.datacleaning.service;
+
+/**
+ * Cheap character checks run before the JDK parsers, so text cells are not turned down by throwing
+ * and catching an exception per parser and cell. Each check accepts a superset of what the parser
+ * it guards accepts: it only ever skips parses that would have failed.
+ */
+public final class ParseHints {
+
+    private ParseHints() {
+    }
+
+    /** Could {@code Long.parseLong} or {@code Double.parseDouble} accept this text? */
+    public static boolean mayBeNumber(String text) {
+        int start = 0;
+        while (start < text.length() && text.charAt(start) <= ' ') {
+            start++;
+        }
+        if (start == text.length()) return false;
+        char first = text.charAt(start);
+        return (first >= '0' && first <= '9') || first == '-' || first == '+' || first == '.';
+    }
+
+    /** Could a numeric date pattern (days, months and years separated by '/', '-' or '.') accept this text? */
+    public static boolean mayBeDate(String text) {
+        if (text.isEmpty()) return false;
+        char first = text.charAt(0);
+        if ((first < '0' || first > '9') && first != '+') return false;
+        boolean separated = false;
+        for (int i = 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '/' || c == '-' || c == '.') {
+                separated = true;
+            } else if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return separated;
+    }
+}
@@ -0,0 +1,43 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.config.CleaningPipelineProperties.PlannerMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+public record PipelinePlan(PlannerMode mode, List<PlannedStep> steps) {
+
+    /**
+     * One step of the plan. {@code columns} is {@code null} when the step runs over every column
+     * and empty when the planner proved the step cannot change anything.
+     */
+    public record PlannedStep(String name, CleaningStep step, Set<String> columns, String note) {
+        public boolean isSkipped() {
+            return columns != null && columns.isEmpty();
+        }
+
+        public String describe() {
+            String scope = columns == null ? "all columns" : isSkipped() ? "skipped" : "columns " + columns;
+            return note == null ? name + " (" + scope + ")" : name + " (" + scope + "; " + note + ")";
+        }
+    }
+
+    /** This plan with the steps {@code skip} matches marked skipped for the reason given by {@code note}. */
+    public PipelinePlan skipping(Predicate<CleaningStep> skip, String note) {
+        List<PlannedStep> planned = new ArrayList<>(steps.size());
+        for (PlannedStep step : steps) {
+            planned.add(skip.test(step.step()) ? new PlannedStep(step.name(), step.step(), Set.of(), note) : step);
+        }
+        return new PipelinePlan(mode, planned);
+    }
+
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < steps.size(); i++) {
+            lines.add((i + 1) + ". " + steps.get(i).describe());
+        }
+        return lines;
+    }
+}
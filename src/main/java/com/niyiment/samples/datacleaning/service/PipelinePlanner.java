@@ -0,0 +1,136 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.config.CleaningPipelineProperties.PlannerMode;
+import com.niyiment.samples.datacleaning.service.PipelinePlan.PlannedStep;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds a {@link PipelinePlan} from the configured steps and a single read-only probe of the data.
+ * <p>
+ * Row-local steps are narrowed to the columns they can change and skipped when there are none.
+ * The probe only describes the input, so once a step may have touched a column later steps treat
+ * that column as unknown. Row-reducing steps are hoisted ahead of the row-local steps in front of
+ * them; because a row-local step can turn distinct rows into equal ones, the original position is
+ * kept whenever one of the steps it jumped over still does work.
+ */
+@Slf4j
+@Component
+public class PipelinePlanner {
+
+    public PipelinePlan strictPlan(List<String> names, List<CleaningStep> steps) {
+        List<PlannedStep> planned = new ArrayList<>();
+        for (int i = 0; i < steps.size(); i++) {
+            planned.add(new PlannedStep(names.get(i), steps.get(i), null, null));
+        }
+        return new PipelinePlan(PlannerMode.STRICT, planned);
+    }
+
+    public PipelinePlan costBasedPlan(List<String> names, List<CleaningStep> steps, List<Map<String, Object>> data) {
+        Map<String, ColumnProfile> profiles = probe(data);
+        List<PlannedStep> planned = new ArrayList<>();
+
+        for (int i = 0; i < steps.size(); i++) {
+            CleaningStep step = steps.get(i);
+            if (step.dropsRows()) {
+                planned.add(new PlannedStep(names.get(i), step, null, null));
+            } else if (step.isRowLocal()) {
+                Set<String> columns = new LinkedHashSet<>();
+                profiles.forEach((column, profile) -> {
+                    if (step.canChange(profile)) columns.add(column);
+                });
+                columns.forEach(column -> profiles.put(column, ColumnProfile.unknown()));
+                planned.add(new PlannedStep(names.get(i), step, columns,
+                        columns.isEmpty() ? "no column it can change" : null));
+            } else {
+                planned.add(new PlannedStep(names.get(i), step, null, null));
+                profiles.replaceAll((column, profile) -> ColumnProfile.unknown());
+            }
+        }
+
+        return new PipelinePlan(PlannerMode.COST_BASED, hoistRowReducingSteps(planned));
+    }
+
+    private List<PlannedStep> hoistRowReducingSteps(List<PlannedStep> planned) {
+        List<PlannedStep> result = new ArrayList<>(planned);
+        for (int i = 0; i < result.size(); i++) {
+            PlannedStep reducing = result.get(i);
+            if (!reducing.step().dropsRows() || reducing.note() != null) continue;
+
+            int target = i;
+            while (target > 0 && result.get(target - 1).step().isRowLocal()) {
+                target--;
+            }
+            if (target == i) continue;
+
+            boolean passedStepsDoWork = result.subList(target, i).stream().anyMatch(step -> !step.isSkipped());
+            if (passedStepsDoWork) {
+                result.set(i, new PlannedStep(reducing.name(), reducing.step(), null,
+                        "repeated, earlier steps may create new duplicates"));
+            } else {
+                result.remove(i);
+            }
+            result.add(target, new PlannedStep(reducing.name(), reducing.step(), null, "hoisted"));
+        }
+        return result;
+    }
+
+    private Map<String, ColumnProfile> probe(List<Map<String, Object>> data) {
+        Map<String, long[]> counts = new LinkedHashMap<>();
+        for (Map<String, Object> row : data) {
+            for (Map.Entry<String, Object> entry : row.entrySet()) {
+                long[] columnCounts = counts.computeIfAbsent(entry.getKey(), k -> new long[5]);
+                Object value = entry.getValue();
+                columnCounts[0]++;
+                if (value == null) {
+                    columnCounts[2]++;
+                } else if (value instanceof String text) {
+                    columnCounts[1]++;
+                    if (text.trim().isEmpty() || text.equalsIgnoreCase("null")) columnCounts[2]++;
+                    if (!text.equals("N/A")) {
+                        if (hasSpecialCharacters(text)) columnCounts[3]++;
+                        if (hasIrregularWhitespace(text)) columnCounts[4]++;
+                    }
+                }
+            }
+        }
+
+        Map<String, ColumnProfile> profiles = new LinkedHashMap<>();
+        counts.forEach((column, c) -> profiles.put(column, new ColumnProfile(c[0], c[1], c[2], c[3], c[4])));
+        log.debug("Pipeline probe over {} rows: {}", data.size(), profiles);
+        return profiles;
+    }
+
+    private static boolean hasSpecialCharacters(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean alphanumeric = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+            if (!alphanumeric && !isRegexWhitespace(c)) return true;
+        }
+        return false;
+    }
+
+    private static boolean hasIrregularWhitespace(String text) {
+        if (text.isEmpty()) return false;
+        if (text.charAt(0) <= ' ' || text.charAt(text.length() - 1) <= ' ') return true;
+        boolean previousWhitespace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean whitespace = isRegexWhitespace(c);
+            if (whitespace && (c != ' ' || previousWhitespace)) return true;
+            previousWhitespace = whitespace;
+        }
+        return false;
+    }
+
+    private static boolean isRegexWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,233 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.config.PreviewProperties;
+import com.niyiment.samples.datacleaning.config.PreviewProperties.Sampling;
+import com.niyiment.samples.datacleaning.dto.CleanedDataResult;
+import com.niyiment.samples.datacleaning.dto.ProcessingOptions;
+import com.niyiment.samples.datacleaning.exception.ReportProcessingException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts uploads as background {@link CleaningJob}s that publish a provisional result first. The
+ * configured steps run over the first rows of the file, or a reservoir sample of it, so type
+ * inference, outlier bounds and the report are decided from those rows only. The full job keeps
+ * going and its result replaces the preview once the session picks it up.
+ * <p>
+ * The upload is moved to a temporary file before the request returns, because the servlet
+ * container deletes multipart parts at the end of the request. The job holds its admission permit
+ * until it finishes.
+ */
+@Slf4j
+@Service
+public class PreviewService {
+    private final DataProcessingService processingService;
+    private final ResultCache resultCache;
+    private final ResultCodec resultCodec;
+    private final AdmissionController admissionController;
+    private final JobRegistry jobRegistry;
+    private final PreviewProperties properties;
+    private final ExecutorService jobExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("cleaning-job-", 0).factory());
+    private final Timer firstResultTimer;
+
+    public PreviewService(DataProcessingService processingService,
+                          ResultCache resultCache,
+                          ResultCodec resultCodec,
+                          AdmissionController admissionController,
+                          JobRegistry jobRegistry,
+                          PreviewProperties properties,
+                          MeterRegistry meterRegistry) {
+        this.processingService = processingService;
+        this.resultCache = resultCache;
+        this.resultCodec = resultCodec;
+        this.admissionController = admissionController;
+        this.jobRegistry = jobRegistry;
+        this.properties = properties;
+        this.firstResultTimer = Timer.builder("cleaning.preview.first-result")
+                .description("Time from upload until the preview, or the full result if it came first, was available")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public CleaningJob start(MultipartFile file, ProcessingOptions options) {
+        processingService.validateFileInput(file);
+        String filename = Optional.ofNullable(file.getOriginalFilename())
+                .orElseThrow(() -> new ReportProcessingException("File name cannot be null"));
+        UploadFormat uploadFormat = UploadFormat.fromFileName(filename);
+        DeclaredSchema.Reader schemaReader = processingService.schemaReader(options);
+        RowSelection selection = RowSelection.of(options);
+
+        String cacheKey = processingService.cacheKey(file, options);
+        if (cacheKey != null) {
+            Optional<CleanedDataResult> cached = resultCache.get(cacheKey);
+            if (cached.isPresent()) {
+                log.debug("Returning cached result for {}", filename);
+                CleaningJob job = jobRegistry.register(filename, options.jobId());
+                job.complete(resultCodec.encode(cached.get()));
+                return job;
+            }
+        }
+
+        AdmissionController.Permit permit = admissionController.acquire(filename,
+                admissionController.estimate(file, uploadFormat));
+        Path upload;
+        try {
+            upload = Files.createTempFile("upload-", "-" + Path.of(filename).getFileName());
+            file.transferTo(upload);
+        } catch (IOException e) {
+            permit.close();
+            throw new ReportProcessingException("Error reading file: " + e.getMessage(), e);
+        }
+
+        CleaningJob job = jobRegistry.register(filename, options.jobId());
+        String feed = Optional.ofNullable(options.feed()).filter(name -> !name.isBlank()).orElse(filename);
+        jobExecutor.submit(() -> run(job, upload, uploadFormat, feed, options, selection, schemaReader, cacheKey, permit));
+        log.debug("Started job {} for {}", job.id(), filename);
+        return job;
+    }
+
+    private void run(CleaningJob job, Path upload, UploadFormat uploadFormat, String feed,
+                     ProcessingOptions options, RowSelection selection, DeclaredSchema.Reader schemaReader,
+                     String cacheKey, AdmissionController.Permit permit) {
+        job.token().onCancel(Thread.currentThread()::interrupt);
+        try (permit; CancellationToken.Binding binding = job.token().bind(); JobScope scope = JobScope.open("preview")) {
+            List<Map<String, Object>> rawData = new ArrayList<>();
+            SourceRows sourceRows = new SourceRows();
+            PreviewSampler sampler = new PreviewSampler(job, rawData, sourceRows, scope, options);
+            try (InputStream inputStream = processingService.decode(uploadFormat, Files.newInputStream(upload))) {
+                processingService.readRows(uploadFormat.format(), inputStream, selection, schemaReader, sampler);
+            }
+            if (rawData.isEmpty()) {
+                throw new ReportProcessingException(DataProcessingService.noRowsMessage(selection));
+            }
+            sampler.finish();
+
+            CleanedDataResult result = processingService.cleanAndAnalyzeData(rawData, sourceRows.toArray(), feed, options,
+                    selection, schemaReader);
+            scope.join();
+            if (cacheKey != null) {
+                resultCache.put(cacheKey, result);
+            }
+            job.complete(resultCodec.encode(result));
+            recordFirstResult(job);
+            log.info("Job {} finished {} rows of {} in {} ms", job.id(), rawData.size(), job.fileName(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - job.startedNanos()));
+        } catch (Exception e) {
+            Exception failure = Objects.requireNonNullElse(job.token().cancellation(), e);
+            log.error("Job {} failed: {}", job.id(), failure.getMessage());
+            job.fail(failure);
+        } finally {
+            try {
+                Files.deleteIfExists(upload);
+            } catch (IOException e) {
+                log.warn("Could not delete upload {}: {}", upload, e.getMessage());
+            }
+        }
+    }
+
+    private void recordFirstResult(CleaningJob job) {
+        if (job.preview().isEmpty()) {
+            firstResultTimer.record(System.nanoTime() - job.startedNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+    }
+
+    /**
+     * Collects the parsed rows and picks the preview rows on the way. The first rows are cleaned as
+     * soon as they are parsed, in a subtask so parsing goes on; a reservoir sample is cleaned once
+     * the whole file is parsed. Files no larger than the preview get no preview.
+     */
+    private final class PreviewSampler implements SourceRowConsumer {
+        private final CleaningJob job;
+        private final List<Map<String, Object>> rows;
+        private final SourceRows sourceRows;
+        private final JobScope scope;
+        private final ProcessingOptions options;
+        private final int size = Math.max(properties.getRows(), 1);
+        private final int[] reservoir = new int[size];
+        private final SplittableRandom random = new SplittableRandom(properties.getSeed());
+        private boolean previewed;
+
+        private PreviewSampler(CleaningJob job, List<Map<String, Object>> rows, SourceRows sourceRows, JobScope scope,
+                               ProcessingOptions options) {
+            this.job = job;
+            this.rows = rows;
+            this.sourceRows = sourceRows;
+            this.scope = scope;
+            this.options = options;
+        }
+
+        @Override
+        public void accept(Map<String, Object> row, int sourceRow) {
+            int index = rows.size();
+            rows.add(row);
+            sourceRows.add(sourceRow);
+            if (properties.getSampling() == Sampling.FIRST) {
+                // the row after the first N proves the file is larger than the preview
+                if (index == size && !previewed) {
+                    preview(List.copyOf(rows.subList(0, size)), Arrays.copyOf(sourceRows.toArray(), size), "first");
+                }
+            } else if (index < size) {
+                reservoir[index] = index;
+            } else {
+                int slot = random.nextInt(index + 1);
+                if (slot < size) reservoir[slot] = index;
+            }
+        }
+
+        private void finish() {
+            if (properties.getSampling() == Sampling.RESERVOIR && rows.size() > size) {
+                int[] sample = reservoir.clone();
+                Arrays.sort(sample);
+                preview(SourceRows.select(rows, sample), SourceRows.select(sourceRows.toArray(), sample),
+                        "a uniform sample of");
+            }
+        }
+
+        private void preview(List<Map<String, Object>> sample, int[] sampleSourceRows, String selection) {
+            previewed = true;
+            String note = String.format("Preview: %s %d rows; types, outlier bounds and statistics are provisional",
+                    selection, sample.size());
+            // a failed preview only loses the preview: it must not shut the scope down under the full run
+            scope.fork("preview", () -> {
+                try {
+                    CleanedDataResult preview = processingService.cleanDetached(sample, sampleSourceRows, List.of(note), options);
+                    if (!job.isDone()) {
+                        job.publishPreview(resultCodec.encode(preview));
+                        firstResultTimer.record(System.nanoTime() - job.startedNanos(), TimeUnit.NANOSECONDS);
+                    }
+                } catch (Exception e) {
+                    log.warn("Preview of job {} failed: {}", job.id(), e.getMessage());
+                }
+                return null;
+            });
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.config.ReferenceDataProperties;
+import com.niyiment.samples.datacleaning.service.kernel.ReferenceIndex;
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The reference tables under {@code cleaning.reference.tables}, loaded once at startup into
+ * {@link ReferenceIndex}es that every job shares. The files are polled for changes; a changed file is
+ * loaded into a new index next to the current one, which is swapped in when it is complete. A job
+ * keeps the tables it first looked up against until it ends, so a reload never pauses one and never
+ * changes the tables under it, even though row-local steps see a job's rows in batches. A file that
+ * fails to reload keeps its previous index.
+ */
+@Slf4j
+@Service
+public class ReferenceTables {
+    private final List<Watched> tables = new ArrayList<>();
+    private final Map<CancellationToken, List<Table>> pinned = Collections.synchronizedMap(new WeakHashMap<>());
+    private final ScheduledExecutorService reloader;
+
+    public ReferenceTables(ReferenceDataProperties properties, MeterRegistry meterRegistry) {
+        properties.getTables().forEach((name, definition) -> {
+            Watched watched = new Watched(name, definition);
+            try {
+                watched.current = load(name, definition);
+            } catch (IOException | RuntimeException e) {
+                throw new IllegalArgumentException("Invalid reference table " + name + ": " + e.getMessage(), e);
+            }
+            tables.add(watched);
+            Gauge.builder("cleaning.reference.rows", watched, table -> table.current.index().size())
+                    .description("Rows of a reference table")
+                    .tag("table", name)
+                    .register(meterRegistry);
+        });
+        if (tables.isEmpty()) {
+            this.reloader = null;
+        } else {
+            this.reloader = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofVirtual().name("reference-reload").factory());
+            long interval = properties.getReloadCheckInterval().toMillis();
+            reloader.scheduleWithFixedDelay(this::reloadChanged, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** The tables as they are now, in configuration order. */
+    public List<Table> current() {
+        return tables.stream().map(watched -> watched.current).toList();
+    }
+
+    /** The tables of the running job, pinned by its {@link CancellationToken}; the current ones outside a job. */
+    public List<Table> forCurrentJob() {
+        CancellationToken token = CancellationToken.current();
+        return token == null || tables.isEmpty() ? current() : pinned.computeIfAbsent(token, ignored -> current());
+    }
+
+    public boolean isEmpty() {
+        return tables.isEmpty();
+    }
+
+    /**
+     * Identifies the content and definition of every table, so results joined against other content,
+     * or into other columns, are not reused.
+     */
+    public String version() {
+        return tables.stream()
+                .map(Watched::version)
+                .collect(Collectors.joining(","));
+    }
+
+    void reloadChanged() {
+        for (Watched watched : tables) {
+            try {
+                FileStamp stamp = FileStamp.of(Path.of(watched.definition.getPath()));
+                if (stamp.equals(watched.current.stamp()) || stamp.equals(watched.failed)) {
+                    continue;
+                }
+                Table table = load(watched.name, watched.definition);
+                if (!table.contentHash().equals(watched.current.contentHash())) {
+                    log.info("Reloaded reference table {}: {} rows", watched.name, table.index().size());
+                }
+                watched.current = table;
+                watched.failed = null;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Keeping reference table {} as it was, reloading it failed: {}", watched.name, e.getMessage());
+                try {
+                    watched.failed = FileStamp.of(Path.of(watched.definition.getPath()));
+                } catch (IOException ignored) {
+                    watched.failed = null;
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+    }
+
+    private static Table load(String name, ReferenceDataProperties.Table definition) throws IOException {
+        if (definition.getPath() == null || definition.getKeyColumn() == null) {
+            throw new IllegalArgumentException("path and key-column are required");
+        }
+        Path path = Path.of(definition.getPath());
+        long startNanos = System.nanoTime();
+        FileStamp stamp = FileStamp.of(path);
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(path), digest);
+             CSVReader reader = new CSVReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String[] header = reader.readNext();
+            if (header == null) {
+                throw new IllegalArgumentException(path + " is empty");
+            }
+            List<String> headers = Arrays.stream(header).map(DataProcessingService::standardizeColumnName).toList();
+            String keyColumn = DataProcessingService.standardizeColumnName(definition.getKeyColumn());
+            int[] positions = positions(headers, keyColumn, definition.getColumns());
+
+            ReferenceIndex.Builder builder = ReferenceIndex.builder(positions.length, definition.isIgnoreCase());
+            String[] cells = new String[positions.length];
+            String[] record;
+            while ((record = reader.readNext()) != null) {
+                for (int i = 0; i < positions.length; i++) {
+                    cells[i] = positions[i] < record.length ? record[positions[i]].trim() : "";
+                }
+                if (!cells[0].isEmpty()) {
+                    builder.add(cells);
+                }
+            }
+            ReferenceIndex index = builder.build();
+
+            String prefix = definition.getPrefix() == null ? name + "_" : definition.getPrefix();
+            String[] targets = new String[positions.length - 1];
+            for (int i = 1; i < positions.length; i++) {
+                targets[i - 1] = prefix + headers.get(positions[i]);
+            }
+            String lookupColumn = definition.getLookupColumn() == null
+                    ? keyColumn : DataProcessingService.standardizeColumnName(definition.getLookupColumn());
+            log.info("Loaded reference table {} from {}: {} rows, {} repeated keys skipped, {} KB in {} ms",
+                    name, path, index.size(), index.duplicates(), index.sizeInBytes() / 1024,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            return new Table(name, lookupColumn, targets, definition.getMatchColumn(), index, stamp,
+                    HexFormat.of().formatHex(digest.digest(), 0, 8));
+        } catch (CsvValidationException e) {
+            throw new IOException("Invalid CSV in " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    /** Header positions of the key, then of the copied columns. */
+    private static int[] positions(List<String> headers, String keyColumn, List<String> columns) {
+        int key = headers.indexOf(keyColumn);
+        if (key < 0) {
+            throw new IllegalArgumentException("key column " + keyColumn + " is not in the file");
+        }
+        List<Integer> positions = new ArrayList<>(List.of(key));
+        if (columns.isEmpty()) {
+            for (int i = 0; i < headers.size(); i++) {
+                if (i != key) positions.add(i);
+            }
+        } else {
+            for (String column : columns) {
+                int position = headers.indexOf(DataProcessingService.standardizeColumnName(column));
+                if (position < 0) {
+                    throw new IllegalArgumentException("column " + column + " is not in the file");
+                }
+                positions.add(position);
+            }
+        }
+        return positions.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * One loaded version of a reference table.
+     *
+     * @param targets names of the copied columns in the enriched rows, by index column minus one
+     */
+    public record Table(String name, String lookupColumn, String[] targets, String matchColumn,
+                        ReferenceIndex index, FileStamp stamp, String contentHash) {
+
+        /** The key a cleaned row holds, as the text the file would have; null when the row has none. */
+        public String keyOf(Map<String, Object> row) {
+            Object value = row.get(lookupColumn);
+            if (value == null) {
+                return null;
+            }
+            // type inference turns "1043" into a number; a whole double would otherwise read "1043.0"
+            if (value instanceof Double number && number == Math.rint(number) && !Double.isInfinite(number)) {
+                return Math.abs(number) < 0x1p53 ? Long.toString(number.longValue())
+                        : BigDecimal.valueOf(number).toBigInteger().toString();
+            }
+            String key = value.toString().trim();
+            return key.isEmpty() ? null : key;
+        }
+    }
+
+    record FileStamp(long lastModified, long size) {
+        static FileStamp of(Path path) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new FileStamp(attributes.lastModifiedTime().toMillis(), attributes.size());
+        }
+    }
+
+    private static final class Watched {
+        private final String name;
+        private final ReferenceDataProperties.Table definition;
+        private volatile Table current;
+        private FileStamp failed;
+
+        private Watched(String name, ReferenceDataProperties.Table definition) {
+            this.name = name;
+            this.definition = definition;
+        }
+
+        /** The loaded content, and the definition as resolved against it: key, lookup, copied and match columns. */
+        private String version() {
+            Table table = current;
+            return table.name() + "@" + table.contentHash() + "[key=" + definition.getKeyColumn()
+                    + ",lookup=" + table.lookupColumn() + ",columns=" + String.join("|", table.targets())
+                    + ",match=" + table.matchColumn() + ",ignoreCase=" + definition.isIgnoreCase() + "]";
+        }
+    }
+}
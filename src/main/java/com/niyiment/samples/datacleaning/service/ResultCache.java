@@ -0,0 +1,322 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.config.CleaningPipelineProperties;
+import com.niyiment.samples.datacleaning.config.ClusteringProperties;
+import com.niyiment.samples.datacleaning.config.ImputationProperties;
+import com.niyiment.samples.datacleaning.config.ReportProperties;
+import com.niyiment.samples.datacleaning.config.ResultCacheProperties;
+import com.niyiment.samples.datacleaning.config.TypeInferenceProperties;
+import com.niyiment.samples.datacleaning.dto.CleanedDataResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of cleaning results. Keys are a SHA-256 over the effective pipeline
+ * configuration and the uploaded bytes, so the same file under a different configuration never hits.
+ * <p>
+ * The memory tier is an LRU bounded by the estimated heap weight of its entries. The optional disk
+ * tier keeps one directory per configuration fingerprint; directories of other fingerprints are
+ * removed on startup.
+ */
+@Slf4j
+@Service
+public class ResultCache {
+    private static final int SAMPLE_ROWS = 1_000;
+
+    private final ResultCacheProperties properties;
+    private final ResultCodec resultCodec;
+    private final String configFingerprint;
+    private final Map<String, CachedResult> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+    private long memoryWeight;
+    private Path diskDirectory;
+
+    public ResultCache(ResultCacheProperties properties,
+                       CleaningPipelineProperties pipelineProperties,
+                       TypeInferenceProperties typeInferenceProperties,
+                       ClusteringProperties clusteringProperties,
+                       ImputationProperties imputationProperties,
+                       ReportProperties reportProperties,
+                       ResultCodec resultCodec,
+                       MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.resultCodec = resultCodec;
+        this.configFingerprint = fingerprint(pipelineProperties, typeInferenceProperties, clusteringProperties,
+                imputationProperties, reportProperties);
+
+        this.memoryHits = requestCounter(meterRegistry, "hit", "memory");
+        this.diskHits = requestCounter(meterRegistry, "hit", "disk");
+        this.misses = requestCounter(meterRegistry, "miss", "none");
+        Gauge.builder("cleaning.cache.memory.entries", this, ResultCache::memorySize)
+                .description("Results held in the in-memory cache tier")
+                .register(meterRegistry);
+        Gauge.builder("cleaning.cache.memory.weight", this, ResultCache::memoryWeight)
+                .description("Estimated heap bytes held by the in-memory cache tier")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!properties.isEnabled() || !properties.getDisk().isEnabled()) {
+            return;
+        }
+        Path root = Path.of(properties.getDisk().getDirectory());
+        Files.createDirectories(root);
+        try (Stream<Path> children = Files.list(root)) {
+            for (Path child : children.toList()) {
+                if (!child.getFileName().toString().equals(configFingerprint)) {
+                    log.info("Removing result cache entries of a previous configuration: {}", child);
+                    FileSystemUtils.deleteRecursively(child);
+                }
+            }
+        }
+        diskDirectory = Files.createDirectories(root.resolve(configFingerprint));
+        log.info("Result cache disk tier at {}", diskDirectory);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public String key(MultipartFile file) throws IOException {
+        MessageDigest digest = newKeyDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream inputStream = file.getInputStream()) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return key(digest);
+    }
+
+    /** Digest to feed with the uploaded bytes when they can only be read once. */
+    public MessageDigest newKeyDigest() {
+        MessageDigest digest = sha256();
+        digest.update(configFingerprint.getBytes(StandardCharsets.UTF_8));
+        return digest;
+    }
+
+    public String key(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public Optional<CleanedDataResult> get(String key) {
+        synchronized (this) {
+            CachedResult cached = memory.get(key);
+            if (cached != null) {
+                memoryHits.increment();
+                log.debug("Result cache hit (memory): {}", key);
+                return Optional.of(cached.result());
+            }
+        }
+
+        Optional<CleanedDataResult> fromDisk = readFromDisk(key);
+        if (fromDisk.isPresent()) {
+            diskHits.increment();
+            log.debug("Result cache hit (disk): {}", key);
+            putInMemory(key, fromDisk.get());
+        } else {
+            misses.increment();
+        }
+        return fromDisk;
+    }
+
+    public void put(String key, CleanedDataResult result) {
+        putInMemory(key, result);
+        writeToDisk(key, result);
+    }
+
+    private synchronized void putInMemory(String key, CleanedDataResult result) {
+        long weight = estimateWeight(result);
+        long maxWeight = properties.getMaxMemory().toBytes();
+        if (weight > maxWeight) {
+            log.debug("Result of {} bytes exceeds the memory tier and is not kept in memory", weight);
+            return;
+        }
+
+        CachedResult previous = memory.put(key, new CachedResult(result, weight));
+        memoryWeight += weight - (previous == null ? 0 : previous.weight());
+
+        Iterator<CachedResult> eldest = memory.values().iterator();
+        while (memoryWeight > maxWeight && eldest.hasNext()) {
+            memoryWeight -= eldest.next().weight();
+            eldest.remove();
+        }
+    }
+
+    private Optional<CleanedDataResult> readFromDisk(String key) {
+        if (diskDirectory == null) {
+            return Optional.empty();
+        }
+        Path file = diskDirectory.resolve(key);
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            CleanedDataResult result = resultCodec.decode(inputStream);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return Optional.of(result);
+        } catch (IOException e) {
+            log.warn("Discarding unreadable result cache entry {}: {}", file, e.getMessage());
+            deleteQuietly(file);
+            return Optional.empty();
+        }
+    }
+
+    private void writeToDisk(String key, CleanedDataResult result) {
+        if (diskDirectory == null) {
+            return;
+        }
+        try {
+            Path temporary = Files.createTempFile(diskDirectory, key, ".tmp");
+            try (OutputStream outputStream = Files.newOutputStream(temporary)) {
+                resultCodec.encode(result, outputStream);
+            }
+            Files.move(temporary, diskDirectory.resolve(key), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            evictFromDisk();
+        } catch (IOException e) {
+            log.warn("Could not write result cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void evictFromDisk() throws IOException {
+        List<Path> files;
+        try (Stream<Path> children = Files.list(diskDirectory)) {
+            files = children.filter(Files::isRegularFile)
+                    .filter(file -> !file.getFileName().toString().endsWith(".tmp"))
+                    .sorted(Comparator.comparing(ResultCache::lastModified))
+                    .toList();
+        }
+        long total = 0;
+        for (Path file : files) {
+            total += Files.size(file);
+        }
+        long maxSize = properties.getDisk().getMaxSize().toBytes();
+        for (Iterator<Path> oldest = files.iterator(); total > maxSize && oldest.hasNext(); ) {
+            Path file = oldest.next();
+            total -= Files.size(file);
+            deleteQuietly(file);
+        }
+    }
+
+    private synchronized int memorySize() {
+        return memory.size();
+    }
+
+    private synchronized long memoryWeight() {
+        return memoryWeight;
+    }
+
+    /**
+     * Rough heap footprint: per-cell map entry and boxing overhead plus string payloads,
+     * measured on the first rows and extrapolated to the rest.
+     */
+    static long estimateWeight(CleanedDataResult result) {
+        long rowsWeight = estimateRowsWeight(result.cleanedData() == null ? List.of() : result.cleanedData());
+        long errorsWeight = result.validationErrors() == null ? 0
+                : result.validationErrors().stream().mapToLong(error -> 40 + error.length()).sum();
+        return 1_024 + rowsWeight + errorsWeight;
+    }
+
+    /** Heap footprint of {@code rows} estimated like {@link #estimateWeight}. */
+    static long estimateRowsWeight(Collection<Map<String, Object>> rows) {
+        int sampled = 0;
+        long sampleWeight = 0;
+        for (Iterator<Map<String, Object>> iterator = rows.iterator(); sampled < SAMPLE_ROWS && iterator.hasNext(); sampled++) {
+            sampleWeight += 64;
+            for (Object value : iterator.next().values()) {
+                sampleWeight += 48;
+                sampleWeight += value instanceof String text ? 40 + text.length() : 24;
+            }
+        }
+        return sampled == 0 ? 0 : sampleWeight * rows.size() / sampled;
+    }
+
+    /**
+     * Hash of every setting a cached result depends on. The step settings are Lombok beans whose
+     * {@code toString} lists all their properties, so a property added to one of them is covered
+     * without touching this method; a new result-affecting settings bean has to be passed in here.
+     */
+    private static String fingerprint(CleaningPipelineProperties pipelineProperties, Object... stepSettings) {
+        StringBuilder configuration = new StringBuilder()
+                .append(pipelineProperties.getSteps()).append('|')
+                .append(pipelineProperties.getPlanner().getMode());
+        for (Object settings : stepSettings) {
+            configuration.append('|').append(settings);
+        }
+        configuration.append("|codec-").append(ResultCodec.FORMAT_VERSION);
+        return shortHash(configuration.toString());
+    }
+
+    /** First 8 bytes of the SHA-256 of {@code text} in hex, for key parts derived from an upload's options. */
+    static String shortHash(String text) {
+        byte[] hash = sha256().digest(text.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(hash, 0, 8);
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String result, String tier) {
+        return Counter.builder("cleaning.cache.requests")
+                .description("Result cache lookups")
+                .tag("result", result)
+                .tag("tier", tier)
+                .register(meterRegistry);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete result cache entry {}: {}", file, e.getMessage());
+        }
+    }
+
+    private record CachedResult(CleanedDataResult result, long weight) {
+    }
+}
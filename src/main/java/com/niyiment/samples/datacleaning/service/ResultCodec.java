@@ -0,0 +1,845 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.dto.CleanedDataResult;
+import com.niyiment.samples.datacleaning.dto.CorrelationMatrix;
+import com.niyiment.samples.datacleaning.dto.DataQualityReport;
+import com.niyiment.samples.datacleaning.dto.FrequentValue;
+import com.niyiment.samples.datacleaning.dto.NumericProfile;
+import com.niyiment.samples.datacleaning.service.JobScope.Subtask;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact binary form of {@link CleanedDataResult} and {@link DataQualityReport}, used for the
+ * session, the result cache's disk tier and anywhere else a result leaves the heap. Unlike the JSON
+ * round trip, every value comes back with the type the pipeline gave it.
+ * <p>
+ * Rows are stored column by column under a schema written once: the union of all row keys in
+ * first-seen order. A column whose values share one type is written as that type (zigzag varints for
+ * integers and dates, raw IEEE doubles, bit-packed booleans, strings plain or through a per-column
+ * dictionary when values repeat); other columns fall back to a tag per cell. Absent keys and nulls
+ * are kept apart by two bitmaps that are only written when needed. Source rows follow the rows as
+ * zigzag varint deltas, which takes a byte a row while rows stay in source order.
+ */
+@Component
+public class ResultCodec {
+    private static final byte[] MAGIC = {'D', 'C', 'R'};
+    static final byte FORMAT_VERSION = 4;
+
+    // Cell and value tags
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int INT = 2;
+    private static final int LONG = 3;
+    private static final int DOUBLE = 4;
+    private static final int BOOLEAN = 5;
+    private static final int DATE = 6;
+    private static final int DATETIME = 7;
+    private static final int FLOAT = 8;
+    private static final int BIG_INTEGER = 9;
+    private static final int BIG_DECIMAL = 10;
+    private static final int LIST = 11;
+    private static final int MAP = 12;
+    private static final int MIXED = 13;
+
+    // Column block flags, or-ed into the column's type byte
+    private static final int HAS_ABSENT = 0x40;
+    private static final int HAS_NULLS = 0x80;
+    private static final int TYPE_MASK = 0x3f;
+
+    // Results with fewer rows encode their columns on the calling thread
+    private static final int PARALLEL_ENCODE_ROWS = 10_000;
+
+    private static final int PLAIN_STRINGS = 0;
+    private static final int DICTIONARY_STRINGS = 1;
+
+    public byte[] encode(CleanedDataResult result) {
+        Output out = new Output();
+        out.write(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        try {
+            writeStrings(out, result.columns());
+            writeStrings(out, result.validationErrors());
+            writeStrings(out, result.pipelinePlan());
+            writeReport(out, result.dataQualityReport());
+            writeRows(out, result.cleanedData());
+            writeSourceRows(out, result.sourceRows());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public CleanedDataResult decode(byte[] encoded) {
+        try {
+            Input in = new Input(encoded);
+            if (!Arrays.equals(in.readNBytes(MAGIC.length), MAGIC) || in.readByte() != FORMAT_VERSION) {
+                throw new StreamCorruptedException("Not an encoded cleaning result");
+            }
+            return CleanedDataResult.builder()
+                    .columns(readStrings(in))
+                    .validationErrors(readStrings(in))
+                    .pipelinePlan(readStrings(in))
+                    .dataQualityReport(readReport(in))
+                    .cleanedData(readRows(in))
+                    .sourceRows(readSourceRows(in))
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void encode(CleanedDataResult result, OutputStream outputStream) throws IOException {
+        outputStream.write(encode(result));
+        outputStream.flush();
+    }
+
+    public CleanedDataResult decode(InputStream inputStream) throws IOException {
+        try {
+            return decode(inputStream.readAllBytes());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public byte[] encodeReport(DataQualityReport report) {
+        Output out = new Output();
+        try {
+            writeReport(out, report);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public DataQualityReport decodeReport(byte[] encoded) {
+        try {
+            return readReport(new Input(encoded));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Report
+
+    private void writeReport(Output out, DataQualityReport report) throws IOException {
+        if (report == null) {
+            out.writeBoolean(false);
+            return;
+        }
+        out.writeBoolean(true);
+        writeValue(out, report.totalRecords());
+        writeValue(out, report.processedRecords());
+        writeValue(out, report.missingValuesCount());
+        writeValue(out, report.uniqueValuesCount());
+        writeValue(out, report.numericStats());
+        writeValue(out, report.columnTypes());
+        writeTopValues(out, report.topValues());
+        writeNumericProfiles(out, report.numericProfiles());
+        writeCorrelations(out, report.correlations());
+    }
+
+    @SuppressWarnings("unchecked")
+    private DataQualityReport readReport(Input in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return DataQualityReport.builder()
+                .totalRecords((Integer) readValue(in))
+                .processedRecords((Integer) readValue(in))
+                .missingValuesCount((Map<String, Long>) readValue(in))
+                .uniqueValuesCount((Map<String, Integer>) readValue(in))
+                .numericStats((Map<String, Map<String, Object>>) readValue(in))
+                .columnTypes((Map<String, String>) readValue(in))
+                .topValues(readTopValues(in))
+                .numericProfiles(readNumericProfiles(in))
+                .correlations(readCorrelations(in))
+                .build();
+    }
+
+    private void writeTopValues(Output out, Map<String, List<FrequentValue>> topValues) throws IOException {
+        if (topValues == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, topValues.size() + 1);
+        for (Map.Entry<String, List<FrequentValue>> column : topValues.entrySet()) {
+            writeString(out, column.getKey());
+            writeVarInt(out, column.getValue().size());
+            for (FrequentValue frequentValue : column.getValue()) {
+                writeValue(out, frequentValue.value());
+                writeVarLong(out, frequentValue.count());
+                writeVarLong(out, frequentValue.error());
+            }
+        }
+    }
+
+    private Map<String, List<FrequentValue>> readTopValues(Input in) throws IOException {
+        int columns = readVarInt(in) - 1;
+        if (columns < 0) {
+            return null;
+        }
+        Map<String, List<FrequentValue>> topValues = new LinkedHashMap<>();
+        for (int i = 0; i < columns; i++) {
+            String column = readString(in);
+            int size = readVarInt(in);
+            List<FrequentValue> frequentValues = new ArrayList<>(size);
+            for (int j = 0; j < size; j++) {
+                frequentValues.add(new FrequentValue(readValue(in), readVarLong(in), readVarLong(in)));
+            }
+            topValues.put(column, List.copyOf(frequentValues));
+        }
+        return topValues;
+    }
+
+    private void writeNumericProfiles(Output out, Map<String, NumericProfile> profiles) throws IOException {
+        if (profiles == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, profiles.size() + 1);
+        for (Map.Entry<String, NumericProfile> entry : profiles.entrySet()) {
+            NumericProfile profile = entry.getValue();
+            writeString(out, entry.getKey());
+            writeVarLong(out, profile.count());
+            writeValue(out, profile.p1());
+            writeValue(out, profile.p50());
+            writeValue(out, profile.p99());
+            writeValue(out, profile.skewness());
+            writeValue(out, profile.kurtosis());
+        }
+    }
+
+    private Map<String, NumericProfile> readNumericProfiles(Input in) throws IOException {
+        int columns = readVarInt(in) - 1;
+        if (columns < 0) {
+            return null;
+        }
+        Map<String, NumericProfile> profiles = new LinkedHashMap<>();
+        for (int i = 0; i < columns; i++) {
+            profiles.put(readString(in), NumericProfile.builder()
+                    .count(readVarLong(in))
+                    .p1((Double) readValue(in))
+                    .p50((Double) readValue(in))
+                    .p99((Double) readValue(in))
+                    .skewness((Double) readValue(in))
+                    .kurtosis((Double) readValue(in))
+                    .build());
+        }
+        return profiles;
+    }
+
+    /** The upper triangle only; the matrix is symmetric. */
+    private void writeCorrelations(Output out, CorrelationMatrix correlations) throws IOException {
+        if (correlations == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        List<String> columns = correlations.columns();
+        writeVarInt(out, columns.size() + 1);
+        for (String column : columns) {
+            writeString(out, column);
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            for (int j = i; j < columns.size(); j++) {
+                writeValue(out, correlations.coefficients().get(i).get(j));
+            }
+        }
+    }
+
+    private CorrelationMatrix readCorrelations(Input in) throws IOException {
+        int size = readVarInt(in) - 1;
+        if (size < 0) {
+            return null;
+        }
+        List<String> columns = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            columns.add(readString(in));
+        }
+        Double[][] coefficients = new Double[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = i; j < size; j++) {
+                coefficients[i][j] = (Double) readValue(in);
+                coefficients[j][i] = coefficients[i][j];
+            }
+        }
+        List<List<Double>> rows = new ArrayList<>(size);
+        for (Double[] row : coefficients) {
+            rows.add(Arrays.asList(row));
+        }
+        return new CorrelationMatrix(columns, rows);
+    }
+
+    // Rows
+
+    private void writeRows(Output out, List<Map<String, Object>> rows) throws IOException {
+        if (rows == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        Set<String> schema = new LinkedHashSet<>();
+        for (Map<String, Object> row : rows) {
+            schema.addAll(row.keySet());
+        }
+        writeVarInt(out, rows.size() + 1);
+        writeVarInt(out, schema.size());
+        for (String key : schema) {
+            writeString(out, key);
+        }
+        if (rows.size() < PARALLEL_ENCODE_ROWS || schema.size() < 2) {
+            for (String key : schema) {
+                writeColumn(out, key, rows);
+            }
+            return;
+        }
+        // column blocks are independent, so large results encode them as subtasks and append in order
+        try (JobScope scope = JobScope.open("encode")) {
+            List<Subtask<Output>> columns = new ArrayList<>(schema.size());
+            for (String key : schema) {
+                columns.add(scope.fork("encode-" + key, () -> {
+                    Output column = new Output();
+                    writeColumn(column, key, rows);
+                    return column;
+                }));
+            }
+            scope.join();
+            for (Subtask<Output> column : columns) {
+                out.write(column.get());
+            }
+        }
+    }
+
+    private List<Map<String, Object>> readRows(Input in) throws IOException {
+        int rowCount = readVarInt(in) - 1;
+        if (rowCount < 0) {
+            return null;
+        }
+        int keyCount = readVarInt(in);
+        List<String> schema = new ArrayList<>(keyCount);
+        for (int i = 0; i < keyCount; i++) {
+            schema.add(readString(in));
+        }
+        List<Map<String, Object>> rows = new ArrayList<>(rowCount);
+        int capacity = (int) (keyCount / 0.75f) + 1;
+        for (int i = 0; i < rowCount; i++) {
+            rows.add(new LinkedHashMap<>(capacity));
+        }
+        for (String key : schema) {
+            readColumn(in, key, rows);
+        }
+        return rows;
+    }
+
+    private static void writeSourceRows(Output out, int[] sourceRows) throws IOException {
+        if (sourceRows == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, sourceRows.length + 1);
+        long previous = 0;
+        for (int sourceRow : sourceRows) {
+            writeVarLong(out, zigZag(sourceRow - previous));
+            previous = sourceRow;
+        }
+    }
+
+    private static int[] readSourceRows(Input in) throws IOException {
+        int count = readVarInt(in) - 1;
+        if (count < 0) {
+            return null;
+        }
+        int[] sourceRows = new int[count];
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += unZigZag(readVarLong(in));
+            sourceRows[i] = (int) previous;
+        }
+        return sourceRows;
+    }
+
+    private void writeColumn(Output out, String key, List<Map<String, Object>> rows) throws IOException {
+        int rowCount = rows.size();
+        long[] absent = new long[words(rowCount)];
+        long[] nulls = new long[words(rowCount)];
+        boolean anyAbsent = false;
+        boolean anyNull = false;
+        Object[] values = new Object[rowCount];
+        int count = 0;
+        Class<?> type = null;
+        boolean mixed = false;
+        for (int i = 0; i < rowCount; i++) {
+            Map<String, Object> row = rows.get(i);
+            Object value = row.get(key);
+            if (value == null) {
+                if (row.containsKey(key)) {
+                    nulls[i >>> 6] |= 1L << i;
+                    anyNull = true;
+                } else {
+                    absent[i >>> 6] |= 1L << i;
+                    anyAbsent = true;
+                }
+                continue;
+            }
+            values[count++] = value;
+            if (type == null) {
+                type = value.getClass();
+            } else if (type != value.getClass()) {
+                mixed = true;
+            }
+        }
+
+        int columnType = mixed ? MIXED : typeOf(type);
+        out.writeByte(columnType | (anyAbsent ? HAS_ABSENT : 0) | (anyNull ? HAS_NULLS : 0));
+        if (anyAbsent) writeBitmap(out, absent);
+        if (anyNull) writeBitmap(out, nulls);
+
+        switch (columnType) {
+            case NULL -> { }
+            case STRING -> writeStringColumn(out, values, count);
+            case BOOLEAN -> writeBooleanColumn(out, values, count);
+            case MIXED -> {
+                for (int i = 0; i < count; i++) {
+                    writeValue(out, values[i]);
+                }
+            }
+            default -> {
+                for (int i = 0; i < count; i++) {
+                    writeTyped(out, columnType, values[i]);
+                }
+            }
+        }
+    }
+
+    private void readColumn(Input in, String key, List<Map<String, Object>> rows) throws IOException {
+        int rowCount = rows.size();
+        int header = in.readUnsignedByte();
+        int columnType = header & TYPE_MASK;
+        long[] absent = (header & HAS_ABSENT) != 0 ? readBitmap(in, rowCount) : new long[words(rowCount)];
+        long[] nulls = (header & HAS_NULLS) != 0 ? readBitmap(in, rowCount) : new long[words(rowCount)];
+
+        List<String> dictionary = null;
+        if (columnType == STRING && in.readUnsignedByte() == DICTIONARY_STRINGS) {
+            int size = readVarInt(in);
+            dictionary = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                dictionary.add(readString(in));
+            }
+        }
+        int bits = 0;
+        int bitsLeft = 0;
+        for (int i = 0; i < rowCount; i++) {
+            if (isSet(absent, i)) continue;
+            Map<String, Object> row = rows.get(i);
+            if (isSet(nulls, i)) {
+                row.put(key, null);
+                continue;
+            }
+            Object value = switch (columnType) {
+                case STRING -> dictionary != null ? dictionary.get(readVarInt(in)) : readString(in);
+                case BOOLEAN -> {
+                    if (bitsLeft == 0) {
+                        bits = in.readUnsignedByte();
+                        bitsLeft = 8;
+                    }
+                    boolean bit = (bits & 1) != 0;
+                    bits >>>= 1;
+                    bitsLeft--;
+                    yield bit;
+                }
+                case MIXED -> readValue(in);
+                default -> readTyped(in, columnType);
+            };
+            row.put(key, value);
+        }
+    }
+
+    private void writeStringColumn(Output out, Object[] values, int count) throws IOException {
+        // Dictionary-encode only when values repeat; give up as soon as half of them turn out distinct.
+        Map<Object, Integer> dictionary = new HashMap<>();
+        List<Object> entries = new ArrayList<>();
+        int[] indexes = new int[count];
+        boolean repetitive = true;
+        for (int i = 0; i < count && repetitive; i++) {
+            Integer index = dictionary.putIfAbsent(values[i], entries.size());
+            if (index == null) {
+                index = entries.size();
+                entries.add(values[i]);
+                repetitive = entries.size() * 2 <= count;
+            }
+            indexes[i] = index;
+        }
+        if (!repetitive) {
+            out.writeByte(PLAIN_STRINGS);
+            for (int i = 0; i < count; i++) {
+                writeString(out, (String) values[i]);
+            }
+            return;
+        }
+        out.writeByte(DICTIONARY_STRINGS);
+        writeVarInt(out, entries.size());
+        for (Object entry : entries) {
+            writeString(out, (String) entry);
+        }
+        for (int i = 0; i < count; i++) {
+            writeVarInt(out, indexes[i]);
+        }
+    }
+
+    private void writeBooleanColumn(Output out, Object[] values, int count) throws IOException {
+        int bits = 0;
+        int used = 0;
+        for (int i = 0; i < count; i++) {
+            if ((Boolean) values[i]) bits |= 1 << used;
+            if (++used == 8) {
+                out.writeByte(bits);
+                bits = 0;
+                used = 0;
+            }
+        }
+        if (used > 0) out.writeByte(bits);
+    }
+
+    // Values
+
+    private static int typeOf(Class<?> type) {
+        if (type == null) return NULL;
+        if (type == String.class) return STRING;
+        if (type == Integer.class) return INT;
+        if (type == Long.class) return LONG;
+        if (type == Double.class) return DOUBLE;
+        if (type == Boolean.class) return BOOLEAN;
+        if (type == LocalDate.class) return DATE;
+        if (type == LocalDateTime.class) return DATETIME;
+        if (type == Float.class) return FLOAT;
+        return MIXED;
+    }
+
+    private void writeTyped(Output out, int type, Object value) throws IOException {
+        switch (type) {
+            case INT -> writeVarLong(out, zigZag((Integer) value));
+            case LONG -> writeVarLong(out, zigZag((Long) value));
+            case DOUBLE -> out.writeDouble((Double) value);
+            case FLOAT -> out.writeFloat((Float) value);
+            case DATE -> writeVarLong(out, zigZag(((LocalDate) value).toEpochDay()));
+            case DATETIME -> {
+                LocalDateTime dateTime = (LocalDateTime) value;
+                writeVarLong(out, zigZag(dateTime.toEpochSecond(ZoneOffset.UTC)));
+                writeVarInt(out, dateTime.getNano());
+            }
+            default -> throw new IllegalStateException("Not a typed column: " + type);
+        }
+    }
+
+    private Object readTyped(Input in, int type) throws IOException {
+        return switch (type) {
+            case INT -> (int) unZigZag(readVarLong(in));
+            case LONG -> unZigZag(readVarLong(in));
+            case DOUBLE -> in.readDouble();
+            case FLOAT -> in.readFloat();
+            case DATE -> LocalDate.ofEpochDay(unZigZag(readVarLong(in)));
+            case DATETIME -> LocalDateTime.ofEpochSecond(unZigZag(readVarLong(in)), readVarInt(in), ZoneOffset.UTC);
+            default -> throw new StreamCorruptedException("Unknown column type " + type);
+        };
+    }
+
+    /** Self-describing value; types the pipeline never produces are written as their string form. */
+    private void writeValue(Output out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String text) {
+            out.writeByte(STRING);
+            writeString(out, text);
+        } else if (value instanceof Boolean bool) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(bool);
+        } else if (value instanceof BigInteger bigInteger) {
+            out.writeByte(BIG_INTEGER);
+            writeString(out, bigInteger.toString());
+        } else if (value instanceof BigDecimal bigDecimal) {
+            out.writeByte(BIG_DECIMAL);
+            writeString(out, bigDecimal.toString());
+        } else if (value instanceof List<?> list) {
+            out.writeByte(LIST);
+            writeVarInt(out, list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else if (value instanceof Map<?, ?> map) {
+            out.writeByte(MAP);
+            writeVarInt(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString(out, String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue());
+            }
+        } else {
+            int type = typeOf(value.getClass());
+            if (type == MIXED) {
+                out.writeByte(STRING);
+                writeString(out, value.toString());
+            } else {
+                out.writeByte(type);
+                writeTyped(out, type, value);
+            }
+        }
+    }
+
+    private Object readValue(Input in) throws IOException {
+        int tag = in.readUnsignedByte();
+        return switch (tag) {
+            case NULL -> null;
+            case STRING -> readString(in);
+            case BOOLEAN -> in.readBoolean();
+            case BIG_INTEGER -> new BigInteger(readString(in));
+            case BIG_DECIMAL -> new BigDecimal(readString(in));
+            case LIST -> {
+                int size = readVarInt(in);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                yield list;
+            }
+            case MAP -> {
+                int size = readVarInt(in);
+                Map<String, Object> map = new LinkedHashMap<>((int) (size / 0.75f) + 1);
+                for (int i = 0; i < size; i++) {
+                    map.put(readString(in), readValue(in));
+                }
+                yield map;
+            }
+            default -> readTyped(in, tag);
+        };
+    }
+
+    private void writeStrings(Output out, List<String> strings) throws IOException {
+        if (strings == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, strings.size() + 1);
+        for (String string : strings) {
+            writeString(out, string);
+        }
+    }
+
+    private List<String> readStrings(Input in) throws IOException {
+        int size = readVarInt(in) - 1;
+        if (size < 0) {
+            return null;
+        }
+        List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            strings.add(readString(in));
+        }
+        return strings;
+    }
+
+    private static void writeString(Output out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(Input in) throws IOException {
+        return in.readUtf8(readVarInt(in));
+    }
+
+    // Bitmaps and varints
+
+    private static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    private static boolean isSet(long[] bitmap, int index) {
+        return (bitmap[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void writeBitmap(Output out, long[] bitmap) throws IOException {
+        for (long word : bitmap) {
+            out.writeLong(word);
+        }
+    }
+
+    private static long[] readBitmap(Input in, int bits) throws IOException {
+        long[] bitmap = new long[words(bits)];
+        for (int i = 0; i < bitmap.length; i++) {
+            bitmap[i] = in.readLong();
+        }
+        return bitmap;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarInt(Output out, int value) throws IOException {
+        writeVarLong(out, value & 0xffffffffL);
+    }
+
+    private static int readVarInt(Input in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    private static void writeVarLong(Output out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(Input in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    /** Growable byte buffer; unlike a buffered DataOutputStream it takes no lock per byte. */
+    private static final class Output {
+        private byte[] buffer = new byte[8 * 1024];
+        private int position;
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeBoolean(boolean value) {
+            writeByte(value ? 1 : 0);
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeDouble(double value) {
+            writeLong(Double.doubleToRawLongBits(value));
+        }
+
+        void writeFloat(float value) {
+            int bits = Float.floatToRawIntBits(value);
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (bits >>> shift);
+            }
+        }
+
+        void write(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        void write(Output other) {
+            ensure(other.position);
+            System.arraycopy(other.buffer, 0, buffer, position, other.position);
+            position += other.position;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensure(int bytes) {
+            if (position + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+            }
+        }
+    }
+
+    private static final class Input {
+        private final byte[] buffer;
+        private int position;
+
+        Input(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        int readUnsignedByte() throws IOException {
+            require(1);
+            return buffer[position++] & 0xff;
+        }
+
+        byte readByte() throws IOException {
+            return (byte) readUnsignedByte();
+        }
+
+        boolean readBoolean() throws IOException {
+            return readUnsignedByte() != 0;
+        }
+
+        long readLong() throws IOException {
+            require(8);
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buffer[position++] & 0xff);
+            }
+            return value;
+        }
+
+        double readDouble() throws IOException {
+            return Double.longBitsToDouble(readLong());
+        }
+
+        float readFloat() throws IOException {
+            require(4);
+            int bits = 0;
+            for (int i = 0; i < 4; i++) {
+                bits = (bits << 8) | (buffer[position++] & 0xff);
+            }
+            return Float.intBitsToFloat(bits);
+        }
+
+        byte[] readNBytes(int length) throws IOException {
+            require(length);
+            byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        String readUtf8(int length) throws IOException {
+            require(length);
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private void require(int bytes) throws IOException {
+            if (bytes < 0 || position + bytes > buffer.length) {
+                throw new StreamCorruptedException("Encoded result is truncated");
+            }
+        }
+    }
+}
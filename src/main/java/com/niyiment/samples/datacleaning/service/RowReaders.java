@@ -0,0 +1,378 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.niyiment.samples.datacleaning.exception.ReportProcessingException;
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellValue;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Parses uploaded CSV, XLSX, JSON and NDJSON into rows keyed by standardized column names, handing
+ * each row with its source row to a {@link SourceRowConsumer} as soon as it is read. Needs nothing but
+ * the {@link ObjectMapper}, so it can be used without the rest of the upload path.
+ */
+@Slf4j
+@Component
+public class RowReaders {
+    private static final TypeReference<Map<String, Object>> JSON_ROW = new TypeReference<>() {};
+    private static final DateTimeFormatter[] DATE_FORMATTERS = {
+            DateTimeFormatter.ISO_LOCAL_DATE, DateTimeFormatter.ofPattern("d/M/yy"),DateTimeFormatter.ofPattern("M/d/yy"),
+            DateTimeFormatter.ofPattern("MM/dd/yyyy"),DateTimeFormatter.ofPattern("MM/dd/yy"),
+            DateTimeFormatter.ofPattern("dd-MM-yyyy"),DateTimeFormatter.ofPattern("MM-dd-yy"),
+            DateTimeFormatter.ofPattern("d/M/yy"), DateTimeFormatter.ofPattern("M/d/yy"),
+            DateTimeFormatter.ofPattern("dd-MM-yyyy"),DateTimeFormatter.ofPattern("dd-MM-yy"),
+            DateTimeFormatter.ofPattern("d-M-yy"), DateTimeFormatter.ofPattern("M-d-yy"),
+            DateTimeFormatter.ofPattern("yyyy/MM/dd")
+    };
+
+    private final ObjectMapper objectMapper;
+
+    public RowReaders(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public void readCSV(InputStream inputStream, SourceRowConsumer rowConsumer) {
+        readCSV(inputStream, rowConsumer, true, RowSelection.all());
+    }
+
+    /**
+     * With {@code guessTypes} false every cell stays text, for a schema to parse into its declared type.
+     * Records are filtered on their raw text, and only the selected fields are converted into the row.
+     */
+    private void readCSV(InputStream inputStream, SourceRowConsumer rowConsumer, boolean guessTypes,
+                         RowSelection selection) {
+        try (Reader reader = new InputStreamReader(inputStream);
+         CSVReader csvReader = new CSVReader(reader)) {
+            String[] headers = Optional.ofNullable(csvReader.readNext())
+                    .orElseThrow(() -> new ReportProcessingException("CSV file is empty"));
+            List<String> cleanedHeaders = Arrays.stream(headers)
+                    .map(DataProcessingService::standardizeColumnName)
+                    .toList();
+
+            RowSelection.Projection projection = selection.project(cleanedHeaders);
+
+            // a quoted value may span lines, so a record's source row is the line after the previous record
+            long linesRead = csvReader.getLinesRead();
+            String[] lines;
+            while ((lines = csvReader.readNext()) != null) {
+                int sourceRow = (int) linesRead + 1;
+                linesRead = csvReader.getLinesRead();
+                if (!projection.matches(lines)) continue;
+                Map<String, Object> row = new HashMap<>();
+                for (int i : projection.selected()) {
+                    String value = i < lines.length ? lines[i] : "";
+                    Object cellValue = value.trim().isEmpty() ? "N/A" : guessTypes ? parseCellValue(value) : value;
+                    row.put(cleanedHeaders.get(i), cellValue);
+                }
+                rowConsumer.accept(row, sourceRow);
+            }
+        } catch (CsvValidationException | IOException e) {
+            throw new ReportProcessingException("Error processing CSV file", e);
+        }
+    }
+
+    public void readExcel(InputStream inputStream, SourceRowConsumer rowConsumer) {
+        readExcel(inputStream, rowConsumer, RowSelection.all());
+    }
+
+    /**
+     * Rows without a value are skipped; the sheet row numbers of the others keep the gaps visible. Only
+     * the filtered cells are read before a row is tested, and only the selected ones after.
+     */
+    private void readExcel(InputStream inputStream, SourceRowConsumer rowConsumer, RowSelection selection) {
+        try(Workbook workbook =  new XSSFWorkbook(inputStream)){
+            Sheet sheet = Optional.ofNullable(workbook.getSheetAt(0))
+                    .orElseThrow(() -> new ReportProcessingException("No sheets found in the Excel file"));
+
+            Row headerRow = Optional.ofNullable(sheet.getRow(0))
+                    .orElseThrow(() -> new ReportProcessingException("No rows found in the Excel file"));
+
+            List<String> headers = StreamSupport.stream(headerRow.spliterator(), false)
+                    .map(cell -> DataProcessingService.standardizeColumnName(
+                            Optional.ofNullable(cell).map(Cell::getStringCellValue).orElse("")))
+                    .toList();
+
+            RowSelection.Projection projection = selection.project(headers);
+            Iterator<Row> rowIterator = sheet.iterator();
+            rowIterator.next();
+            int emptyRows = 0;
+            while (rowIterator.hasNext()) {
+                Row row = rowIterator.next();
+                if (row == null) continue;
+                if (!projection.matches(column -> safeGetCellValueWithDateHandling(
+                        row.getCell(column, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK), headers.get(column)))) {
+                    continue;
+                }
+
+                Map<String, Object> rowData = new HashMap<>();
+                boolean hasNonEmptyValue = false;
+                for (int columnNumber : projection.selected()) {
+                    Cell cell = row.getCell(columnNumber, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
+                    String columnName = headers.get(columnNumber);
+                    Object cellValue = safeGetCellValueWithDateHandling(cell, columnName);
+
+                    if (cellValue != null && !cellValue.toString().trim().isEmpty() && !cellValue.equals("N/A")) {
+                        hasNonEmptyValue = true;
+                    }
+                    rowData.put(headers.get(columnNumber), cellValue == null ? "N/A" : cellValue);
+                }
+
+                if (hasNonEmptyValue) {
+                    rowConsumer.accept(rowData, row.getRowNum() + 1);
+                } else {
+                    emptyRows++;
+                }
+            }
+            if (emptyRows > 0) {
+                log.debug("Skipped {} empty rows of the sheet", emptyRows);
+            }
+
+        } catch (IOException e) {
+            throw new ReportProcessingException("Error processing Excel file", e);
+        }
+    }
+
+    public void readJSON(InputStream inputStream, SourceRowConsumer rowConsumer) {
+        readJSON(inputStream, rowConsumer, RowSelection.all());
+    }
+
+    private void readJSON(InputStream inputStream, SourceRowConsumer rowConsumer, RowSelection selection) {
+        Map<String, String> columnNames = new HashMap<>();
+        try (JsonParser parser = objectMapper.createParser(inputStream)) {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.VALUE_NULL) {
+                return;
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw new ReportProcessingException("JSON file must contain an array of objects");
+            }
+            int record = 0;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                record++;
+                if (token == JsonToken.VALUE_NULL) continue;
+                Map<String, Object> row = readObject(parser, columnNames, selection);
+                if (row != null && !row.isEmpty()) {
+                    rowConsumer.accept(row, record);
+                }
+            }
+        } catch (IOException e) {
+            throw new ReportProcessingException("Error processing JSON file", e);
+        }
+    }
+
+    /** Reads newline-delimited JSON: one object per line, blank lines and {@code null}s skipped. */
+    public void readNDJSON(InputStream inputStream, SourceRowConsumer rowConsumer) {
+        readNDJSON(inputStream, rowConsumer, RowSelection.all());
+    }
+
+    private void readNDJSON(InputStream inputStream, SourceRowConsumer rowConsumer, RowSelection selection) {
+        Map<String, String> columnNames = new HashMap<>();
+        try (JsonParser parser = objectMapper.createParser(inputStream)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.VALUE_NULL) continue;
+                if (token != JsonToken.START_OBJECT) {
+                    throw new ReportProcessingException("NDJSON lines must be JSON objects");
+                }
+                int sourceRow = parser.currentTokenLocation().getLineNr();
+                Map<String, Object> row = readObject(parser, columnNames, selection);
+                if (row != null && !row.isEmpty()) {
+                    rowConsumer.accept(row, sourceRow);
+                }
+            }
+        } catch (IOException e) {
+            throw new ReportProcessingException("Error processing NDJSON file", e);
+        }
+    }
+
+    public void readRows(String fileExtension, InputStream inputStream, SourceRowConsumer rowConsumer) {
+        readRows(fileExtension, inputStream, RowSelection.all(), null, rowConsumer);
+    }
+
+    /**
+     * Reads the rows and columns {@code selection} keeps, and converts the columns {@code schemaReader}
+     * declares, if any, before they reach {@code rowConsumer}. With a schema, CSV cells reach it as
+     * text, without the guesses of {@link #parseCellValue(String)}.
+     */
+    public void readRows(String fileExtension, InputStream inputStream, RowSelection selection,
+                         DeclaredSchema.Reader schemaReader, SourceRowConsumer rowConsumer) {
+        SourceRowConsumer consumer = schemaReader == null ? rowConsumer : schemaReader.typing(rowConsumer, selection);
+        switch (fileExtension.toLowerCase()) {
+            case "csv" -> readCSV(inputStream, consumer, schemaReader == null, selection);
+            case "xlsx" -> readExcel(inputStream, consumer, selection);
+            case "json" -> readJSON(inputStream, consumer, selection);
+            case "ndjson", "jsonl" -> readNDJSON(inputStream, consumer, selection);
+            default -> throw new ReportProcessingException("Unsupported file format: " + fileExtension);
+        }
+    }
+
+    /**
+     * Reads the object starting at the parser's current token. Under a selection, fields it does not
+     * read are skipped without being decoded, and the rest of the object is skipped once a filtered
+     * field fails, in which case the result is null.
+     */
+    private Map<String, Object> readObject(JsonParser parser, Map<String, String> columnNames,
+                                           RowSelection selection) throws IOException {
+        if (selection.isAll()) {
+            Map<String, Object> row = parser.readValueAs(JSON_ROW);
+            return row.isEmpty() ? row : standardizeRowKeys(row, columnNames);
+        }
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw new ReportProcessingException("JSON rows must be objects");
+        }
+        Map<String, Object> row = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String column = columnNames.computeIfAbsent(parser.currentName(), DataProcessingService::standardizeColumnName);
+            parser.nextToken();
+            if (!selection.reads(column)) {
+                parser.skipChildren();
+                continue;
+            }
+            Object value = parser.readValueAs(Object.class);
+            if (!selection.passes(column, value)) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    parser.nextToken();
+                    parser.skipChildren();
+                }
+                selection.reject();
+                return null;
+            }
+            row.put(column, value);
+        }
+        if (!selection.matchesAbsent(row)) {
+            return null;
+        }
+        row.keySet().removeIf(column -> !selection.selects(column));
+        return row;
+    }
+
+    /** {@code columnNames} remembers standardized keys, so the regex runs once per column, not per cell. */
+    private Map<String, Object> standardizeRowKeys(Map<String, Object> row, Map<String, String> columnNames) {
+        return row.entrySet().stream()
+                .collect(Collectors.toMap(entry -> columnNames.computeIfAbsent(entry.getKey(), DataProcessingService::standardizeColumnName),
+                        Map.Entry::getValue));
+    }
+
+    public static Object safeGetCellValueWithDateHandling(Cell cell, String columnName) {
+        if (cell == null) return null;
+
+        try {
+            if (cell == null) {
+                return null;
+            }
+
+            switch (cell.getCellType()) {
+                case STRING:
+                    return cell.getStringCellValue();
+
+                case NUMERIC:
+                    if (DateUtil.isCellDateFormatted(cell)) {
+                        return cell.getDateCellValue()
+                                .toInstant()
+                                .atZone(ZoneId.systemDefault())
+                                .toLocalDate();
+                    } else {
+                        double numericValue = cell.getNumericCellValue();
+                        if (numericValue == Math.floor(numericValue)) {
+                            return (long) numericValue;
+                        }
+                        return numericValue;
+                    }
+
+                case BOOLEAN:
+                    return cell.getBooleanCellValue();
+
+                case FORMULA:
+                    return evaluateFormula(cell);
+
+                case BLANK:
+                    return null;
+
+                default:
+                    return cell.toString();
+            }
+
+        } catch (Exception e) {
+            log.warn("Could not extract cell value: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static Object evaluateFormula(Cell cell) {
+        FormulaEvaluator evaluator = cell.getSheet()
+                .getWorkbook()
+                .getCreationHelper()
+                .createFormulaEvaluator();
+
+        CellValue cellValue = evaluator.evaluate(cell);
+        switch (cellValue.getCellType()) {
+            case NUMERIC:
+                return cellValue.getNumberValue();
+            case STRING:
+                return cellValue.getStringValue();
+            case BOOLEAN:
+                return cellValue.getBooleanValue();
+            default:
+                return null;
+        }
+    }
+
+    private Object parseCellValue(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+
+        if (ParseHints.mayBeNumber(value)) {
+            try {
+                if (value.contains(".")) {
+                    return Double.parseDouble(value);
+                } else {
+                    return Long.parseLong(value);
+                }
+            } catch (NumberFormatException ignore){}
+        }
+
+        if (ParseHints.mayBeDate(value)) {
+            for (DateTimeFormatter formatter : DATE_FORMATTERS) {
+                try {
+                    return LocalDate.parse(value, formatter);
+                } catch (DateTimeParseException ignore) {}
+            }
+        }
+
+        if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+            return Boolean.parseBoolean(value);
+        }
+
+        return value;
+    }
+}
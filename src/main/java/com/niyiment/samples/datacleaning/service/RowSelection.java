@@ -0,0 +1,269 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.dto.ProcessingOptions;
+import com.niyiment.samples.datacleaning.exception.ReportProcessingException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * The columns and rows an upload asked for ({@code columns=id,region,amount},
+ * {@code filter=region=North;amount>=100}), pushed into the readers. Fields of unselected columns are
+ * never converted or put into a row; CSV and Excel rows are tested against the filters before their
+ * map is built, and JSON objects are skipped as soon as a filtered field fails. Filter columns need
+ * not be selected.
+ * <p>
+ * Filters compare a cell as read, before any cleaning. {@code =} and {@code !=} compare numbers as
+ * numbers when both sides are numeric and text ignoring case otherwise; {@code <}, {@code <=},
+ * {@code >} and {@code >=} need a numeric value and a numeric cell. A missing field reads as blank,
+ * and since readers fill blank cells with N/A, {@code column=} and {@code column=N/A} both match
+ * either.
+ * A selection counts the rows it tested and kept, so it belongs to one upload.
+ */
+public final class RowSelection {
+    private final Set<String> columns;
+    private final List<Filter> filters;
+    private final Set<String> readColumns;
+    private long rowsTested;
+    private long rowsKept;
+
+    private RowSelection(Set<String> columns, List<Filter> filters) {
+        this.columns = columns;
+        this.filters = filters;
+        if (columns == null) {
+            this.readColumns = null;
+        } else {
+            this.readColumns = new LinkedHashSet<>(columns);
+            filters.forEach(filter -> readColumns.add(filter.column()));
+        }
+    }
+
+    /** A selection of every column and row, which the readers treat as no selection at all. */
+    public static RowSelection all() {
+        return new RowSelection(null, List.of());
+    }
+
+    /** Parses the upload's {@code columns} and {@code filter} options; column names are standardized like headers. */
+    public static RowSelection of(ProcessingOptions options) {
+        Set<String> columns = null;
+        if (options.columns() != null && !options.columns().isBlank()) {
+            columns = Arrays.stream(options.columns().split(","))
+                    .map(String::trim)
+                    .filter(column -> !column.isEmpty())
+                    .map(DataProcessingService::standardizeColumnName)
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+        }
+        List<Filter> filters = new ArrayList<>();
+        if (options.filter() != null) {
+            for (String condition : options.filter().split(";")) {
+                if (!condition.isBlank()) {
+                    filters.add(Filter.parse(condition));
+                }
+            }
+        }
+        return new RowSelection(columns == null || columns.isEmpty() ? null : columns, List.copyOf(filters));
+    }
+
+    public boolean isAll() {
+        return columns == null && filters.isEmpty();
+    }
+
+    /** Whether rows keep this column. */
+    public boolean selects(String column) {
+        return columns == null || columns.contains(column);
+    }
+
+    /** Whether a reader has to convert this column: it is selected or filtered on. */
+    boolean reads(String column) {
+        return readColumns == null || readColumns.contains(column);
+    }
+
+    /** The selection over a file with these (standardized) headers; a selected or filtered column the file lacks is an error. */
+    Projection project(List<String> headers) {
+        int[] selected;
+        if (columns == null) {
+            selected = new int[headers.size()];
+            Arrays.setAll(selected, i -> i);
+        } else {
+            selected = columns.stream().mapToInt(column -> indexOf(headers, column)).toArray();
+        }
+        int[] filtered = filters.stream().mapToInt(filter -> indexOf(headers, filter.column())).toArray();
+        return new Projection(selected, filtered);
+    }
+
+    /** Whether {@code value} passes every filter on {@code column}, so a reader can drop a row at its first failing field. */
+    boolean passes(String column, Object value) {
+        for (Filter filter : filters) {
+            if (filter.column().equals(column) && !filter.test(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Finishes testing a row whose filtered fields all passed {@link #passes}; filters on fields it lacks see blanks. */
+    boolean matchesAbsent(Map<String, Object> row) {
+        for (Filter filter : filters) {
+            if (!row.containsKey(filter.column()) && !filter.test(null)) {
+                return reject();
+            }
+        }
+        return keep();
+    }
+
+    /** Counts a row dropped by a filter. */
+    boolean reject() {
+        rowsTested++;
+        return false;
+    }
+
+    private boolean keep() {
+        rowsTested++;
+        rowsKept++;
+        return true;
+    }
+
+    /** Canonical form of the selection, so equal selections share cached results. */
+    public String fingerprint() {
+        return ResultCache.shortHash(columns + "|" + filters);
+    }
+
+    /** The plan line of an upload read with this selection. */
+    public String describe() {
+        List<String> parts = new ArrayList<>();
+        if (columns != null) {
+            parts.add("columns " + String.join(", ", columns));
+        }
+        if (!filters.isEmpty()) {
+            parts.add(String.format("rows where %s: kept %d of %d",
+                    filters.stream().map(Filter::toString).collect(Collectors.joining(" and ")), rowsKept, rowsTested));
+        }
+        return "Read: " + String.join("; ", parts) + ", other fields skipped by the reader";
+    }
+
+    private static int indexOf(List<String> headers, String column) {
+        int index = headers.indexOf(column);
+        if (index < 0) {
+            throw new ReportProcessingException("Column " + column + " is not in the file");
+        }
+        return index;
+    }
+
+    /** Header positions of the selected columns, in selection order, and of each filter's column. */
+    final class Projection {
+        private final int[] selected;
+        private final int[] filtered;
+
+        private Projection(int[] selected, int[] filtered) {
+            this.selected = selected;
+            this.filtered = filtered;
+        }
+
+        int[] selected() {
+            return selected;
+        }
+
+        /** Tests a record by the raw text of its filtered fields; fields past its end read as blank. */
+        boolean matches(String[] record) {
+            for (int i = 0; i < filtered.length; i++) {
+                int index = filtered[i];
+                if (!filters.get(i).test(index < record.length ? record[index] : null)) {
+                    return reject();
+                }
+            }
+            return keep();
+        }
+
+        /** Tests a row whose filtered cells {@code cell} reads by header position. */
+        boolean matches(IntFunction<Object> cell) {
+            for (int i = 0; i < filtered.length; i++) {
+                if (!filters.get(i).test(cell.apply(filtered[i]))) {
+                    return reject();
+                }
+            }
+            return keep();
+        }
+    }
+
+    enum Operator {
+        NOT_EQUAL("!="), LESS_OR_EQUAL("<="), GREATER_OR_EQUAL(">="), EQUAL("="), LESS("<"), GREATER(">");
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    record Filter(String column, Operator operator, String value, double number) {
+
+        static Filter parse(String condition) {
+            int position = -1;
+            Operator found = null;
+            // the two-character operators come first, so "<=" is not read as "<" followed by "=value"
+            for (Operator operator : Operator.values()) {
+                int index = condition.indexOf(operator.symbol);
+                if (index > 0 && (position < 0 || index < position)) {
+                    position = index;
+                    found = operator;
+                }
+            }
+            if (found == null || condition.substring(0, position).isBlank()) {
+                throw new ReportProcessingException("Invalid filter: " + condition.trim()
+                        + " (expected column=value, !=, <, <=, > or >=)");
+            }
+            String column = DataProcessingService.standardizeColumnName(condition.substring(0, position));
+            String value = condition.substring(position + found.symbol.length()).trim();
+            double number = parseNumber(value);
+            if (found != Operator.EQUAL && found != Operator.NOT_EQUAL && Double.isNaN(number)) {
+                throw new ReportProcessingException("Invalid filter: " + condition.trim() + " compares with a non-number");
+            }
+            return new Filter(column, found, value, number);
+        }
+
+        boolean test(Object cell) {
+            double cellNumber = cell instanceof Number n ? n.doubleValue()
+                    : Double.isNaN(number) ? Double.NaN : parseNumber(cell == null ? "" : cell.toString().trim());
+            return switch (operator) {
+                case EQUAL -> equalTo(cell, cellNumber);
+                case NOT_EQUAL -> !equalTo(cell, cellNumber);
+                case LESS -> cellNumber < number;
+                case LESS_OR_EQUAL -> cellNumber <= number;
+                case GREATER -> cellNumber > number;
+                case GREATER_OR_EQUAL -> cellNumber >= number;
+            };
+        }
+
+        private boolean equalTo(Object cell, double cellNumber) {
+            if (!Double.isNaN(number) && !Double.isNaN(cellNumber)) {
+                return cellNumber == number;
+            }
+            String text = cell == null ? "" : cell.toString().trim();
+            return isMissing(value) ? isMissing(text) : value.equalsIgnoreCase(text);
+        }
+
+        private static boolean isMissing(String text) {
+            return text.isEmpty() || text.equalsIgnoreCase("N/A");
+        }
+
+        private static double parseNumber(String text) {
+            if (!ParseHints.mayBeNumber(text)) return Double.NaN;
+            try {
+                return Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return column + " " + operator.symbol + " " + value;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.config.SchemaProperties;
+import com.niyiment.samples.datacleaning.exception.ReportProcessingException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The schemas configured under {@code cleaning.schemas.definitions}, compiled once at startup so a
+ * broken definition fails the application instead of the first upload that selects it.
+ */
+@Slf4j
+@Service
+public class SchemaRegistry {
+    private final Map<String, DeclaredSchema> schemas = new LinkedHashMap<>();
+
+    public SchemaRegistry(SchemaProperties properties) {
+        properties.getDefinitions().forEach((name, definition) -> {
+            try {
+                schemas.put(name, new DeclaredSchema(name, definition.getColumns(),
+                        DataProcessingService::standardizeColumnName));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid schema " + name + ": " + e.getMessage(), e);
+            }
+            log.info("Loaded schema {} with {} columns", name, definition.getColumns().size());
+        });
+    }
+
+    public Set<String> names() {
+        return Collections.unmodifiableSet(schemas.keySet());
+    }
+
+    /** The schema an upload selected, or null when it selected none. */
+    public DeclaredSchema find(String name) {
+        if (name == null || name.isBlank()) {
+            return null;
+        }
+        DeclaredSchema schema = schemas.get(name);
+        if (schema == null) {
+            throw new ReportProcessingException("Unknown schema: " + name);
+        }
+        return schema;
+    }
+}
@@ -0,0 +1,9 @@
+package com.niyiment.samples.datacleaning.service;
+
+import java.util.Map;
+
+/** Receives parsed rows together with their source row, as {@link SourceRows} counts them. */
+@FunctionalInterface
+public interface SourceRowConsumer {
+    void accept(Map<String, Object> row, int sourceRow);
+}
@@ -0,0 +1,63 @@
+package com.niyiment.samples.datacleaning.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lineage of parsed rows: the number each row had in its source, kept in a growable {@code int[]}
+ * next to the row list instead of as a map entry in every row, so it costs four bytes a row. Source
+ * rows are counted from 1: the line a record starts on for CSV and NDJSON, the sheet row for Excel
+ * and the record's position in the array for JSON. Row-reducing steps name the positions they keep,
+ * and the same positions are selected from the lineage.
+ */
+public final class SourceRows {
+    private int[] rows;
+    private int size;
+
+    public SourceRows() {
+        this(1024);
+    }
+
+    public SourceRows(int capacity) {
+        this.rows = new int[Math.max(capacity, 16)];
+    }
+
+    public void add(int sourceRow) {
+        if (size == rows.length) {
+            rows = Arrays.copyOf(rows, size + (size >> 1));
+        }
+        rows[size++] = sourceRow;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(rows, size);
+    }
+
+    /** The source rows of positions {@code from} (inclusive) to {@code to} (exclusive). */
+    public int[] range(int from, int to) {
+        return Arrays.copyOfRange(rows, from, to);
+    }
+
+    /** The source rows at {@code positions}, in order. */
+    public static int[] select(int[] sourceRows, int[] positions) {
+        int[] selected = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            selected[i] = sourceRows[positions[i]];
+        }
+        return selected;
+    }
+
+    /** The rows at {@code positions}, in order. */
+    public static <T> List<T> select(List<T> rows, int[] positions) {
+        List<T> selected = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            selected.add(rows.get(position));
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,269 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.niyiment.samples.datacleaning.config.WarmupProperties;
+import com.niyiment.samples.datacleaning.dto.CleanedDataResult;
+import com.niyiment.samples.datacleaning.dto.ProcessingOptions;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the upload path over synthetic data before the application reports itself ready, so the
+ * first real uploads after a deploy do not run in the interpreter. Every iteration parses each
+ * configured format, cleans the rows with the configured pipeline, builds the report with the
+ * optional numeric profile and exports
+ * the result in every download format. Iterations stop once their time has settled near the
+ * fastest one seen, or when the iteration or time limit is reached.
+ * <p>
+ * Application runners finish before Spring Boot publishes {@code ReadinessState.ACCEPTING_TRAFFIC},
+ * so {@code /actuator/health/readiness} stays out of service until the warm-up is done. The warm-up
+ * bypasses the result cache, incremental baselines and admission control.
+ */
+@Slf4j
+@Service
+public class StartupWarmup implements ApplicationRunner {
+    private static final String[] DIRT = {"", "null", "N/A", "  ", "#"};
+
+    private final WarmupProperties properties;
+    private final DataProcessingService processingService;
+    private final DataExportService exportService;
+    private final ResultCodec resultCodec;
+    private final ObjectMapper objectMapper;
+    private final Timer iterationTimer;
+    private final MeterRegistry meterRegistry;
+
+    public StartupWarmup(WarmupProperties properties,
+                         DataProcessingService processingService,
+                         DataExportService exportService,
+                         ResultCodec resultCodec,
+                         ObjectMapper objectMapper,
+                         MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.processingService = processingService;
+        this.exportService = exportService;
+        this.resultCodec = resultCodec;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.iterationTimer = Timer.builder("cleaning.warmup.iteration")
+                .description("Time of one warm-up iteration over every format and export")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        log.info("Warming up on {} rows of {} before accepting traffic", properties.getRows(), properties.getFormats());
+        long startNanos = System.nanoTime();
+        try {
+            Map<String, byte[]> inputs = syntheticInputs();
+            WarmupOutcome outcome = iterate(inputs, startNanos);
+            long elapsed = System.nanoTime() - startNanos;
+            Timer.builder("cleaning.warmup.duration")
+                    .description("Time from the start of the warm-up until iterations reached steady state or a limit")
+                    .tag("outcome", outcome.steady() ? "steady" : "limit")
+                    .register(meterRegistry)
+                    .record(elapsed, TimeUnit.NANOSECONDS);
+            log.info("Warm-up {} after {} iterations in {} ms: first iteration {} ms, fastest {} ms, last {} ms",
+                    outcome.steady() ? "reached steady state" : "stopped at its limit", outcome.iterations(),
+                    TimeUnit.NANOSECONDS.toMillis(elapsed), TimeUnit.NANOSECONDS.toMillis(outcome.firstNanos()),
+                    TimeUnit.NANOSECONDS.toMillis(outcome.fastestNanos()), TimeUnit.NANOSECONDS.toMillis(outcome.lastNanos()));
+        } catch (Exception e) {
+            // a failed warm-up only costs speed; the application still becomes ready
+            log.warn("Warm-up failed after {} ms: {}",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), e.getMessage(), e);
+        }
+    }
+
+    private WarmupOutcome iterate(Map<String, byte[]> inputs, long startNanos) throws IOException {
+        long deadline = startNanos + properties.getMaxDuration().toNanos();
+        long first = 0;
+        long fastest = Long.MAX_VALUE;
+        long last = 0;
+        int stable = 0;
+        int iteration = 0;
+        while (iteration < properties.getMaxIterations()) {
+            iteration++;
+            long iterationStart = System.nanoTime();
+            runIteration(inputs);
+            last = System.nanoTime() - iterationStart;
+            iterationTimer.record(last, TimeUnit.NANOSECONDS);
+            log.debug("Warm-up iteration {} took {} ms", iteration, TimeUnit.NANOSECONDS.toMillis(last));
+
+            if (iteration == 1) first = last;
+            stable = fastest != Long.MAX_VALUE && Math.abs(last - fastest) <= fastest * properties.getTolerance()
+                    ? stable + 1 : 0;
+            fastest = Math.min(fastest, last);
+            if (iteration >= properties.getMinIterations() && stable >= properties.getStableIterations()) {
+                return new WarmupOutcome(true, iteration, first, fastest, last);
+            }
+            if (System.nanoTime() > deadline) {
+                break;
+            }
+        }
+        return new WarmupOutcome(false, iteration, first, fastest, last);
+    }
+
+    private void runIteration(Map<String, byte[]> inputs) throws IOException {
+        CleanedDataResult exported = null;
+        for (Map.Entry<String, byte[]> input : inputs.entrySet()) {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            SourceRows sourceRows = new SourceRows();
+            processingService.readRows(input.getKey(), new ByteArrayInputStream(input.getValue()),
+                    RowSelection.all(), null, (row, sourceRow) -> {
+                        rows.add(row);
+                        sourceRows.add(sourceRow);
+                    });
+            CleanedDataResult result = processingService.cleanDetached(rows, sourceRows.toArray(), List.of(),
+                    ProcessingOptions.builder().numericProfile(true).build());
+            if (exported == null) exported = result;
+        }
+        if (exported == null) return;
+
+        for (ExportFormat format : ExportFormat.values()) {
+            if (format == ExportFormat.XLSX) {
+                processingService.exportToExcel(exported);
+            } else {
+                exportService.export(exported, format, OutputStream.nullOutputStream());
+            }
+        }
+        resultCodec.decode(resultCodec.encode(exported));
+    }
+
+    private Map<String, byte[]> syntheticInputs() throws IOException {
+        List<String> headers = new ArrayList<>(List.of("id", "age"));
+        for (int i = 1; i <= properties.getNumericColumns(); i++) headers.add("amount_" + i);
+        for (int i = 1; i <= properties.getTextColumns(); i++) headers.add("category_" + i);
+        for (int i = 1; i <= properties.getDateColumns(); i++) headers.add("date_" + i);
+        List<String[]> records = syntheticRecords(headers.size());
+
+        Map<String, byte[]> inputs = new LinkedHashMap<>();
+        for (String format : properties.getFormats()) {
+            inputs.put(format.toLowerCase(Locale.ROOT), switch (format.toLowerCase(Locale.ROOT)) {
+                case "csv" -> csv(headers, records);
+                case "json" -> objectMapper.writeValueAsBytes(objects(headers, records));
+                case "ndjson", "jsonl" -> ndjson(headers, records);
+                case "xlsx" -> xlsx(headers, records);
+                default -> throw new IllegalArgumentException("Unsupported warm-up format: " + format);
+            });
+        }
+        return inputs;
+    }
+
+    /** Values with the dirt the steps look for: blanks and sentinels, stray characters, spacing, case, outliers. */
+    private List<String[]> syntheticRecords(int columns) {
+        SplittableRandom random = new SplittableRandom(properties.getSeed());
+        int distinct = Math.max(properties.getDistinctValues(), 1);
+        List<String[]> records = new ArrayList<>(properties.getRows());
+        for (int row = 0; row < properties.getRows(); row++) {
+            if (row > 0 && random.nextInt(50) == 0) {
+                records.add(records.get(random.nextInt(row)).clone());
+                continue;
+            }
+            String[] record = new String[columns];
+            record[0] = String.valueOf(row + 1);
+            record[1] = String.valueOf(random.nextInt(40) == 0 ? 150 : 18 + random.nextInt(50));
+            int column = 2;
+            for (int i = 0; i < properties.getNumericColumns(); i++) {
+                record[column++] = String.format(Locale.ROOT, "%.2f", random.nextDouble(100_000));
+            }
+            for (int i = 0; i < properties.getTextColumns(); i++) {
+                String value = "Value " + random.nextInt(distinct);
+                record[column++] = switch (random.nextInt(8)) {
+                    case 0 -> value.toLowerCase(Locale.ROOT) + " ";
+                    case 1 -> value.replace(" ", "");
+                    case 2 -> value + "!";
+                    default -> value;
+                };
+            }
+            for (int i = 0; i < properties.getDateColumns(); i++) {
+                record[column++] = LocalDate.of(2015, 1, 1).plusDays(random.nextInt(4000)).toString();
+            }
+            if (random.nextInt(10) == 0) {
+                record[1 + random.nextInt(columns - 1)] = DIRT[random.nextInt(DIRT.length)];
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static byte[] csv(List<String> headers, List<String[]> records) {
+        StringBuilder csv = new StringBuilder(records.size() * headers.size() * 12);
+        csv.append(String.join(",", headers)).append('\n');
+        for (String[] record : records) {
+            for (int i = 0; i < record.length; i++) {
+                if (i > 0) csv.append(',');
+                csv.append(record[i].indexOf(',') >= 0 ? '"' + record[i] + '"' : record[i]);
+            }
+            csv.append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<Map<String, String>> objects(List<String> headers, List<String[]> records) {
+        List<Map<String, String>> objects = new ArrayList<>(records.size());
+        for (String[] record : records) {
+            Map<String, String> object = new LinkedHashMap<>();
+            for (int i = 0; i < headers.size(); i++) {
+                object.put(headers.get(i), record[i]);
+            }
+            objects.add(object);
+        }
+        return objects;
+    }
+
+    private byte[] ndjson(List<String> headers, List<String[]> records) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (Map<String, String> object : objects(headers, records)) {
+            outputStream.write(objectMapper.writeValueAsBytes(object));
+            outputStream.write('\n');
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] xlsx(List<String> headers, List<String[]> records) throws IOException {
+        try (Workbook workbook = new XSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet("data");
+            Row headerRow = sheet.createRow(0);
+            for (int i = 0; i < headers.size(); i++) {
+                headerRow.createCell(i).setCellValue(headers.get(i));
+            }
+            for (int r = 0; r < records.size(); r++) {
+                Row row = sheet.createRow(r + 1);
+                String[] record = records.get(r);
+                for (int i = 0; i < record.length; i++) {
+                    row.createCell(i).setCellValue(record[i]);
+                }
+            }
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            workbook.write(outputStream);
+            return outputStream.toByteArray();
+        }
+    }
+
+    private record WarmupOutcome(boolean steady, int iterations, long firstNanos, long fastestNanos, long lastNanos) {
+    }
+}
@@ -0,0 +1,420 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.config.StreamingUploadProperties;
+import com.niyiment.samples.datacleaning.dto.CleanedDataResult;
+import com.niyiment.samples.datacleaning.dto.ProcessingOptions;
+import com.niyiment.samples.datacleaning.exception.ReportProcessingException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Handles uploads whose multipart body is read as a stream instead of being buffered by the servlet
+ * container. Rows are parsed while bytes are still arriving and handed over in batches to a cleaner
+ * thread that runs the leading row-local steps, so parsing and cleaning overlap with the transfer.
+ * Raw rows are dropped once cleaned; the report's raw-side counts are accumulated on the way.
+ * With a {@link LiveRowWriter} the cleaner also sends every cleaned batch to the client, and the rows
+ * of the finished result after it.
+ */
+@Slf4j
+@Service
+public class StreamingUploadService {
+    private static final Batch END_OF_INPUT = new Batch(List.of(), null);
+    private static final String JOB_ID_FIELD = "jobId";
+    private static final String NUMERIC_PROFILE_PARAMETER = "numericProfile";
+    private static final String SCHEMA_PARAMETER = "schema";
+    private static final String COLUMNS_PARAMETER = "columns";
+    private static final String FILTER_PARAMETER = "filter";
+
+    private final DataProcessingService processingService;
+    private final CleaningPipeline cleaningPipeline;
+    private final ResultCache resultCache;
+    private final AdmissionController admissionController;
+    private final JobRegistry jobRegistry;
+    private final StreamingUploadProperties properties;
+    private final ExecutorService cleanerExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("stream-cleaner-", 0).factory());
+    private final Timer firstPageTimer;
+    private final Timer uploadTimer;
+    private final DistributionSummary uploadSize;
+
+    public StreamingUploadService(DataProcessingService processingService,
+                                  CleaningPipeline cleaningPipeline,
+                                  ResultCache resultCache,
+                                  AdmissionController admissionController,
+                                  JobRegistry jobRegistry,
+                                  StreamingUploadProperties properties,
+                                  MeterRegistry meterRegistry) {
+        this.processingService = processingService;
+        this.cleaningPipeline = cleaningPipeline;
+        this.resultCache = resultCache;
+        this.admissionController = admissionController;
+        this.jobRegistry = jobRegistry;
+        this.properties = properties;
+        this.firstPageTimer = Timer.builder("cleaning.upload.stream.first-page")
+                .description("Time from request start until the first result page was cleaned")
+                .register(meterRegistry);
+        this.uploadTimer = Timer.builder("cleaning.upload.stream.duration")
+                .description("Time to receive, parse and clean a streamed upload")
+                .register(meterRegistry);
+        this.uploadSize = DistributionSummary.builder("cleaning.upload.stream.size")
+                .description("Bytes received by streamed uploads")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public StreamedUpload process(HttpServletRequest request) {
+        return process(request, null);
+    }
+
+    /** Processes the upload, sending cleaned rows to {@code live} while it runs unless that is null. */
+    public StreamedUpload process(HttpServletRequest request, LiveRowWriter live) {
+        long startNanos = System.nanoTime();
+        long maxFileSize = properties.getMaxFileSize().toBytes();
+        JakartaServletFileUpload<?, ?> upload = new JakartaServletFileUpload<>();
+        upload.setFileSizeMax(maxFileSize);
+        upload.setSizeMax(maxFileSize + 64 * 1024);
+
+        // options come in the query string, read without getParameter, which would consume the body
+        MultiValueMap<String, String> query = UriComponentsBuilder.newInstance()
+                .query(request.getQueryString())
+                .build()
+                .getQueryParams();
+        ProcessingOptions options = ProcessingOptions.builder()
+                .numericProfile(Boolean.parseBoolean(query.getFirst(NUMERIC_PROFILE_PARAMETER)))
+                .schema(parameter(query, SCHEMA_PARAMETER))
+                .columns(parameter(query, COLUMNS_PARAMETER))
+                .filter(parameter(query, FILTER_PARAMETER))
+                .build();
+        try {
+            FileItemInputIterator items = upload.getItemIterator(request);
+            String jobId = null;
+            while (items.hasNext()) {
+                FileItemInput item = items.next();
+                if (item.isFormField()) {
+                    // the form sends the id ahead of the file, so the job can be cancelled while it streams
+                    if (JOB_ID_FIELD.equals(item.getFieldName())) {
+                        try (InputStream value = item.getInputStream()) {
+                            jobId = new String(value.readNBytes(64), StandardCharsets.US_ASCII).trim();
+                        }
+                    }
+                    continue;
+                }
+                if (item.getName() == null || item.getName().isBlank()) {
+                    continue;
+                }
+                CleanedDataResult result = jobRegistry.runAttached(item.getName(), jobId,
+                        () -> admitAndProcess(item, request.getContentLengthLong(), startNanos, options, live));
+                uploadTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                return new StreamedUpload(item.getName(), result);
+            }
+        } catch (IOException e) {
+            throw new ReportProcessingException("Error reading upload: " + e.getMessage(), e);
+        }
+        throw new ReportProcessingException("Uploaded file is empty");
+    }
+
+    /** The builder leaves query values encoded; filters in particular arrive with '=' and ';' escaped. */
+    private static String parameter(MultiValueMap<String, String> query, String name) {
+        String value = query.getFirst(name);
+        return value == null ? null : URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private CleanedDataResult admitAndProcess(FileItemInput item, long contentLength, long startNanos,
+                                              ProcessingOptions options, LiveRowWriter live) {
+        long assumedSize = properties.getUnknownSize() != null
+                ? properties.getUnknownSize().toBytes() : properties.getMaxFileSize().toBytes();
+        long estimate = admissionController.estimateFromStream(UploadFormat.fromFileName(item.getName()),
+                contentLength, assumedSize);
+        try (AdmissionController.Permit ignored = admissionController.acquire(item.getName(), estimate)) {
+            return processFileItem(item, startNanos, options, live);
+        } catch (IOException e) {
+            throw new ReportProcessingException("Error reading upload: " + e.getMessage(), e);
+        }
+    }
+
+    private CleanedDataResult processFileItem(FileItemInput item, long startNanos, ProcessingOptions options,
+                                              LiveRowWriter live) throws IOException {
+        String filename = item.getName();
+        UploadFormat uploadFormat = UploadFormat.fromFileName(filename);
+
+        List<CleaningStep> steps = cleaningPipeline.getSteps();
+        int prefixLength = 0;
+        while (prefixLength < steps.size() && steps.get(prefixLength).isRowLocal()) {
+            prefixLength++;
+        }
+        List<CleaningStep> rowLocalSteps = steps.subList(0, prefixLength);
+        DeclaredSchema.Reader schemaReader = processingService.schemaReader(options);
+        RowSelection selection = RowSelection.of(options);
+        List<CleaningStep> remainingSteps = steps.subList(prefixLength, steps.size()).stream()
+                .filter(step -> schemaReader == null || !CleaningPipeline.infersTypes(step))
+                .toList();
+
+        // rows are final as soon as the row-local steps ran when no step needs every row
+        boolean provisional = !remainingSteps.isEmpty();
+        BlockingQueue<Batch> batches = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        CancellationToken token = CancellationToken.current();
+        AtomicBoolean cleanerStarted = new AtomicBoolean();
+        CountDownLatch cleanerStopped = new CountDownLatch(1);
+        Future<List<Map<String, Object>>> cleaner = cleanerExecutor.submit(() -> {
+            if (!cleanerStarted.compareAndSet(false, true)) {
+                return List.of();
+            }
+            try (CancellationToken.Binding binding = token == null ? () -> { } : token.bind()) {
+                return cleanBatches(batches, rowLocalSteps, startNanos, live, provisional);
+            } finally {
+                cleanerStopped.countDown();
+            }
+        });
+
+        MessageDigest digest = resultCache.isEnabled() ? resultCache.newKeyDigest() : null;
+        BatchingConsumer rows = new BatchingConsumer(batches, cleaner, live != null);
+        CountingInputStream counting;
+        List<Map<String, Object>> cleanedData;
+        try (InputStream itemStream = item.getInputStream()) {
+            counting = new CountingInputStream(digest == null ? itemStream : new DigestInputStream(itemStream, digest));
+            processingService.readRows(uploadFormat.format(),
+                    processingService.decode(uploadFormat, CloseShieldInputStream.wrap(counting)), selection,
+                    schemaReader, rows);
+            counting.transferTo(OutputStream.nullOutputStream());
+            rows.finish();
+            cleanedData = cleaner.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ReportProcessingException("Upload processing was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new ReportProcessingException("Error processing file: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            stopCleaner(cleaner, cleanerStarted, cleanerStopped);
+        }
+
+        if (cleanedData.isEmpty()) {
+            throw new ReportProcessingException(DataProcessingService.noRowsMessage(selection));
+        }
+        List<String> planDescription = new ArrayList<>(CleaningPipeline.forSchema(cleaningPipeline.strictPlan(),
+                schemaReader == null ? null : schemaReader.schema()).describe());
+        planDescription.add(String.format("Streaming: steps 1-%d applied in batches of %d rows while the upload was received",
+                prefixLength, properties.getBatchSize()));
+        if (!selection.isAll()) {
+            planDescription.add(selection.describe());
+        }
+        if (live != null) {
+            planDescription.add(provisional
+                    ? String.format("Live: rows sent after steps 1-%d, then replaced by the final rows", prefixLength)
+                    : "Live: rows sent as soon as they were cleaned");
+        }
+        CleanedDataResult result;
+        try (JobScope scope = JobScope.open("stream-job")) {
+            CleaningPipeline.Run run = cleaningPipeline.execute(cleanedData, rows.sourceRows.toArray(),
+                    remainingSteps, scope);
+            if (schemaReader != null) {
+                run = run.withValidationFirst(schemaReader.violations());
+                planDescription.add(DataProcessingService.describe(schemaReader));
+            }
+            result = processingService.buildResult(scope, (int) rows.totalRecords, () -> rows.missingValuesCount,
+                    run, planDescription, options.numericProfile());
+        }
+
+        uploadSize.record(counting.count());
+        log.info("Streamed upload {}: {} bytes, {} rows in {} ms", filename, counting.count(), rows.totalRecords,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        if (digest != null) {
+            resultCache.put(processingService.cacheKey(resultCache.key(digest), options), result);
+        }
+        if (live != null) {
+            // the cleaner has stopped, so this thread is the only one writing to the client now
+            if (provisional) {
+                live.finalRows(result);
+            }
+            live.summary(result);
+        }
+        return result;
+    }
+
+    /**
+     * Cancels the cleaner and waits until it has stopped. A failed upload is then reported to the
+     * client by the request thread, which must not write while the cleaner may still be sending rows:
+     * the {@link LiveRowWriter} is not thread-safe, and a write blocked on the client ignores the
+     * interrupt. A cleaner that has not started yet never will.
+     */
+    private static void stopCleaner(Future<?> cleaner, AtomicBoolean started, CountDownLatch stopped) {
+        cleaner.cancel(true);
+        if (started.compareAndSet(false, true)) {
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                stopped.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<Map<String, Object>> cleanBatches(BlockingQueue<Batch> batches,
+                                                   List<CleaningStep> rowLocalSteps,
+                                                   long startNanos,
+                                                   LiveRowWriter live,
+                                                   boolean provisional) throws InterruptedException, IOException {
+        List<Map<String, Object>> cleaned = new ArrayList<>();
+        boolean firstPageRecorded = false;
+        while (true) {
+            Batch next = batches.take();
+            if (next == END_OF_INPUT) {
+                return cleaned;
+            }
+            List<Map<String, Object>> batch = next.rows();
+            for (CleaningStep step : rowLocalSteps) {
+                batch = CleaningPipeline.runRowPreservingStep(step, batch, null);
+            }
+            if (live != null) {
+                // blocks while the client is behind, which in turn blocks the reader once the queue is full
+                live.rows(batch, next.sourceRows(), provisional);
+            }
+            cleaned.addAll(batch);
+            if (!firstPageRecorded && cleaned.size() >= properties.getFirstPageSize()) {
+                long elapsed = System.nanoTime() - startNanos;
+                firstPageTimer.record(elapsed, TimeUnit.NANOSECONDS);
+                log.debug("First result page cleaned after {} ms", TimeUnit.NANOSECONDS.toMillis(elapsed));
+                firstPageRecorded = true;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cleanerExecutor.shutdownNow();
+    }
+
+    public record StreamedUpload(String fileName, CleanedDataResult result) {
+    }
+
+    /** Parsed rows handed to the cleaner; {@code sourceRows} is only kept when the rows are sent live. */
+    private record Batch(List<Map<String, Object>> rows, int[] sourceRows) {
+    }
+
+    /**
+     * Collects parsed rows into batches for the cleaner, counting the report's raw-side values on the
+     * way. The row-local steps keep one row per row and batches are cleaned in order, so the source
+     * rows collected here line up with the cleaned rows.
+     */
+    private final class BatchingConsumer implements SourceRowConsumer {
+        private final BlockingQueue<Batch> batches;
+        private final Future<?> cleaner;
+        private final boolean batchSourceRows;
+        private final Map<String, Long> missingValuesCount = new HashMap<>();
+        private final SourceRows sourceRows = new SourceRows();
+        private List<Map<String, Object>> batch = new ArrayList<>(properties.getBatchSize());
+        private long totalRecords;
+
+        private BatchingConsumer(BlockingQueue<Batch> batches, Future<?> cleaner, boolean batchSourceRows) {
+            this.batches = batches;
+            this.cleaner = cleaner;
+            this.batchSourceRows = batchSourceRows;
+        }
+
+        @Override
+        public void accept(Map<String, Object> row, int sourceRow) {
+            CancellationToken.checkpoint(totalRecords);
+            DataProcessingService.countMissingValues(row, missingValuesCount);
+            totalRecords++;
+            sourceRows.add(sourceRow);
+            batch.add(row);
+            if (batch.size() >= properties.getBatchSize()) {
+                handOver(batch());
+                batch = new ArrayList<>(properties.getBatchSize());
+            }
+        }
+
+        private void finish() {
+            if (!batch.isEmpty()) {
+                handOver(batch());
+            }
+            handOver(END_OF_INPUT);
+        }
+
+        private Batch batch() {
+            int size = sourceRows.size();
+            return new Batch(batch, batchSourceRows ? sourceRows.range(size - batch.size(), size) : null);
+        }
+
+        private void handOver(Batch rows) {
+            try {
+                while (!batches.offer(rows, 100, TimeUnit.MILLISECONDS)) {
+                    if (cleaner.isDone()) {
+                        cleaner.get();
+                        throw new ReportProcessingException("Cleaner stopped before the upload was read");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ReportProcessingException("Upload processing was interrupted", e);
+            } catch (ExecutionException e) {
+                throw new ReportProcessingException("Error processing file: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value != -1) count++;
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) count += read;
+            return read;
+        }
+
+        long count() {
+            return count;
+        }
+    }
+}
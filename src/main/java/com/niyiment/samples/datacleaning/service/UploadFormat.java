@@ -0,0 +1,28 @@
+package com.niyiment.samples.datacleaning.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+/**
+ * Reader format and compression of an uploaded file, taken from its name: {@code data.csv.gz}
+ * is CSV compressed with gzip.
+ */
+public record UploadFormat(String format, Compression compression) {
+
+    public static UploadFormat fromFileName(String fileName) {
+        Compression compression = Compression.fromFileName(fileName);
+        String baseName = fileName.substring(0, fileName.length() - compression.getSuffix().length());
+        String format = baseName.substring(baseName.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return new UploadFormat(format, compression);
+    }
+
+    public boolean isCompressed() {
+        return compression != Compression.NONE;
+    }
+
+    /** See {@link Compression#decode(InputStream, long)}. */
+    public InputStream decode(InputStream inputStream, long maxDecodedBytes) throws IOException {
+        return compression.decode(inputStream, maxDecodedBytes);
+    }
+}
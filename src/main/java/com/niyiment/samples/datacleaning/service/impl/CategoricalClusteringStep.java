@@ -0,0 +1,286 @@
+package com.niyiment.samples.datacleaning.service.impl;
+
+import com.niyiment.samples.datacleaning.config.ClusteringProperties;
+import com.niyiment.samples.datacleaning.service.CancellationToken;
+import com.niyiment.samples.datacleaning.service.CleaningStep;
+import com.niyiment.samples.datacleaning.service.ColumnProfile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Merges spellings of the same category, such as "New York", "new york " and "NewYork", into the
+ * most frequent spelling of the column.
+ * <p>
+ * Distinct values are first grouped by a fingerprint key (accents, case, separators and token order
+ * removed; symbols such as the "+" of "C++" are kept). Fingerprints are then blocked with MinHash over
+ * character n-grams: every band of the signature is a bucket key, and only fingerprints sharing a
+ * bucket are compared by their exact n-gram Jaccard similarity. Work grows with the number of distinct
+ * values times the number of bands rather than with its square; oversized buckets are skipped to keep
+ * it that way.
+ * <p>
+ * Values are never merged, at either stage, when the numbers in them differ, in value or in order
+ * ("5.1" and "1.5", "2023-02-01" and "2023-01-02"), and values with no letter or digit are left alone.
+ * The step rewrites data on a similarity guess, so it is not in the default pipeline.
+ */
+@Slf4j
+@Service
+public class CategoricalClusteringStep implements CleaningStep {
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NUMBERS = Pattern.compile("\\p{N}+");
+    private static final Pattern SEPARATORS =
+            Pattern.compile("[\\s\\p{Pd}\\p{Pc}\\p{Ps}\\p{Pe}\\p{Pi}\\p{Pf}.,;:!?'\"/\\\\|*]+");
+    private static final Pattern LETTER_OR_DIGIT = Pattern.compile("[\\p{L}\\p{N}]");
+
+    private final ClusteringProperties properties;
+    private final long[] hashSeeds;
+
+    public CategoricalClusteringStep(ClusteringProperties properties) {
+        this.properties = properties;
+        SplittableRandom random = new SplittableRandom(0x5EED_C1A5L);
+        this.hashSeeds = new long[properties.getBands() * properties.getRowsPerBand()];
+        for (int i = 0; i < hashSeeds.length; i++) {
+            hashSeeds[i] = random.nextLong() | 1L;
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> process(List<Map<String, Object>> data) {
+        if (data.isEmpty()) return data;
+
+        Map<String, Map<String, Integer>> valueCounts = new LinkedHashMap<>();
+        long rows = 0;
+        for (Map<String, Object> row : data) {
+            CancellationToken.checkpoint(rows++);
+            for (Map.Entry<String, Object> entry : row.entrySet()) {
+                if (entry.getValue() instanceof String text && !text.equals("N/A")) {
+                    valueCounts.computeIfAbsent(entry.getKey(), k -> new LinkedHashMap<>())
+                        .merge(text, 1, Integer::sum);
+                }
+            }
+        }
+
+        Map<String, Map<String, String>> replacements = new LinkedHashMap<>();
+        valueCounts.forEach((column, counts) -> {
+            if (counts.size() < 2 || counts.size() > data.size() * properties.getMaxDistinctRatio()) return;
+            Map<String, String> canonical = cluster(counts);
+            if (!canonical.isEmpty()) {
+                log.debug("Clustering {}: {} of {} distinct values rewritten", column, canonical.size(), counts.size());
+                replacements.put(column, canonical);
+            }
+        });
+        if (replacements.isEmpty()) return data;
+
+        List<Map<String, Object>> result = new ArrayList<>(data.size());
+        for (Map<String, Object> row : data) {
+            CancellationToken.checkpoint(result.size());
+            Map<String, Object> copy = null;
+            for (Map.Entry<String, Map<String, String>> column : replacements.entrySet()) {
+                if (!(row.get(column.getKey()) instanceof String text)) continue;
+                String replacement = column.getValue().get(text);
+                if (replacement != null) {
+                    if (copy == null) copy = new HashMap<>(row);
+                    copy.put(column.getKey(), replacement);
+                }
+            }
+            result.add(copy == null ? row : copy);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean canChange(ColumnProfile profile) {
+        return profile.hasStrings();
+    }
+
+    /** Maps every value that is not the representative of its cluster to that representative. */
+    Map<String, String> cluster(Map<String, Integer> counts) {
+        String[] values = counts.keySet().toArray(String[]::new);
+        int[] valueFingerprint = new int[values.length];
+        Map<Fingerprint, Integer> fingerprintIds = new HashMap<>();
+        List<Fingerprint> fingerprints = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            Fingerprint fingerprint = Fingerprint.of(values[i]);
+            if (fingerprint == null) {
+                valueFingerprint[i] = -1;
+                continue;
+            }
+            Integer id = fingerprintIds.get(fingerprint);
+            if (id == null) {
+                id = fingerprints.size();
+                fingerprintIds.put(fingerprint, id);
+                fingerprints.add(fingerprint);
+            }
+            valueFingerprint[i] = id;
+        }
+
+        int[] parent = new int[fingerprints.size()];
+        for (int i = 0; i < parent.length; i++) parent[i] = i;
+        if (fingerprints.size() > 1) {
+            mergeSimilarFingerprints(fingerprints, parent);
+        }
+
+        int[] representative = new int[parent.length];
+        Arrays.fill(representative, -1);
+        for (int i = 0; i < values.length; i++) {
+            if (valueFingerprint[i] < 0) continue;
+            int root = find(parent, valueFingerprint[i]);
+            int current = representative[root];
+            if (current < 0 || counts.get(values[i]) > counts.get(values[current])) {
+                representative[root] = i;
+            }
+        }
+
+        Map<String, String> canonical = new HashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            if (valueFingerprint[i] < 0) continue;
+            int best = representative[find(parent, valueFingerprint[i])];
+            if (best != i) {
+                canonical.put(values[i], values[best]);
+            }
+        }
+        return canonical;
+    }
+
+    private void mergeSimilarFingerprints(List<Fingerprint> fingerprints, int[] parent) {
+        int rowsPerBand = properties.getRowsPerBand();
+        int[][] shingles = new int[fingerprints.size()][];
+        Map<Long, List<Integer>> blocks = new HashMap<>();
+        long[] signature = new long[hashSeeds.length];
+
+        for (int id = 0; id < shingles.length; id++) {
+            String tokens = fingerprints.get(id).tokens();
+            if (tokens.length() < properties.getMinFingerprintLength()) continue;
+            shingles[id] = shingles(tokens);
+            minHash(shingles[id], signature);
+            for (int band = 0; band < properties.getBands(); band++) {
+                long key = band;
+                for (int row = band * rowsPerBand; row < (band + 1) * rowsPerBand; row++) {
+                    key = mix(key * 0x9E3779B97F4A7C15L + signature[row]);
+                }
+                blocks.computeIfAbsent(key, k -> new ArrayList<>(2)).add(id);
+            }
+        }
+
+        double threshold = properties.getSimilarityThreshold();
+        int skipped = 0;
+        for (List<Integer> block : blocks.values()) {
+            if (block.size() < 2) continue;
+            if (block.size() > properties.getMaxBlockSize()) {
+                skipped++;
+                continue;
+            }
+            for (int i = 0; i < block.size(); i++) {
+                for (int j = i + 1; j < block.size(); j++) {
+                    int a = find(parent, block.get(i));
+                    int b = find(parent, block.get(j));
+                    // "Zone 1" and "Zone 2" are near-identical as n-grams but never the same category
+                    String numbers = fingerprints.get(block.get(i)).numbers();
+                    if (a != b && numbers.equals(fingerprints.get(block.get(j)).numbers())
+                        && jaccard(shingles[block.get(i)], shingles[block.get(j)]) >= threshold) {
+                        parent[Math.max(a, b)] = Math.min(a, b);
+                    }
+                }
+            }
+        }
+        if (skipped > 0) {
+            log.debug("Skipped {} blocks larger than {} fingerprints", skipped, properties.getMaxBlockSize());
+        }
+    }
+
+    /**
+     * What a value is grouped and compared by.
+     *
+     * @param tokens  lower-cased, accent-free tokens in sorted order, joined without separators
+     * @param numbers the runs of digits of the value in the order they appear, which sorting the tokens
+     *                would lose
+     */
+    record Fingerprint(String tokens, String numbers) {
+
+        /** The fingerprint of {@code value}, or null when it has no letter or digit to go by. */
+        static Fingerprint of(String value) {
+            String folded = MARKS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+            if (!LETTER_OR_DIGIT.matcher(folded).find()) return null;
+            TreeSet<String> tokens = new TreeSet<>();
+            for (String token : SEPARATORS.split(folded)) {
+                if (!token.isEmpty()) tokens.add(token);
+            }
+            StringBuilder numbers = new StringBuilder();
+            NUMBERS.matcher(folded).results().forEach(number -> numbers.append(number.group()).append(' '));
+            return new Fingerprint(String.join("", tokens), numbers.toString());
+        }
+    }
+
+    /** Sorted, distinct hashes of the character n-grams of {@code text}. */
+    private int[] shingles(String text) {
+        int size = Math.min(properties.getNgramSize(), text.length());
+        int[] hashes = new int[text.length() - size + 1];
+        for (int start = 0; start < hashes.length; start++) {
+            int hash = 0;
+            for (int i = start; i < start + size; i++) {
+                hash = hash * 31 + text.charAt(i);
+            }
+            hashes[start] = hash;
+        }
+        Arrays.sort(hashes);
+        int distinct = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            if (i == 0 || hashes[i] != hashes[i - 1]) hashes[distinct++] = hashes[i];
+        }
+        return Arrays.copyOf(hashes, distinct);
+    }
+
+    private void minHash(int[] shingles, long[] signature) {
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (int shingle : shingles) {
+            for (int i = 0; i < hashSeeds.length; i++) {
+                long hash = mix(shingle * hashSeeds[i]);
+                if (hash < signature[i]) signature[i] = hash;
+            }
+        }
+    }
+
+    private static double jaccard(int[] a, int[] b) {
+        int i = 0;
+        int j = 0;
+        int shared = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) shared / (a.length + b.length - shared);
+    }
+
+    private static int find(int[] parent, int id) {
+        while (parent[id] != id) {
+            parent[id] = parent[parent[id]];
+            id = parent[id];
+        }
+        return id;
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+}
@@ -1,20 +1,26 @@
 package com.niyiment.samples.datacleaning.service.impl;
 
 
+import com.niyiment.samples.datacleaning.service.CancellationToken;
 import com.niyiment.samples.datacleaning.service.CleaningStep;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
 public class CategoricalStandardizationStep implements CleaningStep {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
     @Override
     public List<Map<String, Object>> process(List<Map<String, Object>> data) {
         if (data.isEmpty()) return data;
 
         Map<String, Set<Object>> uniqueValues = new HashMap<>();
+        long rows = 0;
         for (Map<String, Object> row : data) {
+            CancellationToken.checkpoint(rows++);
             for (Map.Entry<String, Object> entry : row.entrySet()) {
                 uniqueValues.computeIfAbsent(entry.getKey(), k -> new HashSet<>())
                     .add(entry.getValue());
@@ -32,7 +38,7 @@ public class CategoricalStandardizationStep implements CleaningStep {
                 entry -> {
                     if (categoricalColumns.contains(entry.getKey()) && entry.getValue() instanceof String) {
                         String value = (String) entry.getValue();
-                        return value.trim().replaceAll("\\s+", "_");
+                        return WHITESPACE.matcher(value.trim()).replaceAll("_");
                     }
                     return entry.getValue();
                 }
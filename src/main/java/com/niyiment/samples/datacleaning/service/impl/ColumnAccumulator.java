@@ -0,0 +1,134 @@
+package com.niyiment.samples.datacleaning.service.impl;
+
+import com.niyiment.samples.datacleaning.service.kernel.QuantileSketch;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One-pass statistics of a single column: missing cells as a bitmap of row indexes, the value type,
+ * a compensated sum and a quantile sketch over numeric and date values, and a bounded Misra-Gries
+ * summary of the most frequent values. Accumulators built over disjoint row ranges, in parallel or
+ * batch by batch while streaming, merge into the one a single pass would have built, up to the
+ * sketch and summary approximations.
+ */
+final class ColumnAccumulator {
+    private final int modeCapacity;
+    private final BitSet missing = new BitSet();
+    private final QuantileSketch sketch;
+    private final Map<Object, Long> frequent = new LinkedHashMap<>();
+    private Class<?> type;
+    private long numericCount;
+    private double sum;
+    private double compensation;
+
+    ColumnAccumulator(int sketchCapacity, int modeCapacity) {
+        this.sketch = new QuantileSketch(sketchCapacity);
+        this.modeCapacity = modeCapacity;
+    }
+
+    void accept(int row, Object value) {
+        if (isMissing(value)) {
+            missing.set(row);
+            return;
+        }
+        type = mergeType(type, value.getClass());
+        if (value instanceof Number number) {
+            addNumeric(number.doubleValue());
+        } else if (value instanceof LocalDate date) {
+            addNumeric(date.toEpochDay());
+        }
+        frequent.merge(value, 1L, Long::sum);
+        if (frequent.size() > modeCapacity) {
+            decrementFrequent(1);
+        }
+    }
+
+    ColumnAccumulator merge(ColumnAccumulator other) {
+        missing.or(other.missing);
+        if (other.type != null) {
+            type = mergeType(type, other.type);
+        }
+        numericCount += other.numericCount;
+        addCompensated(other.sum);
+        addCompensated(-other.compensation);
+        sketch.merge(other.sketch);
+        other.frequent.forEach((value, count) -> frequent.merge(value, count, Long::sum));
+        if (frequent.size() > modeCapacity) {
+            List<Long> counts = new ArrayList<>(frequent.values());
+            counts.sort(Comparator.reverseOrder());
+            decrementFrequent(counts.get(modeCapacity));
+        }
+        return this;
+    }
+
+    BitSet missing() {
+        return missing;
+    }
+
+    /** Common type of the present values: a boxed primitive, LocalDate, or Object when they disagree. */
+    Class<?> type() {
+        return type;
+    }
+
+    double mean() {
+        return numericCount == 0 ? Double.NaN : (sum - compensation) / numericCount;
+    }
+
+    double median() {
+        return sketch.quantile(0.5);
+    }
+
+    Object mode() {
+        Object mode = null;
+        long best = 0;
+        for (Map.Entry<Object, Long> entry : frequent.entrySet()) {
+            if (entry.getValue() > best) {
+                mode = entry.getKey();
+                best = entry.getValue();
+            }
+        }
+        return mode;
+    }
+
+    static boolean isMissing(Object value) {
+        if (value == null) return true;
+        if (value instanceof String text) {
+            return text.isBlank() || text.equalsIgnoreCase("N/A") || text.equalsIgnoreCase("null");
+        }
+        return false;
+    }
+
+    private void addNumeric(double value) {
+        numericCount++;
+        addCompensated(value);
+        sketch.add(value);
+    }
+
+    /** Kahan summation, so the mean of a long column does not drift with the row order. */
+    private void addCompensated(double value) {
+        double adjusted = value - compensation;
+        double total = sum + adjusted;
+        compensation = (total - sum) - adjusted;
+        sum = total;
+    }
+
+    private void decrementFrequent(long amount) {
+        frequent.replaceAll((value, count) -> count - amount);
+        frequent.values().removeIf(count -> count <= 0);
+    }
+
+    private static Class<?> mergeType(Class<?> existing, Class<?> added) {
+        if (existing == null || existing == added) return added;
+        if (Number.class.isAssignableFrom(existing) && Number.class.isAssignableFrom(added)) {
+            if (existing == Double.class || added == Double.class) return Double.class;
+            if (existing == Long.class || added == Long.class) return Long.class;
+        }
+        return Object.class;
+    }
+}
@@ -1,18 +1,25 @@
 package com.niyiment.samples.datacleaning.service.impl;
 
 import com.niyiment.samples.datacleaning.dto.ValidationResult;
+import com.niyiment.samples.datacleaning.service.CancellationToken;
 import com.niyiment.samples.datacleaning.service.CleaningStep;
+import com.niyiment.samples.datacleaning.service.ParseHints;
+import com.niyiment.samples.datacleaning.service.kernel.NumericKernels;
 import lombok.Getter;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 @Service
 public class DataValidationStep implements CleaningStep {
+    private static final double MIN_AGE = 0;
+    private static final double MAX_AGE = 120;
     private final LocalDate currentDate = LocalDate.of(2025, 3, 25);
+    private final NumericKernels kernels = NumericKernels.best();
     private static final DateTimeFormatter[] DATE_FORMATTERS = {
         DateTimeFormatter.ofPattern("M/d/yyyy"),
         DateTimeFormatter.ofPattern("yyyy-MM-dd"),
@@ -28,32 +35,51 @@ public class DataValidationStep implements CleaningStep {
 
     @Override
     public List<Map<String, Object>> process(List<Map<String, Object>> data) {
-        validationResult = new ValidationResult();
+        validationResult = validate(data);
+        return data;
+    }
+
+    /**
+     * Checks {@code data} without touching it or this step's state, so a job can run it as a subtask
+     * next to the rest of the pipeline.
+     */
+    public ValidationResult validate(List<Map<String, Object>> data) {
+        return validate(data, null);
+    }
+
+    /**
+     * Validates like {@link #validate(List)}, but reports each error under the row's source row, so it
+     * points at the line or sheet row the value came from even after rows were dropped.
+     */
+    public ValidationResult validate(List<Map<String, Object>> data, int[] sourceRows) {
+        ValidationResult validationResult = new ValidationResult();
+        Map<String, long[]> ageOutOfRange = findAgesOutOfRange(data);
 
         for (int i = 0; i < data.size(); i++) {
+            CancellationToken.checkpoint(i);
             Map<String, Object> row = data.get(i);
+            int rowNumber = sourceRows == null ? i : sourceRows[i];
             for (Map.Entry<String, Object> entry : row.entrySet()) {
                 String key = entry.getKey();
                 Object value = entry.getValue();
 
-                if (value instanceof Number) {
+                long[] outOfRange = ageOutOfRange.get(key);
+                if (outOfRange != null && NumericKernels.isSet(outOfRange, i)) {
                     double numValue = ((Number) value).doubleValue();
-                    if (key.toLowerCase().contains("age") && (numValue < 0 || numValue > 120)) {
-                        validationResult.addError(String.format("Row %d, column %s: Age %s is out of range (0-120)", i, key, numValue));
-                    }
+                    validationResult.addError(String.format("Row %d, column %s: Age %s is out of range (0-120)", rowNumber, key, numValue));
                 }
 
                 if (value instanceof LocalDate) {
                     LocalDate date = (LocalDate) value;
                     if (date.isAfter(currentDate)) {
-                        validationResult.addError(String.format("Row %d, column %s: Date %s is in the future", i, key, date));
+                        validationResult.addError(String.format("Row %d, column %s: Date %s is in the future", rowNumber, key, date));
                     }
-                } else if (value instanceof String && !value.equals("N/A")) {
+                } else if (value instanceof String text && ParseHints.mayBeDate(text)) {
                     for (DateTimeFormatter formatter : DATE_FORMATTERS) {
                         try {
                             LocalDate date = LocalDate.parse((String) value, formatter);
                             if (date.isAfter(currentDate)) {
-                                validationResult.addError(String.format("Row %d, column %s: Date %s is in the future", i, key, date));
+                                validationResult.addError(String.format("Row %d, column %s: Date %s is in the future", rowNumber, key, date));
                             }
                             break;
                         } catch (Exception ignored) {}
@@ -61,7 +87,37 @@ public class DataValidationStep implements CleaningStep {
                 }
             }
         }
-        return data;
+        return validationResult;
     }
 
+    /**
+     * Range-checks every age column in one kernel pass. The returned masks are indexed by row;
+     * a bit is only set where the row holds a number, so rows with other values are never flagged.
+     */
+    private Map<String, long[]> findAgesOutOfRange(List<Map<String, Object>> data) {
+        Map<String, double[]> ageColumns = new HashMap<>();
+        Map<String, long[]> numericRows = new HashMap<>();
+        for (int i = 0; i < data.size(); i++) {
+            CancellationToken.checkpoint(i);
+            for (Map.Entry<String, Object> entry : data.get(i).entrySet()) {
+                if (entry.getValue() instanceof Number number && entry.getKey().toLowerCase().contains("age")) {
+                    ageColumns.computeIfAbsent(entry.getKey(), k -> new double[data.size()])[i] = number.doubleValue();
+                    numericRows.computeIfAbsent(entry.getKey(), k -> NumericKernels.newMask(data.size()))[i >>> 6] |= 1L << i;
+                }
+            }
+        }
+
+        Map<String, long[]> outOfRange = new HashMap<>();
+        for (Map.Entry<String, double[]> entry : ageColumns.entrySet()) {
+            long[] mask = NumericKernels.newMask(data.size());
+            if (kernels.markOutside(entry.getValue(), data.size(), MIN_AGE, MAX_AGE, mask) > 0) {
+                long[] present = numericRows.get(entry.getKey());
+                for (int word = 0; word < mask.length; word++) {
+                    mask[word] &= present[word];
+                }
+                outOfRange.put(entry.getKey(), mask);
+            }
+        }
+        return outOfRange;
+    }
 }
\ No newline at end of file
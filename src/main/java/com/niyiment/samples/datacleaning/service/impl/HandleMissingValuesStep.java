@@ -1,10 +1,12 @@
 package com.niyiment.samples.datacleaning.service.impl;
 
 import com.niyiment.samples.datacleaning.service.CleaningStep;
+import com.niyiment.samples.datacleaning.service.ColumnProfile;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -14,16 +16,32 @@ public class HandleMissingValuesStep implements CleaningStep {
         return data.stream().map(row -> row.entrySet().stream()
             .collect(Collectors.toMap(
                 Map.Entry::getKey,
-                entry -> {
-                    Object value = entry.getValue();
-                    if (value == null ||
-                        (value instanceof String &&
-                            (((String) value).trim().isEmpty() ||
-                             ((String) value).equalsIgnoreCase("null")))) {
-                        return "N/A";
-                    }
-                    return value;
-                }
+                entry -> cleanValue(entry.getValue())
             ))).toList();
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<Map<String, Object>> process(List<Map<String, Object>> data, Set<String> columns) {
+        return RowRewriter.rewrite(data, columns, this::cleanValue);
+    }
+
+    @Override
+    public boolean isRowLocal() {
+        return true;
+    }
+
+    @Override
+    public boolean canChange(ColumnProfile profile) {
+        return profile.hasMissing();
+    }
+
+    private Object cleanValue(Object value) {
+        if (value == null ||
+            (value instanceof String &&
+                (((String) value).trim().isEmpty() ||
+                 ((String) value).equalsIgnoreCase("null")))) {
+            return "N/A";
+        }
+        return value;
+    }
+}
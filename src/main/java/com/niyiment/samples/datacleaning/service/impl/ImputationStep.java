@@ -0,0 +1,163 @@
+package com.niyiment.samples.datacleaning.service.impl;
+
+import com.niyiment.samples.datacleaning.config.ImputationProperties;
+import com.niyiment.samples.datacleaning.config.ImputationProperties.Strategy;
+import com.niyiment.samples.datacleaning.config.TypeInferenceProperties;
+import com.niyiment.samples.datacleaning.service.CancellationToken;
+import com.niyiment.samples.datacleaning.service.CleaningStep;
+import com.niyiment.samples.datacleaning.service.JobScope;
+import com.niyiment.samples.datacleaning.service.JobScope.Subtask;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fills missing cells with a per-column statistic, so typed columns stay typed instead of carrying
+ * the "N/A" sentinel. Statistics come from one pass of {@link ColumnAccumulator}s, forked over
+ * chunks into a {@link JobScope} for large inputs and merged in row order; the accumulators' missing
+ * bitmaps then say exactly which cells to fill, without scanning the rows for sentinels again.
+ */
+@Slf4j
+@Service
+public class ImputationStep implements CleaningStep {
+    private final ImputationProperties properties;
+    private final TypeInferenceProperties typeInferenceProperties;
+
+    public ImputationStep(ImputationProperties properties, TypeInferenceProperties typeInferenceProperties) {
+        this.properties = properties;
+        this.typeInferenceProperties = typeInferenceProperties;
+    }
+
+    @Override
+    public List<Map<String, Object>> process(List<Map<String, Object>> data) {
+        if (data.isEmpty()) return data;
+
+        Map<String, ColumnAccumulator> accumulators = accumulate(data);
+        List<Map<String, Object>> result = null;
+        for (Map.Entry<String, ColumnAccumulator> entry : accumulators.entrySet()) {
+            String column = entry.getKey();
+            ColumnAccumulator accumulator = entry.getValue();
+            BitSet missing = accumulator.missing();
+            if (missing.isEmpty() || accumulator.type() == null) continue;
+
+            Object fill = fillValue(column, accumulator);
+            if (fill == null) continue;
+            if (result == null) result = new ArrayList<>(data);
+            for (int row = missing.nextSetBit(0); row >= 0; row = missing.nextSetBit(row + 1)) {
+                Map<String, Object> copy = result.get(row);
+                if (copy == data.get(row)) {
+                    copy = new HashMap<>(copy);
+                    result.set(row, copy);
+                }
+                copy.put(column, fill);
+            }
+            log.debug("Imputed {} cells of {} with {}", missing.cardinality(), column, fill);
+        }
+        return result == null ? data : result;
+    }
+
+    private Map<String, ColumnAccumulator> accumulate(List<Map<String, Object>> data) {
+        int chunkSize = Math.max(properties.getParallelChunkSize(), 1);
+        int chunks = (data.size() + chunkSize - 1) / chunkSize;
+        if (chunks <= 1) {
+            return accumulate(data, 0, data.size());
+        }
+        // subtasks run under the job's token and are cancelled with the job instead of outliving it
+        try (JobScope scope = JobScope.open("imputation")) {
+            List<Subtask<Map<String, ColumnAccumulator>>> parts = new ArrayList<>(chunks);
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                int from = chunk * chunkSize;
+                int to = Math.min(data.size(), from + chunkSize);
+                parts.add(scope.fork("imputation-" + chunk, () -> accumulate(data, from, to)));
+            }
+            scope.join();
+            Map<String, ColumnAccumulator> accumulators = parts.get(0).get();
+            for (int chunk = 1; chunk < chunks; chunk++) {
+                merge(accumulators, parts.get(chunk).get());
+            }
+            return accumulators;
+        }
+    }
+
+    private Map<String, ColumnAccumulator> accumulate(List<Map<String, Object>> data, int from, int to) {
+        Map<String, ColumnAccumulator> accumulators = new LinkedHashMap<>();
+        for (int row = from; row < to; row++) {
+            CancellationToken.checkpoint(row);
+            for (Map.Entry<String, Object> entry : data.get(row).entrySet()) {
+                accumulators.computeIfAbsent(entry.getKey(),
+                        k -> new ColumnAccumulator(properties.getSketchCapacity(), properties.getModeCapacity()))
+                    .accept(row, entry.getValue());
+            }
+        }
+        return accumulators;
+    }
+
+    private static Map<String, ColumnAccumulator> merge(Map<String, ColumnAccumulator> left,
+                                                        Map<String, ColumnAccumulator> right) {
+        right.forEach((column, accumulator) -> left.merge(column, accumulator, ColumnAccumulator::merge));
+        return left;
+    }
+
+    private Object fillValue(String column, ColumnAccumulator accumulator) {
+        Class<?> type = accumulator.type();
+        Strategy strategy = properties.getColumns().get(column);
+        if (strategy == null) {
+            // a made-up identifier is worse than a missing one
+            strategy = isIdentifierColumn(column) ? Strategy.NONE : defaultStrategy(type);
+        }
+        return switch (strategy) {
+            case NONE -> null;
+            case MEAN -> fromNumber(accumulator.mean(), type);
+            case MEDIAN -> fromNumber(accumulator.median(), type);
+            case MODE -> accumulator.mode();
+            case CONSTANT -> constant(column, type);
+        };
+    }
+
+    private Strategy defaultStrategy(Class<?> type) {
+        if (Number.class.isAssignableFrom(type)) return properties.getNumericStrategy();
+        if (type == LocalDate.class) return properties.getDateStrategy();
+        return properties.getTextStrategy();
+    }
+
+    private boolean isIdentifierColumn(String column) {
+        List<String> patterns = typeInferenceProperties.getIdentifierPatterns();
+        return patterns != null && patterns.stream().anyMatch(pattern -> column.toLowerCase().matches(pattern));
+    }
+
+    /** Converts a mean or median back to the column's type; columns without numbers get nothing. */
+    private static Object fromNumber(double value, Class<?> type) {
+        if (Double.isNaN(value)) return null;
+        if (type == Integer.class) return (int) Math.round(value);
+        if (type == Long.class) return Math.round(value);
+        if (type == Double.class) return value;
+        if (type == LocalDate.class) return LocalDate.ofEpochDay(Math.round(value));
+        return null;
+    }
+
+    private Object constant(String column, Class<?> type) {
+        String constant = properties.getConstants().get(column);
+        if (constant == null) {
+            log.warn("No constant configured for column {}, leaving its missing values", column);
+            return null;
+        }
+        try {
+            if (type == Integer.class) return Integer.parseInt(constant.trim());
+            if (type == Long.class) return Long.parseLong(constant.trim());
+            if (type == Double.class) return Double.parseDouble(constant.trim());
+            if (type == Boolean.class) return Boolean.parseBoolean(constant.trim());
+            if (type == LocalDate.class) return LocalDate.parse(constant.trim());
+        } catch (RuntimeException e) {
+            log.warn("Constant '{}' does not fit column {} of type {}", constant, column, type.getSimpleName());
+            return null;
+        }
+        return constant;
+    }
+}
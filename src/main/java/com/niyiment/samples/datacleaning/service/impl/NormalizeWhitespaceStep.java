@@ -1,27 +1,48 @@
 package com.niyiment.samples.datacleaning.service.impl;
 
 import com.niyiment.samples.datacleaning.service.CleaningStep;
+import com.niyiment.samples.datacleaning.service.ColumnProfile;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
 public class NormalizeWhitespaceStep implements CleaningStep {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
     @Override
     public List<Map<String, Object>> process(List<Map<String, Object>> data) {
         return data.stream().map(row -> row.entrySet().stream()
             .collect(Collectors.toMap(
                 Map.Entry::getKey,
-                entry -> {
-                    Object value = entry.getValue();
-                    if (value instanceof String && !value.equals("N/A")) {
-                        return ((String) value).trim().replaceAll("\\s+", " ");
-                    }
-                    return value;
-                }
+                entry -> cleanValue(entry.getValue())
             )))
             .toList();
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<Map<String, Object>> process(List<Map<String, Object>> data, Set<String> columns) {
+        return RowRewriter.rewrite(data, columns, this::cleanValue);
+    }
+
+    @Override
+    public boolean isRowLocal() {
+        return true;
+    }
+
+    @Override
+    public boolean canChange(ColumnProfile profile) {
+        return profile.hasIrregularWhitespace();
+    }
+
+    private Object cleanValue(Object value) {
+        if (value instanceof String && !value.equals("N/A")) {
+            return WHITESPACE.matcher(((String) value).trim()).replaceAll(" ");
+        }
+        return value;
+    }
+}
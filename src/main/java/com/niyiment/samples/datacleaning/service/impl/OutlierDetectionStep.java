@@ -1,60 +1,73 @@
 package com.niyiment.samples.datacleaning.service.impl;
 
+import com.niyiment.samples.datacleaning.service.CancellationToken;
 import com.niyiment.samples.datacleaning.service.CleaningStep;
+import com.niyiment.samples.datacleaning.service.kernel.DoubleColumn;
+import com.niyiment.samples.datacleaning.service.kernel.NumericKernels;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Slf4j
 @Service
 public class OutlierDetectionStep implements CleaningStep {
+    private final NumericKernels kernels = NumericKernels.best();
+
     @Override
     public List<Map<String, Object>> process(List<Map<String, Object>> data) {
         if (data.isEmpty()) return data;
 
-        Map<String, List<Double>> numericColumns = new HashMap<>();
-        for (Map<String, Object> row : data) {
-            for (Map.Entry<String, Object> entry : row.entrySet()) {
-                if (entry.getValue() instanceof Number) {
-                    numericColumns.computeIfAbsent(entry.getKey(), k -> new ArrayList<>())
-                        .add(((Number) entry.getValue()).doubleValue());
+        Map<String, DoubleColumn> numericColumns = new HashMap<>();
+        for (int i = 0; i < data.size(); i++) {
+            CancellationToken.checkpoint(i);
+            for (Map.Entry<String, Object> entry : data.get(i).entrySet()) {
+                if (entry.getValue() instanceof Number number) {
+                    numericColumns.computeIfAbsent(entry.getKey(), k -> new DoubleColumn())
+                        .add(i, number.doubleValue());
                 }
             }
         }
 
-        Map<String, Double> lowerBounds = new HashMap<>();
-        Map<String, Double> upperBounds = new HashMap<>();
-        for (Map.Entry<String, List<Double>> entry : numericColumns.entrySet()) {
-            List<Double> values = entry.getValue().stream().sorted().toList();
-            int size = values.size();
-            double q1 = values.get(size / 4);
-            double q3 = values.get(3 * size / 4);
+        Map<String, BitSet> outlierRows = new HashMap<>();
+        for (Map.Entry<String, DoubleColumn> entry : numericColumns.entrySet()) {
+            DoubleColumn column = entry.getValue();
+            double[] sorted = column.sortedCopy();
+            int size = sorted.length;
+            double q1 = sorted[size / 4];
+            double q3 = sorted[3 * size / 4];
             double iqr = q3 - q1;
-            lowerBounds.put(entry.getKey(), q1 - 1.5 * iqr);
-            upperBounds.put(entry.getKey(), q3 + 1.5 * iqr);
+
+            long[] mask = NumericKernels.newMask(size);
+            if (kernels.markOutside(column.values(), size, q1 - 1.5 * iqr, q3 + 1.5 * iqr, mask) > 0) {
+                BitSet rows = new BitSet(data.size());
+                for (int position = 0; position < size; position++) {
+                    if (NumericKernels.isSet(mask, position)) {
+                        rows.set(column.row(position));
+                    }
+                }
+                outlierRows.put(entry.getKey(), rows);
+            }
         }
 
-        return data.stream().map(row -> row.entrySet().stream()
+        return IntStream.range(0, data.size()).mapToObj(index -> data.get(index).entrySet().stream()
             .collect(Collectors.toMap(
                 Map.Entry::getKey,
                 entry -> {
                     Object value = entry.getValue();
-                    if (value instanceof Number) {
-                        double numValue = ((Number) value).doubleValue();
-                        String key = entry.getKey();
-                        if (numValue < lowerBounds.getOrDefault(key, Double.NEGATIVE_INFINITY) ||
-                            numValue > upperBounds.getOrDefault(key, Double.POSITIVE_INFINITY)) {
-                            log.info("Outlier detected in column {}: {}", key, numValue);
-                            return "OUTLIER_" + numValue;
-                        }
+                    BitSet rows = outlierRows.get(entry.getKey());
+                    if (rows != null && rows.get(index) && value instanceof Number number) {
+                        double numValue = number.doubleValue();
+                        log.info("Outlier detected in column {}: {}", entry.getKey(), numValue);
+                        return "OUTLIER_" + numValue;
                     }
                     return value;
                 }
             ))).toList();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,65 @@
+package com.niyiment.samples.datacleaning.service.impl;
+
+import com.niyiment.samples.datacleaning.service.CancellationToken;
+import com.niyiment.samples.datacleaning.service.CleaningStep;
+import com.niyiment.samples.datacleaning.service.ReferenceTables;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Joins every row against the configured reference tables: the columns a table copies are added to
+ * the row, missing ({@code N/A}) when its key is not in the table or the cell is empty, and the table's match column, if any, records
+ * whether it was. Each lookup is one probe of a shared {@link com.niyiment.samples.datacleaning.service.kernel.ReferenceIndex}.
+ * Like the other row-local steps it copies a row only when a value it sets differs from the row's own.
+ */
+@Service
+public class ReferenceLookupStep implements CleaningStep {
+    private static final String MISSING = "N/A";
+
+    private final ReferenceTables referenceTables;
+
+    public ReferenceLookupStep(ReferenceTables referenceTables) {
+        this.referenceTables = referenceTables;
+    }
+
+    @Override
+    public List<Map<String, Object>> process(List<Map<String, Object>> data) {
+        if (referenceTables.isEmpty() || data.isEmpty()) return data;
+
+        List<ReferenceTables.Table> tables = referenceTables.forCurrentJob();
+        List<Map<String, Object>> result = new ArrayList<>(data.size());
+        long rows = 0;
+        for (Map<String, Object> row : data) {
+            CancellationToken.checkpoint(rows++);
+            Map<String, Object> copy = null;
+            for (ReferenceTables.Table table : tables) {
+                // a later table may look up a column an earlier one added
+                String key = table.keyOf(copy == null ? row : copy);
+                int match = key == null ? -1 : table.index().find(key);
+                String[] targets = table.targets();
+                for (int column = 0; column < targets.length; column++) {
+                    String value = match < 0 ? null : table.index().value(match, column + 1);
+                    copy = RowRewriter.put(row, copy, targets[column], value == null ? MISSING : value);
+                }
+                if (table.matchColumn() != null) {
+                    copy = RowRewriter.put(row, copy, table.matchColumn(), match >= 0);
+                }
+            }
+            result.add(copy == null ? row : copy);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isRowLocal() {
+        return true;
+    }
+
+    @Override
+    public String dataVersion() {
+        return referenceTables.version();
+    }
+}
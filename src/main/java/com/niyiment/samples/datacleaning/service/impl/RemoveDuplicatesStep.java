@@ -1,13 +1,16 @@
 package com.niyiment.samples.datacleaning.service.impl;
 
+import com.niyiment.samples.datacleaning.service.CancellationToken;
 import com.niyiment.samples.datacleaning.service.CleaningStep;
+import com.niyiment.samples.datacleaning.service.SourceRows;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @Service
 public class RemoveDuplicatesStep implements CleaningStep {
@@ -24,20 +27,36 @@ public class RemoveDuplicatesStep implements CleaningStep {
 
     @Override
     public List<Map<String, Object>> process(List<Map<String, Object>> data) {
-        if (keyColumns.isEmpty()) {
-            return data.stream()
-                    .distinct()
-                    .collect(Collectors.toList());
+        return SourceRows.select(data, retainedRows(data));
+    }
 
+    /** Keeps the first row of every distinct row, or of every distinct key when key columns are set. */
+    @Override
+    public int[] retainedRows(List<Map<String, Object>> data) {
+        Set<Object> seen = new HashSet<>();
+        int[] retained = new int[data.size()];
+        int count = 0;
+        for (int i = 0; i < data.size(); i++) {
+            CancellationToken.checkpoint(i);
+            Map<String, Object> row = data.get(i);
+            Object key = keyColumns.isEmpty() ? row : keyOf(row);
+            if (seen.add(key)) {
+                retained[count++] = i;
+            }
         }
-        Map<List<Object>, Map<String, Object>> uniqueRows = new LinkedHashMap<>();
-        for (Map<String, Object> row : data) {
-            List<Object> keyValues = keyColumns.stream()
-                    .map(row::get)
-                    .collect(Collectors.toList());
-            uniqueRows.computeIfAbsent(keyValues, k -> row);
+        return Arrays.copyOf(retained, count);
+    }
+
+    private List<Object> keyOf(Map<String, Object> row) {
+        List<Object> key = new ArrayList<>(keyColumns.size());
+        for (String column : keyColumns) {
+            key.add(row.get(column));
         }
+        return key;
+    }
 
-        return new ArrayList<>(uniqueRows.values());
+    @Override
+    public boolean dropsRows() {
+        return true;
     }
 }
@@ -1,28 +1,48 @@
 package com.niyiment.samples.datacleaning.service.impl;
 
 import com.niyiment.samples.datacleaning.service.CleaningStep;
+import com.niyiment.samples.datacleaning.service.ColumnProfile;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
 public class RemoveSpecialCharactersStep implements CleaningStep {
+    private static final Pattern SPECIAL_CHARACTERS = Pattern.compile("[^a-zA-Z0-9\\s]");
 
     @Override
     public List<Map<String, Object>> process(List<Map<String, Object>> data) {
         return data.stream().map(row -> row.entrySet().stream()
             .collect(Collectors.toMap(
                 Map.Entry::getKey,
-                entry -> {
-                    Object value = entry.getValue();
-                    if (value instanceof String && !value.equals("N/A")) {
-                        return ((String) value).replaceAll("[^a-zA-Z0-9\\s]", "");
-                    }
-                    return value;
-                }
+                entry -> cleanValue(entry.getValue())
             )))
             .toList();
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<Map<String, Object>> process(List<Map<String, Object>> data, Set<String> columns) {
+        return RowRewriter.rewrite(data, columns, this::cleanValue);
+    }
+
+    @Override
+    public boolean isRowLocal() {
+        return true;
+    }
+
+    @Override
+    public boolean canChange(ColumnProfile profile) {
+        return profile.hasSpecialCharacters();
+    }
+
+    private Object cleanValue(Object value) {
+        if (value instanceof String && !value.equals("N/A")) {
+            return SPECIAL_CHARACTERS.matcher((String) value).replaceAll("");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,53 @@
+package com.niyiment.samples.datacleaning.service.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+final class RowRewriter {
+
+    private RowRewriter() {
+    }
+
+    /**
+     * Applies {@code cleaner} to the given columns, copying a row only when one of its values
+     * actually changes; untouched rows are passed through as the same instance.
+     */
+    static List<Map<String, Object>> rewrite(List<Map<String, Object>> data, Set<String> columns,
+                                             UnaryOperator<Object> cleaner) {
+        List<Map<String, Object>> result = new ArrayList<>(data.size());
+        for (Map<String, Object> row : data) {
+            Map<String, Object> copy = null;
+            for (String column : columns) {
+                if (!row.containsKey(column)) continue;
+                Object value = row.get(column);
+                Object cleaned = cleaner.apply(value);
+                if (!Objects.equals(value, cleaned)) {
+                    if (copy == null) copy = new HashMap<>(row);
+                    copy.put(column, cleaned);
+                }
+            }
+            result.add(copy == null ? row : copy);
+        }
+        return result;
+    }
+
+    /**
+     * Sets {@code column} to {@code value} in {@code copy}, the copy of {@code row} made so far or
+     * null when there is none yet. Returns the copy, which is only made once a value actually changes.
+     */
+    static Map<String, Object> put(Map<String, Object> row, Map<String, Object> copy, String column, Object value) {
+        if (copy == null) {
+            if (row.containsKey(column) && Objects.equals(row.get(column), value)) {
+                return null;
+            }
+            copy = new HashMap<>(row);
+        }
+        copy.put(column, value);
+        return copy;
+    }
+}
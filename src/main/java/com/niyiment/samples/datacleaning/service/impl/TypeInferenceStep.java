@@ -1,7 +1,9 @@
 package com.niyiment.samples.datacleaning.service.impl;
 
 import com.niyiment.samples.datacleaning.config.TypeInferenceProperties;
-import com.niyiment.samples.datacleaning.service.CleaningStep;
+import com.niyiment.samples.datacleaning.service.CancellationToken;
+import com.niyiment.samples.datacleaning.service.IncrementalStep;
+import com.niyiment.samples.datacleaning.service.ParseHints;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -11,12 +13,13 @@ import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class TypeInferenceStep implements CleaningStep {
+public class TypeInferenceStep implements IncrementalStep<Map<String, Class<?>>, Map<String, Class<?>>> {
     private final TypeInferenceProperties properties;
 
     private static final DateTimeFormatter[] DATE_FORMATTERS = {
@@ -28,6 +31,7 @@ public class TypeInferenceStep implements CleaningStep {
             DateTimeFormatter.ISO_LOCAL_DATE
     };
 
+    private static final Pattern DECIMAL = Pattern.compile("-?\\d*\\.\\d+");
     private static final double EXCEL_DATE_MIN = 2.0;
     private static final double EXCEL_DATE_MAX = 109573.0;
     private static final long INTEGER_MAX_VALUE = Integer.MAX_VALUE;
@@ -44,10 +48,37 @@ public class TypeInferenceStep implements CleaningStep {
                 .toList();
     }
 
+    @Override
+    public Map<String, Class<?>> contribution(Map<String, Object> row) {
+        Map<String, Class<?>> rowTypes = new HashMap<>();
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            if (isValidValue(entry.getValue())) {
+                rowTypes.put(entry.getKey(), inferType(entry.getValue(), entry.getKey()));
+            }
+        }
+        return rowTypes;
+    }
+
+    @Override
+    public Map<String, Class<?>> fold(List<Map<String, Class<?>>> contributions) {
+        Map<String, Class<?>> columnTypes = new HashMap<>();
+        for (Map<String, Class<?>> rowTypes : contributions) {
+            rowTypes.forEach((key, type) -> columnTypes.merge(key, type, this::mergeColumnTypes));
+        }
+        return columnTypes;
+    }
+
+    @Override
+    public Map<String, Object> apply(Map<String, Object> row, Map<String, Class<?>> columnTypes) {
+        return convertRowToInferredTypes(row, columnTypes);
+    }
+
     private Map<String, Class<?>> inferColumnTypes(List<Map<String, Object>> data) {
         Map<String, Class<?>> columnTypes = new HashMap<>();
 
+        long rows = 0;
         for (Map<String, Object> row : data) {
+            CancellationToken.checkpoint(rows++);
             for (Map.Entry<String, Object> entry : row.entrySet()) {
                 String key = entry.getKey();
                 Object value = entry.getValue();
@@ -77,9 +108,9 @@ public class TypeInferenceStep implements CleaningStep {
     }
 
     private boolean isValidValue(Object value) {
-        return value != null
-                && !value.toString().trim().isEmpty()
-                && !value.toString().equalsIgnoreCase("N/A");
+        // only text can be blank or "N/A"; formatting a number or date just to check is not worth it
+        if (!(value instanceof String text)) return value != null;
+        return !text.trim().isEmpty() && !text.equalsIgnoreCase("N/A");
     }
 
     private Class<?> inferType(Object value, String columnName) {
@@ -91,7 +122,7 @@ public class TypeInferenceStep implements CleaningStep {
 
         String stringValue = value.toString().trim();
 
-        if (isLikelyDateColumn(columnName)) {
+        if (ParseHints.mayBeDate(stringValue) && isLikelyDateColumn(columnName)) {
             LocalDate parsedDate = tryParseDateFromString(stringValue);
             if (parsedDate != null) return LocalDate.class;
         }
@@ -108,8 +139,6 @@ public class TypeInferenceStep implements CleaningStep {
         if (isDouble(stringValue)) return Double.class;
         if (isBoolean(stringValue)) return Boolean.class;
 
-        if (isIdentifierColumn(columnName)) return String.class;
-
         return String.class;
     }
 
@@ -186,14 +215,8 @@ public class TypeInferenceStep implements CleaningStep {
         return null;
     }
 
-    private boolean isIdentifierColumn(String columnName) {
-        if (columnName == null || properties.getIdentifierPatterns() == null) return false;
-
-        return properties.getIdentifierPatterns().stream()
-                .anyMatch(pattern -> columnName.toLowerCase().matches(pattern));
-    }
-
     private boolean isInteger(String value) {
+        if (!ParseHints.mayBeNumber(value)) return false;
         try {
             long longValue = Long.parseLong(value);
             return longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE;
@@ -203,6 +226,7 @@ public class TypeInferenceStep implements CleaningStep {
     }
 
     private boolean isLong(String value) {
+        if (!ParseHints.mayBeNumber(value)) return false;
         try {
             Long.parseLong(value);
             return true;
@@ -212,7 +236,7 @@ public class TypeInferenceStep implements CleaningStep {
     }
 
     private boolean isDouble(String value) {
-        return value.matches("-?\\d*\\.\\d+");
+        return DECIMAL.matcher(value).matches();
     }
 
     private boolean isBoolean(String value) {
@@ -0,0 +1,52 @@
+package com.niyiment.samples.datacleaning.service.kernel;
+
+import java.util.Arrays;
+
+/**
+ * Growable primitive column: the numeric values found in one column together with the index of the
+ * row each came from, so kernel results can be mapped back to rows.
+ */
+public final class DoubleColumn {
+    private double[] values;
+    private int[] rows;
+    private int size;
+
+    public DoubleColumn() {
+        this(16);
+    }
+
+    public DoubleColumn(int initialCapacity) {
+        this.values = new double[Math.max(initialCapacity, 1)];
+        this.rows = new int[values.length];
+    }
+
+    public void add(int row, double value) {
+        if (size == values.length) {
+            int capacity = size + (size >> 1) + 1;
+            values = Arrays.copyOf(values, capacity);
+            rows = Arrays.copyOf(rows, capacity);
+        }
+        values[size] = value;
+        rows[size] = row;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Backing array; only the first {@link #size()} entries are meaningful. */
+    public double[] values() {
+        return values;
+    }
+
+    public int row(int position) {
+        return rows[position];
+    }
+
+    public double[] sortedCopy() {
+        double[] sorted = Arrays.copyOf(values, size);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+}
@@ -0,0 +1,156 @@
+package com.niyiment.samples.datacleaning.service.kernel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving summary of the most frequent values of a stream, in a fixed number of counters. A
+ * value that is not tracked while every counter is taken replaces the value with the smallest
+ * count and inherits that count as its error. Every estimate is then an upper bound on the true
+ * count and at most its error above it, and any value seen more often than the smallest count is
+ * tracked. The counters sit in a min-heap, so an update costs a hash lookup and a short sift.
+ * <p>
+ * Summaries built over separate chunks merge: a value one side does not track is assumed to have
+ * that side's smallest count, which keeps both guarantees, and the largest estimates are kept.
+ * Only sketches of the same capacity merge: a side with more counters may drop values the other
+ * side never had to, and its smallest count would then no longer bound them.
+ */
+public final class FrequentValuesSketch<T> {
+    private final int capacity;
+    private final Map<T, Integer> positions;
+    private final Object[] values;
+    private final long[] counts;
+    private final long[] errors;
+    private int size;
+    private long total;
+
+    public FrequentValuesSketch(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Sketch capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.positions = new HashMap<>(capacity * 2);
+        this.values = new Object[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+    }
+
+    public void add(T value) {
+        total++;
+        Integer position = positions.get(value);
+        if (position != null) {
+            counts[position]++;
+            siftDown(position);
+        } else if (size < capacity) {
+            set(size, value, 1, 0);
+            siftUp(size++);
+        } else {
+            positions.remove(values[0]);
+            long smallest = counts[0];
+            set(0, value, smallest + 1, smallest);
+            siftDown(0);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void merge(FrequentValuesSketch<T> other) {
+        if (other.capacity != capacity) {
+            throw new IllegalArgumentException("Cannot merge a sketch of capacity " + other.capacity
+                    + " into one of capacity " + capacity);
+        }
+        long smallest = smallestCount();
+        long otherSmallest = other.smallestCount();
+        Map<T, long[]> merged = new HashMap<>((size + other.size) * 2);
+        for (int i = 0; i < size; i++) {
+            merged.put((T) values[i], new long[]{counts[i] + otherSmallest, errors[i] + otherSmallest});
+        }
+        for (int i = 0; i < other.size; i++) {
+            long[] estimate = merged.get((T) other.values[i]);
+            if (estimate != null) {
+                estimate[0] += other.counts[i] - otherSmallest;
+                estimate[1] += other.errors[i] - otherSmallest;
+            } else {
+                merged.put((T) other.values[i], new long[]{other.counts[i] + smallest, other.errors[i] + smallest});
+            }
+        }
+
+        List<Map.Entry<T, long[]>> kept = new ArrayList<>(merged.entrySet());
+        kept.sort(Comparator.comparingLong((Map.Entry<T, long[]> entry) -> entry.getValue()[0]).reversed());
+        positions.clear();
+        Arrays.fill(values, null);
+        size = 0;
+        for (Map.Entry<T, long[]> entry : kept.subList(0, Math.min(capacity, kept.size()))) {
+            set(size, entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+            siftUp(size++);
+        }
+        total += other.total;
+    }
+
+    /** Values added, including the ones no counter tracks any more. */
+    public long total() {
+        return total;
+    }
+
+    /** The {@code k} largest estimates, largest first. */
+    @SuppressWarnings("unchecked")
+    public List<Estimate<T>> top(int k) {
+        List<Estimate<T>> estimates = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            estimates.add(new Estimate<>((T) values[i], counts[i], errors[i]));
+        }
+        estimates.sort(Comparator.comparingLong(Estimate<T>::count).reversed());
+        return estimates.subList(0, Math.min(k, estimates.size()));
+    }
+
+    /** Count of the least frequent tracked value; no untracked value occurred more often. 0 while counters are free. */
+    private long smallestCount() {
+        return size < capacity ? 0 : counts[0];
+    }
+
+    private void set(int position, T value, long count, long error) {
+        values[position] = value;
+        counts[position] = count;
+        errors[position] = error;
+        positions.put(value, position);
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (counts[parent] <= counts[position]) return;
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) return;
+            if (child + 1 < size && counts[child + 1] < counts[child]) child++;
+            if (counts[position] <= counts[child]) return;
+            swap(position, child);
+            position = child;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void swap(int a, int b) {
+        Object value = values[a];
+        long count = counts[a];
+        long error = errors[a];
+        set(a, (T) values[b], counts[b], errors[b]);
+        set(b, (T) value, count, error);
+    }
+
+    /**
+     * @param count upper bound on how often the value occurred
+     * @param error how far {@code count} may be above the true count
+     */
+    public record Estimate<T>(T value, long count, long error) {
+    }
+}
@@ -0,0 +1,31 @@
+package com.niyiment.samples.datacleaning.service.kernel;
+
+import lombok.extern.slf4j.Slf4j;
+
+/** Picks the kernel implementation once per JVM; see {@link NumericKernels#best()}. */
+@Slf4j
+final class KernelSelector {
+    static final NumericKernels VECTOR = loadVector();
+    static final NumericKernels BEST = VECTOR != null ? VECTOR : ScalarNumericKernels.INSTANCE;
+
+    private KernelSelector() {
+    }
+
+    private static NumericKernels loadVector() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            log.info("jdk.incubator.vector is not enabled; numeric kernels run scalar");
+            return null;
+        }
+        try {
+            NumericKernels kernels = (NumericKernels) Class
+                    .forName(KernelSelector.class.getPackageName() + ".VectorNumericKernels")
+                    .getDeclaredField("INSTANCE")
+                    .get(null);
+            log.info("Numeric kernels use the Vector API ({})", kernels.name());
+            return kernels;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("Vector API kernels unavailable, falling back to scalar: {}", e.toString());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.niyiment.samples.datacleaning.service.kernel;
+
+/**
+ * Loops over primitive {@code double} columns used by outlier detection, validation and the quality
+ * report. Every method reads the first {@code length} values of the array.
+ * <p>
+ * {@link #best()} returns the Vector API implementation when the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}, and the scalar one otherwise. Range checks give the same
+ * answers on both; sums may differ in the last bits because lanes are added in a different order.
+ */
+public interface NumericKernels {
+
+    String name();
+
+    double sum(double[] values, int length);
+
+    double min(double[] values, int length);
+
+    double max(double[] values, int length);
+
+    /** Population variance, computed in two passes around the mean. */
+    double variance(double[] values, int length);
+
+    ColumnStats summarize(double[] values, int length);
+
+    /** Number of values below {@code lower} or above {@code upper}; NaN is never out of range. */
+    int countOutside(double[] values, int length, double lower, double upper);
+
+    /**
+     * Sets bit {@code i} of {@code mask} (64 values per word) for every value out of range and
+     * returns how many were set. The mask must hold at least {@code ceil(length / 64)} words.
+     */
+    int markOutside(double[] values, int length, double lower, double upper, long[] mask);
+
+    static NumericKernels scalar() {
+        return ScalarNumericKernels.INSTANCE;
+    }
+
+    /** The Vector API implementation, or {@code null} when the incubator module is not present. */
+    static NumericKernels vector() {
+        return KernelSelector.VECTOR;
+    }
+
+    static NumericKernels best() {
+        return KernelSelector.BEST;
+    }
+
+    static long[] newMask(int length) {
+        return new long[(length + 63) >>> 6];
+    }
+
+    static boolean isSet(long[] mask, int index) {
+        return (mask[index >>> 6] & (1L << index)) != 0;
+    }
+
+    record ColumnStats(int count, double sum, double min, double max, double mean, double variance) {
+    }
+}
@@ -0,0 +1,263 @@
+package com.niyiment.samples.datacleaning.service.kernel;
+
+/**
+ * Moments, quantiles and pairwise Pearson correlations of a set of numeric columns, accumulated from
+ * row blocks of primitive arrays where NaN marks a missing value. A block is small enough to stay in
+ * cache while every column pair is visited, so the rows are read from memory once however many
+ * pairs there are.
+ * <p>
+ * Each block is reduced to central sums around its own means, which keeps the sums accurate for
+ * values far from zero, and folded into the running sums with the pairwise update of Chan and
+ * Pébay. Profilers built over separate row ranges merge the same way, in any order. Pairs use the
+ * rows where both values are present; blocks where both columns are complete take a dot product
+ * of the centered values.
+ */
+public final class NumericProfiler {
+    private final int columns;
+    private final long[] counts;
+    private final double[] means;
+    private final double[] m2;
+    private final double[] m3;
+    private final double[] m4;
+    private final QuantileSketch[] sketches;
+
+    // pair (i, j), i < j, at pair(i, j)
+    private final long[] pairCounts;
+    private final double[] pairMeansX;
+    private final double[] pairMeansY;
+    private final double[] pairM2X;
+    private final double[] pairM2Y;
+    private final double[] pairComoments;
+
+    public NumericProfiler(int columns, int sketchCapacity) {
+        this.columns = columns;
+        this.counts = new long[columns];
+        this.means = new double[columns];
+        this.m2 = new double[columns];
+        this.m3 = new double[columns];
+        this.m4 = new double[columns];
+        this.sketches = new QuantileSketch[columns];
+        for (int c = 0; c < columns; c++) {
+            sketches[c] = new QuantileSketch(sketchCapacity);
+        }
+        int pairs = columns * (columns - 1) / 2;
+        this.pairCounts = new long[pairs];
+        this.pairMeansX = new double[pairs];
+        this.pairMeansY = new double[pairs];
+        this.pairM2X = new double[pairs];
+        this.pairM2Y = new double[pairs];
+        this.pairComoments = new double[pairs];
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    /**
+     * Adds the first {@code length} rows of {@code block}, one array per column. The arrays of
+     * complete columns are centered in place.
+     */
+    public void addBlock(double[][] block, int length) {
+        double[] blockMeans = new double[columns];
+        double[] blockM2 = new double[columns];
+        boolean[] complete = new boolean[columns];
+        for (int c = 0; c < columns; c++) {
+            addColumnBlock(c, block[c], length, blockMeans, blockM2, complete);
+        }
+        for (int i = 0; i < columns; i++) {
+            for (int j = i + 1; j < columns; j++) {
+                int pair = pair(i, j);
+                if (complete[i] && complete[j]) {
+                    double comoment = 0;
+                    double[] x = block[i];
+                    double[] y = block[j];
+                    for (int r = 0; r < length; r++) {
+                        comoment += x[r] * y[r];
+                    }
+                    mergePair(pair, length, blockMeans[i], blockMeans[j], blockM2[i], blockM2[j], comoment);
+                } else {
+                    addIncompletePair(pair, block[i], complete[i] ? blockMeans[i] : 0,
+                            block[j], complete[j] ? blockMeans[j] : 0, length);
+                }
+            }
+        }
+    }
+
+    public void merge(NumericProfiler other) {
+        if (other.columns != columns) {
+            throw new IllegalArgumentException("Cannot merge profiles of " + other.columns + " and " + columns + " columns");
+        }
+        for (int c = 0; c < columns; c++) {
+            mergeColumn(c, other.counts[c], other.means[c], other.m2[c], other.m3[c], other.m4[c]);
+            sketches[c].merge(other.sketches[c]);
+        }
+        for (int pair = 0; pair < pairCounts.length; pair++) {
+            mergePair(pair, other.pairCounts[pair], other.pairMeansX[pair], other.pairMeansY[pair],
+                    other.pairM2X[pair], other.pairM2Y[pair], other.pairComoments[pair]);
+        }
+    }
+
+    public long count(int column) {
+        return counts[column];
+    }
+
+    public double mean(int column) {
+        return counts[column] == 0 ? Double.NaN : means[column];
+    }
+
+    /** Sample skewness g1; NaN for fewer than two values or a constant column. */
+    public double skewness(int column) {
+        long n = counts[column];
+        if (n < 2 || m2[column] == 0) return Double.NaN;
+        return Math.sqrt(n) * m3[column] / Math.pow(m2[column], 1.5);
+    }
+
+    /** Excess kurtosis g2, 0 for a normal distribution; NaN for fewer than two values or a constant column. */
+    public double kurtosis(int column) {
+        long n = counts[column];
+        if (n < 2 || m2[column] == 0) return Double.NaN;
+        return n * m4[column] / (m2[column] * m2[column]) - 3;
+    }
+
+    public double quantile(int column, double fraction) {
+        return sketches[column].quantile(fraction);
+    }
+
+    /** Pearson correlation over the rows where both columns have a value; NaN when it is undefined. */
+    public double correlation(int i, int j) {
+        if (i == j) {
+            return counts[i] < 2 || m2[i] == 0 ? Double.NaN : 1;
+        }
+        int pair = i < j ? pair(i, j) : pair(j, i);
+        if (pairCounts[pair] < 2 || pairM2X[pair] == 0 || pairM2Y[pair] == 0) return Double.NaN;
+        double correlation = pairComoments[pair] / Math.sqrt(pairM2X[pair] * pairM2Y[pair]);
+        return Math.max(-1, Math.min(1, correlation));
+    }
+
+    private void addColumnBlock(int c, double[] values, int length, double[] blockMeans, double[] blockM2,
+                                boolean[] complete) {
+        long n = 0;
+        double sum = 0;
+        for (int r = 0; r < length; r++) {
+            double value = values[r];
+            if (value == value) {
+                n++;
+                sum += value;
+                sketches[c].add(value);
+            }
+        }
+        if (n == 0) return;
+        double mean = sum / n;
+        double s2 = 0;
+        double s3 = 0;
+        double s4 = 0;
+        for (int r = 0; r < length; r++) {
+            double value = values[r];
+            if (value == value) {
+                double d = value - mean;
+                double d2 = d * d;
+                s2 += d2;
+                s3 += d2 * d;
+                s4 += d2 * d2;
+            }
+        }
+        mergeColumn(c, n, mean, s2, s3, s4);
+        blockMeans[c] = mean;
+        blockM2[c] = s2;
+        if (n == length) {
+            complete[c] = true;
+            for (int r = 0; r < length; r++) {
+                values[r] -= mean;
+            }
+        }
+    }
+
+    /** Two passes over the rows where both are present; {@code shiftX} and {@code shiftY} undo centering. */
+    private void addIncompletePair(int pair, double[] x, double shiftX, double[] y, double shiftY, int length) {
+        long n = 0;
+        double sumX = 0;
+        double sumY = 0;
+        for (int r = 0; r < length; r++) {
+            double a = x[r];
+            double b = y[r];
+            if (a == a && b == b) {
+                n++;
+                sumX += a;
+                sumY += b;
+            }
+        }
+        if (n == 0) return;
+        double meanX = sumX / n;
+        double meanY = sumY / n;
+        double sxx = 0;
+        double syy = 0;
+        double sxy = 0;
+        for (int r = 0; r < length; r++) {
+            double a = x[r];
+            double b = y[r];
+            if (a == a && b == b) {
+                double dx = a - meanX;
+                double dy = b - meanY;
+                sxx += dx * dx;
+                syy += dy * dy;
+                sxy += dx * dy;
+            }
+        }
+        mergePair(pair, n, meanX + shiftX, meanY + shiftY, sxx, syy, sxy);
+    }
+
+    private void mergeColumn(int c, long nb, double meanB, double m2b, double m3b, double m4b) {
+        if (nb == 0) return;
+        long na = counts[c];
+        if (na == 0) {
+            counts[c] = nb;
+            means[c] = meanB;
+            m2[c] = m2b;
+            m3[c] = m3b;
+            m4[c] = m4b;
+            return;
+        }
+        double n = na + nb;
+        double delta = meanB - means[c];
+        double delta2 = delta * delta;
+        double m2a = m2[c];
+        double m3a = m3[c];
+        m4[c] += m4b + delta2 * delta2 * na * nb * (na * na - na * (double) nb + (double) nb * nb) / (n * n * n)
+                + 6 * delta2 * (na * (double) na * m2b + (double) nb * nb * m2a) / (n * n)
+                + 4 * delta * (na * m3b - nb * m3a) / n;
+        m3[c] += m3b + delta2 * delta * na * nb * (na - (double) nb) / (n * n)
+                + 3 * delta * (na * m2b - nb * m2a) / n;
+        m2[c] += m2b + delta2 * na * nb / n;
+        means[c] += delta * nb / n;
+        counts[c] = na + nb;
+    }
+
+    private void mergePair(int pair, long nb, double meanXB, double meanYB, double m2xB, double m2yB, double comomentB) {
+        if (nb == 0) return;
+        long na = pairCounts[pair];
+        if (na == 0) {
+            pairCounts[pair] = nb;
+            pairMeansX[pair] = meanXB;
+            pairMeansY[pair] = meanYB;
+            pairM2X[pair] = m2xB;
+            pairM2Y[pair] = m2yB;
+            pairComoments[pair] = comomentB;
+            return;
+        }
+        double n = na + nb;
+        double deltaX = meanXB - pairMeansX[pair];
+        double deltaY = meanYB - pairMeansY[pair];
+        double weight = na * (double) nb / n;
+        pairM2X[pair] += m2xB + deltaX * deltaX * weight;
+        pairM2Y[pair] += m2yB + deltaY * deltaY * weight;
+        pairComoments[pair] += comomentB + deltaX * deltaY * weight;
+        pairMeansX[pair] += deltaX * nb / n;
+        pairMeansY[pair] += deltaY * nb / n;
+        pairCounts[pair] = na + nb;
+    }
+
+    private int pair(int i, int j) {
+        // row-major upper triangle without the diagonal
+        return i * (2 * columns - i - 1) / 2 + (j - i - 1);
+    }
+}
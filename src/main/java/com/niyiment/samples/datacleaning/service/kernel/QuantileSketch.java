@@ -0,0 +1,122 @@
+package com.niyiment.samples.datacleaning.service.kernel;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch in the style of KLL. Values enter level 0; a level that reaches the
+ * capacity is sorted and every other value moves up one level, where each value stands for twice
+ * as many. Memory stays at a few multiples of the capacity per level, and up to {@code capacity}
+ * values the answer is exact. Sketches built over separate chunks can be merged in any order.
+ */
+public final class QuantileSketch {
+    private final int capacity;
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private long count;
+    private boolean oddOffset;
+
+    public QuantileSketch(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Sketch capacity must be at least 2");
+        }
+        this.capacity = capacity;
+        levels[0] = new double[capacity];
+    }
+
+    public void add(double value) {
+        append(0, value);
+        count++;
+        if (sizes[0] >= capacity) {
+            compact(0);
+        }
+    }
+
+    public void merge(QuantileSketch other) {
+        // the other sketch may have more levels, with empty ones between this one's top and its own
+        ensureLevel(other.levels.length - 1);
+        for (int level = 0; level < other.levels.length; level++) {
+            for (int i = 0; i < other.sizes[level]; i++) {
+                append(level, other.levels[level][i]);
+            }
+        }
+        count += other.count;
+        for (int level = 0; level < levels.length; level++) {
+            if (sizes[level] >= capacity) {
+                compact(level);
+            }
+        }
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /** Value at rank {@code fraction} (0 to 1) of everything added, or NaN when the sketch is empty. */
+    public double quantile(double fraction) {
+        int retained = 0;
+        for (int size : sizes) retained += size;
+        if (retained == 0) return Double.NaN;
+
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        int position = 0;
+        for (int level = 0; level < levels.length; level++) {
+            for (int i = 0; i < sizes[level]; i++) {
+                values[position] = levels[level][i];
+                weights[position++] = 1L << level;
+            }
+        }
+        Integer[] order = new Integer[retained];
+        for (int i = 0; i < retained; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        long totalWeight = 0;
+        for (long weight : weights) totalWeight += weight;
+        double target = fraction * totalWeight;
+        long cumulative = 0;
+        for (int index : order) {
+            cumulative += weights[index];
+            if (cumulative > target) return values[index];
+        }
+        return values[order[retained - 1]];
+    }
+
+    private void append(int level, double value) {
+        ensureLevel(level);
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+        }
+        levels[level][sizes[level]++] = value;
+    }
+
+    private void ensureLevel(int level) {
+        if (level < levels.length) return;
+        int previous = levels.length;
+        levels = Arrays.copyOf(levels, level + 1);
+        sizes = Arrays.copyOf(sizes, level + 1);
+        for (int added = previous; added <= level; added++) {
+            levels[added] = new double[capacity];
+        }
+    }
+
+    private void compact(int level) {
+        double[] values = levels[level];
+        int size = sizes[level];
+        Arrays.sort(values, 0, size);
+        // an odd leftover stays behind so the promoted values keep exactly half the weight
+        int paired = size & ~1;
+        int offset = oddOffset ? 1 : 0;
+        oddOffset = !oddOffset;
+        for (int i = offset; i < paired; i += 2) {
+            append(level + 1, values[i]);
+        }
+        values = levels[level];
+        if (paired < size) {
+            values[0] = values[size - 1];
+        }
+        sizes[level] = size - paired;
+        if (sizes[level + 1] >= capacity) {
+            compact(level + 1);
+        }
+    }
+}
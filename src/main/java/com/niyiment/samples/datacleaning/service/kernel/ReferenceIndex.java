@@ -0,0 +1,193 @@
+package com.niyiment.samples.datacleaning.service.kernel;
+
+import java.util.Arrays;
+
+/**
+ * Immutable key lookup over the rows of a reference table, held in a handful of primitive arrays
+ * instead of a map of row objects. Every cell of every row sits back to back in one {@code char[]},
+ * with the start of each cell in an {@code int[]}; an open-addressing table of row numbers, probed
+ * linearly and never more than half full, finds a key's row with one hash and, as a rule, one
+ * comparison. A table of a few hundred thousand rows is a few large arrays the collector never has
+ * to trace into, and any number of threads can read it at once.
+ * <p>
+ * Column 0 of every row is its key. When a key repeats, its first row is the one found.
+ */
+public final class ReferenceIndex {
+    private final char[] text;
+    private final int[] cellStarts;
+    private final int width;
+    private final int[] hashes;
+    private final int[] slots;
+    private final int mask;
+    private final boolean ignoreCase;
+    private final int rows;
+    private final int duplicates;
+
+    private ReferenceIndex(Builder builder) {
+        this.text = Arrays.copyOf(builder.text, builder.textLength);
+        this.cellStarts = Arrays.copyOf(builder.cellStarts, builder.cells + 1);
+        this.cellStarts[builder.cells] = builder.textLength;
+        this.width = builder.width;
+        this.ignoreCase = builder.ignoreCase;
+        this.rows = builder.cells / width;
+        this.hashes = new int[rows];
+        this.slots = new int[Integer.highestOneBit(Math.max(rows, 1) * 2 - 1) << 1];
+        this.mask = slots.length - 1;
+
+        int repeated = 0;
+        for (int row = 0; row < rows; row++) {
+            int start = cellStarts[row * width];
+            int hash = hash(text, start, cellStarts[row * width + 1] - start);
+            hashes[row] = hash;
+            int slot = hash & mask;
+            boolean duplicate = false;
+            while (slots[slot] != 0) {
+                if (matches(slots[slot] - 1, hash, text, start, cellStarts[row * width + 1] - start)) {
+                    duplicate = true;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (duplicate) {
+                repeated++;
+            } else {
+                slots[slot] = row + 1;
+            }
+        }
+        this.duplicates = repeated;
+    }
+
+    /** A builder of rows of {@code width} cells, the first of which is the key. */
+    public static Builder builder(int width, boolean ignoreCase) {
+        return new Builder(width, ignoreCase);
+    }
+
+    /** The row whose key is {@code key}, or -1 when there is none. */
+    public int find(String key) {
+        int hash = hash(key);
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            int row = slots[slot] - 1;
+            if (hashes[row] == hash && keyEquals(row, key)) {
+                return row;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /** Cell {@code column} of {@code row}, or null when it is empty. */
+    public String value(int row, int column) {
+        int cell = row * width + column;
+        int start = cellStarts[cell];
+        int length = cellStarts[cell + 1] - start;
+        return length == 0 ? null : new String(text, start, length);
+    }
+
+    public int size() {
+        return rows;
+    }
+
+    /** The slot a probe for {@code key} starts at; the probe then walks on, wrapping past the last slot. */
+    int homeSlot(String key) {
+        return hash(key) & mask;
+    }
+
+    int slotCount() {
+        return slots.length;
+    }
+
+    /** Rows dropped from the index because an earlier row has the same key. */
+    public int duplicates() {
+        return duplicates;
+    }
+
+    /** Approximate heap footprint in bytes. */
+    public long sizeInBytes() {
+        return 2L * text.length + 4L * (cellStarts.length + hashes.length + slots.length);
+    }
+
+    private boolean matches(int row, int hash, char[] other, int start, int length) {
+        if (hashes[row] != hash) return false;
+        int own = cellStarts[row * width];
+        if (cellStarts[row * width + 1] - own != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (fold(text[own + i]) != fold(other[start + i])) return false;
+        }
+        return true;
+    }
+
+    private boolean keyEquals(int row, String key) {
+        int start = cellStarts[row * width];
+        int length = cellStarts[row * width + 1] - start;
+        if (length != key.length()) return false;
+        for (int i = 0; i < length; i++) {
+            if (fold(text[start + i]) != fold(key.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private int hash(char[] chars, int start, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + fold(chars[start + i]);
+        }
+        return mix(hash);
+    }
+
+    private int hash(String key) {
+        int hash = 0;
+        for (int i = 0; i < key.length(); i++) {
+            hash = 31 * hash + fold(key.charAt(i));
+        }
+        return mix(hash);
+    }
+
+    private char fold(char c) {
+        return ignoreCase ? Character.toLowerCase(Character.toUpperCase(c)) : c;
+    }
+
+    /** Spreads the polynomial hash over the low bits, which are the only ones the mask keeps. */
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    public static final class Builder {
+        private final int width;
+        private final boolean ignoreCase;
+        private char[] text = new char[1 << 12];
+        private int textLength;
+        private int[] cellStarts = new int[1 << 10];
+        private int cells;
+
+        private Builder(int width, boolean ignoreCase) {
+            if (width < 1) {
+                throw new IllegalArgumentException("A reference row needs at least its key");
+            }
+            this.width = width;
+            this.ignoreCase = ignoreCase;
+        }
+
+        /** Appends a row; missing trailing cells are empty. */
+        public Builder add(String... row) {
+            for (int column = 0; column < width; column++) {
+                String cell = column < row.length && row[column] != null ? row[column] : "";
+                if (cells + 1 >= cellStarts.length) {
+                    cellStarts = Arrays.copyOf(cellStarts, cellStarts.length << 1);
+                }
+                if (textLength + cell.length() > text.length) {
+                    text = Arrays.copyOf(text, Math.max(text.length << 1, textLength + cell.length()));
+                }
+                cellStarts[cells++] = textLength;
+                cell.getChars(0, cell.length(), text, textLength);
+                textLength += cell.length();
+            }
+            return this;
+        }
+
+        public ReferenceIndex build() {
+            return new ReferenceIndex(this);
+        }
+    }
+}
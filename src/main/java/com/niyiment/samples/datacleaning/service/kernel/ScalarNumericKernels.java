@@ -0,0 +1,96 @@
+package com.niyiment.samples.datacleaning.service.kernel;
+
+final class ScalarNumericKernels implements NumericKernels {
+    static final ScalarNumericKernels INSTANCE = new ScalarNumericKernels();
+
+    private ScalarNumericKernels() {
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    @Override
+    public double sum(double[] values, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double min(double[] values, int length) {
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < length; i++) {
+            min = Math.min(min, values[i]);
+        }
+        return min;
+    }
+
+    @Override
+    public double max(double[] values, int length) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < length; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return max;
+    }
+
+    @Override
+    public double variance(double[] values, int length) {
+        if (length == 0) return Double.NaN;
+        return squaredDeviations(values, length, sum(values, length) / length) / length;
+    }
+
+    @Override
+    public ColumnStats summarize(double[] values, int length) {
+        if (length == 0) {
+            return new ColumnStats(0, 0, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+        }
+        double sum = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < length; i++) {
+            double value = values[i];
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        double mean = sum / length;
+        return new ColumnStats(length, sum, min, max, mean, squaredDeviations(values, length, mean) / length);
+    }
+
+    @Override
+    public int countOutside(double[] values, int length, double lower, double upper) {
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            double value = values[i];
+            if (value < lower || value > upper) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int markOutside(double[] values, int length, double lower, double upper, long[] mask) {
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            double value = values[i];
+            if (value < lower || value > upper) {
+                mask[i >>> 6] |= 1L << i;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static double squaredDeviations(double[] values, int length, double mean) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            double deviation = values[i] - mean;
+            sum += deviation * deviation;
+        }
+        return sum;
+    }
+}
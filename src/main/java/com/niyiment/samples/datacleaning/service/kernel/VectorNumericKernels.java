@@ -0,0 +1,155 @@
+package com.niyiment.samples.datacleaning.service.kernel;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API kernels over the preferred species of the running CPU. Lane counts are powers of two
+ * up to 8, so a vector's mask bits never straddle two 64-bit mask words. Only loaded reflectively by
+ * {@link KernelSelector}, after checking that the incubator module is resolved.
+ */
+final class VectorNumericKernels implements NumericKernels {
+    static final VectorNumericKernels INSTANCE = new VectorNumericKernels();
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private VectorNumericKernels() {
+    }
+
+    @Override
+    public String name() {
+        return "vector-" + SPECIES.length() + "x64";
+    }
+
+    @Override
+    public double sum(double[] values, int length) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            acc = acc.add(DoubleVector.fromArray(SPECIES, values, i));
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double min(double[] values, int length) {
+        DoubleVector acc = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            acc = acc.min(DoubleVector.fromArray(SPECIES, values, i));
+        }
+        double min = acc.reduceLanes(VectorOperators.MIN);
+        for (; i < length; i++) {
+            min = Math.min(min, values[i]);
+        }
+        return min;
+    }
+
+    @Override
+    public double max(double[] values, int length) {
+        DoubleVector acc = DoubleVector.broadcast(SPECIES, Double.NEGATIVE_INFINITY);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            acc = acc.max(DoubleVector.fromArray(SPECIES, values, i));
+        }
+        double max = acc.reduceLanes(VectorOperators.MAX);
+        for (; i < length; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return max;
+    }
+
+    @Override
+    public double variance(double[] values, int length) {
+        if (length == 0) return Double.NaN;
+        return squaredDeviations(values, length, sum(values, length) / length) / length;
+    }
+
+    @Override
+    public ColumnStats summarize(double[] values, int length) {
+        if (length == 0) {
+            return new ColumnStats(0, 0, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+        }
+        DoubleVector sums = DoubleVector.zero(SPECIES);
+        DoubleVector mins = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+        DoubleVector maxs = DoubleVector.broadcast(SPECIES, Double.NEGATIVE_INFINITY);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            DoubleVector chunk = DoubleVector.fromArray(SPECIES, values, i);
+            sums = sums.add(chunk);
+            mins = mins.min(chunk);
+            maxs = maxs.max(chunk);
+        }
+        double sum = sums.reduceLanes(VectorOperators.ADD);
+        double min = mins.reduceLanes(VectorOperators.MIN);
+        double max = maxs.reduceLanes(VectorOperators.MAX);
+        for (; i < length; i++) {
+            double value = values[i];
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        double mean = sum / length;
+        return new ColumnStats(length, sum, min, max, mean, squaredDeviations(values, length, mean) / length);
+    }
+
+    @Override
+    public int countOutside(double[] values, int length, double lower, double upper) {
+        int count = 0;
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            count += outside(DoubleVector.fromArray(SPECIES, values, i), lower, upper).trueCount();
+        }
+        for (; i < length; i++) {
+            double value = values[i];
+            if (value < lower || value > upper) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int markOutside(double[] values, int length, double lower, double upper, long[] mask) {
+        int count = 0;
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            long bits = outside(DoubleVector.fromArray(SPECIES, values, i), lower, upper).toLong();
+            if (bits != 0) {
+                mask[i >>> 6] |= bits << i;
+                count += Long.bitCount(bits);
+            }
+        }
+        for (; i < length; i++) {
+            double value = values[i];
+            if (value < lower || value > upper) {
+                mask[i >>> 6] |= 1L << i;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static VectorMask<Double> outside(DoubleVector chunk, double lower, double upper) {
+        return chunk.compare(VectorOperators.LT, lower).or(chunk.compare(VectorOperators.GT, upper));
+    }
+
+    private static double squaredDeviations(double[] values, int length, double mean) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            DoubleVector deviation = DoubleVector.fromArray(SPECIES, values, i).sub(mean);
+            acc = deviation.fma(deviation, acc);
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            double deviation = values[i] - mean;
+            sum += deviation * deviation;
+        }
+        return sum;
+    }
+}
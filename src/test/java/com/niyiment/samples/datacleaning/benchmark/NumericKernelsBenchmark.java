@@ -0,0 +1,83 @@
+package com.niyiment.samples.datacleaning.benchmark;
+
+import com.niyiment.samples.datacleaning.service.kernel.NumericKernels;
+import com.niyiment.samples.datacleaning.service.kernel.NumericKernels.ColumnStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scalar against Vector API kernels on one numeric column. Values spread around 40 with a few
+ * percent pushed above the 0-120 range, roughly what an age column looks like.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class NumericKernelsBenchmark {
+
+    @Param({"scalar", "vector"})
+    private String kernel;
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private NumericKernels kernels;
+    private double[] values;
+    private long[] mask;
+
+    @Setup
+    public void setUp() {
+        kernels = "vector".equals(kernel) ? NumericKernels.vector() : NumericKernels.scalar();
+        if (kernels == null) {
+            throw new IllegalStateException("jdk.incubator.vector is not available in the forked JVM");
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        values = new double[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextInt(100) < 3 ? 150 + random.nextDouble(50) : 40 + 15 * random.nextDouble(-2, 2);
+        }
+        mask = NumericKernels.newMask(size);
+    }
+
+    @Benchmark
+    public double sum() {
+        return kernels.sum(values, size);
+    }
+
+    @Benchmark
+    public double variance() {
+        return kernels.variance(values, size);
+    }
+
+    @Benchmark
+    public ColumnStats summarize() {
+        return kernels.summarize(values, size);
+    }
+
+    @Benchmark
+    public int countOutside() {
+        return kernels.countOutside(values, size, 0, 120);
+    }
+
+    @Benchmark
+    public long[] markOutside() {
+        Arrays.fill(mask, 0L);
+        kernels.markOutside(values, size, 0, 120, mask);
+        return mask;
+    }
+}
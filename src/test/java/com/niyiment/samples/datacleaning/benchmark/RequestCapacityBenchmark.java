@@ -0,0 +1,95 @@
+package com.niyiment.samples.datacleaning.benchmark;
+
+import com.niyiment.samples.datacleaning.service.impl.DataValidationStep;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests served per second when each request blocks on I/O for most of its time, as uploads from
+ * slow clients and downloads to them do. A burst of requests runs on a pool of 200 platform threads,
+ * Tomcat's default maximum, or on one virtual thread per request as with
+ * {@code spring.threads.virtual.enabled}. Blocking is a sleep, which unmounts a virtual thread the
+ * same way a socket read does; the CPU part validates a small batch of rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestCapacityBenchmark {
+    private static final int REQUESTS = 2_000;
+    private static final int PLATFORM_THREADS = 200;
+    private static final int ROWS_PER_REQUEST = 50;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    @Param({"5", "20"})
+    private int ioMillis;
+
+    private final DataValidationStep validationStep = new DataValidationStep();
+    private ExecutorService executor;
+    private List<Map<String, Object>> rows;
+
+    @Setup
+    public void setUp() {
+        executor = threads.equals("virtual")
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(PLATFORM_THREADS);
+        rows = new ArrayList<>(ROWS_PER_REQUEST);
+        for (int i = 0; i < ROWS_PER_REQUEST; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", (long) i);
+            row.put("age", (long) (i % 130));
+            row.put("join_date", LocalDate.of(2020, 1, 1).plusDays(i * 7L));
+            row.put("city", i % 2 == 0 ? "Boston" : "Lagos");
+            rows.add(row);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public int burst() throws Exception {
+        List<Future<Integer>> requests = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            requests.add(executor.submit(this::request));
+        }
+        int errors = 0;
+        for (Future<Integer> request : requests) {
+            errors += request.get();
+        }
+        return errors;
+    }
+
+    private int request() throws InterruptedException {
+        Thread.sleep(ioMillis);
+        return validationStep.validate(rows).getErrors().size();
+    }
+}
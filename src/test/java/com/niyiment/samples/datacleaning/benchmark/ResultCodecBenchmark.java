@@ -0,0 +1,114 @@
+package com.niyiment.samples.datacleaning.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.niyiment.samples.datacleaning.dto.CleanedDataResult;
+import com.niyiment.samples.datacleaning.dto.DataQualityReport;
+import com.niyiment.samples.datacleaning.service.ResultCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary result codec against the Jackson JSON round trip the session used before. The encoded
+ * sizes of both are printed once per fork.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ResultCodecBenchmark {
+    private static final String[] CITIES = {"Boston", "New York", "Chicago", "Denver", "Austin", "Seattle"};
+
+    @Param({"10000", "100000"})
+    private int rows;
+
+    private final ResultCodec codec = new ResultCodec();
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private CleanedDataResult result;
+    private byte[] binary;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws Exception {
+        result = syntheticResult(rows);
+        binary = codec.encode(result);
+        json = objectMapper.writeValueAsBytes(result);
+        System.out.printf("%n%d rows: binary %,d bytes, JSON %,d bytes (%.1fx)%n",
+                rows, binary.length, json.length, (double) json.length / binary.length);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return codec.encode(result);
+    }
+
+    @Benchmark
+    public CleanedDataResult decodeBinary() {
+        return codec.decode(binary);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws Exception {
+        return objectMapper.writeValueAsBytes(result);
+    }
+
+    @Benchmark
+    public CleanedDataResult decodeJson() throws Exception {
+        return objectMapper.readValue(json, CleanedDataResult.class);
+    }
+
+    static CleanedDataResult syntheticResult(int rows) {
+        SplittableRandom random = new SplittableRandom(7);
+        List<Map<String, Object>> data = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", 1_000_000L + i);
+            row.put("name", "Customer_" + random.nextInt(rows));
+            row.put("city", CITIES[random.nextInt(CITIES.length)]);
+            row.put("age", random.nextInt(18, 90));
+            row.put("salary", random.nextInt(100) < 2 ? "OUTLIER_" + random.nextDouble(1e6) : random.nextDouble(20_000, 150_000));
+            row.put("join_date", LocalDate.of(2015, 1, 1).plusDays(random.nextInt(3_650)));
+            row.put("active", random.nextBoolean());
+            row.put("notes", random.nextInt(10) == 0 ? "N/A" : "note " + random.nextInt(50));
+            data.add(row);
+        }
+        DataQualityReport report = DataQualityReport.builder()
+                .totalRecords(rows)
+                .processedRecords(rows)
+                .missingValuesCount(Map.of("notes", (long) rows / 10))
+                .uniqueValuesCount(Map.of("city", CITIES.length, "id", rows))
+                .numericStats(Map.of("age", Map.of("mean", 53.5, "sum", 53.5 * rows, "min", 18.0, "max", 89.0)))
+                .columnTypes(Map.of("id", "Long", "age", "Integer", "join_date", "LocalDate"))
+                .build();
+        return CleanedDataResult.builder()
+                .cleanedData(data)
+                .dataQualityReport(report)
+                .columns(new ArrayList<>(data.get(0).keySet()))
+                .validationErrors(List.of("Row 3, column age: Age 130.0 is out of range (0-120)"))
+                .pipelinePlan(List.of("1. removeSpecialCharacters"))
+                .build();
+    }
+}
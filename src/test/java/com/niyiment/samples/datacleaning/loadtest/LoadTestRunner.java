@@ -0,0 +1,387 @@
+package com.niyiment.samples.datacleaning.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.niyiment.samples.datacleaning.DataCleaningApplication;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Starts the application on a free port in this JVM and drives concurrent virtual users against it.
+ * Each user keeps its own session and loops over upload ({@code POST /process}), a few result pages
+ * ({@code GET /results}) and a CSV download ({@code GET /download}) until the run ends. Afterwards a
+ * JSON report with throughput, latency percentiles per operation, error and rejection rates, peak heap
+ * and GC pauses is written, so runs against different builds can be compared file by file.
+ * <p>
+ * Run with {@code mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--users=16 --duration=60s"}.
+ * Options: {@code --users}, {@code --duration}, {@code --warmup}, {@code --formats} (csv,json,xlsx),
+ * {@code --rows} (one or more sizes), {@code --pages}, {@code --page-size}, {@code --report}. Any
+ * {@code --cleaning.*}, {@code --spring.*} or {@code --server.*} option is passed to the application;
+ * the result cache is off unless re-enabled that way, since every user uploads the same files.
+ */
+public final class LoadTestRunner {
+    private static final String BOUNDARY = "loadtest-" + UUID.randomUUID();
+
+    private final Map<String, String> options;
+    private final List<Upload> uploads = new ArrayList<>();
+    private final Map<String, Recorder> recorders = new ConcurrentHashMap<>();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicLong peakHeap = new AtomicLong();
+    private final AtomicLong maxPause = new AtomicLong();
+    private final LongAdder pauseMillis = new LongAdder();
+    private final LongAdder pauses = new LongAdder();
+    private volatile boolean recording;
+
+    private LoadTestRunner(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        List<String> applicationArgs = new ArrayList<>(List.of(
+                "--server.port=0", "--spring.main.banner-mode=off", "--logging.level.root=WARN",
+                "--cleaning.cache.enabled=false"));
+        for (String arg : args) {
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            if (option.startsWith("cleaning.") || option.startsWith("spring.") || option.startsWith("server.")) {
+                applicationArgs.add("--" + option);
+            } else {
+                int separator = option.indexOf('=');
+                options.put(separator < 0 ? option : option.substring(0, separator),
+                        separator < 0 ? "true" : option.substring(separator + 1));
+            }
+        }
+
+        int exitCode;
+        try (ServletWebServerApplicationContext context = (ServletWebServerApplicationContext)
+                SpringApplication.run(DataCleaningApplication.class, applicationArgs.toArray(String[]::new))) {
+            URI baseUri = URI.create("http://localhost:" + context.getWebServer().getPort());
+            exitCode = new LoadTestRunner(options).run(baseUri);
+        }
+        System.exit(exitCode);
+    }
+
+    private int run(URI baseUri) throws Exception {
+        int users = Integer.parseInt(options.getOrDefault("users", "8"));
+        Duration duration = parseDuration(options.getOrDefault("duration", "30s"));
+        Duration warmup = parseDuration(options.getOrDefault("warmup", "10s"));
+        Path reportPath = Path.of(options.getOrDefault("report", "target/loadtest/report.json"));
+
+        for (String format : options.getOrDefault("formats", "csv,json,xlsx").split(",")) {
+            for (String rows : options.getOrDefault("rows", "1000,20000").split(",")) {
+                String name = "loadtest-" + rows.trim() + "." + format.trim();
+                byte[] content = SyntheticFiles.generate(format.trim(), Integer.parseInt(rows.trim()), 42);
+                uploads.add(new Upload(name, format.trim(), Integer.parseInt(rows.trim()), content));
+            }
+        }
+        System.out.printf("Load test against %s: %d users, %s warm-up, %s measured, %d upload files%n",
+                baseUri, users, warmup, duration, uploads.size());
+
+        Thread sampler = Thread.ofPlatform().daemon().name("loadtest-heap-sampler").start(this::sampleHeap);
+        List<NotificationEmitter> emitters = listenForPauses();
+
+        drive(baseUri, users, warmup);
+        System.gc();
+        recorders.clear();
+        rejected.reset();
+        peakHeap.set(0);
+        recording = true;
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTime();
+
+        Instant startedAt = Instant.now();
+        long startNanos = System.nanoTime();
+        drive(baseUri, users, duration);
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        recording = false;
+        sampler.interrupt();
+        for (NotificationEmitter emitter : emitters) {
+            emitter.removeNotificationListener(pauseListener);
+        }
+
+        Map<String, Object> report = report(startedAt, elapsedSeconds, users, gcCount() - gcCountBefore,
+                gcTime() - gcTimeBefore);
+        Files.createDirectories(reportPath.toAbsolutePath().getParent());
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        mapper.writeValue(reportPath.toFile(), report);
+        System.out.println(mapper.writeValueAsString(report));
+        System.out.println("Report written to " + reportPath.toAbsolutePath());
+        return 0;
+    }
+
+    private void drive(URI baseUri, int users, Duration duration) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int user = 0; user < users; user++) {
+                int offset = user;
+                futures.add(executor.submit(() -> virtualUser(baseUri, offset, deadline)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+    }
+
+    private Void virtualUser(URI baseUri, int offset, long deadline) throws InterruptedException {
+        int pages = Integer.parseInt(options.getOrDefault("pages", "3"));
+        int pageSize = Integer.parseInt(options.getOrDefault("page-size", "20"));
+        HttpClient client = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        for (int iteration = offset; System.nanoTime() < deadline; iteration++) {
+            Upload upload = uploads.get(iteration % uploads.size());
+            HttpResponse<Void> processed = send(client, "process", upload.kind(), HttpRequest.newBuilder(baseUri.resolve("/process"))
+                    .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(multipart(upload)))
+                    .build(), response -> response.statusCode() == 302
+                    && URI.create(response.headers().firstValue("Location").orElse("/"))
+                    .getPath().startsWith("/results"));
+            if (processed == null) continue;
+
+            for (int page = 0; page < pages && System.nanoTime() < deadline; page++) {
+                send(client, "results", upload.kind(), HttpRequest.newBuilder(
+                        baseUri.resolve("/results?page=" + page + "&size=" + pageSize)).build(),
+                        response -> response.statusCode() == 200);
+            }
+            send(client, "download", upload.kind(), HttpRequest.newBuilder(baseUri.resolve("/download?format=csv")).build(),
+                    response -> response.statusCode() == 200);
+        }
+        return null;
+    }
+
+    /** Sends the request, draining the body, and records its latency; returns null on failure. */
+    private HttpResponse<Void> send(HttpClient client, String operation, String kind, HttpRequest request,
+                                    Predicate<HttpResponse<Void>> succeeded) throws InterruptedException {
+        Recorder recorder = recorders.computeIfAbsent(operation + " " + kind, k -> new Recorder());
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            long elapsed = System.nanoTime() - start;
+            if (response.statusCode() == 503) {
+                rejected.increment();
+                recorder.failure(elapsed);
+                Thread.sleep(Duration.ofMillis(250));
+                return null;
+            }
+            if (!succeeded.test(response)) {
+                recorder.failure(elapsed);
+                return null;
+            }
+            recorder.success(elapsed);
+            return response;
+        } catch (IOException e) {
+            recorder.failure(System.nanoTime() - start);
+            return null;
+        }
+    }
+
+    private static byte[] multipart(Upload upload) {
+        String head = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + upload.name() + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n";
+        byte[] headBytes = head.getBytes(StandardCharsets.UTF_8);
+        byte[] tailBytes = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] body = Arrays.copyOf(headBytes, headBytes.length + upload.content().length + tailBytes.length);
+        System.arraycopy(upload.content(), 0, body, headBytes.length, upload.content().length);
+        System.arraycopy(tailBytes, 0, body, headBytes.length + upload.content().length, tailBytes.length);
+        return body;
+    }
+
+    private Map<String, Object> report(Instant startedAt, double elapsedSeconds, int users, long gcCount, long gcTime) {
+        Map<String, List<Recorder>> byOperation = new LinkedHashMap<>();
+        Map<String, Object> byKind = new LinkedHashMap<>();
+        recorders.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(entry -> {
+            byOperation.computeIfAbsent(entry.getKey().substring(0, entry.getKey().indexOf(' ')), k -> new ArrayList<>())
+                    .add(entry.getValue());
+            byKind.put(entry.getKey(), entry.getValue().summary(elapsedSeconds));
+        });
+
+        Map<String, Object> operations = new LinkedHashMap<>();
+        long requests = 0;
+        long errors = 0;
+        for (Map.Entry<String, List<Recorder>> entry : byOperation.entrySet()) {
+            Recorder merged = new Recorder();
+            entry.getValue().forEach(merged::addAll);
+            operations.put(entry.getKey(), merged.summary(elapsedSeconds));
+            requests += merged.count();
+            errors += merged.failures.sum();
+        }
+        long uploadsDone = byOperation.getOrDefault("process", List.of()).stream()
+                .mapToLong(recorder -> recorder.successes.size()).sum();
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startedAt", startedAt.toString());
+        report.put("build", DataCleaningApplication.class.getPackage().getImplementationVersion());
+        report.put("javaVersion", Runtime.version().toString());
+        report.put("users", users);
+        report.put("durationSeconds", round(elapsedSeconds));
+        report.put("files", uploads.stream().map(upload -> Map.of(
+                "name", upload.name(), "rows", upload.rows(), "bytes", upload.content().length)).toList());
+        report.put("requests", requests);
+        report.put("errors", errors);
+        report.put("errorRate", requests == 0 ? 0 : round((double) errors / requests));
+        report.put("rejected503", rejected.sum());
+        report.put("uploadsPerSecond", round(uploadsDone / elapsedSeconds));
+        report.put("requestsPerSecond", round(requests / elapsedSeconds));
+        report.put("operations", operations);
+        report.put("operationsByFile", byKind);
+        report.put("heap", Map.of(
+                "peakUsedBytes", peakHeap.get(),
+                "maxBytes", memory.getHeapMemoryUsage().getMax()));
+        report.put("gc", Map.of(
+                "collections", gcCount,
+                "collectionTimeMs", gcTime,
+                "pauses", pauses.sum(),
+                "totalPauseMs", pauseMillis.sum(),
+                "maxPauseMs", maxPause.get()));
+        return report;
+    }
+
+    private void sampleHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        while (!Thread.currentThread().isInterrupted()) {
+            peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private final NotificationListener pauseListener = (notification, handback) -> {
+        if (!recording || !GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        if (info.getGcName().contains("Concurrent")) return;
+        long duration = info.getGcInfo().getDuration();
+        pauses.increment();
+        pauseMillis.add(duration);
+        maxPause.accumulateAndGet(duration, Math::max);
+    };
+
+    private List<NotificationEmitter> listenForPauses() {
+        List<NotificationEmitter> emitters = new ArrayList<>();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener(pauseListener, null, null);
+                emitters.add(emitter);
+            }
+        }
+        return emitters;
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .filter(collector -> !collector.getName().contains("Concurrent"))
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcTime() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .filter(collector -> !collector.getName().contains("Concurrent"))
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private static Duration parseDuration(String value) {
+        String trimmed = value.trim().toLowerCase();
+        if (trimmed.endsWith("ms")) return Duration.ofMillis(Long.parseLong(trimmed.substring(0, trimmed.length() - 2)));
+        if (trimmed.endsWith("s")) return Duration.ofSeconds(Long.parseLong(trimmed.substring(0, trimmed.length() - 1)));
+        if (trimmed.endsWith("m")) return Duration.ofMinutes(Long.parseLong(trimmed.substring(0, trimmed.length() - 1)));
+        return Duration.ofSeconds(Long.parseLong(trimmed));
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    private record Upload(String name, String format, int rows, byte[] content) {
+        String kind() {
+            return format + "-" + rows;
+        }
+    }
+
+    /** Latencies of one operation; failures count towards the error rate but not the percentiles. */
+    private static final class Recorder {
+        private final List<Long> successes = Collections.synchronizedList(new ArrayList<>());
+        private final LongAdder failures = new LongAdder();
+
+        void success(long nanos) {
+            successes.add(nanos);
+        }
+
+        void failure(long nanos) {
+            failures.increment();
+        }
+
+        void addAll(Recorder other) {
+            successes.addAll(other.successes);
+            failures.add(other.failures.sum());
+        }
+
+        long count() {
+            return successes.size() + failures.sum();
+        }
+
+        Map<String, Object> summary(double elapsedSeconds) {
+            long[] sorted;
+            synchronized (successes) {
+                sorted = successes.stream().mapToLong(Long::longValue).sorted().toArray();
+            }
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("count", count());
+            summary.put("errors", failures.sum());
+            summary.put("perSecond", round(count() / elapsedSeconds));
+            summary.put("p50Ms", percentile(sorted, 0.50));
+            summary.put("p95Ms", percentile(sorted, 0.95));
+            summary.put("p99Ms", percentile(sorted, 0.99));
+            summary.put("maxMs", sorted.length == 0 ? 0 : round(sorted[sorted.length - 1] / 1e6));
+            summary.put("meanMs", sorted.length == 0 ? 0 : round(Arrays.stream(sorted).average().orElse(0) / 1e6));
+            return summary;
+        }
+
+        private static double percentile(long[] sorted, double fraction) {
+            if (sorted.length == 0) return 0;
+            int rank = (int) Math.ceil(fraction * sorted.length) - 1;
+            return round(sorted[Math.max(rank, 0)] / 1e6);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.niyiment.samples.datacleaning.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Upload files with the kind of dirt the pipeline is meant for: blank and "null" cells, stray
+ * punctuation and whitespace, spelling variants of categories, duplicate rows and out-of-range ages.
+ * The same seed always gives the same bytes, so runs against different builds upload identical data.
+ */
+public final class SyntheticFiles {
+    private static final String[] HEADERS = {"id", "name", "age", "city", "salary", "join_date", "notes"};
+    private static final String[] NAMES = {"Alice", "Bob", "Chidi", "Dana", "Eve", "Femi", "Grace", "Hugo"};
+    private static final String[] CITIES = {"New York", "new york ", "NewYork", "Lagos", "lagos", "Boston", "Berlin"};
+    private static final String[] NOTES = {"ok", "x  y", "needs#review", "", "null", "follow-up!"};
+
+    private SyntheticFiles() {
+    }
+
+    public static byte[] generate(String format, int rows, long seed) throws IOException {
+        List<String[]> records = records(rows, seed);
+        return switch (format) {
+            case "csv" -> csv(records);
+            case "json" -> json(records);
+            case "ndjson" -> ndjson(records);
+            case "xlsx" -> xlsx(records);
+            default -> throw new IllegalArgumentException("Unsupported load test format: " + format);
+        };
+    }
+
+    private static List<String[]> records(int rows, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<String[]> records = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0 && random.nextInt(50) == 0) {
+                records.add(records.get(random.nextInt(i)).clone());
+                continue;
+            }
+            String age = random.nextInt(20) == 0 ? "" : String.valueOf(random.nextInt(40) == 0 ? 150 : 18 + random.nextInt(50));
+            records.add(new String[]{
+                    String.valueOf(i + 1),
+                    NAMES[random.nextInt(NAMES.length)],
+                    age,
+                    CITIES[random.nextInt(CITIES.length)],
+                    random.nextInt(30) == 0 ? "null" : String.format(Locale.ROOT, "%.2f", 20_000 + random.nextDouble(80_000)),
+                    String.format(Locale.ROOT, "%d-%02d-%02d", 2010 + random.nextInt(15), 1 + random.nextInt(12), 1 + random.nextInt(28)),
+                    NOTES[random.nextInt(NOTES.length)]
+            });
+        }
+        return records;
+    }
+
+    private static byte[] csv(List<String[]> records) {
+        StringBuilder csv = new StringBuilder(records.size() * 64);
+        csv.append(String.join(",", HEADERS)).append('\n');
+        for (String[] record : records) {
+            for (int i = 0; i < record.length; i++) {
+                if (i > 0) csv.append(',');
+                String value = record[i];
+                if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0) {
+                    csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+                } else {
+                    csv.append(value);
+                }
+            }
+            csv.append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] json(List<String[]> records) throws IOException {
+        List<Map<String, String>> objects = new ArrayList<>(records.size());
+        for (String[] record : records) {
+            Map<String, String> object = new LinkedHashMap<>();
+            for (int i = 0; i < HEADERS.length; i++) {
+                object.put(HEADERS[i], record[i]);
+            }
+            objects.add(object);
+        }
+        return new ObjectMapper().writeValueAsBytes(objects);
+    }
+
+    private static byte[] ndjson(List<String[]> records) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (String[] record : records) {
+            Map<String, String> object = new LinkedHashMap<>();
+            for (int i = 0; i < HEADERS.length; i++) {
+                object.put(HEADERS[i], record[i]);
+            }
+            outputStream.write(mapper.writeValueAsBytes(object));
+            outputStream.write('\n');
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] xlsx(List<String[]> records) throws IOException {
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(500)) {
+            Sheet sheet = workbook.createSheet("data");
+            Row header = sheet.createRow(0);
+            for (int i = 0; i < HEADERS.length; i++) {
+                header.createCell(i).setCellValue(HEADERS[i]);
+            }
+            for (int r = 0; r < records.size(); r++) {
+                Row row = sheet.createRow(r + 1);
+                String[] record = records.get(r);
+                for (int i = 0; i < record.length; i++) {
+                    row.createCell(i).setCellValue(record[i]);
+                }
+            }
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            workbook.write(outputStream);
+            workbook.dispose();
+            return outputStream.toByteArray();
+        }
+    }
+}
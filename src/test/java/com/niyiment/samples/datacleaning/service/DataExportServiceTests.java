@@ -0,0 +1,269 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.niyiment.samples.datacleaning.config.LineageProperties;
+import com.niyiment.samples.datacleaning.dto.CleanedDataResult;
+import com.niyiment.samples.datacleaning.dto.DataQualityReport;
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Every download format must carry each cell, and the source row in front of it, back to a reader:
+ * CSV and NDJSON as parsed by their usual readers, the columnar format by a decoder of its layout.
+ */
+class DataExportServiceTests {
+    private static final String[] COLUMNAR_TYPES = {"STRING", "INT32", "INT64", "FLOAT64", "BOOLEAN", "DATE"};
+    private static final ObjectMapper MAPPER = JsonMapper.builder().findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+
+    private final LineageProperties lineage = new LineageProperties();
+    private final DataExportService exports = new DataExportService(MAPPER, lineage);
+
+    @Test
+    void columnarRoundTripsEveryType() throws IOException {
+        // thirteen rows, so the last null bitmap byte is partly used
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 13; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("count", i % 5 == 0 ? "N/A" : i % 2 == 0 ? (Object) i : (Object) (long) -i);
+            row.put("total", i == 7 ? "N/A" : i % 2 == 0 ? (Object) (Long.MAX_VALUE - i) : (Object) i);
+            row.put("price", i % 3 == 0 ? (Object) (i * 1.25) : (Object) i);
+            row.put("active", i % 4 == 0 ? "N/A" : i % 2 == 0);
+            row.put("joined", i % 2 == 0 ? LocalDate.of(2024, 2, 29).plusDays(i) : "2023-12-3" + (i % 2));
+            if (i != 12) row.put("name", i == 3 ? "N/A" : "Zoë \"" + i + "\", ünïcode");
+            rows.add(row);
+        }
+        List<String> columns = List.of("count", "total", "price", "active", "joined", "name");
+        Map<String, String> types = Map.of("count", "Integer", "total", "Long", "price", "Double",
+                "active", "Boolean", "joined", "LocalDate", "name", "String");
+
+        Decoded decoded = Decoded.of(export(result(rows, columns, types, sourceRows(13)), ExportFormat.COLUMNAR));
+
+        assertThat(decoded.names()).containsExactly("source_row", "count", "total", "price", "active", "joined", "name");
+        assertThat(decoded.types()).containsExactly("INT32", "INT32", "INT64", "FLOAT64", "BOOLEAN", "DATE", "STRING");
+        assertThat(decoded.rowCount()).isEqualTo(13);
+        assertThat(decoded.column("source_row")).containsExactly(Arrays.stream(sourceRows(13)).boxed().toArray());
+        for (int i = 0; i < 13; i++) {
+            Map<String, Object> row = rows.get(i);
+            assertThat(decoded.column("count").get(i)).isEqualTo(missingOr(row.get("count"), v -> ((Number) v).intValue()));
+            assertThat(decoded.column("total").get(i)).isEqualTo(missingOr(row.get("total"), v -> ((Number) v).longValue()));
+            assertThat(decoded.column("price").get(i)).isEqualTo(((Number) row.get("price")).doubleValue());
+            assertThat(decoded.column("active").get(i)).isEqualTo(missingOr(row.get("active"), v -> v));
+            assertThat(decoded.column("joined").get(i)).isEqualTo(LocalDate.parse(row.get("joined").toString()));
+            assertThat(decoded.column("name").get(i)).isEqualTo(missingOr(row.get("name"), v -> v));
+        }
+    }
+
+    @Test
+    void columnarDemotesColumnsWithNonConformingCellsToString() throws IOException {
+        List<Map<String, Object>> rows = List.of(
+                row("count", 1, "total", 1L, "price", 1.5, "active", true, "joined", LocalDate.of(2024, 1, 1)),
+                row("count", "outlier", "total", 2.5, "price", "high", "active", "yes", "joined", "2024-13-01"),
+                row("count", 3_000_000_000L, "total", "N/A", "price", 3, "active", false, "joined", "N/A"));
+        List<String> columns = List.of("count", "total", "price", "active", "joined");
+        Map<String, String> types = Map.of("count", "Integer", "total", "Long", "price", "Double",
+                "active", "Boolean", "joined", "LocalDate");
+
+        Decoded decoded = Decoded.of(export(result(rows, columns, types, null), ExportFormat.COLUMNAR));
+
+        assertThat(decoded.names()).containsExactlyElementsOf(columns);
+        assertThat(decoded.types()).containsOnly("STRING");
+        assertThat(decoded.column("count")).containsExactly("1", "outlier", "3000000000");
+        assertThat(decoded.column("total")).containsExactly("1", "2.5", null);
+        assertThat(decoded.column("price")).containsExactly("1.5", "high", "3");
+        assertThat(decoded.column("active")).containsExactly("true", "yes", "false");
+        assertThat(decoded.column("joined")).containsExactly("2024-01-01", "2024-13-01", null);
+    }
+
+    @Test
+    void columnarKeepsInt32ForLongsInRangeAndStringForUndeclaredColumns() throws IOException {
+        List<Map<String, Object>> rows = List.of(row("count", 7L, "code", 7), row("count", "N/A", "code", 8));
+
+        Decoded decoded = Decoded.of(export(result(rows, List.of("count", "code"), Map.of("count", "Integer"), null),
+                ExportFormat.COLUMNAR));
+
+        assertThat(decoded.types()).containsExactly("INT32", "STRING");
+        assertThat(decoded.column("count")).containsExactly(7, null);
+        assertThat(decoded.column("code")).containsExactly("7", "8");
+    }
+
+    @Test
+    void columnarOfNoRowsHasOnlyItsHeaderAndTypes() throws IOException {
+        Decoded decoded = Decoded.of(export(result(List.of(), List.of("name"), Map.of(), new int[0]),
+                ExportFormat.COLUMNAR));
+
+        assertThat(decoded.names()).containsExactly("source_row", "name");
+        assertThat(decoded.rowCount()).isZero();
+        assertThat(decoded.column("name")).isEmpty();
+    }
+
+    @Test
+    void csvWritesEveryCellAfterItsSourceRow() throws IOException {
+        List<Map<String, Object>> rows = List.of(
+                row("name", "Ada, \"the\" first", "age", 36L, "joined", LocalDate.of(2024, 2, 29)),
+                row("name", "line\nbreak", "age", "N/A", "joined", "N/A"),
+                row("name", "Zoë", "age", 41.5));
+
+        List<String[]> lines = csvLines(export(result(rows, List.of("name", "age", "joined"), Map.of(),
+                new int[]{2, 5, 9}), ExportFormat.CSV));
+
+        assertThat(lines).containsExactly(
+                new String[]{"source_row", "name", "age", "joined"},
+                new String[]{"2", "Ada, \"the\" first", "36", "2024-02-29"},
+                new String[]{"5", "line\nbreak", "N/A", "N/A"},
+                new String[]{"9", "Zoë", "41.5", ""});
+    }
+
+    @Test
+    void csvLeavesOutSourceRowsWhenLineageIsOffOrIncomplete() throws IOException {
+        List<Map<String, Object>> rows = List.of(row("name", "Ada"), row("name", "Grace"));
+
+        List<String[]> incomplete = csvLines(export(result(rows, List.of("name"), Map.of(), new int[]{2}),
+                ExportFormat.CSV));
+        lineage.setIncludeInDownloads(false);
+        List<String[]> off = csvLines(export(result(rows, List.of("name"), Map.of(), new int[]{2, 3}),
+                ExportFormat.CSV));
+
+        assertThat(incomplete).containsExactly(new String[]{"name"}, new String[]{"Ada"}, new String[]{"Grace"});
+        assertThat(off).containsExactlyElementsOf(incomplete);
+    }
+
+    @Test
+    void ndjsonWritesOneObjectPerLineWithTheCellsTypes() throws IOException {
+        lineage.setColumn("line");
+        List<Map<String, Object>> rows = List.of(
+                row("name", "Ada \"the\" first", "age", 36L, "score", 1.5, "active", true,
+                        "joined", LocalDate.of(2024, 2, 29)),
+                row("name", "line\nbreak", "age", "N/A", "score", 2, "active", false));
+
+        String output = new String(export(result(rows, List.of("name", "age", "score", "active", "joined"), Map.of(),
+                new int[]{2, 7}), ExportFormat.NDJSON), StandardCharsets.UTF_8);
+
+        assertThat(output).endsWith("}\n");
+        List<String> lines = output.lines().toList();
+        assertThat(lines).hasSize(2);
+        JsonNode first = MAPPER.readTree(lines.get(0));
+        JsonNode second = MAPPER.readTree(lines.get(1));
+        assertThat(first.fieldNames()).toIterable().containsExactly("line", "name", "age", "score", "active", "joined");
+        assertThat(first.get("line").intValue()).isEqualTo(2);
+        assertThat(first.get("name").textValue()).isEqualTo("Ada \"the\" first");
+        assertThat(first.get("age").isIntegralNumber()).isTrue();
+        assertThat(first.get("age").longValue()).isEqualTo(36L);
+        assertThat(first.get("score").doubleValue()).isEqualTo(1.5);
+        assertThat(first.get("active").booleanValue()).isTrue();
+        assertThat(first.get("joined").textValue()).isEqualTo("2024-02-29");
+        assertThat(second.get("line").intValue()).isEqualTo(7);
+        assertThat(second.get("name").textValue()).isEqualTo("line\nbreak");
+        assertThat(second.get("age").textValue()).isEqualTo("N/A");
+        assertThat(second.get("score").intValue()).isEqualTo(2);
+        assertThat(second.get("joined").isNull()).isTrue();
+    }
+
+    private byte[] export(CleanedDataResult result, ExportFormat format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exports.export(result, format, out);
+        return out.toByteArray();
+    }
+
+    private static CleanedDataResult result(List<Map<String, Object>> rows, List<String> columns,
+                                            Map<String, String> columnTypes, int[] sourceRows) {
+        return CleanedDataResult.builder()
+                .cleanedData(rows)
+                .sourceRows(sourceRows)
+                .columns(columns)
+                .dataQualityReport(DataQualityReport.builder().columnTypes(columnTypes).build())
+                .build();
+    }
+
+    private static List<String[]> csvLines(byte[] csv) throws IOException {
+        try (CSVReader reader = new CSVReader(new InputStreamReader(new ByteArrayInputStream(csv), StandardCharsets.UTF_8))) {
+            return reader.readAll();
+        } catch (CsvException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static int[] sourceRows(int count) {
+        return IntStream.range(0, count).map(i -> 2 + i * 3).toArray();
+    }
+
+    private static Object missingOr(Object value, UnaryOperator<Object> present) {
+        return "N/A".equals(value) || value == null ? null : present.apply(value);
+    }
+
+    private static Map<String, Object> row(Object... entries) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < entries.length; i += 2) {
+            row.put((String) entries[i], entries[i + 1]);
+        }
+        return row;
+    }
+
+    /** A reader of the columnar download's layout, as documented on {@code DataExportService.writeColumnar}. */
+    private record Decoded(List<String> names, List<String> types, int rowCount, List<List<Object>> columns) {
+
+        static Decoded of(byte[] bytes) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            assertThat(in.readNBytes(4)).isEqualTo("DCCF".getBytes(StandardCharsets.US_ASCII));
+            assertThat(in.readUnsignedByte()).as("version").isEqualTo(1);
+            int columnCount = in.readInt();
+            int rowCount = in.readInt();
+            List<String> names = new ArrayList<>();
+            for (int c = 0; c < columnCount; c++) {
+                names.add(in.readUTF());
+            }
+            List<String> types = new ArrayList<>();
+            List<List<Object>> columns = new ArrayList<>();
+            for (int c = 0; c < columnCount; c++) {
+                String type = COLUMNAR_TYPES[in.readUnsignedByte()];
+                byte[] nulls = in.readNBytes((rowCount + 7) >>> 3);
+                List<Object> values = new ArrayList<>(rowCount);
+                for (int row = 0; row < rowCount; row++) {
+                    boolean missing = (nulls[row >>> 3] & (1 << (row & 7))) != 0;
+                    values.add(missing ? null : read(type, in));
+                }
+                types.add(type);
+                columns.add(values);
+            }
+            assertThat(in.read()).as("bytes after the last column").isEqualTo(-1);
+            return new Decoded(names, types, rowCount, columns);
+        }
+
+        private static Object read(String type, DataInputStream in) throws IOException {
+            return switch (type) {
+                case "INT32" -> in.readInt();
+                case "INT64" -> in.readLong();
+                case "FLOAT64" -> in.readDouble();
+                case "BOOLEAN" -> in.readBoolean();
+                case "DATE" -> LocalDate.ofEpochDay(in.readInt());
+                default -> new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+            };
+        }
+
+        List<Object> column(String name) {
+            return columns.get(names.indexOf(name));
+        }
+    }
+}
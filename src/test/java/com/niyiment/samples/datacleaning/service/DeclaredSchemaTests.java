@@ -0,0 +1,261 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.config.SchemaProperties;
+import com.niyiment.samples.datacleaning.config.SchemaProperties.ColumnType;
+import org.junit.jupiter.api.Test;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.ResolverStyle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The schema's own number and date parsers must accept exactly what the JDK parsers accept, and
+ * spreadsheet cells must convert under each declared type as their text would.
+ */
+class DeclaredSchemaTests {
+    private static final String[] FAST_PATTERNS = {"yyyy-MM-dd", "dd/MM/yyyy", "MM.dd.yyyy", "yyyyMMdd"};
+    private static final int[] YEARS = {0, 1900, 2000, 2023, 2024, 9999};
+
+    @Test
+    void parseLongMatchesTheJdkAtTheEdges() {
+        List<String> texts = List.of("0", "7", "-7", "+7", "007", "-0", "+0", "-007",
+                "9223372036854775807", "+9223372036854775807", "-9223372036854775807",
+                "9223372036854775808", "-9223372036854775809", "92233720368547758070", "99999999999999999999",
+                "00000000000000000000009223372036854775807", "-", "+", "", "+-1", "-+1", "--1", "1-", "1+",
+                " 1", "1 ", "1_000", "1,000", "1.0", "1e3", "0x1F", "a");
+        for (String text : texts) {
+            assertThat(DeclaredSchema.parseLong(text)).as("'%s'", text).isEqualTo(jdkLong(text));
+        }
+    }
+
+    @Test
+    void parseLongRejectsOnlyWhatItDocuments() {
+        // Long.MIN_VALUE is the rejection value, and only ASCII digits are digits
+        assertThat(DeclaredSchema.parseLong("-9223372036854775808")).isEqualTo(Long.MIN_VALUE);
+        assertThat(DeclaredSchema.parseLong("-9223372036854775807")).isEqualTo(Long.MIN_VALUE + 1);
+        assertThat(Long.parseLong("١٢")).isEqualTo(12);
+        assertThat(DeclaredSchema.parseLong("١٢")).isEqualTo(Long.MIN_VALUE);
+    }
+
+    @Test
+    void parseLongMatchesTheJdkOnRandomText() {
+        Random random = new Random(5);
+        for (int i = 0; i < 20_000; i++) {
+            String text = switch (i % 3) {
+                case 0 -> Long.toString(random.nextLong());
+                case 1 -> Long.toString(random.nextLong() >> random.nextInt(64));
+                default -> {
+                    StringBuilder digits = new StringBuilder(random.nextBoolean() ? "" : random.nextBoolean() ? "-" : "+");
+                    for (int length = 1 + random.nextInt(21); length > 0; length--) {
+                        digits.append((char) ('0' + random.nextInt(10)));
+                    }
+                    yield digits.toString();
+                }
+            };
+            if (text.equals("-9223372036854775808")) continue;
+            assertThat(DeclaredSchema.parseLong(text)).as("'%s'", text).isEqualTo(jdkLong(text));
+        }
+    }
+
+    @Test
+    void integerColumnsMatchIntegerParseInt() {
+        SchemaProperties.Column integer = column(ColumnType.INTEGER, null);
+        for (String text : List.of("2147483647", "2147483648", "-2147483648", "-2147483649", "+12", " 12 ",
+                "-", "+", "12.0", "9223372036854775807")) {
+            Integer expected;
+            try {
+                expected = Integer.parseInt(text.trim());
+            } catch (NumberFormatException e) {
+                expected = null;
+            }
+            assertThat(convert(integer, text)).as("'%s'", text).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void fastDatePatternsMatchTheStrictFormatter() {
+        for (String pattern : FAST_PATTERNS) {
+            DateTimeFormatter jdk = strict(pattern);
+            SchemaProperties.Column date = column(ColumnType.DATE, pattern);
+            for (int year : YEARS) {
+                for (int month = 0; month <= 13; month++) {
+                    for (int day = 0; day <= 32; day++) {
+                        String text = pattern.replace("yyyy", "%04d".formatted(year))
+                                .replace("MM", "%02d".formatted(month)).replace("dd", "%02d".formatted(day));
+                        assertThat(convert(date, text)).as("'%s' as %s", text, pattern).isEqualTo(jdkDate(text, jdk));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void fastDatePatternsKnowLeapYears() {
+        SchemaProperties.Column date = column(ColumnType.DATE, "yyyy-MM-dd");
+
+        assertThat(convert(date, "2024-02-29")).isEqualTo(LocalDate.of(2024, 2, 29));
+        assertThat(convert(date, "2000-02-29")).isEqualTo(LocalDate.of(2000, 2, 29));
+        assertThat(convert(date, "2023-02-29")).isNull();
+        assertThat(convert(date, "1900-02-29")).isNull();
+        assertThat(convert(date, "2024-02-30")).isNull();
+        assertThat(convert(date, "2024-04-31")).isNull();
+    }
+
+    @Test
+    void fastDatePatternsMatchTheStrictFormatterOnMalformedText() {
+        List<String> texts = List.of("2024-2-29", "2024-02-9", "24-02-29", "2024/02/29", "2024-02-29 ", " 2024-02-29",
+                "2024-02-29T", "2024-0a-01", "20x4-01-01", "+024-01-01", "-024-01-01", "2024--1-01", "２０２４-01-01",
+                "2024-01-01-", "20240101");
+        for (String pattern : FAST_PATTERNS) {
+            DateTimeFormatter jdk = strict(pattern);
+            SchemaProperties.Column date = column(ColumnType.DATE, pattern);
+            for (String text : texts) {
+                // cells are trimmed before they are parsed
+                assertThat(convert(date, text)).as("'%s' as %s", text, pattern).isEqualTo(jdkDate(text.trim(), jdk));
+            }
+        }
+    }
+
+    @Test
+    void otherDatePatternsFallBackToTheStrictFormatter() {
+        SchemaProperties.Column unpadded = column(ColumnType.DATE, "d/M/yyyy");
+        SchemaProperties.Column twoDigitYear = column(ColumnType.DATE, "dd-MM-yy");
+        SchemaProperties.Column quoted = column(ColumnType.DATE, "yyyy-MM-dd'Z'");
+        SchemaProperties.Column longYear = column(ColumnType.DATE, "yyyyy-MM-dd");
+
+        assertThat(convert(unpadded, "29/2/2024")).isEqualTo(LocalDate.of(2024, 2, 29));
+        assertThat(convert(unpadded, "29/02/2024")).isEqualTo(LocalDate.of(2024, 2, 29));
+        assertThat(convert(unpadded, "29/2/2023")).isNull();
+        assertThat(convert(unpadded, "30/2/2024")).isNull();
+        assertThat(convert(twoDigitYear, "31-12-99")).isEqualTo(LocalDate.of(2099, 12, 31));
+        assertThat(convert(twoDigitYear, "29-02-23")).isNull();
+        assertThat(convert(quoted, "2024-02-29Z")).isEqualTo(LocalDate.of(2024, 2, 29));
+        assertThat(convert(quoted, "2024-02-29")).isNull();
+        assertThat(convert(longYear, "02024-02-29")).isEqualTo(LocalDate.of(2024, 2, 29));
+        assertThat(convert(longYear, "2024-02-29")).isNull();
+    }
+
+    @Test
+    void spreadsheetCellsConvertUnderEveryType() {
+        // what the Excel reader hands over: whole numbers as Long, others and formula results as Double
+        Map<ColumnType, List<Object[]>> cases = Map.of(
+                ColumnType.STRING, List.of(
+                        new Object[]{42L, "42"}, new Object[]{42.0, "42"}, new Object[]{42.5, "42.5"},
+                        new Object[]{1e10, "10000000000"}, new Object[]{-0x1p62, "-4611686018427387904"},
+                        new Object[]{0x1p63, "9.223372036854776E18"}, new Object[]{true, "true"}),
+                ColumnType.INTEGER, List.of(
+                        new Object[]{42L, 42}, new Object[]{42.0, 42}, new Object[]{42.5, null},
+                        new Object[]{2147483647L, Integer.MAX_VALUE}, new Object[]{2147483648L, null},
+                        new Object[]{-2147483648.0, Integer.MIN_VALUE}, new Object[]{1e10, null},
+                        new Object[]{Double.NaN, null}, new Object[]{true, null}),
+                ColumnType.LONG, List.of(
+                        new Object[]{42L, 42L}, new Object[]{42.0, 42L}, new Object[]{42.5, null},
+                        new Object[]{Long.MAX_VALUE, Long.MAX_VALUE}, new Object[]{1e18, 1_000_000_000_000_000_000L},
+                        new Object[]{0x1p63, null}, new Object[]{Double.POSITIVE_INFINITY, null},
+                        new Object[]{Double.NaN, null}),
+                ColumnType.DOUBLE, List.of(
+                        new Object[]{42L, 42.0}, new Object[]{42.5, 42.5}, new Object[]{Long.MAX_VALUE, 0x1p63},
+                        new Object[]{Double.NaN, null}, new Object[]{Double.NEGATIVE_INFINITY, null},
+                        new Object[]{true, null}),
+                ColumnType.BOOLEAN, List.of(
+                        new Object[]{true, true}, new Object[]{false, false}, new Object[]{1L, null},
+                        new Object[]{1.0, null}),
+                ColumnType.DATE, List.of(
+                        new Object[]{LocalDate.of(2024, 2, 29), LocalDate.of(2024, 2, 29)},
+                        new Object[]{LocalDateTime.of(2024, 2, 29, 13, 30), LocalDate.of(2024, 2, 29)},
+                        new Object[]{45351L, null}, new Object[]{45351.5, null}));
+        cases.forEach((type, pairs) -> {
+            SchemaProperties.Column column = column(type, null);
+            for (Object[] pair : pairs) {
+                Object converted = convert(column, pair[0]);
+                assertThat(converted).as("%s %s as %s", pair[0].getClass().getSimpleName(), pair[0], type)
+                        .isEqualTo(pair[1]);
+            }
+        });
+    }
+
+    @Test
+    void violationsNameTheirSourceRow() {
+        SchemaProperties.Column id = column(ColumnType.INTEGER, null);
+        id.setName("Employee ID");
+        id.setIdentifier(true);
+        SchemaProperties.Column age = column(ColumnType.INTEGER, null);
+        age.setName("Age");
+        age.setNullable(false);
+        SchemaProperties.Column started = column(ColumnType.DATE, "dd/MM/yyyy");
+        started.setName("Start Date");
+        DeclaredSchema schema = new DeclaredSchema("staff", List.of(id, age, started),
+                DataProcessingService::standardizeColumnName);
+        DeclaredSchema.Reader reader = schema.reader();
+        List<Integer> received = new ArrayList<>();
+        SourceRowConsumer typing = reader.typing((row, sourceRow) -> received.add(sourceRow), RowSelection.all());
+
+        typing.accept(row("employee_id", "7", "age", "41", "start_date", "29/02/2024"), 2);
+        typing.accept(row("employee_id", "8", "age", "N/A", "start_date", "29/02/2023"), 5);
+        typing.accept(row("employee_id", "7", "age", "forty"), 9);
+        typing.accept(row("employee_id", "9", "age", "39", "start_date", ""), 12);
+
+        assertThat(received).containsExactly(2, 5, 9, 12);
+        assertThat(reader.violations().isValid()).isFalse();
+        assertThat(reader.violations().getErrors()).containsExactly(
+                "Row 5, column age: a value is required (schema staff)",
+                "Row 5, column start_date: '29/02/2023' is not a valid date (dd/MM/yyyy) (schema staff)",
+                "Row 9, column employee_id: identifier 7 already appears in row 2 (schema staff)",
+                "Row 9, column age: 'forty' is not a valid integer (schema staff)",
+                "Row 9: column start_date of schema staff is missing");
+    }
+
+    /** The declared column's value for one cell, or null when the schema reports it as a violation. */
+    private static Object convert(SchemaProperties.Column column, Object value) {
+        DeclaredSchema.Reader reader = new DeclaredSchema("test", List.of(column), UnaryOperator.identity()).reader();
+        Map<String, Object> row = row(column.getName(), value);
+        reader.typing((typed, sourceRow) -> { }, RowSelection.all()).accept(row, 2);
+        return reader.violations().isValid() ? row.get(column.getName()) : null;
+    }
+
+    private static SchemaProperties.Column column(ColumnType type, String datePattern) {
+        SchemaProperties.Column column = new SchemaProperties.Column();
+        column.setName("value");
+        column.setType(type);
+        if (datePattern != null) column.setDatePattern(datePattern);
+        return column;
+    }
+
+    private static Map<String, Object> row(Object... entries) {
+        Map<String, Object> row = new HashMap<>();
+        for (int i = 0; i < entries.length; i += 2) {
+            row.put((String) entries[i], entries[i + 1]);
+        }
+        return row;
+    }
+
+    private static long jdkLong(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static DateTimeFormatter strict(String pattern) {
+        return DateTimeFormatter.ofPattern(pattern.replace('y', 'u')).withResolverStyle(ResolverStyle.STRICT);
+    }
+
+    private static LocalDate jdkDate(String text, DateTimeFormatter formatter) {
+        try {
+            return LocalDate.parse(text, formatter);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.config.AdmissionProperties;
+import com.niyiment.samples.datacleaning.config.CleaningPipelineProperties;
+import com.niyiment.samples.datacleaning.config.ClusteringProperties;
+import com.niyiment.samples.datacleaning.config.ImputationProperties;
+import com.niyiment.samples.datacleaning.config.IncrementalProperties;
+import com.niyiment.samples.datacleaning.config.TypeInferenceProperties;
+import com.niyiment.samples.datacleaning.service.IncrementalCleaner.IncrementalRun;
+import com.niyiment.samples.datacleaning.service.impl.CategoricalClusteringStep;
+import com.niyiment.samples.datacleaning.service.impl.CategoricalStandardizationStep;
+import com.niyiment.samples.datacleaning.service.impl.DataValidationStep;
+import com.niyiment.samples.datacleaning.service.impl.HandleMissingValuesStep;
+import com.niyiment.samples.datacleaning.service.impl.ImputationStep;
+import com.niyiment.samples.datacleaning.service.impl.NormalizeWhitespaceStep;
+import com.niyiment.samples.datacleaning.service.impl.OutlierDetectionStep;
+import com.niyiment.samples.datacleaning.service.impl.RemoveDuplicatesStep;
+import com.niyiment.samples.datacleaning.service.impl.RemoveSpecialCharactersStep;
+import com.niyiment.samples.datacleaning.service.impl.TypeInferenceStep;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * An incremental run over a changed feed must give exactly what a full run over the same rows gives:
+ * rows, their source rows and validation errors.
+ */
+class IncrementalCleanerTests {
+    private static final List<String> STEPS = List.of("removeSpecialCharacters", "normalizeWhitespace",
+            "handleMissingValues", "removeDuplicates", "typeInference", "imputation", "dataValidation",
+            "outlierDetection", "categoricalStandardization", "categoricalClustering");
+    private static final String[] NAMES = {"Alice", "bob ", "Carol", "dana", "Eve!", "  Frank"};
+    private static final String[] CITIES = {"New York", "new  york", "Lagos", "Boston", "London", ""};
+
+    @Test
+    void incrementalRunMatchesFullRun() {
+        CleaningPipeline pipeline = pipeline();
+        IncrementalCleaner cleaner = new IncrementalCleaner(pipeline, new IncrementalProperties(), admission(true));
+        List<Map<String, Object>> first = rows(3_000, 1);
+        List<Map<String, Object>> second = changed(first);
+
+        cleaner.execute("feed", first, sourceRows(first.size()), false);
+        IncrementalRun incremental = cleaner.execute("feed", second, sourceRows(second.size()), false);
+
+        assertThat(incremental.reusedRows()).isGreaterThan(second.size() / 2);
+        assertMatchesFullRun(pipeline, second, incremental);
+    }
+
+    @Test
+    void runWithoutBaselineMatchesFullRun() {
+        CleaningPipeline pipeline = pipeline();
+        IncrementalCleaner cleaner = new IncrementalCleaner(pipeline, new IncrementalProperties(), admission(true));
+        List<Map<String, Object>> rows = rows(1_000, 2);
+
+        IncrementalRun incremental = cleaner.execute("feed", rows, sourceRows(rows.size()), false);
+
+        assertThat(incremental.reusedRows()).isZero();
+        assertMatchesFullRun(pipeline, rows, incremental);
+    }
+
+    @Test
+    void baselineOverMaxMemoryIsNotKept() {
+        IncrementalProperties properties = new IncrementalProperties();
+        properties.setMaxMemory(DataSize.ofKilobytes(64));
+        IncrementalCleaner cleaner = new IncrementalCleaner(pipeline(), properties, admission(true));
+        List<Map<String, Object>> rows = rows(2_000, 3);
+
+        cleaner.execute("feed", rows, sourceRows(rows.size()), false);
+        IncrementalRun second = cleaner.execute("feed", rows, sourceRows(rows.size()), false);
+
+        assertThat(second.reusedRows()).isZero();
+    }
+
+    @Test
+    void baselineWithoutRoomInAdmissionBudgetIsNotKept() {
+        IncrementalCleaner cleaner = new IncrementalCleaner(pipeline(), new IncrementalProperties(), admission(false));
+        List<Map<String, Object>> rows = rows(2_000, 4);
+
+        cleaner.execute("feed", rows, sourceRows(rows.size()), false);
+        IncrementalRun second = cleaner.execute("feed", rows, sourceRows(rows.size()), false);
+
+        assertThat(second.reusedRows()).isZero();
+    }
+
+    @Test
+    void leastRecentlyUsedFeedIsDroppedBeyondMaxFeeds() {
+        IncrementalProperties properties = new IncrementalProperties();
+        properties.setMaxFeeds(1);
+        IncrementalCleaner cleaner = new IncrementalCleaner(pipeline(), properties, admission(true));
+        List<Map<String, Object>> rows = rows(500, 5);
+
+        cleaner.execute("a", rows, sourceRows(rows.size()), false);
+        cleaner.execute("b", rows, sourceRows(rows.size()), false);
+
+        assertThat(cleaner.execute("a", rows, sourceRows(rows.size()), false).reusedRows()).isZero();
+        assertThat(cleaner.execute("a", rows, sourceRows(rows.size()), false).reusedRows()).isPositive();
+    }
+
+    @Test
+    void jobAsLargeAsTheBudgetReclaimsHeldBaselines() {
+        AdmissionController admission = admission(true);
+        IncrementalCleaner cleaner = new IncrementalCleaner(pipeline(), new IncrementalProperties(), admission);
+        List<Map<String, Object>> rows = rows(2_000, 6);
+        cleaner.execute("feed", rows, sourceRows(rows.size()), false);
+        assertThat(cleaner.execute("feed", rows, sourceRows(rows.size()), false).reusedRows()).isPositive();
+
+        // max-wait is zero, so the job is only admitted if the baseline is given up for it
+        try (AdmissionController.Permit permit = admission.acquire("large job", Long.MAX_VALUE)) {
+            assertThat(permit.reservation()).isEqualTo(DataSize.ofGigabytes(1).toBytes());
+        }
+
+        assertThat(cleaner.execute("feed", rows, sourceRows(rows.size()), false).reusedRows()).isZero();
+    }
+
+    private static void assertMatchesFullRun(CleaningPipeline pipeline, List<Map<String, Object>> rows,
+                                             IncrementalRun incremental) {
+        try (JobScope scope = JobScope.open("full-run")) {
+            CleaningPipeline.Run full = pipeline.execute(rows, sourceRows(rows.size()), pipeline.getSteps(), scope);
+            scope.join();
+            assertThat(incremental.cleanedData()).isEqualTo(full.cleanedData());
+            assertThat(incremental.sourceRows()).isEqualTo(full.sourceRows());
+            assertThat(incremental.validationResult().getErrors()).isEqualTo(full.validationErrors());
+        }
+    }
+
+    private static CleaningPipeline pipeline() {
+        TypeInferenceProperties typeInference = new TypeInferenceProperties();
+        typeInference.setIdentifierPatterns(List.of(".*id.*", ".*number.*", ".*code.*"));
+        typeInference.setDateColumnKeywords(List.of("date", "dob"));
+        CleaningPipelineProperties properties = new CleaningPipelineProperties();
+        properties.setSteps(STEPS);
+        CleaningPipeline pipeline = new CleaningPipeline(properties, List.of(
+                new RemoveSpecialCharactersStep(), new NormalizeWhitespaceStep(), new HandleMissingValuesStep(),
+                new RemoveDuplicatesStep(), new TypeInferenceStep(typeInference),
+                new ImputationStep(new ImputationProperties(), typeInference), new DataValidationStep(),
+                new OutlierDetectionStep(), new CategoricalStandardizationStep(),
+                new CategoricalClusteringStep(new ClusteringProperties())), new PipelinePlanner());
+        pipeline.init();
+        return pipeline;
+    }
+
+    private static AdmissionController admission(boolean roomy) {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setMemoryBudget(roomy ? DataSize.ofGigabytes(1) : DataSize.ofKilobytes(1));
+        properties.setMaxWait(Duration.ZERO);
+        return new AdmissionController(properties, new SimpleMeterRegistry());
+    }
+
+    private static List<Map<String, Object>> rows(int count, long seed) {
+        Random random = new Random(seed);
+        List<Map<String, Object>> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(row(random, i));
+        }
+        // exact repeats, so removeDuplicates drops rows and the source rows have gaps
+        for (int i = 0; i < count / 50; i++) {
+            rows.add(new LinkedHashMap<>(rows.get(random.nextInt(rows.size()))));
+        }
+        return rows;
+    }
+
+    private static Map<String, Object> row(Random random, int id) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", String.valueOf(id));
+        row.put("name", NAMES[random.nextInt(NAMES.length)]);
+        row.put("city", CITIES[random.nextInt(CITIES.length)]);
+        row.put("salary", random.nextInt(10) == 0 ? "" : String.format("%.2f", 20_000 + random.nextDouble() * 60_000));
+        row.put("age", String.valueOf(random.nextInt(10) == 0 ? 150 : 18 + random.nextInt(50)));
+        row.put("join_date", String.format("20%02d-%02d-%02d", 10 + random.nextInt(15), 1 + random.nextInt(12),
+                1 + random.nextInt(28)));
+        return row;
+    }
+
+    /** The next version of a feed: most rows as they were, some edited, some removed, some added. */
+    private static List<Map<String, Object>> changed(List<Map<String, Object>> rows) {
+        Random random = new Random(99);
+        List<Map<String, Object>> next = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            int roll = random.nextInt(20);
+            if (roll == 0) {
+                continue;
+            }
+            Map<String, Object> copy = new LinkedHashMap<>(row);
+            if (roll == 1) {
+                copy.put("salary", "999999");
+            } else if (roll == 2) {
+                copy.put("city", "  lagos ");
+            }
+            next.add(copy);
+        }
+        IntStream.range(0, 100).forEach(i -> next.add(row(random, rows.size() + i)));
+        return next;
+    }
+
+    private static int[] sourceRows(int count) {
+        return IntStream.rangeClosed(2, count + 1).toArray();
+    }
+}
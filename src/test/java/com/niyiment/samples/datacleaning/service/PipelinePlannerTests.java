@@ -0,0 +1,186 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.config.CleaningPipelineProperties;
+import com.niyiment.samples.datacleaning.config.CleaningPipelineProperties.PlannerMode;
+import com.niyiment.samples.datacleaning.config.ClusteringProperties;
+import com.niyiment.samples.datacleaning.config.ImputationProperties;
+import com.niyiment.samples.datacleaning.config.ReportProperties;
+import com.niyiment.samples.datacleaning.config.TypeInferenceProperties;
+import com.niyiment.samples.datacleaning.dto.CleanedDataResult;
+import com.niyiment.samples.datacleaning.service.PipelinePlan.PlannedStep;
+import com.niyiment.samples.datacleaning.service.impl.CategoricalClusteringStep;
+import com.niyiment.samples.datacleaning.service.impl.CategoricalStandardizationStep;
+import com.niyiment.samples.datacleaning.service.impl.DataValidationStep;
+import com.niyiment.samples.datacleaning.service.impl.HandleMissingValuesStep;
+import com.niyiment.samples.datacleaning.service.impl.ImputationStep;
+import com.niyiment.samples.datacleaning.service.impl.NormalizeWhitespaceStep;
+import com.niyiment.samples.datacleaning.service.impl.OutlierDetectionStep;
+import com.niyiment.samples.datacleaning.service.impl.RemoveDuplicatesStep;
+import com.niyiment.samples.datacleaning.service.impl.RemoveSpecialCharactersStep;
+import com.niyiment.samples.datacleaning.service.impl.TypeInferenceStep;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A cost-based plan may reorder, narrow and skip steps, but never change the result: rows, their
+ * source rows, validation errors and the report must all be those of the strict plan.
+ */
+class PipelinePlannerTests {
+    private static final List<String> STEPS = List.of("removeSpecialCharacters", "normalizeWhitespace",
+            "handleMissingValues", "removeDuplicates", "typeInference", "imputation", "dataValidation",
+            "outlierDetection", "categoricalStandardization", "categoricalClustering");
+    private static final String[] CITIES = {"Lagos", "Boston", "London", "New York"};
+    // readers never put a null into a row, so missing values only arrive as text
+    private static final String[] SENTINELS = {"N/A", "", "   ", "null", "NULL", "\t"};
+
+    private final CleaningPipeline pipeline = pipeline();
+    private final DataProcessingService reports = new DataProcessingService(null, null, null, null, null, null, null,
+            new ReportProperties(), null, null);
+
+    @Test
+    void mixedTypesGiveTheStrictResult() {
+        Random random = new Random(1);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", i % 3 == 0 ? i : String.valueOf(i));
+            row.put("score", switch (i % 4) {
+                case 0 -> random.nextDouble() * 100;
+                case 1 -> String.format("%.1f", random.nextDouble() * 100);
+                case 2 -> random.nextInt(100);
+                default -> i % 40 == 3 ? "N/A" : "1000000";
+            });
+            row.put("active", i % 5 == 0 ? "yes" : random.nextBoolean());
+            row.put("join_date", i % 2 == 0 ? LocalDate.of(2020, 1, 1).plusDays(i) : "2021-03-0" + (1 + i % 9));
+            row.put("city", CITIES[random.nextInt(CITIES.length)]);
+            row.put("note", i % 7 == 0 ? " spaced   out " : i % 11 == 0 ? "tagged #" + i : "plain");
+            rows.add(row);
+        }
+
+        PipelinePlan plan = assertMatchesStrictRun(rows);
+
+        assertThat(plan.steps()).anyMatch(step -> step.columns() != null && !step.columns().contains("city"));
+    }
+
+    @Test
+    void sentinelHeavyRowsGiveTheStrictResult() {
+        Random random = new Random(2);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 1_500; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", String.valueOf(i % 400));
+            row.put("name", random.nextInt(3) == 0 ? sentinel(random) : "Name " + random.nextInt(20));
+            row.put("salary", random.nextInt(2) == 0 ? sentinel(random) : String.valueOf(20_000 + random.nextInt(5_000)));
+            row.put("city", random.nextInt(4) == 0 ? sentinel(random) : CITIES[random.nextInt(CITIES.length)]);
+            row.put("code", "N/A");
+            rows.add(row);
+        }
+
+        PipelinePlan plan = assertMatchesStrictRun(rows);
+
+        assertThat(step(plan, "handleMissingValues").columns()).doesNotContain("code");
+    }
+
+    @Test
+    void rowsThatOnlyBecomeDuplicatesGiveTheStrictResult() {
+        Random random = new Random(3);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            String city = CITIES[random.nextInt(CITIES.length)];
+            // spellings that only turn equal once special characters and whitespace are cleaned
+            row.put("city", switch (random.nextInt(4)) {
+                case 0 -> city + "!";
+                case 1 -> "  " + city;
+                case 2 -> city.replace(" ", "   ");
+                default -> city;
+            });
+            row.put("age", String.valueOf(20 + random.nextInt(5)));
+            row.put("status", random.nextInt(10) == 0 ? "" : "active");
+            rows.add(row);
+        }
+
+        PipelinePlan plan = assertMatchesStrictRun(rows);
+
+        assertThat(plan.steps()).extracting(PlannedStep::note)
+                .contains("hoisted", "repeated, earlier steps may create new duplicates");
+    }
+
+    @Test
+    void exactDuplicatesGiveTheStrictResultWithDedupeHoisted() {
+        Random random = new Random(4);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", String.valueOf(random.nextInt(300)));
+            row.put("city", CITIES[random.nextInt(CITIES.length)]);
+            row.put("grade", String.valueOf(random.nextInt(3)));
+            rows.add(row);
+        }
+
+        PipelinePlan plan = assertMatchesStrictRun(rows);
+
+        assertThat(plan.steps().get(0).name()).isEqualTo("removeDuplicates");
+        assertThat(plan.steps().get(0).note()).isEqualTo("hoisted");
+        assertThat(plan.steps()).filteredOn(step -> step.name().equals("removeDuplicates")).hasSize(1);
+    }
+
+    private PipelinePlan assertMatchesStrictRun(List<Map<String, Object>> rows) {
+        PipelinePlan costBased = pipeline.plan(rows);
+        assertThat(costBased.mode()).isEqualTo(PlannerMode.COST_BASED);
+
+        CleanedDataResult strict = run(pipeline.strictPlan(), rows);
+        CleanedDataResult planned = run(costBased, rows);
+
+        assertThat(planned.cleanedData()).isEqualTo(strict.cleanedData());
+        assertThat(planned.sourceRows()).isEqualTo(strict.sourceRows());
+        assertThat(planned.validationErrors()).isEqualTo(strict.validationErrors());
+        assertThat(planned.dataQualityReport()).isEqualTo(strict.dataQualityReport());
+        return costBased;
+    }
+
+    private CleanedDataResult run(PipelinePlan plan, List<Map<String, Object>> rows) {
+        // steps copy the rows they change, but each run gets its own rows all the same
+        List<Map<String, Object>> data = rows.stream().<Map<String, Object>>map(LinkedHashMap::new).toList();
+        try (JobScope scope = JobScope.open("planner-test")) {
+            CleaningPipeline.Run run = pipeline.execute(data, IntStream.rangeClosed(2, data.size() + 1).toArray(),
+                    plan, scope);
+            return reports.buildResult(scope, data.size(), () -> DataProcessingService.countMissingValues(data), run,
+                    plan.describe(), true);
+        }
+    }
+
+    private static PlannedStep step(PipelinePlan plan, String name) {
+        return plan.steps().stream().filter(step -> step.name().equals(name)).findFirst().orElseThrow();
+    }
+
+    private static Object sentinel(Random random) {
+        return SENTINELS[random.nextInt(SENTINELS.length)];
+    }
+
+    private static CleaningPipeline pipeline() {
+        TypeInferenceProperties typeInference = new TypeInferenceProperties();
+        typeInference.setIdentifierPatterns(List.of(".*id.*", ".*number.*", ".*code.*"));
+        typeInference.setDateColumnKeywords(List.of("date", "dob"));
+        CleaningPipelineProperties properties = new CleaningPipelineProperties();
+        properties.setSteps(STEPS);
+        properties.getPlanner().setMode(PlannerMode.COST_BASED);
+        CleaningPipeline pipeline = new CleaningPipeline(properties, List.of(
+                new RemoveSpecialCharactersStep(), new NormalizeWhitespaceStep(), new HandleMissingValuesStep(),
+                new RemoveDuplicatesStep(), new TypeInferenceStep(typeInference),
+                new ImputationStep(new ImputationProperties(), typeInference), new DataValidationStep(),
+                new OutlierDetectionStep(), new CategoricalStandardizationStep(),
+                new CategoricalClusteringStep(new ClusteringProperties())), new PipelinePlanner());
+        pipeline.init();
+        return pipeline;
+    }
+}
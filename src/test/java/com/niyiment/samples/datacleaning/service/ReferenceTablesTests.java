@@ -0,0 +1,163 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.config.ReferenceDataProperties;
+import com.niyiment.samples.datacleaning.service.impl.ReferenceLookupStep;
+import com.niyiment.samples.datacleaning.service.kernel.ReferenceIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Lookups against reference tables, and what a job sees while a table is reloaded under it. */
+class ReferenceTablesTests {
+    @TempDir
+    Path directory;
+
+    private final List<ReferenceTables> opened = new ArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        opened.forEach(ReferenceTables::shutdown);
+    }
+
+    @Test
+    void keyOfWholeDoublesIsTheirIntegerText() {
+        ReferenceTables.Table table = new ReferenceTables.Table("staff", "id", new String[0], null,
+                ReferenceIndex.builder(1, false).build(), null, "");
+
+        assertThat(table.keyOf(Map.of("id", 1043.0))).isEqualTo("1043");
+        assertThat(table.keyOf(Map.of("id", -7.0))).isEqualTo("-7");
+        assertThat(table.keyOf(Map.of("id", 1e20))).isEqualTo("100000000000000000000");
+        assertThat(table.keyOf(Map.of("id", 1043.5))).isEqualTo("1043.5");
+        assertThat(table.keyOf(Map.of("id", 1043))).isEqualTo("1043");
+        assertThat(table.keyOf(Map.of("id", " A-7 "))).isEqualTo("A-7");
+        assertThat(table.keyOf(Map.of("id", "  "))).isNull();
+        assertThat(table.keyOf(Map.of("name", "Ada"))).isNull();
+    }
+
+    @Test
+    void lookupAddsColumnsAndCopiesOnlyChangedRows() throws IOException {
+        ReferenceDataProperties properties = properties();
+        properties.getTables().put("staff", table(write("staff.csv", "ID,Department,Grade\n7,Sales,G2\n9,,G1\n7,Ops,G3\n"),
+                "id", definition -> definition.setMatchColumn("known")));
+        properties.getTables().put("departments", table(write("departments.csv", "Department,Floor\nSales,3\n"),
+                "department", definition -> {
+                    definition.setLookupColumn("staff_department");
+                    definition.setPrefix("");
+                    definition.setIgnoreCase(true);
+                }));
+        ReferenceLookupStep step = new ReferenceLookupStep(open(properties));
+        Map<String, Object> enriched = new HashMap<>(Map.of("id", 7.0, "staff_department", "Sales",
+                "staff_grade", "G2", "known", true, "floor", "3"));
+
+        List<Map<String, Object>> result = step.process(List.of(
+                Map.of("id", 7.0), Map.of("id", "9"), Map.of("id", "404"), Map.of("name", "no key"), enriched));
+
+        assertThat(result.get(0)).containsEntry("staff_department", "Sales").containsEntry("staff_grade", "G2")
+                .containsEntry("known", true).containsEntry("floor", "3");
+        assertThat(result.get(1)).containsEntry("staff_department", "N/A").containsEntry("staff_grade", "G1")
+                .containsEntry("known", true).containsEntry("floor", "N/A");
+        assertThat(result.get(2)).containsEntry("staff_grade", "N/A").containsEntry("known", false);
+        assertThat(result.get(3)).containsEntry("known", false).containsEntry("name", "no key");
+        assertThat(result.get(4)).isSameAs(enriched);
+    }
+
+    @Test
+    void reloadSwapsTheIndexWhileAPinnedJobKeepsItsOwn() throws IOException {
+        Path file = write("cities.csv", "City,Country\nLagos,NG\n");
+        ReferenceDataProperties properties = properties();
+        properties.getTables().put("cities", table(file, "city", definition -> { }));
+        ReferenceTables tables = open(properties);
+        String firstVersion = tables.version();
+        CancellationToken job = new CancellationToken("running job", Duration.ofMinutes(1));
+
+        List<ReferenceTables.Table> pinned;
+        try (CancellationToken.Binding binding = job.bind()) {
+            pinned = tables.forCurrentJob();
+        }
+        // a longer file, so its stamp differs even within the file system's timestamp resolution
+        Files.writeString(file, "City,Country\nLagos,Nigeria\nAccra,GH\n");
+        tables.reloadChanged();
+
+        try (CancellationToken.Binding binding = job.bind()) {
+            assertThat(tables.forCurrentJob()).isEqualTo(pinned);
+            assertThat(lookup(tables.forCurrentJob().get(0), "Lagos")).isEqualTo("NG");
+        }
+        try (CancellationToken.Binding binding = new CancellationToken("next job", Duration.ofMinutes(1)).bind()) {
+            assertThat(lookup(tables.forCurrentJob().get(0), "Lagos")).isEqualTo("Nigeria");
+        }
+        assertThat(lookup(tables.current().get(0), "Accra")).isEqualTo("GH");
+        assertThat(tables.version()).isNotEqualTo(firstVersion);
+    }
+
+    @Test
+    void failedReloadKeepsThePreviousIndex() throws IOException {
+        Path file = write("cities.csv", "City,Country\nLagos,NG\n");
+        ReferenceDataProperties properties = properties();
+        properties.getTables().put("cities", table(file, "city", definition -> { }));
+        ReferenceTables tables = open(properties);
+
+        Files.writeString(file, "Town,Country\nLagos,Nigeria\n");
+        tables.reloadChanged();
+
+        assertThat(lookup(tables.current().get(0), "Lagos")).isEqualTo("NG");
+    }
+
+    @Test
+    void versionCoversTheDefinition() throws IOException {
+        Path file = write("cities.csv", "City,Country,Region\nLagos,NG,West\n");
+        ReferenceDataProperties plain = properties();
+        plain.getTables().put("cities", table(file, "city", definition -> { }));
+        ReferenceDataProperties prefixed = properties();
+        prefixed.getTables().put("cities", table(file, "city", definition -> definition.setPrefix("")));
+        ReferenceDataProperties narrowed = properties();
+        narrowed.getTables().put("cities", table(file, "city", definition -> definition.setColumns(List.of("country"))));
+
+        assertThat(List.of(open(plain).version(), open(prefixed).version(), open(narrowed).version()))
+                .doesNotHaveDuplicates();
+        assertThat(open(plain).version()).isEqualTo(open(plain).version());
+    }
+
+    private static String lookup(ReferenceTables.Table table, String key) {
+        int row = table.index().find(key);
+        return row < 0 ? null : table.index().value(row, 1);
+    }
+
+    private ReferenceTables open(ReferenceDataProperties properties) {
+        ReferenceTables tables = new ReferenceTables(properties, new SimpleMeterRegistry());
+        opened.add(tables);
+        return tables;
+    }
+
+    private static ReferenceDataProperties properties() {
+        ReferenceDataProperties properties = new ReferenceDataProperties();
+        // reloads only happen when a test asks for them
+        properties.setReloadCheckInterval(Duration.ofHours(1));
+        return properties;
+    }
+
+    private static ReferenceDataProperties.Table table(Path file, String keyColumn,
+                                                       Consumer<ReferenceDataProperties.Table> settings) {
+        ReferenceDataProperties.Table definition = new ReferenceDataProperties.Table();
+        definition.setPath(file.toString());
+        definition.setKeyColumn(keyColumn);
+        settings.accept(definition);
+        return definition;
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(directory.resolve(name), content);
+    }
+}
@@ -0,0 +1,213 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.niyiment.samples.datacleaning.dto.CleanedDataResult;
+import com.niyiment.samples.datacleaning.dto.CorrelationMatrix;
+import com.niyiment.samples.datacleaning.dto.DataQualityReport;
+import com.niyiment.samples.datacleaning.dto.FrequentValue;
+import com.niyiment.samples.datacleaning.dto.NumericProfile;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Every value a result holds must come back from {@link ResultCodec} with its value and its type,
+ * whichever column encoding it went through.
+ */
+class ResultCodecTests {
+    private final ResultCodec codec = new ResultCodec();
+
+    @Test
+    void everyColumnTypeRoundTrips() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 13; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("text", "value " + i);
+            row.put("category", i % 3 == 0 ? "red" : "blue");
+            row.put("int", i % 2 == 0 ? i * 1_000 : -i);
+            row.put("long", Long.MAX_VALUE - i);
+            row.put("double", i == 0 ? Double.NaN : i == 1 ? -0.0 : i == 2 ? Double.NEGATIVE_INFINITY : i / 3.0);
+            row.put("float", i * 0.5f);
+            row.put("flag", i % 3 == 1);
+            row.put("date", LocalDate.of(1969, 12, 31).plusDays(i * 400L));
+            row.put("timestamp", LocalDateTime.of(2024, 2, 29, 23, 59, 59, 123_456_789).minusDays(i));
+            row.put("big_integer", BigInteger.TWO.pow(70 + i));
+            row.put("big_decimal", new BigDecimal("12345678901234567890.000" + i));
+            row.put("list", List.of(i, "item", List.of(true)));
+            row.put("map", Map.of("nested", i));
+            rows.add(row);
+        }
+
+        List<Map<String, Object>> decoded = roundTrip(rows);
+
+        assertThat(decoded).isEqualTo(rows);
+        assertSameTypes(decoded, rows);
+    }
+
+    @Test
+    void nullsAndAbsentKeysStayApart() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 70; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", i);
+            if (i % 3 == 0) row.put("name", null);
+            else if (i % 3 == 1) row.put("name", "name " + i);
+            if (i % 2 == 0) row.put("only_nulls", null);
+            if (i == 69) row.put("late", "seen last");
+            rows.add(row);
+        }
+
+        List<Map<String, Object>> decoded = roundTrip(rows);
+
+        assertThat(decoded).isEqualTo(rows);
+        for (int i = 0; i < rows.size(); i++) {
+            for (String key : List.of("name", "only_nulls", "late")) {
+                assertThat(decoded.get(i).containsKey(key)).as("row %d has %s", i, key)
+                        .isEqualTo(rows.get(i).containsKey(key));
+            }
+        }
+    }
+
+    @Test
+    void mixedColumnKeepsEachValueItsType() {
+        List<Object> values = Arrays.asList("N/A", 42, 42L, 42.0, 4.2f, true, LocalDate.of(2020, 1, 1),
+                LocalDateTime.of(2020, 1, 1, 12, 0), new BigDecimal("4.20"), BigInteger.TEN, null, "42");
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Object value : values) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("mixed", value);
+            rows.add(row);
+        }
+
+        List<Map<String, Object>> decoded = roundTrip(rows);
+
+        assertThat(decoded).isEqualTo(rows);
+        assertSameTypes(decoded, rows);
+    }
+
+    @Test
+    void resultAndReportRoundTrip() {
+        List<Map<String, Object>> rows = List.of(
+                new HashMap<>(Map.of("city", "Lagos", "salary", 52_000.0)),
+                new HashMap<>(Map.of("city", "Boston", "salary", 61_500.5)));
+        CleanedDataResult result = CleanedDataResult.builder()
+                .cleanedData(rows)
+                .sourceRows(new int[]{2, 7, 5, 1_000_000, 3})
+                .columns(List.of("city", "salary"))
+                .validationErrors(List.of("Row 3: salary is missing"))
+                .pipelinePlan(List.of("removeDuplicates", "typeInference"))
+                .dataQualityReport(report())
+                .build();
+
+        CleanedDataResult decoded = codec.decode(codec.encode(result));
+
+        assertThat(decoded.cleanedData()).isEqualTo(rows);
+        assertThat(decoded.sourceRows()).containsExactly(2, 7, 5, 1_000_000, 3);
+        assertThat(decoded.columns()).isEqualTo(result.columns());
+        assertThat(decoded.validationErrors()).isEqualTo(result.validationErrors());
+        assertThat(decoded.pipelinePlan()).isEqualTo(result.pipelinePlan());
+        assertThat(decoded.dataQualityReport()).isEqualTo(result.dataQualityReport());
+        assertThat(codec.decodeReport(codec.encodeReport(report()))).isEqualTo(report());
+    }
+
+    @Test
+    void missingPartsStayMissing() throws Exception {
+        CleanedDataResult empty = CleanedDataResult.builder().cleanedData(List.of()).build();
+
+        CleanedDataResult decoded = codec.decode(new ByteArrayInputStream(codec.encode(empty)));
+
+        assertThat(decoded.cleanedData()).isEmpty();
+        assertThat(decoded.sourceRows()).isNull();
+        assertThat(decoded.dataQualityReport()).isNull();
+        assertThat(decoded.columns()).isNull();
+        assertThat(codec.decode(codec.encode(CleanedDataResult.builder().build())).cleanedData()).isNull();
+    }
+
+    @Test
+    void largeResultEncodesColumnsInParallelAndInOrder() {
+        Random random = new Random(7);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        int[] sourceRows = new int[25_000];
+        for (int i = 0; i < sourceRows.length; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", i);
+            row.put("name", "name " + random.nextInt(50));
+            row.put("score", random.nextGaussian());
+            row.put("active", random.nextBoolean());
+            row.put("joined", LocalDate.of(2000, 1, 1).plusDays(random.nextInt(9_000)));
+            if (i % 1_000 == 0) row.put("note", i % 2_000 == 0 ? null : "checked");
+            rows.add(row);
+            sourceRows[i] = i + 2 + (i % 10 == 0 ? 1 : 0);
+        }
+        CleanedDataResult result = CleanedDataResult.builder().cleanedData(rows).sourceRows(sourceRows).build();
+
+        byte[] encoded = codec.encode(result);
+        CleanedDataResult decoded = codec.decode(encoded);
+
+        assertThat(codec.encode(result)).isEqualTo(encoded);
+        assertThat(decoded.cleanedData()).isEqualTo(rows);
+        assertThat(decoded.cleanedData().get(0).keySet()).containsExactly("id", "name", "score", "active", "joined", "note");
+        assertThat(decoded.sourceRows()).isEqualTo(sourceRows);
+        assertSameTypes(decoded.cleanedData(), rows);
+    }
+
+    @Test
+    void otherBytesAreRejected() {
+        assertThatThrownBy(() -> codec.decode("not a result".getBytes()))
+                .isInstanceOf(UncheckedIOException.class)
+                .hasCauseInstanceOf(StreamCorruptedException.class);
+    }
+
+    private List<Map<String, Object>> roundTrip(List<Map<String, Object>> rows) {
+        return codec.decode(codec.encode(CleanedDataResult.builder().cleanedData(rows).build())).cleanedData();
+    }
+
+    private static void assertSameTypes(List<Map<String, Object>> decoded, List<Map<String, Object>> rows) {
+        for (int i = 0; i < rows.size(); i++) {
+            for (Map.Entry<String, Object> cell : rows.get(i).entrySet()) {
+                Object value = decoded.get(i).get(cell.getKey());
+                // collections come back as some List or Map; every other value as its own class
+                Class<?> type = cell.getValue() instanceof List<?> ? List.class
+                        : cell.getValue() instanceof Map<?, ?> ? Map.class
+                        : cell.getValue() == null ? null : cell.getValue().getClass();
+                if (type != null) {
+                    assertThat(value).as("row %d, %s", i, cell.getKey()).isInstanceOf(type);
+                }
+            }
+        }
+    }
+
+    private static DataQualityReport report() {
+        Map<String, Object> salaryStats = new LinkedHashMap<>();
+        salaryStats.put("mean", 56_750.25);
+        salaryStats.put("min", 52_000.0);
+        salaryStats.put("outliers", 0);
+        return DataQualityReport.builder()
+                .totalRecords(3)
+                .processedRecords(2)
+                .missingValuesCount(Map.of("salary", 1L))
+                .uniqueValuesCount(Map.of("city", 2, "salary", 2))
+                .numericStats(Map.of("salary", salaryStats))
+                .columnTypes(Map.of("city", "STRING", "salary", "NUMERIC"))
+                .topValues(Map.of("city", List.of(new FrequentValue("Lagos", 5, 1), new FrequentValue(7, 2, 0))))
+                .numericProfiles(Map.of("salary", new NumericProfile(2, 52_000.0, 56_750.25, null, 0.0, -2.0)))
+                .correlations(new CorrelationMatrix(List.of("salary", "age"),
+                        List.of(List.of(1.0, -0.25), List.of(-0.25, 1.0))))
+                .build();
+    }
+}
@@ -0,0 +1,226 @@
+package com.niyiment.samples.datacleaning.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.niyiment.samples.datacleaning.dto.ProcessingOptions;
+import com.niyiment.samples.datacleaning.exception.ReportProcessingException;
+import com.niyiment.samples.datacleaning.service.RowSelection.Filter;
+import com.niyiment.samples.datacleaning.service.RowSelection.Operator;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Filters must parse the operator the user meant, and a selection pushed into a reader must keep
+ * the rows a full read followed by the same filters would, counting what it tested and kept.
+ */
+class RowSelectionTests {
+    private static final String[] REGIONS = {"North", "South", " north ", "", "N/A", "East"};
+    private static final String[] NOTES = {"a=b", "plain", "x<5", "A=B"};
+    private static final List<String[]> SELECTIONS = List.of(
+            new String[]{null, "region=north;amount>=100"},
+            new String[]{"id, Amount", "region=north;amount>=100"},
+            new String[]{"id,note", "note=a=b"},
+            new String[]{"id", "region!=N/A"},
+            new String[]{"id,region", "region="},
+            new String[]{null, "amount<50.5;active=TRUE"},
+            new String[]{"id,active", "amount<=100;amount>100"},
+            new String[]{"id, region, note", null});
+
+    private final RowReaders readers = new RowReaders(new ObjectMapper());
+
+    @Test
+    void parsesTheOperatorTheUserMeant() {
+        assertFilter("Amount <= 100", "amount", Operator.LESS_OR_EQUAL, "100");
+        assertFilter("amount<100", "amount", Operator.LESS, "100");
+        assertFilter("amount >= -5.5", "amount", Operator.GREATER_OR_EQUAL, "-5.5");
+        assertFilter("amount>1e3", "amount", Operator.GREATER, "1e3");
+        assertFilter("Region != North", "region", Operator.NOT_EQUAL, "North");
+        assertFilter("Region = North", "region", Operator.EQUAL, "North");
+        // only the first operator splits the condition; the rest belongs to the value
+        assertFilter("formula=a=b", "formula", Operator.EQUAL, "a=b");
+        assertFilter("note=x!=y", "note", Operator.EQUAL, "x!=y");
+        assertFilter("note!=a=b", "note", Operator.NOT_EQUAL, "a=b");
+        assertFilter("note=<5", "note", Operator.EQUAL, "<5");
+        assertFilter("region=", "region", Operator.EQUAL, "");
+    }
+
+    @Test
+    void rejectsConditionsWithoutAColumnOrANumber() {
+        for (String condition : List.of("=5", "  = 5", "region", "amount<abc", "amount>=")) {
+            assertThatThrownBy(() -> Filter.parse(condition)).as(condition)
+                    .isInstanceOf(ReportProcessingException.class)
+                    .hasMessageStartingWith("Invalid filter: " + condition.trim());
+        }
+    }
+
+    @Test
+    void comparesNumbersAsNumbersAndTextIgnoringCase() {
+        assertThat(Filter.parse("id=7").test("007")).isTrue();
+        assertThat(Filter.parse("id=7").test(7L)).isTrue();
+        assertThat(Filter.parse("id=7.0").test(7)).isTrue();
+        assertThat(Filter.parse("region=north").test(" NORTH ")).isTrue();
+        assertThat(Filter.parse("region!=north").test("South")).isTrue();
+        assertThat(Filter.parse("amount<10").test("abc")).isFalse();
+        assertThat(Filter.parse("amount>=10").test(null)).isFalse();
+        assertThat(Filter.parse("amount!=10").test(null)).isTrue();
+        for (Object missing : Arrays.asList(null, "", "  ", "N/A", "n/a")) {
+            assertThat(Filter.parse("region=").test(missing)).as("'%s'", missing).isTrue();
+            assertThat(Filter.parse("region=N/A").test(missing)).as("'%s'", missing).isTrue();
+            assertThat(Filter.parse("region!=N/A").test(missing)).as("'%s'", missing).isFalse();
+        }
+        assertThat(Filter.parse("region=N/A").test("North")).isFalse();
+    }
+
+    @Test
+    void csvUnderASelectionReadsLikeAFullReadThenAFilter() {
+        assertReadsLikeAFullRead("csv", csv(rows()));
+    }
+
+    @Test
+    void jsonUnderASelectionReadsLikeAFullReadThenAFilter() {
+        assertReadsLikeAFullRead("json", json(rows()));
+    }
+
+    @Test
+    void ndjsonUnderASelectionReadsLikeAFullReadThenAFilter() {
+        assertReadsLikeAFullRead("ndjson", ndjson(rows()));
+    }
+
+    @Test
+    void planLineCountsRowsTestedAndKept() {
+        String csv = "ID,Region,Amount\n1,North,150\n2,South,150\n3,north,50\n4,NORTH,100\n5,,300\n";
+        RowSelection selection = RowSelection.of(options("id, Amount", "region=north;amount>=100"));
+        List<Map<String, Object>> rows = new ArrayList<>();
+
+        readers.readRows("csv", stream(csv), selection, null, (row, sourceRow) -> rows.add(row));
+
+        assertThat(rows).extracting(row -> row.get("id")).containsExactly(1L, 4L);
+        assertThat(selection.describe()).isEqualTo("Read: columns id, amount; "
+                + "rows where region = north and amount >= 100: kept 2 of 5, other fields skipped by the reader");
+    }
+
+    @Test
+    void jsonCountsRowsDroppedAtTheirFirstFailingField() {
+        String json = """
+                [{"id": 1, "region": "South", "amount": 500},
+                 {"region": "North", "id": 2, "amount": 50},
+                 null,
+                 {"id": 3, "amount": 150},
+                 {"id": 4, "nested": {"region": "South"}, "region": "North", "amount": 100}]
+                """;
+        RowSelection selection = RowSelection.of(options("id", "region=north;amount>=100"));
+        List<Integer> sourceRows = new ArrayList<>();
+
+        readers.readRows("json", stream(json), selection, null, (row, sourceRow) -> sourceRows.add(sourceRow));
+
+        assertThat(sourceRows).containsExactly(5);
+        assertThat(selection.describe()).endsWith("kept 1 of 4, other fields skipped by the reader");
+    }
+
+    private void assertReadsLikeAFullRead(String format, String content) {
+        List<Map.Entry<Integer, Map<String, Object>>> fullRead = new ArrayList<>();
+        readers.readRows(format, stream(content), (row, sourceRow) -> fullRead.add(Map.entry(sourceRow, row)));
+        assertThat(fullRead).hasSize(300);
+
+        for (String[] options : SELECTIONS) {
+            RowSelection selection = RowSelection.of(options(options[0], options[1]));
+            List<Map.Entry<Integer, Map<String, Object>>> selected = new ArrayList<>();
+            readers.readRows(format, stream(content), selection, null,
+                    (row, sourceRow) -> selected.add(Map.entry(sourceRow, row)));
+
+            List<Filter> filters = options[1] == null ? List.of()
+                    : Arrays.stream(options[1].split(";")).map(Filter::parse).toList();
+            List<Map.Entry<Integer, Map<String, Object>>> expected = fullRead.stream()
+                    .filter(entry -> filters.stream().allMatch(filter -> filter.test(entry.getValue().get(filter.column()))))
+                    .map(entry -> Map.entry(entry.getKey(), project(entry.getValue(), selection)))
+                    .toList();
+            assertThat(selected).as("%s with columns %s and filter %s", format, options[0], options[1])
+                    .isEqualTo(expected);
+            if (!filters.isEmpty()) {
+                assertThat(selection.describe()).as("%s with filter %s", format, options[1])
+                        .contains(": kept " + expected.size() + " of 300,");
+            }
+        }
+    }
+
+    private static Map<String, Object> project(Map<String, Object> row, RowSelection selection) {
+        return row.entrySet().stream().filter(entry -> selection.selects(entry.getKey()))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    private static void assertFilter(String condition, String column, Operator operator, String value) {
+        Filter filter = Filter.parse(condition);
+        assertThat(filter.column()).as(condition).isEqualTo(column);
+        assertThat(filter.operator()).as(condition).isEqualTo(operator);
+        assertThat(filter.value()).as(condition).isEqualTo(value);
+    }
+
+    /** Rows as text cells, blank where a cell is empty. */
+    private static List<Map<String, String>> rows() {
+        Random random = new Random(8);
+        List<Map<String, String>> rows = new ArrayList<>();
+        for (int i = 1; i <= 300; i++) {
+            Map<String, String> row = new LinkedHashMap<>();
+            row.put("ID", String.valueOf(i));
+            row.put("Region", REGIONS[random.nextInt(REGIONS.length)]);
+            row.put("Amount", switch (random.nextInt(6)) {
+                case 0 -> random.nextInt(300) + ".5";
+                case 1 -> "abc";
+                case 2 -> "";
+                case 3 -> "100";
+                default -> String.valueOf(random.nextInt(300));
+            });
+            row.put("Note", NOTES[random.nextInt(NOTES.length)]);
+            row.put("Active", String.valueOf(random.nextBoolean()));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static String csv(List<Map<String, String>> rows) {
+        StringBuilder csv = new StringBuilder(String.join(",", rows.get(0).keySet())).append('\n');
+        for (Map<String, String> row : rows) {
+            csv.append(row.values().stream().map(cell -> '"' + cell.replace("\"", "\"\"") + '"')
+                    .collect(Collectors.joining(","))).append('\n');
+        }
+        return csv.toString();
+    }
+
+    private static String json(List<Map<String, String>> rows) {
+        return rows.stream().map(RowSelectionTests::jsonObject).collect(Collectors.joining(",\n", "[\n", "\n]\n"));
+    }
+
+    private static String ndjson(List<Map<String, String>> rows) {
+        return rows.stream().map(RowSelectionTests::jsonObject).collect(Collectors.joining("\n", "", "\n"));
+    }
+
+    /** Numbers and booleans as JSON literals, every other blank amount as a missing field. */
+    private static String jsonObject(Map<String, String> row) {
+        List<String> fields = new ArrayList<>();
+        row.forEach((column, cell) -> {
+            if (cell.isEmpty() && column.equals("Amount") && Integer.parseInt(row.get("ID")) % 2 == 0) return;
+            boolean literal = cell.matches("-?\\d+(\\.\\d+)?|true|false");
+            fields.add('"' + column + "\": " + (literal ? cell : '"' + cell + '"'));
+        });
+        return fields.stream().collect(Collectors.joining(", ", "{", "}"));
+    }
+
+    private static ProcessingOptions options(String columns, String filter) {
+        return ProcessingOptions.builder().columns(columns).filter(filter).build();
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,75 @@
+package com.niyiment.samples.datacleaning.service.impl;
+
+import com.niyiment.samples.datacleaning.config.ClusteringProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Clustering may only merge spellings of the same value, never values that merely look alike. */
+class CategoricalClusteringStepTests {
+    private final CategoricalClusteringStep step = new CategoricalClusteringStep(new ClusteringProperties());
+
+    @Test
+    void spellingsOfOneCategoryBecomeTheMostFrequentOne() {
+        Map<String, String> canonical = step.cluster(counts(
+                "New York", 5, "new york ", 2, "NewYork", 1, "New-York", 1, "Lagos", 4, "lagos", 1));
+
+        assertThat(canonical).containsOnly(
+                Map.entry("new york ", "New York"), Map.entry("NewYork", "New York"),
+                Map.entry("New-York", "New York"), Map.entry("lagos", "Lagos"));
+    }
+
+    @Test
+    void valuesWithDifferentNumbersAreKeptApart() {
+        assertThat(step.cluster(counts("5.1", 3, "1.5", 1))).isEmpty();
+        assertThat(step.cluster(counts("2023-02-01", 3, "2023-01-02", 1))).isEmpty();
+        assertThat(step.cluster(counts("Zone 1", 3, "Zone 2", 1, "Zone 12", 1, "Zone 21", 1))).isEmpty();
+        assertThat(step.cluster(counts("Building 7 North", 3, "North Building 7", 1)))
+                .containsOnly(Map.entry("North Building 7", "Building 7 North"));
+    }
+
+    @Test
+    void symbolsThatMakeTheValueAreKept() {
+        assertThat(step.cluster(counts("C", 3, "C++", 1, "C#", 1))).isEmpty();
+        assertThat(step.cluster(counts("50%", 3, "50", 1))).isEmpty();
+    }
+
+    @Test
+    void valuesWithoutLettersOrDigitsAreNeverClustered() {
+        assertThat(step.cluster(counts("?", 3, "-", 1, "--", 1, "...", 1))).isEmpty();
+        assertThat(step.cluster(counts("?", 3, "Unknown", 2, "unknown", 1)))
+                .containsOnly(Map.entry("unknown", "Unknown"));
+    }
+
+    @Test
+    void processRewritesOnlyClusteredCells() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        String[] versions = {"5.1", "5.1", "5.1", "1.5", "C", "C", "C++", "?", "-"};
+        String[] cities = {"Boston", "Boston", "boston", "Boston", "Boston", "Boston", "BOSTON", "Boston", "Boston"};
+        for (int i = 0; i < versions.length; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("version", versions[i]);
+            row.put("city", cities[i]);
+            rows.add(row);
+        }
+
+        List<Map<String, Object>> result = step.process(rows);
+
+        assertThat(result).extracting(row -> row.get("version")).containsExactly((Object[]) versions);
+        assertThat(result).extracting(row -> row.get("city")).containsOnly("Boston");
+    }
+
+    private static Map<String, Integer> counts(Object... valuesAndCounts) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (int i = 0; i < valuesAndCounts.length; i += 2) {
+            counts.put((String) valuesAndCounts[i], (Integer) valuesAndCounts[i + 1]);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,72 @@
+package com.niyiment.samples.datacleaning.service.impl;
+
+import com.niyiment.samples.datacleaning.config.ImputationProperties;
+import com.niyiment.samples.datacleaning.config.ImputationProperties.Strategy;
+import com.niyiment.samples.datacleaning.config.TypeInferenceProperties;
+import com.niyiment.samples.datacleaning.exception.JobCancelledException;
+import com.niyiment.samples.datacleaning.service.CancellationToken;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Statistics accumulated over chunks forked into the job must fill the cells one pass would. */
+class ImputationStepTests {
+
+    @Test
+    void chunkedStatisticsFillLikeASinglePass() {
+        List<Map<String, Object>> rows = rows(5_003);
+
+        List<Map<String, Object>> singlePass = step(10_000).process(rows);
+        List<Map<String, Object>> chunked = step(700).process(rows);
+
+        assertThat(chunked).isEqualTo(singlePass);
+        assertThat(chunked).extracting(row -> row.get("salary")).doesNotContain("N/A");
+        assertThat(chunked).extracting(row -> row.get("city")).doesNotContain("N/A");
+    }
+
+    @Test
+    void chunksStopWithTheJob() {
+        CancellationToken token = new CancellationToken("imputation-test", Duration.ofMinutes(1));
+        token.cancel("the test cancelled it");
+
+        try (CancellationToken.Binding binding = token.bind()) {
+            assertThatThrownBy(() -> step(700).process(rows(5_003)))
+                    .isInstanceOf(JobCancelledException.class)
+                    .hasMessageContaining("the test cancelled it");
+        }
+    }
+
+    private static ImputationStep step(int chunkSize) {
+        ImputationProperties properties = new ImputationProperties();
+        properties.setParallelChunkSize(chunkSize);
+        // room for every value, so chunked medians are exact rather than merged sketch estimates
+        properties.setSketchCapacity(10_000);
+        properties.setNumericStrategy(Strategy.MEDIAN);
+        properties.setDateStrategy(Strategy.MEAN);
+        properties.setTextStrategy(Strategy.MODE);
+        return new ImputationStep(properties, new TypeInferenceProperties());
+    }
+
+    private static List<Map<String, Object>> rows(int count) {
+        Random random = new Random(9);
+        String[] cities = {"Lagos", "Boston", "London"};
+        List<Map<String, Object>> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("salary", random.nextInt(8) == 0 ? "N/A" : (Object) (20_000 + random.nextInt(10_000)));
+            row.put("joined", random.nextInt(8) == 0 ? "N/A" : LocalDate.of(2020, 1, 1).plusDays(random.nextInt(900)));
+            row.put("city", random.nextInt(8) == 0 ? "N/A" : cities[random.nextInt(cities.length + 1) % cities.length]);
+            rows.add(row);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,153 @@
+package com.niyiment.samples.datacleaning.service.kernel;
+
+import com.niyiment.samples.datacleaning.service.kernel.FrequentValuesSketch.Estimate;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FrequentValuesSketchTests {
+    private static final int CAPACITY = 64;
+    // chunks of very different sizes, so some sketches never fill and others evict all the time
+    private static final int[] CHUNKS = {5, 40_000, 90, 1_500, 60, 128_345, 30_000};
+
+    @Test
+    void mergedChunkSketchesKeepTheSpaceSavingBounds() {
+        int[] stream = zipf(200_000, 10_000, 1.1, 1);
+        Map<Integer, Long> counts = trueCounts(stream);
+
+        FrequentValuesSketch<Integer> merged = mergedChunks(stream);
+
+        assertThat(merged.total()).isEqualTo(stream.length);
+        List<Estimate<Integer>> estimates = merged.top(CAPACITY);
+        assertThat(estimates).hasSize(CAPACITY);
+        assertBounds(estimates, counts);
+        // no value the sketch dropped occurred more often than its smallest count
+        long smallest = estimates.get(estimates.size() - 1).count();
+        Set<Integer> tracked = estimates.stream().map(Estimate::value).collect(Collectors.toSet());
+        counts.forEach((value, count) -> {
+            if (!tracked.contains(value)) {
+                assertThat(count).as("untracked value %d", value).isLessThanOrEqualTo(smallest);
+            }
+        });
+    }
+
+    @Test
+    void mergedChunkSketchesFindTheHeavyHittersOfASinglePass() {
+        int[] stream = zipf(200_000, 10_000, 1.3, 2);
+        Map<Integer, Long> counts = trueCounts(stream);
+        FrequentValuesSketch<Integer> singlePass = sketch(stream, 0, stream.length);
+
+        FrequentValuesSketch<Integer> merged = mergedChunks(stream);
+
+        List<Integer> heaviest = counts.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Long>comparingByValue().reversed())
+                .limit(10).map(Map.Entry::getKey).toList();
+        assertThat(merged.top(10)).extracting(Estimate::value).containsExactlyElementsOf(heaviest);
+        assertThat(singlePass.top(10)).extracting(Estimate::value).containsExactlyElementsOf(heaviest);
+        for (int i = 0; i < 10; i++) {
+            Estimate<Integer> fromMerge = merged.top(10).get(i);
+            Estimate<Integer> fromSinglePass = singlePass.top(10).get(i);
+            long count = counts.get(fromMerge.value());
+            // the heaviest values are counted almost exactly either way
+            assertThat(fromMerge.count() - count).isLessThanOrEqualTo(count / 50);
+            assertThat(fromSinglePass.count() - count).isLessThanOrEqualTo(count / 50);
+        }
+        assertBounds(singlePass.top(CAPACITY), counts);
+    }
+
+    @Test
+    void mergeOfUnfilledSketchesIsExact() {
+        int[] stream = zipf(300, 40, 1.0, 3);
+        FrequentValuesSketch<Integer> merged = sketch(stream, 0, 100);
+        merged.merge(sketch(stream, 100, 300));
+
+        Map<Integer, Long> counts = trueCounts(stream);
+        assertThat(merged.top(CAPACITY)).hasSize(counts.size())
+                .allSatisfy(estimate -> {
+                    assertThat(estimate.count()).isEqualTo(counts.get(estimate.value()));
+                    assertThat(estimate.error()).isZero();
+                });
+    }
+
+    @Test
+    void mergingAnEmptySketchChangesNothing() {
+        int[] stream = zipf(50_000, 5_000, 1.1, 4);
+        FrequentValuesSketch<Integer> sketch = sketch(stream, 0, stream.length);
+        List<Estimate<Integer>> before = sketch.top(CAPACITY);
+
+        sketch.merge(new FrequentValuesSketch<>(CAPACITY));
+
+        assertThat(sketch.top(CAPACITY)).containsExactlyInAnyOrderElementsOf(before);
+        assertThat(sketch.total()).isEqualTo(stream.length);
+    }
+
+    @Test
+    void sketchesOfOtherCapacitiesDoNotMerge() {
+        FrequentValuesSketch<Integer> sketch = new FrequentValuesSketch<>(CAPACITY);
+
+        assertThatThrownBy(() -> sketch.merge(new FrequentValuesSketch<>(CAPACITY / 2)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void assertBounds(List<Estimate<Integer>> estimates, Map<Integer, Long> counts) {
+        for (Estimate<Integer> estimate : estimates) {
+            long count = counts.getOrDefault(estimate.value(), 0L);
+            assertThat(estimate.count()).as("estimate of %d", estimate.value()).isGreaterThanOrEqualTo(count);
+            assertThat(estimate.count() - estimate.error()).as("lower bound of %d", estimate.value())
+                    .isLessThanOrEqualTo(count);
+        }
+    }
+
+    private static FrequentValuesSketch<Integer> mergedChunks(int[] stream) {
+        assertThat(Arrays.stream(CHUNKS).sum()).isEqualTo(stream.length);
+        FrequentValuesSketch<Integer> merged = new FrequentValuesSketch<>(CAPACITY);
+        int start = 0;
+        for (int size : CHUNKS) {
+            merged.merge(sketch(stream, start, start + size));
+            start += size;
+        }
+        return merged;
+    }
+
+    private static FrequentValuesSketch<Integer> sketch(int[] stream, int from, int to) {
+        FrequentValuesSketch<Integer> sketch = new FrequentValuesSketch<>(CAPACITY);
+        for (int i = from; i < to; i++) {
+            sketch.add(stream[i]);
+        }
+        return sketch;
+    }
+
+    private static Map<Integer, Long> trueCounts(int[] stream) {
+        Map<Integer, Long> counts = new HashMap<>();
+        for (int value : stream) {
+            counts.merge(value, 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    /** Values 0 to {@code distinct - 1}, value k drawn independently with weight 1 / (k + 1)^exponent. */
+    private static int[] zipf(int length, int distinct, double exponent, long seed) {
+        double[] cumulative = new double[distinct];
+        double sum = 0;
+        for (int k = 0; k < distinct; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        Random random = new Random(seed);
+        int[] stream = new int[length];
+        for (int i = 0; i < length; i++) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            stream[i] = index < 0 ? -index - 1 : index;
+        }
+        return stream;
+    }
+}
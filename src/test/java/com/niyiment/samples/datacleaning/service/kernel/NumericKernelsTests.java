@@ -0,0 +1,170 @@
+package com.niyiment.samples.datacleaning.service.kernel;
+
+import com.niyiment.samples.datacleaning.service.kernel.NumericKernels.ColumnStats;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * The Vector API kernels must answer like the scalar ones: range checks and extremes exactly,
+ * sums up to the order lanes are added in. Lengths straddle the lane count and the 64-bit mask words.
+ */
+class NumericKernelsTests {
+    private static final NumericKernels SCALAR = NumericKernels.scalar();
+    private static final int[] LENGTHS = {0, 1, 2, 3, 5, 7, 8, 9, 15, 17, 63, 64, 65, 127, 129, 1_000, 1_003};
+
+    @Test
+    void vectorKernelsMatchScalarOnRandomColumns() {
+        NumericKernels vector = vectorKernels();
+        Random random = new Random(11);
+        for (int length : LENGTHS) {
+            // spare values past length must never be read
+            double[] values = new double[length + 5];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = i < length ? 1e6 + random.nextGaussian() * 1e3 : Double.NaN;
+            }
+            assertSameAnswers(vector, values, length, 1e6 - 1_500, 1e6 + 1_500);
+        }
+    }
+
+    @Test
+    void vectorKernelsMatchScalarAroundNaN() {
+        NumericKernels vector = vectorKernels();
+        Random random = new Random(12);
+        for (int length : LENGTHS) {
+            if (length == 0) continue;
+            for (int position : new int[]{0, length / 2, length - 1}) {
+                double[] values = random.doubles(length, -10, 10).toArray();
+                values[position] = Double.NaN;
+                assertSameAnswers(vector, values, length, -5, 5);
+                // NaN is never out of range, so it leaves the mask bit clear
+                long[] mask = NumericKernels.newMask(length);
+                vector.markOutside(values, length, -5, 5, mask);
+                assertThat(NumericKernels.isSet(mask, position)).isFalse();
+            }
+        }
+    }
+
+    @Test
+    void vectorKernelsMatchScalarAtTheExtremes() {
+        NumericKernels vector = vectorKernels();
+        List<double[]> columns = List.of(
+                filled(13, Double.MAX_VALUE), filled(13, -Double.MAX_VALUE), filled(9, Double.POSITIVE_INFINITY),
+                filled(9, Double.NEGATIVE_INFINITY), filled(17, Double.MIN_VALUE), filled(17, Double.NaN),
+                new double[]{0.0, -0.0, 0.0, -0.0, 0.0, -0.0, 0.0, -0.0, 0.0},
+                new double[]{-0.0, 0.0, -0.0, 0.0, -0.0, 0.0, -0.0, 0.0, -0.0},
+                new double[]{1, 2, 3, 4, 5, 6, 7, 8, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 11});
+        for (double[] column : columns) {
+            assertSameAnswers(vector, column, column.length, -1, 1);
+            assertSameAnswers(vector, column, column.length, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+        }
+    }
+
+    @Test
+    void markOutsideKeepsBitsAlreadySet() {
+        NumericKernels vector = vectorKernels();
+        double[] values = new Random(13).doubles(200, 0, 1).toArray();
+        long[] scalarMask = {0x5555_5555_5555_5555L, 0, -1L, 0x8000_0000_0000_0001L};
+        long[] vectorMask = scalarMask.clone();
+
+        int scalarCount = SCALAR.markOutside(values, 200, 0.25, 0.75, scalarMask);
+        int vectorCount = vector.markOutside(values, 200, 0.25, 0.75, vectorMask);
+
+        assertThat(vectorCount).isEqualTo(scalarCount);
+        assertThat(vectorMask).containsExactly(scalarMask);
+    }
+
+    @Test
+    void emptyColumnsHaveNoStatistics() {
+        for (NumericKernels kernels : Arrays.asList(SCALAR, NumericKernels.vector())) {
+            if (kernels == null) continue;
+            assertThat(kernels.summarize(new double[0], 0))
+                    .isEqualTo(new ColumnStats(0, 0, Double.NaN, Double.NaN, Double.NaN, Double.NaN));
+            assertThat(kernels.variance(new double[4], 0)).isNaN();
+            assertThat(kernels.sum(new double[0], 0)).isZero();
+            assertThat(kernels.min(new double[0], 0)).isEqualTo(Double.POSITIVE_INFINITY);
+            assertThat(kernels.max(new double[0], 0)).isEqualTo(Double.NEGATIVE_INFINITY);
+            assertThat(kernels.countOutside(new double[0], 0, 0, 1)).isZero();
+        }
+    }
+
+    @Test
+    void selectorFallsBackToScalarWithoutTheIncubatorModule() throws IOException, InterruptedException {
+        Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+        Process process = new ProcessBuilder(java.toString(), "-cp", System.getProperty("java.class.path"),
+                SelectedKernels.class.getName())
+                .redirectErrorStream(true)
+                .start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+
+        assertThat(process.waitFor()).as(output).isZero();
+        assertThat(output).contains("best=scalar", "vector=null");
+    }
+
+    private static void assertSameAnswers(NumericKernels vector, double[] values, int length, double lower, double upper) {
+        String column = length + " values from " + Arrays.toString(Arrays.copyOf(values, Math.min(length, 10)));
+        assertIdentical(vector.min(values, length), SCALAR.min(values, length), "min of " + column);
+        assertIdentical(vector.max(values, length), SCALAR.max(values, length), "max of " + column);
+        assertClose(vector.sum(values, length), SCALAR.sum(values, length), "sum of " + column);
+        assertClose(vector.variance(values, length), SCALAR.variance(values, length), "variance of " + column);
+
+        ColumnStats expected = SCALAR.summarize(values, length);
+        ColumnStats actual = vector.summarize(values, length);
+        assertThat(actual.count()).isEqualTo(expected.count());
+        assertIdentical(actual.min(), expected.min(), "summarized min of " + column);
+        assertIdentical(actual.max(), expected.max(), "summarized max of " + column);
+        assertClose(actual.sum(), expected.sum(), "summarized sum of " + column);
+        assertClose(actual.mean(), expected.mean(), "mean of " + column);
+        assertClose(actual.variance(), expected.variance(), "summarized variance of " + column);
+
+        assertThat(vector.countOutside(values, length, lower, upper)).as("outside count of %s", column)
+                .isEqualTo(SCALAR.countOutside(values, length, lower, upper));
+        long[] scalarMask = NumericKernels.newMask(length);
+        long[] vectorMask = NumericKernels.newMask(length);
+        assertThat(vector.markOutside(values, length, lower, upper, vectorMask))
+                .isEqualTo(SCALAR.markOutside(values, length, lower, upper, scalarMask));
+        assertThat(vectorMask).as("mask of %s", column).containsExactly(scalarMask);
+    }
+
+    /** The same double, telling -0.0 from 0.0 and taking NaN as equal to itself. */
+    private static void assertIdentical(double actual, double expected, String description) {
+        assertThat(Double.compare(actual, expected)).as("%s: %s, expected %s", description, actual, expected).isZero();
+    }
+
+    /** Identical when NaN or infinite, close to a relative 1e-9 otherwise. */
+    private static void assertClose(double actual, double expected, String description) {
+        if (Double.isNaN(expected) || Double.isInfinite(expected)) {
+            assertIdentical(actual, expected, description);
+        } else {
+            assertThat(actual).as(description).isCloseTo(expected, within(Math.max(Math.abs(expected), 1) * 1e-9));
+        }
+    }
+
+    private static double[] filled(int length, double value) {
+        double[] values = new double[length];
+        Arrays.fill(values, value);
+        return values;
+    }
+
+    private static NumericKernels vectorKernels() {
+        NumericKernels vector = NumericKernels.vector();
+        assumeTrue(vector != null, "tests run without jdk.incubator.vector");
+        return vector;
+    }
+
+    /** Reports the selected kernels of a JVM started without the incubator module. */
+    static final class SelectedKernels {
+        public static void main(String[] args) {
+            System.out.println("best=" + NumericKernels.best().name() + " vector=" + NumericKernels.vector());
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.niyiment.samples.datacleaning.service.kernel;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Blocks folded into running central sums, and profilers merged over row ranges, must give the
+ * moments and correlations of a naive two-pass computation over all rows, whatever the block
+ * boundaries and however the missing values fall.
+ */
+class NumericProfilerTests {
+    private static final int ROWS = 5_000;
+    // block lengths that leave a short last block and put single rows on their own
+    private static final int[] BLOCKS = {1, 7, 64, 500, 3, 256, 1_000, 1};
+
+    @Test
+    void blocksMatchATwoPassComputation() {
+        double[][] columns = columns(6);
+        NumericProfiler profiler = new NumericProfiler(columns.length, 200);
+
+        addInBlocks(profiler, columns, 0, ROWS);
+
+        assertMatchesTwoPass(profiler, columns);
+    }
+
+    @Test
+    void mergedRangesMatchATwoPassComputationInAnyOrder() {
+        double[][] columns = columns(7);
+        int[] bounds = {0, 3, 1_200, 1_201, 3_900, ROWS};
+        List<NumericProfiler> ranges = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            NumericProfiler range = new NumericProfiler(columns.length, 200);
+            addInBlocks(range, columns, bounds[i], bounds[i + 1]);
+            ranges.add(range);
+        }
+
+        NumericProfiler forwards = new NumericProfiler(columns.length, 200);
+        ranges.forEach(forwards::merge);
+        NumericProfiler backwards = new NumericProfiler(columns.length, 200);
+        for (int i = ranges.size() - 1; i >= 0; i--) {
+            backwards.merge(ranges.get(i));
+        }
+
+        assertMatchesTwoPass(forwards, columns);
+        assertMatchesTwoPass(backwards, columns);
+    }
+
+    @Test
+    void completeColumnsAreCenteredInPlaceAndOthersLeftAlone() {
+        double[][] block = {
+                {1e9 + 1, 1e9 + 2, 1e9 + 6},
+                {4, Double.NaN, 8},
+                {-3, -3, -3}};
+        double[][] original = Arrays.stream(block).map(double[]::clone).toArray(double[][]::new);
+        NumericProfiler profiler = new NumericProfiler(3, 50);
+
+        profiler.addBlock(block, 3);
+
+        assertThat(block[0]).containsExactly(-2, -1, 3);
+        assertThat(block[1]).containsExactly(original[1]);
+        assertThat(block[2]).containsExactly(0, 0, 0);
+        // the complete pair (0, 2) is undefined, the incomplete pair (0, 1) undoes the centering
+        assertThat(profiler.correlation(0, 2)).isNaN();
+        assertThat(profiler.correlation(0, 1)).isEqualTo(1);
+        assertThat(profiler.mean(0)).isEqualTo(1e9 + 3);
+    }
+
+    @Test
+    void columnsWithoutTwoValuesHaveNoShape() {
+        double[][] block = {{Double.NaN, Double.NaN}, {Double.NaN, 5}, {2, 2}};
+        NumericProfiler profiler = new NumericProfiler(3, 50);
+
+        profiler.addBlock(block, 2);
+
+        assertThat(profiler.count(0)).isZero();
+        assertThat(profiler.mean(0)).isNaN();
+        assertThat(profiler.skewness(1)).isNaN();
+        assertThat(profiler.kurtosis(1)).isNaN();
+        assertThat(profiler.skewness(2)).isNaN();
+        assertThat(profiler.correlation(0, 1)).isNaN();
+        assertThat(profiler.correlation(1, 2)).isNaN();
+        assertThat(profiler.correlation(2, 2)).isNaN();
+    }
+
+    /** Adds rows {@code from} to {@code to} in blocks of copies, as the columns are centered in place. */
+    private static void addInBlocks(NumericProfiler profiler, double[][] columns, int from, int to) {
+        int start = from;
+        for (int b = 0; start < to; b++) {
+            int length = Math.min(BLOCKS[b % BLOCKS.length], to - start);
+            double[][] block = new double[columns.length][];
+            for (int c = 0; c < columns.length; c++) {
+                // spare room past length must be ignored
+                block[c] = Arrays.copyOfRange(columns[c], start, start + length + 2);
+                block[c][length] = 1e300;
+                block[c][length + 1] = Double.NaN;
+            }
+            profiler.addBlock(block, length);
+            start += length;
+        }
+    }
+
+    private static void assertMatchesTwoPass(NumericProfiler profiler, double[][] columns) {
+        for (int c = 0; c < columns.length; c++) {
+            double[] values = Arrays.stream(columns[c]).filter(v -> !Double.isNaN(v)).toArray();
+            assertThat(profiler.count(c)).as("count of %d", c).isEqualTo(values.length);
+            double mean = Arrays.stream(values).average().orElse(Double.NaN);
+            double s2 = 0;
+            double s3 = 0;
+            double s4 = 0;
+            for (double value : values) {
+                double d = value - mean;
+                s2 += d * d;
+                s3 += d * d * d;
+                s4 += d * d * d * d;
+            }
+            int n = values.length;
+            assertThat(profiler.mean(c)).as("mean of %d", c).isCloseTo(mean, within(Math.abs(mean) * 1e-12 + 1e-9));
+            assertThat(profiler.skewness(c)).as("skewness of %d", c)
+                    .isCloseTo(Math.sqrt(n) * s3 / Math.pow(s2, 1.5), within(1e-6));
+            assertThat(profiler.kurtosis(c)).as("kurtosis of %d", c)
+                    .isCloseTo(n * s4 / (s2 * s2) - 3, within(1e-6));
+        }
+        for (int i = 0; i < columns.length; i++) {
+            for (int j = i + 1; j < columns.length; j++) {
+                // means near 1e9 are only held to about 1e-7, and every merge multiplies that by its weight
+                assertThat(profiler.correlation(i, j)).as("correlation of %d and %d", i, j)
+                        .isCloseTo(twoPassCorrelation(columns[i], columns[j]), within(1e-6));
+                assertThat(profiler.correlation(j, i)).isEqualTo(profiler.correlation(i, j));
+            }
+        }
+    }
+
+    private static double twoPassCorrelation(double[] x, double[] y) {
+        long n = 0;
+        double sumX = 0;
+        double sumY = 0;
+        for (int r = 0; r < x.length; r++) {
+            if (!Double.isNaN(x[r]) && !Double.isNaN(y[r])) {
+                n++;
+                sumX += x[r];
+                sumY += y[r];
+            }
+        }
+        double meanX = sumX / n;
+        double meanY = sumY / n;
+        double sxx = 0;
+        double syy = 0;
+        double sxy = 0;
+        for (int r = 0; r < x.length; r++) {
+            if (!Double.isNaN(x[r]) && !Double.isNaN(y[r])) {
+                sxx += (x[r] - meanX) * (x[r] - meanX);
+                syy += (y[r] - meanY) * (y[r] - meanY);
+                sxy += (x[r] - meanX) * (y[r] - meanY);
+            }
+        }
+        return sxy / Math.sqrt(sxx * syy);
+    }
+
+    /**
+     * Complete and sparse columns far from zero, a skewed one and one that tracks another, so pairs
+     * mix complete blocks, incomplete blocks and blocks where a column has no value at all.
+     */
+    private static double[][] columns(long seed) {
+        Random random = new Random(seed);
+        double[][] columns = new double[5][ROWS];
+        for (int r = 0; r < ROWS; r++) {
+            double base = random.nextGaussian();
+            columns[0][r] = 1e9 + base;
+            columns[1][r] = random.nextInt(10) == 0 ? Double.NaN : -5e8 + 3 * base + random.nextGaussian();
+            columns[2][r] = Math.exp(random.nextGaussian());
+            // missing in long runs, so whole blocks of it are empty
+            columns[3][r] = (r / 700) % 2 == 1 ? Double.NaN : 1e6 + random.nextGaussian() * 1e3;
+            columns[4][r] = random.nextInt(3) == 0 ? Double.NaN : -2 * base + random.nextGaussian() * 0.1;
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,84 @@
+package com.niyiment.samples.datacleaning.service.kernel;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class QuantileSketchTests {
+    private static final int CAPACITY = 200;
+
+    @Test
+    void deeperSketchMergesIntoShallowOne() {
+        QuantileSketch small = sketch(values(10, 1));
+        QuantileSketch large = sketch(values(65_536, 2));
+
+        small.merge(large);
+
+        assertThat(small.count()).isEqualTo(65_546);
+        assertThat(small.quantile(0.5)).isCloseTo(0.5, within(0.02));
+        assertThat(small.quantile(0.99)).isCloseTo(0.99, within(0.02));
+    }
+
+    @Test
+    void shallowSketchMergesIntoDeeperOne() {
+        QuantileSketch large = sketch(values(65_536, 3));
+
+        large.merge(sketch(values(10, 4)));
+        large.merge(new QuantileSketch(CAPACITY));
+
+        assertThat(large.count()).isEqualTo(65_546);
+        assertThat(large.quantile(0.5)).isCloseTo(0.5, within(0.02));
+    }
+
+    @Test
+    void chunkSketchesMergeToTheQuantilesOfTheWhole() {
+        double[] values = values(100_000, 5);
+        QuantileSketch merged = new QuantileSketch(CAPACITY);
+        // chunks of very different sizes, so the sketches have different numbers of levels
+        int start = 0;
+        for (int size : new int[]{7, 60_000, 150, 3_000, 36_843}) {
+            merged.merge(sketch(Arrays.copyOfRange(values, start, start + size)));
+            start += size;
+        }
+
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        assertThat(merged.count()).isEqualTo(values.length);
+        for (double fraction : new double[]{0.01, 0.25, 0.5, 0.75, 0.99}) {
+            assertThat(merged.quantile(fraction)).as("quantile %s", fraction)
+                    .isCloseTo(sorted[(int) (fraction * sorted.length)], within(0.02));
+        }
+    }
+
+    @Test
+    void answersAreExactUpToCapacity() {
+        QuantileSketch first = sketch(new double[]{5, 1, 4});
+        first.merge(sketch(new double[]{3, 2}));
+
+        assertThat(first.quantile(0.5)).isEqualTo(3);
+        assertThat(first.quantile(0)).isEqualTo(1);
+        assertThat(first.quantile(1)).isEqualTo(5);
+        assertThat(new QuantileSketch(CAPACITY).quantile(0.5)).isNaN();
+    }
+
+    private static QuantileSketch sketch(double[] values) {
+        QuantileSketch sketch = new QuantileSketch(CAPACITY);
+        for (double value : values) {
+            sketch.add(value);
+        }
+        return sketch;
+    }
+
+    private static double[] values(int count, long seed) {
+        Random random = new Random(seed);
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = random.nextDouble();
+        }
+        return values;
+    }
+}
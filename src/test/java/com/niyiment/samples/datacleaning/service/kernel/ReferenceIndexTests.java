@@ -0,0 +1,110 @@
+package com.niyiment.samples.datacleaning.service.kernel;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** The open-addressing index must find what a first-wins map would, case-folded or not. */
+class ReferenceIndexTests {
+
+    @Test
+    void firstRowOfARepeatedKeyWins() {
+        ReferenceIndex index = ReferenceIndex.builder(2, false)
+                .add("A1", "first").add("B2", "other").add("A1", "second").add("A1", "third")
+                .build();
+
+        assertThat(index.size()).isEqualTo(4);
+        assertThat(index.duplicates()).isEqualTo(2);
+        assertThat(index.value(index.find("A1"), 1)).isEqualTo("first");
+        assertThat(index.value(index.find("B2"), 1)).isEqualTo("other");
+    }
+
+    @Test
+    void ignoringCaseFoldsBothHashAndEquality() {
+        ReferenceIndex folded = ReferenceIndex.builder(2, true)
+                .add("Lagos", "NG").add("ΟΔΟΣ", "GR").add("lagos", "repeat")
+                .build();
+        ReferenceIndex exact = ReferenceIndex.builder(2, false)
+                .add("Lagos", "NG").add("lagos", "ng")
+                .build();
+
+        assertThat(folded.duplicates()).isEqualTo(1);
+        assertThat(folded.value(folded.find("LAGOS"), 1)).isEqualTo("NG");
+        assertThat(folded.value(folded.find("lAgOs"), 1)).isEqualTo("NG");
+        // final sigma upper-cases to the same letter as sigma
+        assertThat(folded.value(folded.find("οδος"), 1)).isEqualTo("GR");
+        assertThat(folded.find("οδoς")).as("with a latin o").isEqualTo(-1);
+        assertThat(folded.find("Lagoss")).isEqualTo(-1);
+
+        assertThat(exact.duplicates()).isZero();
+        assertThat(exact.value(exact.find("lagos"), 1)).isEqualTo("ng");
+        assertThat(exact.find("LAGOS")).isEqualTo(-1);
+    }
+
+    @Test
+    void probesWrapPastTheLastSlot() {
+        // the mask only depends on the row count, so a throwaway index of four rows finds home slots
+        ReferenceIndex probe = ReferenceIndex.builder(1, false).add("a").add("b").add("c").add("d").build();
+        int last = probe.slotCount() - 1;
+        List<String> atLastSlot = new ArrayList<>();
+        for (int i = 0; atLastSlot.size() < 3; i++) {
+            if (probe.homeSlot("key" + i) == last) atLastSlot.add("key" + i);
+        }
+        // three keys cannot all sit in the last slot, so the probes for two of them wrap to slot 0 and on
+        ReferenceIndex.Builder builder = ReferenceIndex.builder(2, false);
+        for (String key : atLastSlot) {
+            builder.add(key, "value of " + key);
+        }
+        ReferenceIndex index = builder.add("other", "value of other").build();
+
+        assertThat(index.slotCount()).isEqualTo(probe.slotCount());
+        for (String key : atLastSlot) {
+            assertThat(index.value(index.find(key), 1)).isEqualTo("value of " + key);
+        }
+        assertThat(index.find("missing")).isEqualTo(-1);
+    }
+
+    @Test
+    void findsWhatAMapWouldFind() {
+        Random random = new Random(21);
+        for (int size = 0; size < 40; size++) {
+            ReferenceIndex.Builder builder = ReferenceIndex.builder(2, false);
+            Map<String, String> expected = new HashMap<>();
+            for (int row = 0; row < size; row++) {
+                String key = Integer.toString(random.nextInt(size * 2 + 1), 36);
+                builder.add(key, "row " + row);
+                expected.putIfAbsent(key, "row " + row);
+            }
+            ReferenceIndex index = builder.build();
+            for (int candidate = 0; candidate <= size * 2; candidate++) {
+                String key = Integer.toString(candidate, 36);
+                int row = index.find(key);
+                assertThat(row < 0 ? null : index.value(row, 1)).as("%s among %d rows", key, size)
+                        .isEqualTo(expected.get(key));
+            }
+        }
+    }
+
+    @Test
+    void emptyAndMissingCellsAreNull() {
+        ReferenceIndex index = ReferenceIndex.builder(4, false)
+                .add("k1", "", "x")
+                .add("k2", null, "y", "z")
+                .add("", "keyless")
+                .build();
+
+        int first = index.find("k1");
+        assertThat(index.value(first, 1)).isNull();
+        assertThat(index.value(first, 2)).isEqualTo("x");
+        assertThat(index.value(first, 3)).as("missing trailing cell").isNull();
+        assertThat(index.value(index.find("k2"), 1)).isNull();
+        assertThat(index.value(index.find("k2"), 3)).isEqualTo("z");
+        assertThat(index.value(index.find(""), 1)).isEqualTo("keyless");
+    }
+}